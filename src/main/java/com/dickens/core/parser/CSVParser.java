@@ -156,6 +156,41 @@ public class CSVParser {
         this.ignoreLeadingWhiteSpace = ignoreLeadingWhiteSpace;
     }
 
+    /**
+     * @return the delimiter used for separating entries
+     */
+    public char getSeparator() {
+        return separator;
+    }
+
+    /**
+     * @return the character used for quoted elements
+     */
+    public char getQuotechar() {
+        return quotechar;
+    }
+
+    /**
+     * @return the character used for escaping a separator or quote
+     */
+    public char getEscape() {
+        return escape;
+    }
+
+    /**
+     * @return true if characters outside the quotes are ignored
+     */
+    public boolean isStrictQuotes() {
+        return strictQuotes;
+    }
+
+    /**
+     * @return true if white space in front of a quote in a field is ignored
+     */
+    public boolean isIgnoreLeadingWhiteSpace() {
+        return ignoreLeadingWhiteSpace;
+    }
+
     private boolean anyCharactersAreTheSame(char separator, char quotechar, char escape) {
         return isSameCharacter(separator, quotechar) || isSameCharacter(separator, escape) || isSameCharacter(quotechar, escape);
     }
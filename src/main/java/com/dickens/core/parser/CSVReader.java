@@ -16,15 +16,21 @@ package com.dickens.core.parser;
  limitations under the License.
  */
 
-import java.io.BufferedReader;
 import java.io.Closeable;
+import java.io.File;
 import java.io.FileNotFoundException;
-import java.io.FileReader;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.InputStreamReader;
+import java.io.RandomAccessFile;
 import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.List;
 
@@ -36,7 +42,7 @@ import java.util.List;
  */
 public class CSVReader extends GenericFileReader implements Closeable {
 
-	private BufferedReader br;
+	private CSVTokenizer tokenizer;
 
 	private boolean hasNext = true;
 
@@ -46,11 +52,31 @@ public class CSVReader extends GenericFileReader implements Closeable {
 
 	private boolean linesSkiped;
 
+	/** The file, its size and charset when the reader was created from a file path. */
+	private RandomAccessFile file;
+
+	private long fileSize;
+
+	private Charset charset;
+
+	/** Offset of the record the tokenizer started at, and the records read since. */
+	private long tokenizerOffset;
+
+	private long recordsRead;
+
+	/** Number of records passed by the last scan of the file. */
+	private long scannedRecords;
+
 	/**
 	 * The default line to start reading.
 	 */
 	public static final int DEFAULT_SKIP_LINES = 0;
 
+	/**
+	 * Size of the windows mapped while counting rows or seeking.
+	 */
+	public static final int SCAN_WINDOW_SIZE = 64 * 1024 * 1024;
+
 	/**
 	 * Constructs CSVReader using a comma for the separator.
 	 * 
@@ -61,12 +87,32 @@ public class CSVReader extends GenericFileReader implements Closeable {
 		this(reader, CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER, CSVParser.DEFAULT_ESCAPE_CHARACTER);
 	}
 
+	/**
+	 * Constructs CSVReader over a file using a comma for the separator.
+	 * The file is memory mapped in windows and decoded (default charset) directly
+	 * from the mapped region.
+	 * 
+	 * @param filePath
+	 *            path of the csv file.
+	 * @throws FileNotFoundException
+	 *             if the file does not exist
+	 */
 	public CSVReader(String filePath) throws FileNotFoundException {
-		this(new FileReader(filePath), CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER, CSVParser.DEFAULT_ESCAPE_CHARACTER);
+		this(new RandomAccessFile(filePath, "r"), new File(filePath).length(), Charset.defaultCharset());
 	}
 
 	public CSVReader(String filePath, boolean readEmptyRow) throws FileNotFoundException {
-		this(new FileReader(filePath), CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER, CSVParser.DEFAULT_ESCAPE_CHARACTER);
+		this(filePath);
+	}
+
+	/**
+	 * Constructs CSVReader over a memory mapped file using a comma for the separator.
+	 */
+	private CSVReader(RandomAccessFile file, long fileSize, Charset charset) {
+		this(new MappedFileReader(file.getChannel(), 0, fileSize, charset), CSVParser.DEFAULT_SEPARATOR, CSVParser.DEFAULT_QUOTE_CHARACTER, CSVParser.DEFAULT_ESCAPE_CHARACTER);
+		this.file = file;
+		this.fileSize = fileSize;
+		this.charset = charset;
 	}
 
 
@@ -208,8 +254,8 @@ public class CSVReader extends GenericFileReader implements Closeable {
 	 *            it true, parser should ignore white space before a quote in a field
 	 */
 	public CSVReader(Reader reader, char separator, char quotechar, char escape, int line, boolean strictQuotes, boolean ignoreLeadingWhiteSpace) {
-		this.br = new BufferedReader(reader);
 		this.parser = new CSVParser(separator, quotechar, escape, strictQuotes, ignoreLeadingWhiteSpace);
+		this.tokenizer = new CSVTokenizer(reader, parser);
 		this.skipLines = line;
 	}
 
@@ -245,24 +291,263 @@ public class CSVReader extends GenericFileReader implements Closeable {
 	}
 
 	/**
-	 * Reads the next line from the file.
+	 * Reads the next record from the file into the tokenizer.
 	 * 
-	 * @return the next line from the file without trailing newline
+	 * @return false if the end of the file is reached
 	 * @throws IOException
 	 *             if bad things happen during the read
 	 */
-	private String getNextLine() throws IOException {
+	private boolean readNextRecord() throws IOException {
 		if (!this.linesSkiped) {
 			for (int i = 0; i < skipLines; i++) {
-				br.readLine();
+				tokenizer.skipLine();
 			}
 			this.linesSkiped = true;
 		}
-		String nextLine = br.readLine();
-		if (nextLine == null) {
-			hasNext = false;
+		if (hasNext) {
+			if (tokenizer.readRecord()) {
+				recordsRead++;
+			} else {
+				hasNext = false;
+			}
+		}
+		return hasNext;
+	}
+
+	/**
+	 * Skips the next records. On a reader created from a file path the records are
+	 * passed on the memory mapped file, without decoding them, and the tokenizer is
+	 * moved after them; otherwise they are read into the tokenizer without creating
+	 * their fields. The header row resolving the projection is read by the iterator
+	 * itself.
+	 * 
+	 * @param n number of records to skip
+	 * @return the number of records skipped, less than n at the end of the file
+	 */
+	private long skipRecords(long n) {
+		long skipped = 0;
+		try {
+			if (n > 0 && hasNext && skipLines == 0 && canScanRecords()) {
+				CSVRecordScanner scanner = newScanner();
+				long offset = scanRecords(scanner, getRecordOffset(tokenizerOffset, recordsRead), n, null);
+				skipped = scannedRecords;
+				if (skipped < n && !scanner.isAtRecordStart()) {
+					skipped++; // last record without line break
+				}
+				seekToOffset(offset);
+				return skipped;
+			}
+			while (skipped < n && readNextRecord()) {
+				skipped++;
+			}
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+		return skipped;
+	}
+
+	/**
+	 * Counts the records of the file without decoding it, quote aware, over memory
+	 * mapped windows. The position of the reader is not changed.
+	 * Only available when the reader was created from a file path.
+	 * 
+	 * @return the number of records in the file
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	public long countRows() throws IOException {
+		CSVRecordScanner scanner = newScanner();
+		FileChannel channel = file.getChannel();
+		long count = 0;
+		for (long position = 0; position < fileSize; position += SCAN_WINDOW_SIZE) {
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SCAN_WINDOW_SIZE, fileSize - position));
+			count += scanner.countBoundaries(window, 0, window.limit());
+		}
+		if (!scanner.isAtRecordStart()) {
+			count++; // last record without line break
+		}
+		return count;
+	}
+
+	/**
+	 * Counts the records of a csv file with {@link #countRows()} and the fields of its
+	 * first record, which is tokenized without creating its fields.
+	 * 
+	 * @param csvFile the csv file
+	 * @return the workbook info, with a single sheet without name
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	static WorkbookInfo inspect(File csvFile) throws IOException {
+		CSVReader reader = new CSVReader(csvFile.getPath(), false);
+		try {
+			long rowCount = reader.countRows();
+			Iterator<TypedRow> rows = reader.getTypedIterator();
+			int columnCount = rows.hasNext() ? rows.next().size() : 0;
+			return new WorkbookInfo(Collections.singletonList(new WorkbookInfo.SheetInfo(null, rowCount, columnCount)), 0);
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Moves the reader to the start of the given record of the file. Record boundaries
+	 * are found on the memory mapped file without decoding the skipped records.
+	 * Only available when the reader was created from a file path.
+	 * 
+	 * @param rowNumber
+	 *            zero based record number, counted from the start of the file
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	public void seekToRow(long rowNumber) throws IOException {
+		seekToRow(rowNumber, null);
+	}
+
+	/**
+	 * Moves the reader to the start of the given record of the file, scanning from the
+	 * nearest record of the index before it.
+	 * 
+	 * @param rowNumber
+	 *            zero based record number, counted from the start of the file
+	 * @param index
+	 *            index of the file, null to scan from the start of the file
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	void seekToRow(long rowNumber, RowIndex index) throws IOException {
+		seekToOffset(getRowOffset(rowNumber, index));
+	}
+
+	/**
+	 * Finds the byte offset of a record without decoding the file.
+	 * 
+	 * @param rowNumber
+	 *            zero based record number, counted from the start of the file
+	 * @param index
+	 *            index of the file, null to scan from the start of the file
+	 * @return the offset of the record, the file size if the file has fewer records
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	long getRowOffset(long rowNumber, RowIndex index) throws IOException {
+		if (index == null) {
+			return getRecordOffset(0, rowNumber);
+		}
+		return getRecordOffset(index.getIndexedOffset(rowNumber), rowNumber - index.getIndexedRow(rowNumber));
+	}
+
+	/**
+	 * Finds the byte offset of the record a number of records after a record start,
+	 * without decoding the file.
+	 * 
+	 * @param offset
+	 *            byte offset of a record start
+	 * @param records
+	 *            number of records to pass
+	 * @return the offset of the record reached, the file size if the file has fewer records
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	long getRecordOffset(long offset, long records) throws IOException {
+		return scanRecords(newScanner(), offset, records, null);
+	}
+
+	/**
+	 * Builds a sparse index of the record offsets by scanning the whole file once,
+	 * see {@link RowIndex}.
+	 * 
+	 * @param interval
+	 *            number of records between two indexed offsets
+	 * @param indexedFile
+	 *            the file the reader was created from
+	 * @return the index
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	RowIndex buildRowIndex(int interval, File indexedFile) throws IOException {
+		RowIndex index = new RowIndex(interval, indexedFile);
+		CSVRecordScanner scanner = newScanner();
+		scanRecords(scanner, 0, Long.MAX_VALUE, index);
+		if (!scanner.isAtRecordStart()) {
+			index.setRowCount(index.getRowCount() + 1); // last record without line break
+		}
+		return index;
+	}
+
+	/**
+	 * Moves the reader to a record start of the file.
+	 * 
+	 * @param offset
+	 *            byte offset of a record start, the file size to move past the last record
+	 */
+	void seekToOffset(long offset) {
+		tokenizer = new CSVTokenizer(new MappedFileReader(file.getChannel(), offset, fileSize, charset), parser);
+		tokenizerOffset = offset;
+		recordsRead = 0;
+		hasNext = true;
+		linesSkiped = true;
+	}
+
+	/**
+	 * @return true if record offsets can be found on the file, see {@link #countRows()}
+	 */
+	boolean canScanRecords() {
+		return file != null && CSVRecordScanner.supports(parser, charset);
+	}
+
+	/**
+	 * Passes records on the memory mapped file from a record start.
+	 * 
+	 * @param scanner scanner positioned at a record start
+	 * @param offset byte offset of the record start
+	 * @param records number of records to pass
+	 * @param index receives the record starts passed, counted from the start of the scan, null if none
+	 * @return the offset of the record reached, the file size if the file has fewer records
+	 * @throws IOException
+	 *             if bad things happen during the read
+	 */
+	private long scanRecords(CSVRecordScanner scanner, long offset, long records, RowIndex index) throws IOException {
+		FileChannel channel = file.getChannel();
+		long found = 0;
+		long position = offset;
+		while (found < records && position < fileSize) {
+			// one extra byte is mapped to complete a CRLF line break at the end of the window
+			int length = (int) Math.min(SCAN_WINDOW_SIZE, fileSize - position);
+			MappedByteBuffer window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(length + 1L, fileSize - position));
+			int from = 0;
+			while (found < records) {
+				int boundary = scanner.findBoundary(window, from, length);
+				if (boundary < 0) {
+					from = length;
+					break;
+				}
+				found++;
+				from = boundary;
+				offset = position + boundary;
+				if (index != null && offset < fileSize) {
+					index.add(found, offset);
+				}
+			}
+			position += Math.max(from, length);
+		}
+		if (index != null) {
+			index.setRowCount(found);
 		}
-		return hasNext ? nextLine : null;
+		scannedRecords = found;
+		return found < records ? fileSize : offset;
+	}
+
+	private CSVRecordScanner newScanner() {
+		if (file == null) {
+			throw new UnsupportedOperationException("Only supported for a reader created from a file path");
+		}
+		if (!CSVRecordScanner.supports(parser, charset)) {
+			throw new UnsupportedOperationException("Needs ASCII separator, quote and escape characters in an ASCII compatible charset");
+		}
+		CSVRecordScanner scanner = new CSVRecordScanner(parser);
+		scanner.reset(false);
+		return scanner;
 	}
 
 	/* 
@@ -270,29 +555,203 @@ public class CSVReader extends GenericFileReader implements Closeable {
 	 */
 	@Override
 	public Iterator<List<String>> getIterator() {
-		return new CSVIterator<List<String>>();
+		return new CSVIterator();
 	}
 
-	private class CSVIterator<T> implements Iterator<List<String>> {
-		
-		private String nextLine=null;
-		
+	/**
+	 * Returns views of the records over the tokenizer buffer, see {@link RowView}.
+	 * 
+	 * @param owned false for recycled views, true for copies
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<RowView> getRowViews(boolean owned) {
+		return rowViews(new CSVTypedIterator(), owned);
+	}
+
+	/**
+	 * Returns an iterator over typed rows. The fields are read directly from the
+	 * tokenizer buffer, numbers are parsed without creating a String.
+	 * 
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<TypedRow> getTypedIterator() {
+		return new CSVTypedIterator();
+	}
+
+	/**
+	 * Iterates over the records of the file as typed rows. The same row instance is
+	 * returned for every record, its content is replaced by the next call to hasNext().
+	 */
+	private class CSVTypedIterator implements SkippableIterator<TypedRow>, TypedRow {
+
+		private CharBuffer chars;
+
+		/** Cells handed out by getCell(), by column. */
+		private CharSlice[] slices = new CharSlice[0];
+
 		public boolean hasNext() {
 			try {
-				nextLine = getNextLine();
+				if (!readNextRecord()) {
+					return false;
+				}
+				if (projection != null && !projection.isResolved()) { // header row, resolve the column names
+					List<String> header = new ArrayList<String>();
+					for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+						header.add(tokenizer.getField(i));
+					}
+					projection.resolve(header);
+				}
+				return true;
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
-			return nextLine==null ? false : true;
+			return false;
 		}
 
-		public List<String> next() {
+		public TypedRow next() {
+			return this;
+		}
+
+		public long skipRows(long n) {
+			if (n > 0 && projection != null && !projection.isResolved()) {
+				return hasNext() ? 1 + skipRecords(n - 1) : 0;
+			}
+			return skipRecords(n);
+		}
+
+		public void remove() {
+			
+		}
+
+		public int size() {
+			return projection != null ? projection.size() : tokenizer.getFieldCount();
+		}
+
+		public boolean isBlank(int column) {
+			int field = fieldOf(column);
+			return field == -1 || tokenizer.getFieldStart(field) == tokenizer.getFieldEnd(field);
+		}
+
+		public boolean isNumeric(int column) {
+			return false;
+		}
+
+		public boolean isDate(int column) {
+			return false;
+		}
+
+		public double getDouble(int column) {
+			int field = fieldOf(column);
+			return field == -1 ? 0 : CellValues.parseDouble(chars(), tokenizer.getFieldStart(field), tokenizer.getFieldEnd(field));
+		}
+
+		public long getLong(int column) {
+			int field = fieldOf(column);
+			return field == -1 ? 0 : CellValues.parseLong(chars(), tokenizer.getFieldStart(field), tokenizer.getFieldEnd(field));
+		}
+
+		public boolean getBoolean(int column) {
+			int field = fieldOf(column);
+			return field != -1 && CellValues.parseBoolean(chars(), tokenizer.getFieldStart(field), tokenizer.getFieldEnd(field));
+		}
+
+		public long getEpochDay(int column) {
+			int field = fieldOf(column);
+			return field == -1 ? 0 : CellValues.parseEpochDay(chars(), tokenizer.getFieldStart(field), tokenizer.getFieldEnd(field));
+		}
+
+		public String getString(int column) {
+			int field = fieldOf(column);
+			return field == -1 ? "" : tokenizer.getField(field);
+		}
+
+		public CharSequence getCell(int column) {
+			int field = fieldOf(column);
+			if (field == -1) {
+				return "";
+			}
+			if (column >= slices.length) {
+				slices = Arrays.copyOf(slices, Math.max(slices.length * 2, column + 1));
+			}
+			if (slices[column] == null) {
+				slices[column] = new CharSlice();
+			}
+			return slices[column].set(tokenizer.getChars(), tokenizer.getFieldStart(field), tokenizer.getFieldEnd(field));
+		}
+
+		public List<String> materialize() {
+			List<String> row = new ArrayList<String>(size());
+			for (int i = 0; i < size(); i++) {
+				row.add(getString(i));
+			}
+			return row;
+		}
+
+		/**
+		 * @return the field of the record holding the column, -1 if the record has no such field
+		 */
+		private int fieldOf(int column) {
+			if (column < 0 || column >= size()) {
+				return -1;
+			}
+			int field = projection != null ? projection.getColumn(column) : column;
+			return field < tokenizer.getFieldCount() ? field : -1;
+		}
+
+		/**
+		 * @return the record buffer of the tokenizer, wrapped again only when it has grown
+		 */
+		private CharSequence chars() {
+			if (chars == null || chars.array() != tokenizer.getChars()) {
+				chars = CharBuffer.wrap(tokenizer.getChars());
+			}
+			return chars;
+		}
+	}
+
+	/**
+	 * Iterates over the records of the file. Every row is a new list the caller can
+	 * keep, filled straight from the tokenizer buffer.
+	 */
+	private class CSVIterator implements SkippableIterator<List<String>> {
+		
+		private List<String> currentRow;
+		
+		public boolean hasNext() {
+			currentRow = null;
 			try {
-				return Arrays.asList(readNext(nextLine));
+				if (readNextRecord()) {
+					currentRow = new ArrayList<String>(tokenizer.getFieldCount());
+					if (projection != null && projection.isResolved()) {
+						projection.copyFields(tokenizer, currentRow);
+						return true;
+					}
+					for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+						currentRow.add(tokenizer.getField(i));
+					}
+					if (projection != null) { // header row, resolve the column names
+						projection.resolve(currentRow);
+						projection.project(currentRow);
+					}
+					return true;
+				}
 			} catch (IOException e) {
 				e.printStackTrace();
 			}
-			return null;
+			return false;
+		}
+
+		public List<String> next() {
+			return currentRow;
+		}
+
+		public long skipRows(long n) {
+			if (n > 0 && projection != null && !projection.isResolved()) {
+				return hasNext() ? 1 + skipRecords(n - 1) : 0;
+			}
+			return skipRecords(n);
 		}
 
 		public void remove() {
@@ -308,7 +767,10 @@ public class CSVReader extends GenericFileReader implements Closeable {
 	 * @throws IOException if the close fails
 	 */
 	public void close() throws IOException{
-		br.close();
+		tokenizer.close();
+		if (file != null) {
+			file.close();
+		}
 	}
 
 }
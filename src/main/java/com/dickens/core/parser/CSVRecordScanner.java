@@ -0,0 +1,231 @@
+package com.dickens.core.parser;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.Charset;
+
+/**
+ * Finds record boundaries in the raw bytes of a csv file without decoding them.
+ *
+ * It runs the quote and escape handling of {@link CSVTokenizer} one byte at a time
+ * (an escape or quote waits for the next byte instead of looking ahead), so it can be
+ * fed with consecutive windows of a file and gives the same record boundaries as the
+ * tokenizer. The separator, quote and escape characters must be ASCII and the charset
+ * ASCII compatible, which holds for UTF-8 and the single byte charsets.
+ */
+final class CSVRecordScanner {
+
+	private static final int NONE = 0;
+	private static final int ESCAPE = 1;
+	private static final int QUOTE = 2;
+	private static final int CR = 3;
+
+	private final byte separator;
+
+	private final byte quotechar;
+
+	private final byte escape;
+
+	private final boolean strictQuotes;
+
+	private boolean inQuotes;
+
+	private boolean inField;
+
+	/** Escape, quote or carriage return waiting for the next byte. */
+	private int pending;
+
+	/** true if no byte was seen since the last record boundary. */
+	private boolean atRecordStart = true;
+
+	/**
+	 * Constructs a scanner positioned at the start of a record.
+	 *
+	 * @param dialect parser holding the separator, quote and escape settings
+	 */
+	CSVRecordScanner(CSVParser dialect) {
+		this.separator = (byte) dialect.getSeparator();
+		this.quotechar = (byte) dialect.getQuotechar();
+		this.escape = (byte) dialect.getEscape();
+		this.strictQuotes = dialect.isStrictQuotes();
+	}
+
+	/**
+	 * Checks that the line break, separator, quote and escape characters are encoded
+	 * as the same single bytes in the given charset.
+	 *
+	 * @param dialect parser holding the separator, quote and escape settings
+	 * @param charset charset of the file
+	 * @return true if the bytes of a file can be scanned
+	 */
+	static boolean supports(CSVParser dialect, Charset charset) {
+		char[] specialChars = {'\n', '\r', dialect.getSeparator(), dialect.getQuotechar(), dialect.getEscape()};
+		byte[] encoded = new String(specialChars).getBytes(charset);
+		if (encoded.length != specialChars.length) {
+			return false;
+		}
+		for (int i = 0; i < specialChars.length; i++) {
+			if (encoded[i] != specialChars[i]) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Resets the scanner. Inside a quoted field the field is considered started.
+	 *
+	 * @param startInQuotes true if the next byte is inside a quoted field
+	 */
+	void reset(boolean startInQuotes) {
+		this.inQuotes = startInQuotes;
+		this.inField = startInQuotes;
+		this.pending = NONE;
+		this.atRecordStart = !startInQuotes;
+	}
+
+	/**
+	 * @return true if the bytes scanned so far end inside a quoted field
+	 */
+	boolean isInQuotes() {
+		return pending == QUOTE ? !inQuotes : inQuotes;
+	}
+
+	/**
+	 * @return true if the bytes scanned so far end at a record boundary
+	 */
+	boolean isAtRecordStart() {
+		return atRecordStart;
+	}
+
+	/**
+	 * Scans bytes [from, to) and stops after the first record boundary.
+	 * The byte at index to is read, if present, to complete a CRLF line break.
+	 *
+	 * @param bytes the bytes
+	 * @param from first index to scan
+	 * @param to end index (exclusive)
+	 * @return the index just after the record boundary, -1 if there is none in the range
+	 */
+	int findBoundary(ByteBuffer bytes, int from, int to) {
+		for (int i = from; i < to; i++) {
+			i = skipPlain(bytes, i, to);
+			if (i < to && accept(bytes.get(i))) {
+				if (bytes.get(i) == '\r' && i + 1 < bytes.limit() && bytes.get(i + 1) == '\n') {
+					accept(bytes.get(++i));
+				}
+				return i + 1;
+			}
+		}
+		return -1;
+	}
+
+	/**
+	 * Scans bytes [from, to) and counts the record boundaries.
+	 *
+	 * @param bytes the bytes
+	 * @param from first index to scan
+	 * @param to end index (exclusive)
+	 * @return the number of record boundaries
+	 */
+	long countBoundaries(ByteBuffer bytes, int from, int to) {
+		long count = 0;
+		for (int i = from; i < to; i++) {
+			i = skipPlain(bytes, i, to);
+			if (i < to && accept(bytes.get(i))) {
+				count++;
+			}
+		}
+		return count;
+	}
+
+	/**
+	 * Passes the bytes that are not line break, separator, quote or escape characters
+	 * at once: with nothing pending they all move the state machine the same way.
+	 *
+	 * @return the index of the first other byte, to if there is none in the range
+	 */
+	private int skipPlain(ByteBuffer bytes, int from, int to) {
+		if (pending != NONE) {
+			return from;
+		}
+		int i = from;
+		while (i < to) {
+			byte c = bytes.get(i);
+			if (c == '\n' || c == '\r' || c == separator || c == quotechar || c == escape) {
+				break;
+			}
+			i++;
+		}
+		if (i > from) {
+			atRecordStart = false;
+			if (!strictQuotes || inQuotes) {
+				inField = true;
+			}
+		}
+		return i;
+	}
+
+	/**
+	 * Moves the state machine over one byte.
+	 *
+	 * @param c the byte
+	 * @return true if the byte ends a record
+	 */
+	private boolean accept(byte c) {
+		switch (pending) {
+		case CR:
+			pending = NONE;
+			if (c == '\n') {
+				return false; // second half of a CRLF line break
+			}
+			break;
+		case ESCAPE:
+			pending = NONE;
+			if (c == quotechar || c == escape) {
+				atRecordStart = false;
+				return false; // escaped character
+			}
+			break;
+		case QUOTE:
+			pending = NONE;
+			if (c == quotechar) {
+				inField = !inField;
+				return false; // doubled quote
+			}
+			inQuotes = !inQuotes;
+			inField = !inField;
+			break;
+		default:
+			break;
+		}
+		if (c == '\n' || c == '\r') {
+			if (c == '\r') {
+				pending = CR;
+			}
+			if (!inQuotes) {
+				inField = false;
+				atRecordStart = true;
+				return true;
+			}
+			return false;
+		}
+		atRecordStart = false;
+		if (c == escape) {
+			if (inQuotes || inField) {
+				pending = ESCAPE;
+			}
+		} else if (c == quotechar) {
+			if (inQuotes || inField) {
+				pending = QUOTE;
+			} else {
+				inQuotes = !inQuotes;
+				inField = !inField;
+			}
+		} else if (c == separator && !inQuotes) {
+			inField = false;
+		} else if (!strictQuotes || inQuotes) {
+			inField = true;
+		}
+		return false;
+	}
+}
@@ -0,0 +1,18 @@
+package com.dickens.core.parser;
+
+import java.util.List;
+
+/**
+ * Callback receiving the rows parsed by {@link ParallelCSVReader}.
+ */
+public interface CSVRowHandler {
+
+	/**
+	 * Handles one row.
+	 *
+	 * @param rowNumber zero based row number, -1 when rows are delivered unordered
+	 * @param row the fields of the row, only valid during the call when rows are delivered unordered
+	 * @throws Exception to stop the parsing
+	 */
+	void handleRow(long rowNumber, List<String> row) throws Exception;
+}
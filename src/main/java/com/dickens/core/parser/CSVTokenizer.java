@@ -0,0 +1,325 @@
+package com.dickens.core.parser;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+
+/**
+ * Single pass CSV tokenizer working directly on a reusable char buffer.
+ *
+ * Characters are read from the underlying reader in large blocks and run through a
+ * state machine which handles quotes, escapes and quoted line breaks. The content of
+ * the fields of the current record is copied (unescaped) into one reusable char array
+ * and only the field boundaries are recorded, so no String is created unless a field
+ * is asked for with {@link #getField(int)}.
+ *
+ * The dialect (separator, quote, escape, strict quotes and leading white space
+ * handling) is taken from a {@link CSVParser} and fields are split the same way
+ * {@link CSVParser#parseLineMulti(String)} splits them.
+ */
+public class CSVTokenizer implements Closeable {
+
+	/** Size of the input buffer. */
+	public static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+	private static final int EOF = -1;
+
+	private final Reader reader;
+
+	private final char separator;
+
+	private final char quotechar;
+
+	private final char escape;
+
+	private final boolean strictQuotes;
+
+	private final boolean ignoreLeadingWhiteSpace;
+
+	/** Input buffer, buffer[position..limit) has not been consumed yet. */
+	private final char[] buffer;
+	private int position;
+	private int limit;
+
+	/** Content of the fields of the current record. */
+	private char[] recordChars = new char[CSVParser.INITIAL_READ_SIZE];
+	private int recordLength;
+
+	/** End offset (exclusive) in recordChars of each field of the current record. */
+	private int[] fieldEnds = new int[16];
+	private int fieldCount;
+
+	/**
+	 * Constructs a tokenizer with the dialect of the given parser.
+	 *
+	 * @param reader the reader to an underlying CSV source.
+	 * @param dialect parser holding the separator, quote and escape settings
+	 */
+	public CSVTokenizer(Reader reader, CSVParser dialect) {
+		this(reader, dialect, DEFAULT_BUFFER_SIZE);
+	}
+
+	/**
+	 * Constructs a tokenizer with the dialect of the given parser.
+	 *
+	 * @param reader the reader to an underlying CSV source.
+	 * @param dialect parser holding the separator, quote and escape settings
+	 * @param bufferSize size of the input buffer
+	 */
+	public CSVTokenizer(Reader reader, CSVParser dialect, int bufferSize) {
+		this.reader = reader;
+		this.separator = dialect.getSeparator();
+		this.quotechar = dialect.getQuotechar();
+		this.escape = dialect.getEscape();
+		this.strictQuotes = dialect.isStrictQuotes();
+		this.ignoreLeadingWhiteSpace = dialect.isIgnoreLeadingWhiteSpace();
+		this.buffer = new char[bufferSize];
+	}
+
+	/**
+	 * Reads the next record. A line break inside quotes is part of the field and is
+	 * returned as '\n'. An empty line is a record with one empty field.
+	 *
+	 * @return false if the end of the input was reached before a record started
+	 * @throws IOException if bad things happen during the read
+	 */
+	public boolean readRecord() throws IOException {
+		recordLength = 0;
+		fieldCount = 0;
+		int c = read();
+		if (c == EOF) {
+			return false;
+		}
+		boolean inQuotes = false;
+		boolean inField = false;
+		int fieldStart = 0;
+		int linePosition = 0; // index of c in its line
+		int previous = EOF; // character before c in its line
+		while (true) {
+			if (c == EOF) {
+				endField();
+				return true;
+			}
+			if (c == '\n' || c == '\r') {
+				if (c == '\r' && peek() == '\n') {
+					position++;
+				}
+				if (!inQuotes) {
+					endField();
+					return true;
+				}
+				// continuing a quoted section, keep the line break
+				append('\n');
+				linePosition = 0;
+				previous = EOF;
+				c = read();
+				continue;
+			}
+			int consumed = 1;
+			if (c == escape) {
+				int next = peekInLine();
+				if ((inQuotes || inField) && (next == quotechar || next == escape)) {
+					append((char) next);
+					position++;
+					consumed = 2;
+				}
+			} else if (c == quotechar) {
+				int next = peekInLine();
+				if ((inQuotes || inField) && next == quotechar) {
+					append((char) next);
+					position++;
+					consumed = 2;
+				} else {
+					// the tricky case of an embedded quote in the middle: a,bc"d"ef,g
+					if (!strictQuotes && linePosition > 2 && previous != separator && next != EOF && next != separator) {
+						if (ignoreLeadingWhiteSpace && recordLength > fieldStart && isAllWhiteSpace(fieldStart)) {
+							recordLength = fieldStart; // discard white space leading up to quote
+						} else {
+							append((char) c);
+						}
+					}
+					inQuotes = !inQuotes;
+				}
+				inField = !inField;
+			} else if (c == separator && !inQuotes) {
+				endField();
+				fieldStart = recordLength;
+				inField = false;
+			} else if (!strictQuotes || inQuotes) {
+				// copy the whole run of plain characters available in the buffer at once
+				int start = position - 1;
+				int end = position;
+				while (end < limit && isPlain(buffer[end])) {
+					end++;
+				}
+				append(buffer, start, end - start);
+				consumed = end - start;
+				position = end;
+				inField = true;
+			}
+			linePosition += consumed;
+			previous = consumed > 1 ? buffer[position - 1] : c;
+			c = read();
+		}
+	}
+
+	/**
+	 * Skips the rest of the current line without looking at quotes.
+	 *
+	 * @return false if the end of the input was reached before a line started
+	 * @throws IOException if bad things happen during the read
+	 */
+	public boolean skipLine() throws IOException {
+		int c = read();
+		if (c == EOF) {
+			return false;
+		}
+		while (c != EOF && c != '\n' && c != '\r') {
+			c = read();
+		}
+		if (c == '\r' && peek() == '\n') {
+			position++;
+		}
+		return true;
+	}
+
+	/**
+	 * @return number of fields of the current record
+	 */
+	public int getFieldCount() {
+		return fieldCount;
+	}
+
+	/**
+	 * @param index zero based field index
+	 * @return start offset of the field in {@link #getChars()}
+	 */
+	public int getFieldStart(int index) {
+		return index == 0 ? 0 : fieldEnds[index - 1];
+	}
+
+	/**
+	 * @param index zero based field index
+	 * @return end offset (exclusive) of the field in {@link #getChars()}
+	 */
+	public int getFieldEnd(int index) {
+		return fieldEnds[index];
+	}
+
+	/**
+	 * Returns the buffer holding the fields of the current record.
+	 * The content is overwritten by the next call to {@link #readRecord()}.
+	 *
+	 * @return the record buffer
+	 */
+	public char[] getChars() {
+		return recordChars;
+	}
+
+	/**
+	 * @param index zero based field index
+	 * @return the field as a new String
+	 */
+	public String getField(int index) {
+		int start = getFieldStart(index);
+		return new String(recordChars, start, fieldEnds[index] - start);
+	}
+
+	/**
+	 * Closes the underlying reader.
+	 *
+	 * @throws IOException if the close fails
+	 */
+	public void close() throws IOException {
+		reader.close();
+	}
+
+	/**
+	 * Returns the next character of the input and consumes it.
+	 */
+	private int read() throws IOException {
+		if (position == limit && !fill()) {
+			return EOF;
+		}
+		return buffer[position++];
+	}
+
+	/**
+	 * Returns the next character of the input without consuming it.
+	 */
+	private int peek() throws IOException {
+		if (position == limit && !fill()) {
+			return EOF;
+		}
+		return buffer[position];
+	}
+
+	/**
+	 * Returns the next character of the current line without consuming it,
+	 * EOF if the line ends.
+	 */
+	private int peekInLine() throws IOException {
+		int next = peek();
+		return next == '\n' || next == '\r' ? EOF : next;
+	}
+
+	/**
+	 * Refills the input buffer once all of it has been consumed.
+	 */
+	private boolean fill() throws IOException {
+		int n;
+		do {
+			n = reader.read(buffer, 0, buffer.length);
+		} while (n == 0);
+		if (n < 0) {
+			return false;
+		}
+		position = 0;
+		limit = n;
+		return true;
+	}
+
+	private void append(char c) {
+		if (recordLength == recordChars.length) {
+			char[] grown = new char[recordChars.length * 2];
+			System.arraycopy(recordChars, 0, grown, 0, recordLength);
+			recordChars = grown;
+		}
+		recordChars[recordLength++] = c;
+	}
+
+	private void append(char[] chars, int offset, int length) {
+		if (recordLength + length > recordChars.length) {
+			char[] grown = new char[Math.max(recordChars.length * 2, recordLength + length)];
+			System.arraycopy(recordChars, 0, grown, 0, recordLength);
+			recordChars = grown;
+		}
+		System.arraycopy(chars, offset, recordChars, recordLength, length);
+		recordLength += length;
+	}
+
+	/**
+	 * @return true if the character has no special meaning for the state machine
+	 */
+	private boolean isPlain(char c) {
+		return c != separator && c != quotechar && c != escape && c != '\n' && c != '\r';
+	}
+
+	private void endField() {
+		if (fieldCount == fieldEnds.length) {
+			int[] grown = new int[fieldEnds.length * 2];
+			System.arraycopy(fieldEnds, 0, grown, 0, fieldCount);
+			fieldEnds = grown;
+		}
+		fieldEnds[fieldCount++] = recordLength;
+	}
+
+	private boolean isAllWhiteSpace(int from) {
+		for (int i = from; i < recordLength; i++) {
+			if (!Character.isWhitespace(recordChars[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+}
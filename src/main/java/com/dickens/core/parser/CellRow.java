@@ -0,0 +1,345 @@
+package com.dickens.core.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.commons.lang.StringUtils;
+
+/**
+ * Reusable {@link TypedRow} of the excel readers. Numbers are kept as doubles with
+ * the style of the cell, they are only formatted if {@link #getString(int)} is called.
+ *
+ * @author Dickens Prabhu
+ */
+final class CellRow implements TypedRow {
+
+	static final byte BLANK = 0;
+	static final byte NUMBER = 1;
+	static final byte TEXT = 2;
+	static final byte BOOLEAN = 3;
+	static final byte ERROR = 4;
+
+	/**
+	 * Formats numeric cells the way the String iterator of the reader does.
+	 */
+	interface NumberFormatter {
+
+		/**
+		 * @param value the numeric value
+		 * @param style reader specific style of the cell
+		 * @return the text of the cell
+		 */
+		String format(double value, int style);
+	}
+
+	private final NumberFormatter formatter;
+
+	private final boolean date1904;
+
+	private byte[] types = new byte[16];
+	private double[] numbers = new double[16];
+	private int[] styles = new int[16];
+	private boolean[] dates = new boolean[16];
+	private String[] texts = new String[16];
+
+	/** Raw text of unformatted numbers, rawStarts is -1 for the other cells. */
+	private int[] rawStarts = new int[16];
+	private int[] rawEnds = new int[16];
+	private char[] rawChars = new char[256];
+	private int rawLength;
+
+	private int size;
+
+	/** Cells of the raw numbers handed out by {@link #getCell(int)}, by column. */
+	private CharSlice[] slices = new CharSlice[0];
+
+	/**
+	 * @param formatter formatter of the numeric cells
+	 * @param date1904 true if the workbook uses the 1904 date system
+	 */
+	CellRow(NumberFormatter formatter, boolean date1904) {
+		this.formatter = formatter;
+		this.date1904 = date1904;
+	}
+
+	/**
+	 * Empties the row.
+	 *
+	 * @param minimumSize size of the row even if no cell is set, e.g. the number of selected columns
+	 */
+	void clear(int minimumSize) {
+		Arrays.fill(types, 0, size, BLANK);
+		Arrays.fill(texts, 0, size, null);
+		rawLength = 0;
+		size = 0;
+		ensureSize(minimumSize);
+	}
+
+	/**
+	 * Adds blank cells up to the given size, the way the String iterators fill the
+	 * missing trailing columns of a row up to the number of header columns.
+	 *
+	 * @param minimumSize size of the row
+	 */
+	void pad(int minimumSize) {
+		ensureSize(minimumSize);
+	}
+
+	void setNumber(int column, double value, int style, boolean date) {
+		ensureSize(column + 1);
+		types[column] = NUMBER;
+		numbers[column] = value;
+		styles[column] = style;
+		dates[column] = date;
+		rawStarts[column] = -1;
+	}
+
+	/**
+	 * Sets an unformatted number, {@link #getString(int)} returns its raw text.
+	 * The characters are copied to a buffer reused across rows.
+	 */
+	void setNumber(int column, double value, CharSequence raw) {
+		setNumber(column, value, -1, false);
+		if (rawLength + raw.length() > rawChars.length) {
+			rawChars = Arrays.copyOf(rawChars, Math.max(rawChars.length * 2, rawLength + raw.length()));
+		}
+		rawStarts[column] = rawLength;
+		for (int i = 0; i < raw.length(); i++) {
+			rawChars[rawLength++] = raw.charAt(i);
+		}
+		rawEnds[column] = rawLength;
+	}
+
+	void setText(int column, String text) {
+		ensureSize(column + 1);
+		types[column] = TEXT;
+		texts[column] = text;
+	}
+
+	void setBoolean(int column, boolean value) {
+		ensureSize(column + 1);
+		types[column] = BOOLEAN;
+		numbers[column] = value ? 1 : 0;
+	}
+
+	void setError(int column, String text) {
+		ensureSize(column + 1);
+		types[column] = ERROR;
+		texts[column] = text;
+	}
+
+	/**
+	 * Keeps the selected columns only, in the selection order.
+	 *
+	 * @param projection the resolved projection
+	 */
+	void project(ColumnProjection projection) {
+		int projectedSize = projection.size();
+		byte[] projectedTypes = new byte[Math.max(projectedSize, 16)];
+		double[] projectedNumbers = new double[projectedTypes.length];
+		int[] projectedStyles = new int[projectedTypes.length];
+		boolean[] projectedDates = new boolean[projectedTypes.length];
+		String[] projectedTexts = new String[projectedTypes.length];
+		int[] projectedRawStarts = new int[projectedTypes.length];
+		int[] projectedRawEnds = new int[projectedTypes.length];
+		for (int i = 0; i < projectedSize; i++) {
+			int column = projection.getColumn(i);
+			if (column < size) {
+				projectedTypes[i] = types[column];
+				projectedNumbers[i] = numbers[column];
+				projectedStyles[i] = styles[column];
+				projectedDates[i] = dates[column];
+				projectedTexts[i] = texts[column];
+				projectedRawStarts[i] = rawStarts[column];
+				projectedRawEnds[i] = rawEnds[column];
+			}
+		}
+		types = projectedTypes;
+		numbers = projectedNumbers;
+		styles = projectedStyles;
+		dates = projectedDates;
+		texts = projectedTexts;
+		rawStarts = projectedRawStarts;
+		rawEnds = projectedRawEnds;
+		size = projectedSize;
+	}
+
+	/**
+	 * @return the cells as returned by the String iterator
+	 */
+	List<String> toStringList() {
+		List<String> row = new ArrayList<String>(size);
+		for (int i = 0; i < size; i++) {
+			row.add(getString(i));
+		}
+		return row;
+	}
+
+	/**
+	 * Copies the cells to a row of a batch.
+	 *
+	 * @param batch the batch
+	 * @param row index of the row in the batch
+	 */
+	void copyTo(RowBatch batch, int row) {
+		batch.setFormatter(formatter, date1904);
+		for (int i = 0; i < size; i++) {
+			switch (types[i]) {
+			case NUMBER:
+				if (rawStarts[i] != -1) {
+					batch.setNumber(i, row, numbers[i], rawChars, rawStarts[i], rawEnds[i]);
+				} else {
+					batch.setNumber(i, row, numbers[i], styles[i], dates[i]);
+				}
+				break;
+			case BOOLEAN:
+				batch.setBoolean(i, row, numbers[i] != 0);
+				break;
+			case TEXT:
+			case ERROR:
+				batch.setText(i, row, texts[i], types[i]);
+				break;
+			default:
+				break;
+			}
+		}
+	}
+
+	/**
+	 * @return true if all the cells are blank or white space
+	 */
+	boolean isEmpty() {
+		for (int i = 0; i < size; i++) {
+			if (types[i] == NUMBER || types[i] == BOOLEAN) {
+				return false;
+			}
+			if (types[i] != BLANK && !StringUtils.isWhitespace(texts[i])) {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	public int size() {
+		return size;
+	}
+
+	public boolean isBlank(int column) {
+		return typeOf(column) == BLANK;
+	}
+
+	public boolean isNumeric(int column) {
+		return typeOf(column) == NUMBER;
+	}
+
+	public boolean isDate(int column) {
+		return typeOf(column) == NUMBER && dates[column];
+	}
+
+	public double getDouble(int column) {
+		switch (typeOf(column)) {
+		case NUMBER:
+		case BOOLEAN:
+			return numbers[column];
+		case TEXT:
+		case ERROR:
+			return CellValues.parseDouble(texts[column], 0, texts[column].length());
+		default:
+			return 0;
+		}
+	}
+
+	public long getLong(int column) {
+		switch (typeOf(column)) {
+		case NUMBER:
+		case BOOLEAN:
+			return (long) numbers[column];
+		case TEXT:
+		case ERROR:
+			return CellValues.parseLong(texts[column], 0, texts[column].length());
+		default:
+			return 0;
+		}
+	}
+
+	public boolean getBoolean(int column) {
+		switch (typeOf(column)) {
+		case NUMBER:
+		case BOOLEAN:
+			return numbers[column] != 0;
+		case TEXT:
+		case ERROR:
+			return CellValues.parseBoolean(texts[column], 0, texts[column].length());
+		default:
+			return false;
+		}
+	}
+
+	public long getEpochDay(int column) {
+		switch (typeOf(column)) {
+		case NUMBER:
+		case BOOLEAN:
+			return CellValues.toEpochDay(numbers[column], date1904);
+		case TEXT:
+		case ERROR:
+			return CellValues.parseEpochDay(texts[column], 0, texts[column].length());
+		default:
+			return 0;
+		}
+	}
+
+	public String getString(int column) {
+		switch (typeOf(column)) {
+		case NUMBER:
+			if (rawStarts[column] != -1) {
+				return new String(rawChars, rawStarts[column], rawEnds[column] - rawStarts[column]);
+			}
+			return formatter.format(numbers[column], styles[column]);
+		case BOOLEAN:
+			return numbers[column] != 0 ? "TRUE" : "FALSE";
+		case TEXT:
+		case ERROR:
+			return texts[column];
+		default:
+			return "";
+		}
+	}
+
+	public CharSequence getCell(int column) {
+		if (typeOf(column) == NUMBER && rawStarts[column] != -1) {
+			if (column >= slices.length) {
+				slices = Arrays.copyOf(slices, Math.max(types.length, column + 1));
+			}
+			if (slices[column] == null) {
+				slices[column] = new CharSlice();
+			}
+			return slices[column].set(rawChars, rawStarts[column], rawEnds[column]);
+		}
+		return getString(column);
+	}
+
+	public List<String> materialize() {
+		return toStringList();
+	}
+
+	private byte typeOf(int column) {
+		return column >= 0 && column < size ? types[column] : BLANK;
+	}
+
+	private void ensureSize(int newSize) {
+		if (newSize > types.length) {
+			int capacity = Math.max(types.length * 2, newSize);
+			types = Arrays.copyOf(types, capacity);
+			numbers = Arrays.copyOf(numbers, capacity);
+			styles = Arrays.copyOf(styles, capacity);
+			dates = Arrays.copyOf(dates, capacity);
+			texts = Arrays.copyOf(texts, capacity);
+			rawStarts = Arrays.copyOf(rawStarts, capacity);
+			rawEnds = Arrays.copyOf(rawEnds, capacity);
+		}
+		if (newSize > size) {
+			size = newSize;
+		}
+	}
+}
@@ -0,0 +1,206 @@
+package com.dickens.core.parser;
+
+import java.time.LocalDate;
+
+/**
+ * Conversions of raw cell content to typed values which work directly on the
+ * characters of the cell, without creating a String for the common cases.
+ *
+ * @author Dickens Prabhu
+ */
+final class CellValues {
+
+	/** Epoch day of the Excel serial 0 in the 1904 date system (1904-01-01). */
+	private static final long EPOCH_DAY_1904 = -24107;
+
+	/** Excel serial of 1970-01-01 in the 1900 date system. */
+	private static final long SERIAL_1970 = 25569;
+
+	/** First serial after the non existent 1900-02-29 of the 1900 date system. */
+	private static final long SERIAL_1900_MARCH_FIRST = 61;
+
+	/** Powers of ten exactly representable as a double. */
+	private static final double[] POWERS_OF_TEN = {
+		1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11,
+		1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+	};
+
+	/** Significant digits which always fit exactly in the mantissa of a double. */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	private CellValues() {
+	}
+
+	/**
+	 * Parses a decimal number. Plain numbers of up to 15 significant digits, with an
+	 * optional fraction and exponent, are parsed from the characters (the result is
+	 * correctly rounded); anything else goes through Double.parseDouble.
+	 *
+	 * @param chars the characters
+	 * @param start first index
+	 * @param end end index (exclusive)
+	 * @return the number
+	 * @throws NumberFormatException if the characters are not a number
+	 */
+	static double parseDouble(CharSequence chars, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+			negative = chars.charAt(i) == '-';
+			i++;
+		}
+		long mantissa = 0;
+		int digits = 0;
+		int exponent = 0;
+		boolean anyDigit = false;
+		boolean fraction = false;
+		for (; i < end; i++) {
+			char c = chars.charAt(i);
+			if (c >= '0' && c <= '9') {
+				anyDigit = true;
+				if (mantissa != 0 || c != '0') {
+					if (++digits > MAX_EXACT_DIGITS) {
+						return slowParseDouble(chars, start, end);
+					}
+					mantissa = mantissa * 10 + (c - '0');
+				}
+				if (fraction) {
+					exponent--;
+				}
+			} else if (c == '.' && !fraction) {
+				fraction = true;
+			} else {
+				break;
+			}
+		}
+		if (!anyDigit) {
+			return slowParseDouble(chars, start, end);
+		}
+		if (i < end) {
+			char c = chars.charAt(i);
+			if (c != 'e' && c != 'E' || ++i == end) {
+				return slowParseDouble(chars, start, end);
+			}
+			boolean negativeExponent = false;
+			if (chars.charAt(i) == '-' || chars.charAt(i) == '+') {
+				negativeExponent = chars.charAt(i) == '-';
+				if (++i == end) {
+					return slowParseDouble(chars, start, end);
+				}
+			}
+			int explicit = 0;
+			for (; i < end; i++) {
+				c = chars.charAt(i);
+				if (c < '0' || c > '9' || explicit > 1000) {
+					return slowParseDouble(chars, start, end);
+				}
+				explicit = explicit * 10 + (c - '0');
+			}
+			exponent += negativeExponent ? -explicit : explicit;
+		}
+		double value;
+		if (mantissa == 0) {
+			value = 0;
+		} else if (exponent >= 0 && exponent < POWERS_OF_TEN.length) {
+			value = mantissa * POWERS_OF_TEN[exponent];
+			if (Double.isInfinite(value)) {
+				return slowParseDouble(chars, start, end);
+			}
+		} else if (exponent < 0 && -exponent < POWERS_OF_TEN.length) {
+			value = mantissa / POWERS_OF_TEN[-exponent];
+		} else {
+			return slowParseDouble(chars, start, end);
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * Parses a decimal integer.
+	 *
+	 * @param chars the characters
+	 * @param start first index
+	 * @param end end index (exclusive)
+	 * @return the number
+	 * @throws NumberFormatException if the characters are not an integer
+	 */
+	static long parseLong(CharSequence chars, int start, int end) {
+		int i = start;
+		boolean negative = false;
+		if (i < end && (chars.charAt(i) == '-' || chars.charAt(i) == '+')) {
+			negative = chars.charAt(i) == '-';
+			i++;
+		}
+		if (i == end || end - i > 18) {
+			return Long.parseLong(chars.subSequence(start, end).toString());
+		}
+		long value = 0;
+		for (; i < end; i++) {
+			char c = chars.charAt(i);
+			if (c < '0' || c > '9') {
+				throw new NumberFormatException("For input string: \"" + chars.subSequence(start, end) + "\"");
+			}
+			value = value * 10 + (c - '0');
+		}
+		return negative ? -value : value;
+	}
+
+	/**
+	 * @param chars the characters
+	 * @param start first index
+	 * @param end end index (exclusive)
+	 * @return true if the characters are "true", ignoring case
+	 */
+	static boolean parseBoolean(CharSequence chars, int start, int end) {
+		if (end - start != 4) {
+			return false;
+		}
+		return Character.toLowerCase(chars.charAt(start)) == 't'
+				&& Character.toLowerCase(chars.charAt(start + 1)) == 'r'
+				&& Character.toLowerCase(chars.charAt(start + 2)) == 'u'
+				&& Character.toLowerCase(chars.charAt(start + 3)) == 'e';
+	}
+
+	/**
+	 * Parses a yyyy-MM-dd date.
+	 *
+	 * @param chars the characters
+	 * @param start first index
+	 * @param end end index (exclusive)
+	 * @return the number of days since 1970-01-01
+	 * @throws NumberFormatException if the characters are not a date
+	 */
+	static long parseEpochDay(CharSequence chars, int start, int end) {
+		if (end - start != 10 || chars.charAt(start + 4) != '-' || chars.charAt(start + 7) != '-') {
+			throw new NumberFormatException("Not a yyyy-MM-dd date: \"" + chars.subSequence(start, end) + "\"");
+		}
+		int year = (int) parseLong(chars, start, start + 4);
+		int month = (int) parseLong(chars, start + 5, start + 7);
+		int day = (int) parseLong(chars, start + 8, end);
+		try {
+			return LocalDate.of(year, month, day).toEpochDay();
+		} catch (RuntimeException e) {
+			throw new NumberFormatException("Not a yyyy-MM-dd date: \"" + chars.subSequence(start, end) + "\"");
+		}
+	}
+
+	/**
+	 * Converts an Excel date serial to a number of days since 1970-01-01.
+	 * The time of day is dropped.
+	 *
+	 * @param serial the date serial
+	 * @param date1904 true if the workbook uses the 1904 date system
+	 * @return the epoch day
+	 */
+	static long toEpochDay(double serial, boolean date1904) {
+		long day = (long) Math.floor(serial);
+		if (date1904) {
+			return day + EPOCH_DAY_1904;
+		}
+		// the 1900 date system counts a 1900-02-29 which does not exist
+		return day < SERIAL_1900_MARCH_FIRST ? day - SERIAL_1970 + 1 : day - SERIAL_1970;
+	}
+
+	private static double slowParseDouble(CharSequence chars, int start, int end) {
+		return Double.parseDouble(chars.subSequence(start, end).toString());
+	}
+}
@@ -0,0 +1,53 @@
+package com.dickens.core.parser;
+
+/**
+ * Reusable CharSequence over a range of a char array, used to hand out cells
+ * without copying them. The slice follows the array, it is only valid as long as
+ * the owner does not reuse the range.
+ *
+ * @author Dickens Prabhu
+ */
+final class CharSlice implements CharSequence {
+
+	private char[] chars;
+	private int start;
+	private int length;
+
+	/**
+	 * Points the slice to another range.
+	 *
+	 * @param chars the array
+	 * @param start first index
+	 * @param end end index (exclusive)
+	 * @return this slice
+	 */
+	CharSlice set(char[] chars, int start, int end) {
+		this.chars = chars;
+		this.start = start;
+		this.length = end - start;
+		return this;
+	}
+
+	public int length() {
+		return length;
+	}
+
+	public char charAt(int index) {
+		if (index < 0 || index >= length) {
+			throw new IndexOutOfBoundsException("index: " + index + ", length: " + length);
+		}
+		return chars[start + index];
+	}
+
+	public CharSequence subSequence(int from, int to) {
+		if (from < 0 || to > length || from > to) {
+			throw new IndexOutOfBoundsException("from: " + from + ", to: " + to + ", length: " + length);
+		}
+		return new String(chars, start + from, to - from);
+	}
+
+	@Override
+	public String toString() {
+		return new String(chars, start, length);
+	}
+}
@@ -0,0 +1,104 @@
+package com.dickens.core.parser;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.TreeMap;
+
+/**
+ * A list of {@link ColumnsMap} compiled once into arrays indexed by column, to map
+ * rows to {@link FileRecord} objects without looking at the mappings again.
+ *
+ * The records get the values the mappings loop used to give them: a column mapped
+ * to several fields sets all of them, a field mapped from several columns gets the
+ * value of the last column of the row, and the fields are iterated in the order the
+ * columns of a complete row first set them. Mappings without column index, or with
+ * an index below 1, never match a column.
+ *
+ * @author Dickens Prabhu
+ */
+final class ColumnMappingPlan {
+
+	private static final int[] NO_SLOTS = new int[0];
+
+	/** Shared by all the records of the plan. */
+	private final FieldIndex fieldIndex;
+
+	/** Slots set by each zero based column, in mapping order. */
+	private final int[][] slotsByColumn;
+
+	private ColumnMappingPlan(FieldIndex fieldIndex, int[][] slotsByColumn) {
+		this.fieldIndex = fieldIndex;
+		this.slotsByColumn = slotsByColumn;
+	}
+
+	/**
+	 * Compiles the mappings.
+	 *
+	 * @param columnMap the mappings, one based column indexes
+	 * @return the plan
+	 */
+	static ColumnMappingPlan compile(List<ColumnsMap> columnMap) {
+		TreeMap<Integer, List<String>> fieldsByColumn = new TreeMap<Integer, List<String>>();
+		for (ColumnsMap columns : columnMap) {
+			Integer columnIndex = columns.getColumnIndex();
+			if (columnIndex == null || columnIndex < 1) {
+				continue;
+			}
+			List<String> fields = fieldsByColumn.get(columnIndex);
+			if (fields == null) {
+				fields = new ArrayList<String>();
+				fieldsByColumn.put(columnIndex, fields);
+			}
+			fields.add(columns.getMappedFieldName());
+		}
+		Map<String, Integer> slots = new LinkedHashMap<String, Integer>();
+		int[][] slotsByColumn = new int[fieldsByColumn.isEmpty() ? 0 : fieldsByColumn.lastKey()][];
+		for (int column = 0; column < slotsByColumn.length; column++) {
+			List<String> fields = fieldsByColumn.get(column + 1);
+			if (fields == null) {
+				slotsByColumn[column] = NO_SLOTS;
+				continue;
+			}
+			slotsByColumn[column] = new int[fields.size()];
+			for (int i = 0; i < fields.size(); i++) {
+				Integer slot = slots.get(fields.get(i));
+				if (slot == null) {
+					slot = slots.size();
+					slots.put(fields.get(i), slot);
+				}
+				slotsByColumn[column][i] = slot;
+			}
+		}
+		return new ColumnMappingPlan(new FieldIndex(slots.keySet().toArray(new String[slots.size()])), slotsByColumn);
+	}
+
+	/**
+	 * Maps a row to a new record.
+	 *
+	 * @param row the cells of the row
+	 * @param rowNumber the row number of the record
+	 * @return the record
+	 */
+	FileRecord map(List<String> row, int rowNumber) {
+		String[] values = new String[fieldIndex.size()];
+		int columns = Math.min(row.size(), slotsByColumn.length);
+		for (int column = 0; column < columns; column++) {
+			int[] slots = slotsByColumn[column];
+			if (slots.length == 0) {
+				continue;
+			}
+			String value = row.get(column);
+			if (value == null) {
+				value = FileRecord.NULL_VALUE;
+			}
+			for (int slot : slots) {
+				values[slot] = value;
+			}
+		}
+		FileRecord fileRecord = new FileRecord(fieldIndex, values);
+		fileRecord.setRowNumber(rowNumber);
+		return fileRecord;
+	}
+}
@@ -0,0 +1,189 @@
+package com.dickens.core.parser;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * The columns to read, selected by zero based index or by header name.
+ *
+ * Rows read with a projection only hold the selected columns, in the order they
+ * were selected. Readers ask {@link #isSelected(int)} before decoding a cell, so
+ * the cells of the other columns are never looked up, formatted or turned into
+ * Strings. Columns selected by name are resolved against the header row, which
+ * is read completely and then projected like any other row.
+ *
+ * @author Dickens Prabhu
+ */
+final class ColumnProjection {
+
+	/** Column index of each output position, -1 until resolved. */
+	private final int[] columns;
+
+	/** Header names of the selected columns, null when selected by index. */
+	private final String[] columnNames;
+
+	/** Output position of each column index, -1 for the columns not read. */
+	private int[] positions;
+
+	private ColumnProjection(int[] columns, String[] columnNames) {
+		this.columns = columns;
+		this.columnNames = columnNames;
+	}
+
+	/**
+	 * Creates a projection selecting columns by zero based index.
+	 *
+	 * @param columns the column indexes
+	 * @return the projection
+	 */
+	static ColumnProjection ofIndexes(int... columns) {
+		if (columns == null || columns.length == 0) {
+			throw new IllegalArgumentException("No column selected");
+		}
+		ColumnProjection projection = new ColumnProjection(columns.clone(), null);
+		projection.buildPositions();
+		return projection;
+	}
+
+	/**
+	 * Creates a projection selecting columns by header name.
+	 *
+	 * @param columnNames the header names
+	 * @return the projection
+	 */
+	static ColumnProjection ofNames(String... columnNames) {
+		if (columnNames == null || columnNames.length == 0) {
+			throw new IllegalArgumentException("No column selected");
+		}
+		int[] columns = new int[columnNames.length];
+		Arrays.fill(columns, -1);
+		return new ColumnProjection(columns, columnNames.clone());
+	}
+
+	/**
+	 * Returns the same selection for another sheet. Columns selected by name are
+	 * resolved again against the header row of that sheet.
+	 *
+	 * @return the projection
+	 */
+	ColumnProjection copy() {
+		if (columnNames == null) {
+			return this; // never changes once built
+		}
+		return ofNames(columnNames);
+	}
+
+	/**
+	 * @return false while the header row needed to resolve the column names has not been read
+	 */
+	boolean isResolved() {
+		return positions != null;
+	}
+
+	/**
+	 * Resolves the column names against the header row.
+	 *
+	 * @param header the complete header row
+	 * @throws IllegalArgumentException if a column name is not in the header row
+	 */
+	void resolve(List<String> header) {
+		for (int i = 0; i < columnNames.length; i++) {
+			columns[i] = header.indexOf(columnNames[i]);
+			if (columns[i] == -1) {
+				throw new IllegalArgumentException("Column not found in header row: " + columnNames[i]);
+			}
+		}
+		buildPositions();
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @return true if the column is read
+	 */
+	boolean isSelected(int column) {
+		return column >= 0 && column < positions.length && positions[column] != -1;
+	}
+
+	/**
+	 * @param column zero based index of a selected column
+	 * @return index of the column in the projected row
+	 */
+	int getPosition(int column) {
+		return positions[column];
+	}
+
+	/**
+	 * @param position index of the column in the projected row
+	 * @return zero based index of the selected column
+	 */
+	int getColumn(int position) {
+		return columns[position];
+	}
+
+	/**
+	 * @return number of columns of a projected row
+	 */
+	int size() {
+		return columns.length;
+	}
+
+	/**
+	 * Resets the row to one empty string per selected column.
+	 *
+	 * @param row the row
+	 */
+	void clear(List<String> row) {
+		row.clear();
+		for (int i = 0; i < columns.length; i++) {
+			row.add("");
+		}
+	}
+
+	/**
+	 * Replaces the content of a complete row by its selected columns.
+	 *
+	 * @param row the row
+	 */
+	void project(List<String> row) {
+		List<String> projected = new ArrayList<String>(columns.length);
+		for (int column : columns) {
+			projected.add(column < row.size() ? row.get(column) : "");
+		}
+		row.clear();
+		row.addAll(projected);
+	}
+
+	/**
+	 * Copies the selected fields of the current record of the tokenizer to the row.
+	 * Only the selected fields are turned into Strings.
+	 *
+	 * @param tokenizer the tokenizer positioned on a record
+	 * @param row the row
+	 */
+	void copyFields(CSVTokenizer tokenizer, List<String> row) {
+		row.clear();
+		for (int column : columns) {
+			row.add(column < tokenizer.getFieldCount() ? tokenizer.getField(column) : "");
+		}
+	}
+
+	private void buildPositions() {
+		int max = -1;
+		for (int column : columns) {
+			if (column < 0) {
+				throw new IllegalArgumentException("Invalid column index: " + column);
+			}
+			max = Math.max(max, column);
+		}
+		int[] built = new int[max + 1];
+		Arrays.fill(built, -1);
+		for (int i = 0; i < columns.length; i++) {
+			if (built[columns[i]] != -1) {
+				throw new IllegalArgumentException("Column selected twice: " + columns[i]);
+			}
+			built[columns[i]] = i;
+		}
+		this.positions = built;
+	}
+}
@@ -0,0 +1,85 @@
+package com.dickens.core.parser;
+
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+/**
+ * The field names of {@link FileRecord} objects and the slot of each name in their
+ * value arrays. One index is shared by all the records of a mapping, so a record only
+ * holds its values. A shared index never changes; a record adding fields works on a
+ * copy of its own, which grows in place.
+ *
+ * @author Dickens Prabhu
+ */
+final class FieldIndex {
+
+	static final FieldIndex EMPTY = new FieldIndex(new String[0]);
+
+	/** Field name of each slot, in the order the fields are iterated, with room for added fields. */
+	private String[] names;
+
+	/** Number of fields. */
+	private int size;
+
+	private final Map<String, Integer> slots;
+
+	/**
+	 * @param names field names, distinct
+	 */
+	FieldIndex(String[] names) {
+		this.names = names;
+		this.size = names.length;
+		this.slots = new HashMap<String, Integer>(names.length * 2);
+		for (int slot = 0; slot < names.length; slot++) {
+			slots.put(names[slot], slot);
+		}
+	}
+
+	/**
+	 * @param name field name
+	 * @return slot of the field, -1 if the index has no such field
+	 */
+	int getSlot(Object name) {
+		Integer slot = slots.get(name);
+		return slot == null ? -1 : slot;
+	}
+
+	/**
+	 * @param slot slot of a field
+	 * @return the field name
+	 */
+	String getName(int slot) {
+		return names[slot];
+	}
+
+	/**
+	 * @return number of fields
+	 */
+	int size() {
+		return size;
+	}
+
+	/**
+	 * @return a copy of the index, for a record adding fields to it
+	 */
+	FieldIndex copy() {
+		return new FieldIndex(Arrays.copyOf(names, size));
+	}
+
+	/**
+	 * Adds a field in the last slot. Only called on an index owned by one record,
+	 * the slots grow by doubling so adding k fields is O(k).
+	 *
+	 * @param name field name not in this index
+	 * @return slot of the field
+	 */
+	int add(String name) {
+		if (size == names.length) {
+			names = Arrays.copyOf(names, Math.max(8, size * 2));
+		}
+		names[size] = name;
+		slots.put(name, size);
+		return size++;
+	}
+}
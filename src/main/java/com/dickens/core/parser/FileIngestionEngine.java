@@ -0,0 +1,240 @@
+package com.dickens.core.parser;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.springframework.web.multipart.MultipartFile;
+
+/**
+ * Reads many files concurrently and passes their rows to a {@link FileRowSink}.
+ *
+ * Concurrency is bounded twice: at most cpuPermits files are read at the same time,
+ * and the files being read never weigh more than the memory budget together. The
+ * weight of a file is its size, the size of what the readers keep in memory (shared
+ * strings, read buffers) grows with it; a file larger than the budget is read alone.
+ * Files are admitted in the order given, a file waits until its weight fits.
+ *
+ * A file failing to open or read is reported to the sink and the other files are
+ * still read; failures of the sink, fileCompleted() included, fail the file too.
+ * Other errors, such as OutOfMemoryError, are reported to the sink for their file,
+ * then no more files are read: the files not started yet are dropped and the error
+ * is thrown once the files being read end. Files are opened the way XLFileReader
+ * opens them.
+ *
+ ***********************************************************
+ ################## Recommended Use: ########################
+ #  FileIngestionEngine engine = new FileIngestionEngine(4, 512L << 20); #
+ #  int failures = engine.ingestFiles(filePaths, sink);     #
+ ############################################################
+ *
+ * @author Dickens Prabhu
+ */
+public class FileIngestionEngine {
+
+	/** Memory permits are counted in KB, so large budgets fit a Semaphore. */
+	private static final int PERMIT_SIZE = 1024;
+
+	private final int cpuPermits;
+	private final int memoryPermits;
+
+	/**
+	 * @param cpuPermits maximum number of files read at the same time
+	 * @param memoryBudget maximum total size in bytes of the files read at the same time
+	 */
+	public FileIngestionEngine(int cpuPermits, long memoryBudget) {
+		if (cpuPermits <= 0) {
+			throw new IllegalArgumentException("Invalid cpu permits: " + cpuPermits);
+		}
+		if (memoryBudget <= 0) {
+			throw new IllegalArgumentException("Invalid memory budget: " + memoryBudget);
+		}
+		this.cpuPermits = cpuPermits;
+		this.memoryPermits = (int) Math.min(Integer.MAX_VALUE, Math.max(1, memoryBudget / PERMIT_SIZE));
+	}
+
+	/**
+	 * Reads the files and waits until all of them are read.
+	 *
+	 * @param filePaths absolute paths of the files
+	 * @param sink receives the rows
+	 * @return number of files which failed
+	 * @throws InterruptedException if interrupted while waiting, the files being read are interrupted
+	 * @throws Error the error which stopped the reading of a file, see the class comment
+	 */
+	public int ingestFiles(List<String> filePaths, FileRowSink sink) throws InterruptedException {
+		List<Source> sources = new ArrayList<Source>(filePaths.size());
+		for (final String filePath : filePaths) {
+			sources.add(new Source(filePath, new File(filePath).length()) {
+				GenericFileReader open() throws Exception {
+					return XLFileReader.getExcelReader(filePath);
+				}
+			});
+		}
+		return ingest(sources, sink);
+	}
+
+	/**
+	 * Reads the uploaded files and waits until all of them are read.
+	 *
+	 * @param files the files
+	 * @param sink receives the rows, with the original file names
+	 * @return number of files which failed
+	 * @throws InterruptedException if interrupted while waiting, the files being read are interrupted
+	 * @throws Error the error which stopped the reading of a file, see the class comment
+	 */
+	public int ingestMultipartFiles(List<MultipartFile> files, FileRowSink sink) throws InterruptedException {
+		List<Source> sources = new ArrayList<Source>(files.size());
+		for (final MultipartFile file : files) {
+			sources.add(new Source(file.getOriginalFilename(), file.getSize()) {
+				GenericFileReader open() throws Exception {
+					return XLFileReader.getExcelReader(file);
+				}
+			});
+		}
+		return ingest(sources, sink);
+	}
+
+	private int ingest(List<Source> sources, final FileRowSink sink) throws InterruptedException {
+		final Semaphore memory = new Semaphore(memoryPermits);
+		final AtomicInteger failures = new AtomicInteger();
+		// the first error which stopped a file, the files not started yet are dropped once it is set
+		final AtomicReference<Error> fatal = new AtomicReference<Error>();
+		ExecutorService pool = Executors.newFixedThreadPool(Math.min(cpuPermits, Math.max(1, sources.size())),
+				new IngestionThreadFactory());
+		try {
+			for (final Source source : sources) {
+				final int weight = (int) Math.min(memoryPermits, Math.max(1, source.size / PERMIT_SIZE));
+				memory.acquire(weight);
+				if (fatal.get() != null) {
+					memory.release(weight);
+					break;
+				}
+				try {
+					pool.execute(new Runnable() {
+						public void run() {
+							try {
+								if (fatal.get() == null && !read(source, sink)) {
+									failures.incrementAndGet();
+								}
+							} catch (Error e) {
+								failures.incrementAndGet();
+								fatal.compareAndSet(null, e);
+							} finally {
+								memory.release(weight);
+							}
+						}
+					});
+				} catch (RejectedExecutionException e) {
+					memory.release(weight);
+					throw e;
+				}
+			}
+			pool.shutdown();
+			while (!pool.awaitTermination(1, TimeUnit.MINUTES)) {
+				// the files are still being read
+			}
+		} finally {
+			if (!pool.isTerminated()) {
+				pool.shutdownNow();
+			}
+		}
+		if (fatal.get() != null) {
+			throw fatal.get();
+		}
+		return failures.get();
+	}
+
+	/**
+	 * Reads one file. An exception, or a LinkageError of a reader, is reported to the
+	 * sink and counted. Other errors are reported to the sink and thrown, the JVM may
+	 * not be able to read more files.
+	 *
+	 * @return false if the file failed
+	 */
+	private static boolean read(Source source, FileRowSink sink) {
+		GenericFileReader reader = null;
+		long rowNumber = 0;
+		try {
+			reader = source.open();
+			Iterator<List<String>> iterator = reader.getIterator();
+			while (iterator.hasNext()) {
+				sink.handleRow(source.name, rowNumber++, iterator.next());
+			}
+			GenericFileReader closing = reader;
+			reader = null;
+			closing.close();
+			sink.fileCompleted(source.name, rowNumber);
+			return true;
+		} catch (Exception e) {
+			fileFailed(source, sink, e);
+			return false;
+		} catch (LinkageError e) {
+			fileFailed(source, sink, e);
+			return false;
+		} catch (Error e) {
+			fileFailed(source, sink, e);
+			throw e;
+		} finally {
+			if (reader != null) {
+				try {
+					reader.close();
+				} catch (Exception e) {
+					//log.error("Error in closing file.", e);
+				}
+			}
+		}
+	}
+
+	/**
+	 * Reports the failure of a file to the sink.
+	 */
+	private static void fileFailed(Source source, FileRowSink sink, Throwable error) {
+		try {
+			sink.fileFailed(source.name, error);
+		} catch (Exception ignored) {
+			// the sink failing does not stop the other files
+		}
+	}
+
+	/**
+	 * A file to read.
+	 */
+	private abstract static class Source {
+
+		final String name;
+
+		/** Size in bytes, 0 if not known. */
+		final long size;
+
+		Source(String name, long size) {
+			this.name = name;
+			this.size = size;
+		}
+
+		abstract GenericFileReader open() throws Exception;
+	}
+
+	/**
+	 * Daemon threads named after the engine.
+	 */
+	private static final class IngestionThreadFactory implements ThreadFactory {
+
+		private final AtomicInteger count = new AtomicInteger();
+
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "file-ingestion-" + count.incrementAndGet());
+			thread.setDaemon(true);
+			return thread;
+		}
+	}
+}
@@ -1,26 +1,63 @@
 package com.dickens.core.parser;
 
-import java.util.LinkedHashMap;
+import java.util.AbstractMap;
+import java.util.AbstractSet;
+import java.util.Arrays;
+import java.util.Iterator;
 import java.util.Map;
-
-import lombok.Data;
+import java.util.NoSuchElementException;
+import java.util.Set;
 
 
 /**
  * Instantiates a new file record.
- * 
+ *
+ * The values are held in an array, one slot per field; the field names and their
+ * slots are held by a {@link FieldIndex} shared by all the records read with the
+ * same mapping. A field without value (null slot) is not part of the record.
+ * Setting a field the index does not have gives the record an index of its own,
+ * extended in place by the next new fields.
+ *
  * @author Dickens Prabhu
  */
-@Data
 public class FileRecord {
-	
-	/** The file record values. */
-	private Map<String,String> fileRecordValues = new LinkedHashMap<String,String>();
-	
+
+	/** Stored in a slot for a null value, a null slot is a field without value. */
+	static final String NULL_VALUE = new String();
+
+	/** The field names, shared with the other records of the mapping. */
+	private FieldIndex fieldIndex;
+
+	/** True once the record has an index of its own, which it can extend. */
+	private boolean ownsIndex;
+
+	/** The value of each slot of the field index, null if the record has no value for the field. */
+	private String[] values;
+
+	/** The file record values, a view of the slots. */
+	private final Map<String, String> fileRecordValues = new ValuesMap();
+
 	/** The row number. */
 	private int rowNumber;
-	
-	
+
+	/**
+	 * Instantiates a new empty file record.
+	 */
+	public FileRecord() {
+		this(FieldIndex.EMPTY, new String[0]);
+	}
+
+	/**
+	 * Instantiates a file record over the values of a mapping.
+	 *
+	 * @param fieldIndex the field names, shared
+	 * @param values one value per field, owned by the record
+	 */
+	FileRecord(FieldIndex fieldIndex, String[] values) {
+		this.fieldIndex = fieldIndex;
+		this.values = values;
+	}
+
 	/**
 	 * Sets the value.
 	 *
@@ -30,7 +67,7 @@ public class FileRecord {
 	public void setValue(String columnName, String value) {
 		fileRecordValues.put(columnName, value);
 	}
-	
+
 	/**
 	 * Gets the value.
 	 *
@@ -41,4 +78,195 @@ public class FileRecord {
 		return fileRecordValues.get(columnName);
 	}
 
+	/**
+	 * Gets the file record values.
+	 *
+	 * @return the values by field name, a live view of the record
+	 */
+	public Map<String, String> getFileRecordValues() {
+		return fileRecordValues;
+	}
+
+	/**
+	 * Sets the file record values.
+	 *
+	 * @param fileRecordValues the values by field name
+	 */
+	public void setFileRecordValues(Map<String, String> fileRecordValues) {
+		if (fileRecordValues == this.fileRecordValues) {
+			return;
+		}
+		Arrays.fill(values, null);
+		this.fileRecordValues.putAll(fileRecordValues);
+	}
+
+	/**
+	 * Gets the row number.
+	 *
+	 * @return the row number
+	 */
+	public int getRowNumber() {
+		return rowNumber;
+	}
+
+	/**
+	 * Sets the row number.
+	 *
+	 * @param rowNumber the row number
+	 */
+	public void setRowNumber(int rowNumber) {
+		this.rowNumber = rowNumber;
+	}
+
+	@Override
+	public boolean equals(Object o) {
+		if (o == this) {
+			return true;
+		}
+		if (!(o instanceof FileRecord)) {
+			return false;
+		}
+		FileRecord other = (FileRecord) o;
+		return rowNumber == other.rowNumber && fileRecordValues.equals(other.fileRecordValues);
+	}
+
+	@Override
+	public int hashCode() {
+		return (59 + fileRecordValues.hashCode()) * 59 + rowNumber;
+	}
+
+	@Override
+	public String toString() {
+		return "FileRecord(fileRecordValues=" + fileRecordValues + ", rowNumber=" + rowNumber + ")";
+	}
+
+	private static String unwrap(String value) {
+		return value == NULL_VALUE ? null : value;
+	}
+
+	/**
+	 * The values by field name, in slot order, backed by the slots of the record.
+	 * A name not in the field index gets a new slot, the record then stops sharing
+	 * the index of the mapping. The value array grows by doubling like its own
+	 * index, slots past the fields stay null.
+	 */
+	private final class ValuesMap extends AbstractMap<String, String> {
+
+		@Override
+		public String get(Object key) {
+			int slot = fieldIndex.getSlot(key);
+			return slot == -1 ? null : unwrap(values[slot]);
+		}
+
+		@Override
+		public boolean containsKey(Object key) {
+			int slot = fieldIndex.getSlot(key);
+			return slot != -1 && values[slot] != null;
+		}
+
+		@Override
+		public String put(String key, String value) {
+			int slot = fieldIndex.getSlot(key);
+			if (slot == -1) {
+				if (!ownsIndex) {
+					fieldIndex = fieldIndex.copy();
+					ownsIndex = true;
+				}
+				slot = fieldIndex.add(key);
+				if (slot == values.length) {
+					values = Arrays.copyOf(values, Math.max(8, values.length * 2));
+				}
+			}
+			String previous = values[slot];
+			values[slot] = value == null ? NULL_VALUE : value;
+			return unwrap(previous);
+		}
+
+		@Override
+		public String remove(Object key) {
+			int slot = fieldIndex.getSlot(key);
+			if (slot == -1) {
+				return null;
+			}
+			String previous = values[slot];
+			values[slot] = null;
+			return unwrap(previous);
+		}
+
+		@Override
+		public void clear() {
+			Arrays.fill(values, null);
+		}
+
+		@Override
+		public int size() {
+			int size = 0;
+			for (String value : values) {
+				if (value != null) {
+					size++;
+				}
+			}
+			return size;
+		}
+
+		@Override
+		public Set<Map.Entry<String, String>> entrySet() {
+			return new AbstractSet<Map.Entry<String, String>>() {
+				@Override
+				public Iterator<Map.Entry<String, String>> iterator() {
+					return new EntryIterator();
+				}
+				@Override
+				public int size() {
+					return ValuesMap.this.size();
+				}
+			};
+		}
+	}
+
+	/**
+	 * Iterates the slots having a value.
+	 */
+	private final class EntryIterator implements Iterator<Map.Entry<String, String>> {
+
+		private int next = advance(0);
+		private int last = -1;
+
+		private int advance(int slot) {
+			while (slot < values.length && values[slot] == null) {
+				slot++;
+			}
+			return slot;
+		}
+
+		public boolean hasNext() {
+			return next < values.length;
+		}
+
+		public Map.Entry<String, String> next() {
+			if (!hasNext()) {
+				throw new NoSuchElementException();
+			}
+			last = next;
+			next = advance(next + 1);
+			final int slot = last;
+			return new AbstractMap.SimpleEntry<String, String>(fieldIndex.getName(slot), unwrap(values[slot])) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				public String setValue(String value) {
+					values[slot] = value == null ? NULL_VALUE : value;
+					return super.setValue(value);
+				}
+			};
+		}
+
+		public void remove() {
+			if (last == -1) {
+				throw new IllegalStateException();
+			}
+			values[last] = null;
+			last = -1;
+		}
+	}
+
 }
@@ -0,0 +1,17 @@
+package com.dickens.core.parser;
+
+import java.util.List;
+
+/**
+ * Callback receiving the records mapped by {@link XLFileReader#processFile(String, List, int, int, int, FileRecordHandler)}.
+ */
+public interface FileRecordHandler {
+
+	/**
+	 * Handles a batch of records, in row order.
+	 *
+	 * @param fileRecords the records, a new list for every batch the handler can keep
+	 * @throws Exception to stop the reading
+	 */
+	void handleRecords(List<FileRecord> fileRecords) throws Exception;
+}
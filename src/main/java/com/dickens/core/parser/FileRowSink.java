@@ -0,0 +1,42 @@
+package com.dickens.core.parser;
+
+import java.util.List;
+
+/**
+ * Callback receiving the rows of the files read by {@link FileIngestionEngine}.
+ * Files are read concurrently, so the methods are called from several threads
+ * and must be thread safe; the calls for one file come from a single thread, in
+ * row order.
+ */
+public interface FileRowSink {
+
+	/**
+	 * Handles one row.
+	 *
+	 * @param fileName path or original name of the file of the row
+	 * @param rowNumber zero based number of the row in its file, counting the rows returned
+	 * @param row the cells of the row, only valid during the call
+	 * @throws Exception to fail the file, the other files are still read
+	 */
+	void handleRow(String fileName, long rowNumber, List<String> row) throws Exception;
+
+	/**
+	 * Called once all the rows of a file are handled and the file is closed.
+	 * A failure of this call fails the file, fileFailed() is then called.
+	 *
+	 * @param fileName path or original name of the file
+	 * @param rowCount number of rows handled
+	 */
+	void fileCompleted(String fileName, long rowCount);
+
+	/**
+	 * Called when a file cannot be opened or read, or when handleRow() or
+	 * fileCompleted() fails. An error such as OutOfMemoryError is reported too,
+	 * then the engine stops reading files and throws it.
+	 * Rows of the file handled before the failure are not taken back.
+	 *
+	 * @param fileName path or original name of the file
+	 * @param error the failure
+	 */
+	void fileFailed(String fileName, Throwable error);
+}
@@ -1,8 +1,26 @@
 package com.dickens.core.parser;
 
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileOutputStream;
 import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Spliterator;
+import java.util.Spliterators;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.IntFunction;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.xml.parsers.ParserConfigurationException;
 import javax.xml.stream.XMLStreamException;
@@ -39,9 +57,603 @@ import org.xml.sax.SAXException;
  *
  */
 public abstract class GenericFileReader {
+	
+	/** The columns to read, null to read all the columns. */
+	ColumnProjection projection;
+	
+	/** Zero based indexes of the sheets to read, null to read the active sheet. */
+	int[] sheets;
+	
+	/** Index of the sheet of the rows returned by the iterator, -1 before the first row. */
+	private int currentSheet = -1;
+	
+	/** Rows read by readBatch(), null before the first batch. */
+	private Iterator<RowView> batchRows;
+	
+	/** The batch returned by readBatch(), reused by every call. */
+	private RowBatch batch;
+	
+	/**
+	 * Returns an iterator over the rows as lists of formatted cell values. The xls and
+	 * xlsx readers fill the same list for every row, its content is replaced by the
+	 * next call to hasNext(): copy a row to keep it. The csv readers return a new list
+	 * for every row.
+	 * 
+	 * @author Dickens Prabhu
+	 * @return the iterator
+	 */
 	public abstract Iterator<List<String>> getIterator();
 	public abstract void close() throws Exception;
 	
+	/**
+	 * Returns an iterator over typed rows giving access to the raw numeric, boolean
+	 * and date values of the cells without formatting them to String.
+	 * Use either this iterator or getIterator(), not both.
+	 * 
+	 * @author Dickens Prabhu
+	 * @return the iterator
+	 * @throws UnsupportedOperationException if the reader has no typed access
+	 */
+	public Iterator<TypedRow> getTypedIterator() {
+		throw new UnsupportedOperationException("Typed rows are not supported by " + getClass().getSimpleName());
+	}
+	
+	/**
+	 * Returns an iterator over views of the rows, see {@link RowView}.
+	 * In recycled mode (owned = false) the same view is returned for every row and
+	 * the cells are read from the buffers of the parser, nothing is copied unless
+	 * {@link RowView#materialize()} is called. In owned mode each row is copied to a
+	 * view the caller can keep. Use either this iterator or getIterator(), not both.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param owned false for recycled views, valid until the next hasNext(); true for copies
+	 * @return the iterator
+	 */
+	public Iterator<RowView> getRowViews(boolean owned) {
+		final Iterator<List<String>> rows = getIterator();
+		return rowViews(new SkippableIterator<RowView>() {
+			private final ListRowView view = new ListRowView(null);
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+			public RowView next() {
+				return view.set(rows.next());
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			public long skipRows(long n) {
+				return GenericFileReader.skipRows(rows, n);
+			}
+		}, owned);
+	}
+	
+	/**
+	 * Returns a stream over the rows. Every row is a new list, so rows can be kept or
+	 * collected. When several sheets are selected the stream splits by sheet and the
+	 * sheets of a parallel stream are read by different threads; readers which can split
+	 * a file (ParallelCSVReader) split it into record ranges. Other readers, CSVReader
+	 * included, parse on the thread consuming the stream: a parallel stream only hands
+	 * batches of parsed rows to the other threads for the later stages, use
+	 * ParallelCSVReader to parse a large csv file with several threads. The stream is
+	 * ORDERED, never SIZED, the rows are not counted before they are read.
+	 * Use either this stream or an iterator, not both.
+	 * 
+	 * @author Dickens Prabhu
+	 * @return the stream, sequential; call parallel() to read with several threads
+	 */
+	public Stream<List<String>> stream() {
+		return StreamSupport.stream(getRowSpliterator(), false);
+	}
+	
+	/**
+	 * Returns a stream over the typed rows. The rows are recycled like those of
+	 * getTypedIterator(): a row is only valid while the stage receiving it runs, map it
+	 * to a value before collecting. A parallel stream reads the selected sheets on
+	 * different threads, each with its own row.
+	 * 
+	 * @author Dickens Prabhu
+	 * @return the stream, sequential; call parallel() to read with several threads
+	 * @throws UnsupportedOperationException if the reader has no typed access
+	 */
+	public Stream<TypedRow> typedStream() {
+		return StreamSupport.stream(getTypedRowSpliterator(), false);
+	}
+	
+	/**
+	 * @return spliterator over copies of the rows
+	 */
+	Spliterator<List<String>> getRowSpliterator() {
+		int[] sheetIndexes = getSelectedSheets();
+		if (sheetIndexes.length > 1) {
+			return new SheetSpliterator<List<String>>(new IntFunction<Iterator<List<String>>>() {
+				public Iterator<List<String>> apply(int sheetIndex) {
+					return copies(getSheetIterator(sheetIndex));
+				}
+			}, sheetIndexes);
+		}
+		return Spliterators.spliteratorUnknownSize(copies(getIterator()), Spliterator.ORDERED | Spliterator.NONNULL);
+	}
+	
+	/**
+	 * @return spliterator over the recycled typed rows, split by sheet only
+	 */
+	Spliterator<TypedRow> getTypedRowSpliterator() {
+		int[] sheetIndexes = getSelectedSheets();
+		if (sheetIndexes.length > 1) {
+			return new SheetSpliterator<TypedRow>(new IntFunction<Iterator<TypedRow>>() {
+				public Iterator<TypedRow> apply(int sheetIndex) {
+					return getTypedSheetIterator(sheetIndex);
+				}
+			}, sheetIndexes);
+		}
+		return new RowSpliterator<TypedRow>(getTypedIterator());
+	}
+	
+	/**
+	 * Copies an input stream to a temporary file, so that a reader can open it like a
+	 * file given by path instead of loading it in heap. The caller deletes the file,
+	 * when the reader is closed; it is deleted here if the copy fails.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param iStream the stream, read to the end
+	 * @param extension extension of the temporary file
+	 * @return the temporary file
+	 * @throws IOException
+	 */
+	static File spool(InputStream iStream, String extension) throws IOException {
+		File file = File.createTempFile(extension, "." + extension);
+		boolean copied = false;
+		try {
+			OutputStream out = new FileOutputStream(file);
+			try {
+				byte[] buffer = new byte[1 << 16];
+				int read;
+				while ((read = iStream.read(buffer)) != -1) {
+					out.write(buffer, 0, read);
+				}
+			} finally {
+				out.close();
+			}
+			copied = true;
+		} finally {
+			if (!copied) {
+				file.delete();
+			}
+		}
+		return file;
+	}
+	
+	/**
+	 * Copies every row returned by the iterator to a new list.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param rows iterator returning a reused list
+	 * @return the iterator
+	 */
+	static Iterator<List<String>> copies(final Iterator<List<String>> rows) {
+		return new Iterator<List<String>>() {
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+			public List<String> next() {
+				return new ArrayList<String>(rows.next());
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+		};
+	}
+	
+	/**
+	 * Reads the next rows into a columnar batch, see {@link RowBatch}.
+	 * The same batch is returned by every call, its content is replaced; its arrays
+	 * are only reallocated when a call asks for more rows or a longer row is read.
+	 * Rows are read from the typed rows of the reader, numbers are copied as doubles
+	 * and text is copied to the char buffer of the batch without creating Strings
+	 * where the reader holds the text in its own buffers.
+	 * Use either this method or an iterator, not both.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param maxRows maximum number of rows of the batch
+	 * @return the batch, empty once all the rows are read
+	 */
+	public RowBatch readBatch(int maxRows) {
+		if (maxRows <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + maxRows);
+		}
+		if (batchRows == null) {
+			batchRows = getRowViews(false);
+			batch = new RowBatch();
+		}
+		batch.clear(maxRows);
+		while (batch.size() < maxRows && batchRows.hasNext()) {
+			batch.addRow(batchRows.next());
+		}
+		return batch;
+	}
+
+	/**
+	 * Reads the rows ahead on a dedicated parser thread, see {@link ReadAheadIterator}.
+	 * The parser thread fills a ring of at most depth batches of batchSize rows and
+	 * waits while the ring is full, so at most depth * batchSize rows are held in memory.
+	 * Every row returned is a new list. Close the iterator before the reader;
+	 * use either this method or another iterator, not both.
+	 *
+	 * @author Dickens Prabhu
+	 * @param batchSize number of rows handed over at a time
+	 * @param depth number of batches read ahead
+	 * @return the iterator, the parser thread is already started
+	 */
+	public ReadAheadIterator getReadAheadIterator(int batchSize, int depth) {
+		return new ReadAheadIterator(getIterator(), batchSize, depth, "read-ahead-" + getClass().getSimpleName());
+	}
+
+	/**
+	 * Publishes the rows as batches parsed on demand, see {@link RowBatchPublisher}.
+	 * The publisher closes the reader once the rows are published or the subscription
+	 * is cancelled.
+	 *
+	 * @author Dickens Prabhu
+	 * @param batchSize maximum number of rows of a batch
+	 * @param executor runs the parsing
+	 * @return the publisher
+	 */
+	public RowBatchPublisher getPublisher(int batchSize, Executor executor) {
+		return new RowBatchPublisher(this, batchSize, executor);
+	}
+
+	/**
+	 * Hands out the recycled views of the given iterator, or a copy of each row in owned mode.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param rows iterator returning recycled views
+	 * @param owned true to copy each row
+	 * @return the iterator
+	 */
+	static Iterator<RowView> rowViews(final Iterator<? extends RowView> rows, final boolean owned) {
+		return new SkippableIterator<RowView>() {
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+			public RowView next() {
+				RowView row = rows.next();
+				return owned ? new ListRowView(row.materialize()) : row;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			public long skipRows(long n) {
+				return GenericFileReader.skipRows(rows, n);
+			}
+		};
+	}
+	
+	/**
+	 * Skips the next rows of an iterator returned by a reader. The readers only look
+	 * for the row boundaries (end of row elements, csv record ends, row records) and
+	 * do not decode the cells of the skipped rows: no shared string lookup, formatting
+	 * or String creation, except to tell an empty row when empty rows are not read.
+	 * The header row of a sheet is read, it gives the number of columns of the sheet.
+	 * Other iterators are advanced row by row.
+	 * Call it where hasNext() would be called: before the first row or after next().
+	 * 
+	 * @author Dickens Prabhu
+	 * @param iterator iterator returned by getIterator(), getTypedIterator() or getRowViews()
+	 * @param n number of rows to skip
+	 * @return the number of rows skipped, less than n at the end of the rows
+	 */
+	public static long skipRows(Iterator<?> iterator, long n) {
+		if (n < 0) {
+			throw new IllegalArgumentException("Invalid number of rows: " + n);
+		}
+		if (iterator instanceof SkippableIterator) {
+			return ((SkippableIterator<?>) iterator).skipRows(n);
+		}
+		long skipped = 0;
+		while (skipped < n && iterator.hasNext()) {
+			iterator.next();
+			skipped++;
+		}
+		return skipped;
+	}
+	
+	/**
+	 * Reads only the given columns. Rows returned by the iterator hold the selected
+	 * columns in the given order, the cells of the other columns are skipped without
+	 * being decoded. Must be called before getIterator().
+	 * 
+	 * @author Dickens Prabhu
+	 * @param columns zero based column indexes
+	 */
+	public void selectColumns(int... columns) {
+		this.projection = ColumnProjection.ofIndexes(columns);
+	}
+	
+	/**
+	 * Reads only the columns having the given names in the header row(first row).
+	 * Rows returned by the iterator, header row included, hold the selected columns
+	 * in the given order. Must be called before getIterator().
+	 * 
+	 * @author Dickens Prabhu
+	 * @param columnNames header names of the columns
+	 */
+	public void selectColumns(String... columnNames) {
+		this.projection = ColumnProjection.ofNames(columnNames);
+	}
+	
+	/**
+	 * Returns the names of the sheets of the workbook, in workbook order.
+	 * 
+	 * @author Dickens Prabhu
+	 * @return the sheet names
+	 * @throws UnsupportedOperationException if the file has no sheets
+	 */
+	public List<String> getSheetNames() {
+		throw new UnsupportedOperationException("Sheets are not supported by " + getClass().getSimpleName());
+	}
+	
+	/**
+	 * Reads the given sheets instead of the active sheet. The iterator returns the rows
+	 * of the sheets one sheet after the other, in the given order; each sheet starts with
+	 * its own header row. Must be called before getIterator().
+	 * 
+	 * @author Dickens Prabhu
+	 * @param sheetIndexes zero based sheet indexes
+	 * @throws IllegalArgumentException if a sheet does not exist
+	 */
+	public void selectSheets(int... sheetIndexes) {
+		int sheetCount = getSheetNames().size();
+		if (sheetIndexes == null || sheetIndexes.length == 0) {
+			throw new IllegalArgumentException("No sheet selected");
+		}
+		for (int sheetIndex : sheetIndexes) {
+			if (sheetIndex < 0 || sheetIndex >= sheetCount) {
+				throw new IllegalArgumentException("Invalid sheet index: " + sheetIndex);
+			}
+		}
+		this.sheets = sheetIndexes.clone();
+	}
+	
+	/**
+	 * Reads the sheets having the given names instead of the active sheet.
+	 * Must be called before getIterator().
+	 * 
+	 * @author Dickens Prabhu
+	 * @param sheetNames names of the sheets
+	 * @throws IllegalArgumentException if a sheet does not exist
+	 */
+	public void selectSheets(String... sheetNames) {
+		List<String> names = getSheetNames();
+		if (sheetNames == null || sheetNames.length == 0) {
+			throw new IllegalArgumentException("No sheet selected");
+		}
+		int[] sheetIndexes = new int[sheetNames.length];
+		for (int i = 0; i < sheetNames.length; i++) {
+			sheetIndexes[i] = names.indexOf(sheetNames[i]);
+			if (sheetIndexes[i] == -1) {
+				throw new IllegalArgumentException("Sheet not found: " + sheetNames[i]);
+			}
+		}
+		this.sheets = sheetIndexes;
+	}
+	
+	/**
+	 * Reads all the sheets of the workbook, in workbook order.
+	 * Must be called before getIterator().
+	 * 
+	 * @author Dickens Prabhu
+	 */
+	public void selectAllSheets() {
+		int[] sheetIndexes = new int[getSheetNames().size()];
+		for (int i = 0; i < sheetIndexes.length; i++) {
+			sheetIndexes[i] = i;
+		}
+		this.sheets = sheetIndexes;
+	}
+	
+	/**
+	 * Returns the name of the sheet of the last row returned by the iterator.
+	 * 
+	 * @author Dickens Prabhu
+	 * @return the sheet name, null before the first row
+	 */
+	public String getSheetName() {
+		List<String> names = getSheetNames();
+		return currentSheet == -1 ? null : names.get(currentSheet);
+	}
+	
+	/**
+	 * Reads the selected sheets (the active sheet if none is selected) one after the
+	 * other and passes their rows to the handler, tagged with the sheet name.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param handler the row handler
+	 * @throws Exception thrown by the handler or while reading
+	 */
+	public void readSheets(SheetRowHandler handler) throws Exception {
+		List<String> names = getSheetNames();
+		for (int sheetIndex : getSelectedSheets()) {
+			readSheet(sheetIndex, names.get(sheetIndex), handler, null);
+		}
+	}
+	
+	/**
+	 * Reads the selected sheets (the active sheet if none is selected) in parallel, each
+	 * sheet on its own worker of the pool. The shared strings and styles of the workbook
+	 * are loaded once and shared by the workers. Rows of a sheet are passed to the handler
+	 * in sheet order, from the worker reading the sheet; rows of different sheets are
+	 * interleaved, so the handler must be thread safe.
+	 * When a sheet fails or the calling thread is interrupted, the other workers stop
+	 * at their next row and close their sheet before this method returns.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param handler the row handler
+	 * @param pool the pool reading the sheets
+	 * @throws Exception thrown by the handler or while reading
+	 */
+	public void readSheets(final SheetRowHandler handler, ForkJoinPool pool) throws Exception {
+		List<String> names = getSheetNames();
+		final ParallelParts parts = new ParallelParts(pool);
+		for (final int sheetIndex : getSelectedSheets()) {
+			final String sheetName = names.get(sheetIndex);
+			parts.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					readSheet(sheetIndex, sheetName, handler, parts.cancelled);
+					return null;
+				}
+			});
+		}
+		parts.join();
+	}
+	
+	/**
+	 * Returns an iterator over the rows of one sheet. It reads the sheet from its own
+	 * stream, so iterators of different sheets can be used by different threads.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param sheetIndex zero based sheet index
+	 * @return the iterator
+	 */
+	Iterator<List<String>> getSheetIterator(int sheetIndex) {
+		throw new UnsupportedOperationException("Sheets are not supported by " + getClass().getSimpleName());
+	}
+	
+	/**
+	 * Returns an iterator over the typed rows of one sheet, see getSheetIterator().
+	 * 
+	 * @author Dickens Prabhu
+	 * @param sheetIndex zero based sheet index
+	 * @return the iterator
+	 */
+	Iterator<TypedRow> getTypedSheetIterator(int sheetIndex) {
+		throw new UnsupportedOperationException("Sheets are not supported by " + getClass().getSimpleName());
+	}
+	
+	/**
+	 * @return zero based index of the sheet read when no sheet is selected
+	 */
+	int getDefaultSheetIndex() {
+		return 0;
+	}
+	
+	/**
+	 * @return zero based indexes of the sheets to read
+	 */
+	int[] getSelectedSheets() {
+		return sheets != null ? sheets.clone() : new int[] { getDefaultSheetIndex() };
+	}
+	
+	/**
+	 * Parts of a file read in parallel by the tasks of a pool. The first failure of a
+	 * part stops the others: the tasks not started are cancelled and the running ones
+	 * are told to stop through the cancelled flag, which they look at for every row,
+	 * since a fork join task is not interrupted by cancel().
+	 * 
+	 * @author Dickens Prabhu
+	 */
+	static final class ParallelParts {
+		
+		/** Set once the parts have to stop. */
+		final AtomicBoolean cancelled = new AtomicBoolean();
+		
+		/** The first failure of a part, as thrown by the part. */
+		private final AtomicReference<Throwable> failure = new AtomicReference<Throwable>();
+		
+		private final ForkJoinPool pool;
+		
+		private final List<ForkJoinTask<Void>> tasks = new ArrayList<ForkJoinTask<Void>>();
+		
+		ParallelParts(ForkJoinPool pool) {
+			this.pool = pool;
+		}
+		
+		/**
+		 * Submits the task reading a part.
+		 * 
+		 * @param part the task
+		 */
+		void submit(final Callable<Void> part) {
+			tasks.add(pool.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					try {
+						return part.call();
+					} catch (Exception e) {
+						fail(e);
+						throw e;
+					} catch (Error e) {
+						fail(e);
+						throw e;
+					}
+				}
+			}));
+		}
+		
+		private void fail(Throwable e) {
+			failure.compareAndSet(null, e);
+			cancelled.set(true);
+		}
+		
+		/**
+		 * Waits until all parts are read. When a part fails or the calling thread is
+		 * interrupted, waits until the other parts have stopped.
+		 * 
+		 * @throws Exception the first failure of a part, or InterruptedException
+		 */
+		void join() throws Exception {
+			try {
+				for (ForkJoinTask<Void> task : tasks) {
+					try {
+						task.get();
+					} catch (ExecutionException e) {
+						break; // the failure is thrown below
+					}
+				}
+			} finally {
+				cancelled.set(true);
+				for (ForkJoinTask<Void> task : tasks) {
+					task.cancel(true);
+				}
+				for (ForkJoinTask<Void> task : tasks) {
+					task.quietlyJoin();
+				}
+			}
+			Throwable e = failure.get();
+			if (e instanceof Exception) {
+				throw (Exception) e;
+			}
+			if (e instanceof Error) {
+				throw (Error) e;
+			}
+		}
+	}
+	
+	/**
+	 * Reads the rows of one sheet, the sheet is closed when the read ends or fails.
+	 * 
+	 * @param cancelled stops the read at the next row once set, null if never cancelled
+	 * @throws InterruptedException if the thread is interrupted
+	 */
+	private void readSheet(int sheetIndex, String sheetName, SheetRowHandler handler, AtomicBoolean cancelled) throws Exception {
+		Iterator<List<String>> iterator = getSheetIterator(sheetIndex);
+		try {
+			long rowNumber = 0;
+			while (iterator.hasNext()) {
+				if (cancelled != null && cancelled.get()) {
+					return;
+				}
+				if (Thread.interrupted()) {
+					throw new InterruptedException("Reading of sheet " + sheetName + " interrupted");
+				}
+				handler.handleRow(sheetName, rowNumber++, iterator.next());
+			}
+		} finally {
+			if (iterator instanceof Closeable) {
+				((Closeable) iterator).close();
+			}
+		}
+	}
+	
 	/**
 	 * This method checks the extension of the file to be read.
 	 * if file extension is .xls it returns XLSReader object.
@@ -103,6 +715,51 @@ public abstract class GenericFileReader {
 		return null;
 	}
 	
+	/**
+	 * Returns the reader for the file which reads only the given columns.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param filePath
+	 * @param readEmptyRow
+	 * @param columns zero based column indexes
+	 * @return  
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws XMLStreamException
+	 */
+	public static GenericFileReader getReader(String filePath, boolean readEmptyRow, int[] columns) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException{
+		GenericFileReader reader = getReader(filePath, readEmptyRow);
+		if(reader!=null){
+			reader.selectColumns(columns);
+		}
+		return reader;
+	}
+	
+	/**
+	 * Returns the reader for the file which reads only the columns having the given
+	 * names in the header row.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param filePath
+	 * @param readEmptyRow
+	 * @param columnNames header names of the columns
+	 * @return  
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws XMLStreamException
+	 */
+	public static GenericFileReader getReader(String filePath, boolean readEmptyRow, String[] columnNames) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException{
+		GenericFileReader reader = getReader(filePath, readEmptyRow);
+		if(reader!=null){
+			reader.selectColumns(columnNames);
+		}
+		return reader;
+	}
+	
 	/**
 	 * Returns false if even one of the string in the passed list contains some data(other than empty string or white spaces).
 	 * Otherwise it returns true.
@@ -122,4 +779,65 @@ public abstract class GenericFileReader {
 		}
 		return true; // current row is empty
 	}
+	
+	/**
+	 * Iterator over the rows of the selected sheets, opening the sheets one after the other.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param <T> type of the rows
+	 */
+	abstract class SheetRows<T> implements SkippableIterator<T> {
+		
+		private final int[] sheetIndexes = getSelectedSheets();
+		
+		private int nextSheet;
+		
+		private Iterator<T> rows;
+		
+		/**
+		 * Opens the iterator over the rows of one sheet.
+		 * 
+		 * @param sheetIndex zero based sheet index
+		 * @return the iterator
+		 */
+		abstract Iterator<T> openSheet(int sheetIndex);
+		
+		public boolean hasNext() {
+			while (rows == null || !rows.hasNext()) {
+				rows = null; // never asked again once exhausted
+				if (nextSheet == sheetIndexes.length) {
+					return false;
+				}
+				currentSheet = sheetIndexes[nextSheet++];
+				rows = openSheet(currentSheet);
+			}
+			return true;
+		}
+		
+		public T next() {
+			return rows.next();
+		}
+		
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+		
+		public long skipRows(long n) {
+			long skipped = 0;
+			while (skipped < n) {
+				if (rows == null) {
+					if (nextSheet == sheetIndexes.length) {
+						break;
+					}
+					currentSheet = sheetIndexes[nextSheet++];
+					rows = openSheet(currentSheet);
+				}
+				skipped += GenericFileReader.skipRows(rows, n - skipped);
+				if (skipped < n) {
+					rows = null; // sheet exhausted
+				}
+			}
+			return skipped;
+		}
+	}
 }
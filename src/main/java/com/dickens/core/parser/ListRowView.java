@@ -0,0 +1,44 @@
+package com.dickens.core.parser;
+
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * {@link RowView} over a row of the String iterator, used by the readers having
+ * no buffers of their own to expose, and for the rows of the owned mode.
+ *
+ * @author Dickens Prabhu
+ */
+final class ListRowView implements RowView {
+
+	private List<String> row;
+
+	/**
+	 * @param row the row, may be replaced with {@link #set(List)}
+	 */
+	ListRowView(List<String> row) {
+		this.row = row;
+	}
+
+	/**
+	 * @param row the row to view
+	 * @return this view
+	 */
+	ListRowView set(List<String> row) {
+		this.row = row;
+		return this;
+	}
+
+	public int size() {
+		return row.size();
+	}
+
+	public CharSequence getCell(int column) {
+		String cell = column >= 0 && column < row.size() ? row.get(column) : null;
+		return cell != null ? cell : "";
+	}
+
+	public List<String> materialize() {
+		return new ArrayList<String>(row);
+	}
+}
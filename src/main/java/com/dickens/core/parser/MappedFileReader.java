@@ -0,0 +1,113 @@
+package com.dickens.core.parser;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CoderResult;
+import java.nio.charset.CodingErrorAction;
+
+/**
+ * Reader over a byte range of a file which decodes directly from memory mapped
+ * windows of the file, without copying the bytes through an InputStream.
+ *
+ * The channel is not closed by this reader, it is owned by the caller.
+ */
+class MappedFileReader extends Reader {
+
+	/** Size of one mapped window. */
+	public static final long DEFAULT_WINDOW_SIZE = 64L * 1024 * 1024;
+
+	private final FileChannel channel;
+
+	private final long end;
+
+	private final long windowSize;
+
+	private final CharsetDecoder decoder;
+
+	/** Current window and its position in the file. */
+	private MappedByteBuffer window;
+	private long windowStart;
+
+	private boolean finished;
+
+	/**
+	 * Creates a reader over the bytes [start, end) of the file.
+	 *
+	 * @param channel the file channel
+	 * @param start first byte to read
+	 * @param end end of the range (exclusive)
+	 * @param charset charset of the file
+	 */
+	MappedFileReader(FileChannel channel, long start, long end, Charset charset) {
+		this(channel, start, end, charset, DEFAULT_WINDOW_SIZE);
+	}
+
+	/**
+	 * Creates a reader over the bytes [start, end) of the file.
+	 *
+	 * @param channel the file channel
+	 * @param start first byte to read
+	 * @param end end of the range (exclusive)
+	 * @param charset charset of the file
+	 * @param windowSize maximum number of bytes mapped at once
+	 */
+	MappedFileReader(FileChannel channel, long start, long end, Charset charset, long windowSize) {
+		this.channel = channel;
+		this.end = end;
+		this.windowSize = windowSize;
+		this.windowStart = start;
+		this.decoder = charset.newDecoder()
+				.onMalformedInput(CodingErrorAction.REPLACE)
+				.onUnmappableCharacter(CodingErrorAction.REPLACE);
+	}
+
+	@Override
+	public int read(char[] cbuf, int off, int len) throws IOException {
+		if (finished) {
+			return -1;
+		}
+		if (len == 0) {
+			return 0;
+		}
+		CharBuffer out = CharBuffer.wrap(cbuf, off, len);
+		while (out.position() == off) {
+			if (window == null) {
+				mapWindow(windowStart);
+			}
+			boolean lastWindow = windowStart + window.limit() >= end;
+			CoderResult result = decoder.decode(window, out, lastWindow);
+			if (result.isError()) {
+				result.throwException();
+			}
+			if (result.isOverflow()) {
+				break;
+			}
+			if (lastWindow) {
+				decoder.flush(out);
+				finished = true;
+				break;
+			}
+			// an incomplete character may be left at the end of the window, map again from there
+			mapWindow(windowStart + window.position());
+		}
+		int n = out.position() - off;
+		return n == 0 && finished ? -1 : n;
+	}
+
+	@Override
+	public void close() {
+		window = null;
+		finished = true;
+	}
+
+	private void mapWindow(long position) throws IOException {
+		windowStart = position;
+		window = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(windowSize, end - position));
+	}
+
+}
@@ -0,0 +1,78 @@
+package com.dickens.core.parser;
+
+import java.io.File;
+
+/**
+ * Position where the next page of a file starts, handed to the caller as an opaque
+ * token by {@link RowPage#getCursor()}.
+ *
+ * The token holds the row number and, for csv files, the byte offset of the record
+ * to resume from; the size and modification time of the file tell whether the offset
+ * is still valid. Excel sheets are compressed streams which cannot be entered in the
+ * middle, their pages resume by row number.
+ *
+ * @author Dickens Prabhu
+ */
+final class PageCursor {
+
+	private static final char SEPARATOR = '_';
+	private static final int RADIX = 36;
+
+	/** Number of the first row of the page, counting the rows returned by the reader. */
+	final long rowNumber;
+
+	/** Byte offset of the first row of the page, -1 if not known. */
+	final long offset;
+
+	private final long fileSize;
+	private final long lastModified;
+
+	PageCursor(long rowNumber, long offset, File file) {
+		this(rowNumber, offset, file.length(), file.lastModified());
+	}
+
+	private PageCursor(long rowNumber, long offset, long fileSize, long lastModified) {
+		this.rowNumber = rowNumber;
+		this.offset = offset;
+		this.fileSize = fileSize;
+		this.lastModified = lastModified;
+	}
+
+	/**
+	 * @param file a file
+	 * @return true if the offset can be used on the file: it is known and the file did not change
+	 */
+	boolean hasOffset(File file) {
+		return offset >= 0 && file.length() == fileSize && file.lastModified() == lastModified;
+	}
+
+	/**
+	 * Parses a token.
+	 *
+	 * @param token the token from {@link #toString()}
+	 * @return the cursor
+	 * @throws IllegalArgumentException if the token is not a cursor
+	 */
+	static PageCursor parse(String token) {
+		String[] parts = token.split(String.valueOf(SEPARATOR));
+		if (parts.length != 4) {
+			throw new IllegalArgumentException("Invalid cursor: " + token);
+		}
+		try {
+			PageCursor cursor = new PageCursor(Long.parseLong(parts[0], RADIX), Long.parseLong(parts[1], RADIX),
+					Long.parseLong(parts[2], RADIX), Long.parseLong(parts[3], RADIX));
+			if (cursor.rowNumber < 0) {
+				throw new IllegalArgumentException("Invalid cursor: " + token);
+			}
+			return cursor;
+		} catch (NumberFormatException e) {
+			throw new IllegalArgumentException("Invalid cursor: " + token, e);
+		}
+	}
+
+	@Override
+	public String toString() {
+		return Long.toString(rowNumber, RADIX) + SEPARATOR + Long.toString(offset, RADIX) + SEPARATOR
+				+ Long.toString(fileSize, RADIX) + SEPARATOR + Long.toString(lastModified, RADIX);
+	}
+}
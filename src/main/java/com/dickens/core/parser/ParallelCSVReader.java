@@ -0,0 +1,552 @@
+package com.dickens.core.parser;
+
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Spliterator;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.function.Consumer;
+import java.util.logging.Logger;
+
+/**
+ * Multi threaded reader for large csv files.
+ *
+ * The file is split into byte ranges which are parsed in parallel on a fork join pool.
+ * Range boundaries are moved to record boundaries in two steps:
+ * 1) every chunk (starting just after a line feed) is scanned in parallel by a
+ *    {@link CSVRecordScanner} twice, once assuming it starts outside quotes and once
+ *    assuming it starts inside a quoted field, recording the first line break outside
+ *    quotes and the quote state at the end;
+ * 2) the quote state is then chained from the first chunk to pick the right result of
+ *    every chunk, so a line break inside a quoted field never splits a record.
+ *
+ * The dialect (separator, quote, escape, strict quotes) is taken from a {@link CSVParser}
+ * and every range is tokenized by a {@link CSVTokenizer}, so the rows are the same as the
+ * rows returned by CSVReader. The separator, quote and escape characters must be ASCII
+ * and the charset must be ASCII compatible (UTF-8, ISO-8859-x, ...). Files using a lone
+ * carriage return as line break are read by a single thread.
+ *
+ ***********************************************************
+ ################## Recommended Use: ########################
+ #  ParallelCSVReader reader = new ParallelCSVReader(filePath); #
+ #  // rows in file order, with their row number              #
+ #  reader.readOrdered(handler);                               #
+ #  // rows in any order, from the worker threads              #
+ #  reader.readUnordered(handler);                             #
+ #  reader.close();                                            #
+ ############################################################
+ *
+ */
+public class ParallelCSVReader extends GenericFileReader {
+
+	private static Logger logger = Logger.getLogger(ParallelCSVReader.class.getName());
+
+	/** Smallest chunk a file is split into. */
+	public static final long MIN_CHUNK_SIZE = 1024L * 1024;
+
+	/** Largest chunk a file is split into. */
+	public static final long MAX_CHUNK_SIZE = 256L * 1024 * 1024;
+
+	/** Largest chunk a file is split into for the ordered iterator, its rows are held until returned. */
+	public static final long MAX_ORDERED_CHUNK_SIZE = 4L * 1024 * 1024;
+
+	/** Bytes of the ranges the ordered iterator parses ahead of the range being returned. */
+	public static final long ORDERED_PARSE_AHEAD = 64L * 1024 * 1024;
+
+	private final RandomAccessFile file;
+
+	private final FileChannel channel;
+
+	private final long size;
+
+	private final CSVParser dialect;
+
+	private final Charset charset;
+
+	private final ForkJoinPool pool;
+
+	/** Start offsets of the record ranges followed by the file size, computed once. */
+	private long[] ranges;
+
+	/** Record ranges of at most MAX_ORDERED_CHUNK_SIZE bytes, computed once. */
+	private long[] orderedRanges;
+
+	/**
+	 * Constructs a reader using the default csv dialect and charset on the common pool.
+	 *
+	 * @param filePath the file path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public ParallelCSVReader(String filePath) throws IOException {
+		this(filePath, new CSVParser());
+	}
+
+	/**
+	 * Constructs a reader using the given dialect and the default charset on the common pool.
+	 *
+	 * @param filePath the file path
+	 * @param dialect parser holding the separator, quote and escape settings
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public ParallelCSVReader(String filePath, CSVParser dialect) throws IOException {
+		this(filePath, dialect, Charset.defaultCharset(), ForkJoinPool.commonPool());
+	}
+
+	/**
+	 * Constructs a reader.
+	 *
+	 * @param filePath the file path
+	 * @param dialect parser holding the separator, quote and escape settings
+	 * @param charset charset of the file, must be ASCII compatible
+	 * @param pool the pool parsing the chunks
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public ParallelCSVReader(String filePath, CSVParser dialect, Charset charset, ForkJoinPool pool) throws IOException {
+		File csvFile = new File(filePath);
+		if (!csvFile.exists()) {
+			logger.info("Not found or not a file: " + csvFile.getPath());
+			throw new FileNotFoundException("Not found or not a file: " + csvFile.getPath());
+		}
+		if (!CSVRecordScanner.supports(dialect, charset)) {
+			throw new UnsupportedOperationException("Parallel parsing needs ASCII separator, quote and escape characters in an ASCII compatible charset");
+		}
+		this.dialect = dialect;
+		this.charset = charset;
+		this.pool = pool;
+		this.file = new RandomAccessFile(csvFile, "r");
+		this.channel = file.getChannel();
+		this.size = channel.size();
+	}
+
+	/**
+	 * Returns an iterator over the rows in file order.
+	 * Chunks are parsed ahead on the pool while the rows of the current chunk are returned.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<List<String>> getIterator() {
+		return new OrderedIterator();
+	}
+
+	/**
+	 * Returns a spliterator over the record ranges of the file, a parallel stream
+	 * parses the ranges on different threads.
+	 *
+	 * @return the spliterator
+	 */
+	@Override
+	Spliterator<List<String>> getRowSpliterator() {
+		try {
+			resolveProjection();
+			long[] recordRanges = getRanges();
+			return new RangeSpliterator(recordRanges, 0, recordRanges.length - 1, null);
+		} catch (IOException e) {
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Parses the file in parallel and passes the rows to the handler in file order,
+	 * on the calling thread, with their row number.
+	 *
+	 * @param handler the row handler
+	 * @throws Exception thrown by the handler or while parsing
+	 */
+	public void readOrdered(CSVRowHandler handler) throws Exception {
+		Iterator<List<String>> iterator = getIterator();
+		long rowNumber = 0;
+		while (iterator.hasNext()) {
+			handler.handleRow(rowNumber++, iterator.next());
+		}
+	}
+
+	/**
+	 * Parses the file in parallel and passes the rows to the handler as soon as they are
+	 * parsed, from the worker threads. The handler must be thread safe. The row number is
+	 * always -1 and the row list is reused by the worker after the call.
+	 * When a range fails or the calling thread is interrupted, the other workers stop at
+	 * their next row before this method returns.
+	 *
+	 * @param handler the row handler
+	 * @throws Exception thrown by the handler or while parsing
+	 */
+	public void readUnordered(final CSVRowHandler handler) throws Exception {
+		resolveProjection();
+		long[] recordRanges = getRanges();
+		final ParallelParts parts = new ParallelParts(pool);
+		for (int i = 0; i < recordRanges.length - 1; i++) {
+			final long start = recordRanges[i];
+			final long end = recordRanges[i + 1];
+			parts.submit(new Callable<Void>() {
+				public Void call() throws Exception {
+					CSVTokenizer tokenizer = new CSVTokenizer(new MappedFileReader(channel, start, end, charset), dialect);
+					try {
+						List<String> row = new ArrayList<String>();
+						while (!parts.cancelled.get() && tokenizer.readRecord()) {
+							if (Thread.interrupted()) {
+								throw new InterruptedException("Reading of range " + start + "-" + end + " interrupted");
+							}
+							copyFields(tokenizer, row);
+							handler.handleRow(-1, row);
+						}
+					} finally {
+						tokenizer.close();
+					}
+					return null;
+				}
+			});
+		}
+		parts.join();
+	}
+
+	/**
+	 * Closes the file.
+	 *
+	 * @throws IOException if the close fails
+	 */
+	@Override
+	public void close() throws IOException {
+		channel.close();
+		file.close();
+	}
+
+	/**
+	 * Returns the start offsets of the record ranges followed by the file size.
+	 * Every range starts at a record boundary and holds complete records.
+	 *
+	 * @return the range offsets
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private synchronized long[] getRanges() throws IOException {
+		if (ranges == null) {
+			ranges = splitRanges(MAX_CHUNK_SIZE);
+		}
+		return ranges;
+	}
+
+	/**
+	 * Returns the record ranges of the ordered iterator, at most MAX_ORDERED_CHUNK_SIZE
+	 * bytes long so the rows parsed ahead stay within ORDERED_PARSE_AHEAD.
+	 *
+	 * @return the range offsets
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private synchronized long[] getOrderedRanges() throws IOException {
+		if (orderedRanges == null) {
+			orderedRanges = splitRanges(MAX_ORDERED_CHUNK_SIZE);
+		}
+		return orderedRanges;
+	}
+
+	/**
+	 * Splits the file into record ranges.
+	 *
+	 * @param maxChunkSize largest chunk size
+	 * @return the start offsets of the ranges followed by the file size
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private long[] splitRanges(long maxChunkSize) throws IOException {
+		long chunkSize = Math.min(maxChunkSize, Math.max(MIN_CHUNK_SIZE, size / (pool.getParallelism() * 4L)));
+		List<Long> chunkStarts = new ArrayList<Long>();
+		long start = 0;
+		while (start < size) {
+			chunkStarts.add(Long.valueOf(start));
+			start = nextLineStart(start + chunkSize);
+		}
+		chunkStarts.add(Long.valueOf(size));
+
+		// scan all chunks in parallel for both quote states
+		List<ForkJoinTask<int[]>> scans = new ArrayList<ForkJoinTask<int[]>>();
+		for (int i = 0; i < chunkStarts.size() - 1; i++) {
+			final long chunkStart = chunkStarts.get(i).longValue();
+			final long chunkEnd = chunkStarts.get(i + 1).longValue();
+			scans.add(pool.submit(new Callable<int[]>() {
+				public int[] call() throws IOException {
+					return scanChunk(chunkStart, chunkEnd);
+				}
+			}));
+		}
+
+		// chain the quote state from the first chunk
+		List<Long> recordStarts = new ArrayList<Long>();
+		boolean inQuotes = false;
+		for (int i = 0; i < scans.size(); i++) {
+			int[] scan = scans.get(i).join();
+			long chunkStart = chunkStarts.get(i).longValue();
+			long chunkEnd = chunkStarts.get(i + 1).longValue();
+			int boundary = inQuotes ? scan[2] : scan[0];
+			if (boundary >= 0 && chunkStart + boundary < chunkEnd) {
+				recordStarts.add(Long.valueOf(chunkStart + boundary));
+			}
+			inQuotes = (inQuotes ? scan[3] : scan[1]) == 1;
+		}
+		long[] recordRanges = new long[recordStarts.size() + 1];
+		for (int i = 0; i < recordStarts.size(); i++) {
+			recordRanges[i] = recordStarts.get(i).longValue();
+		}
+		recordRanges[recordStarts.size()] = size;
+		logger.fine("Split " + size + " bytes into " + recordStarts.size() + " ranges");
+		return recordRanges;
+	}
+
+	/**
+	 * Returns the offset just after the first line feed at or after the given offset.
+	 *
+	 * @param from the offset
+	 * @return the offset, the file size if there is no line feed
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private long nextLineStart(long from) throws IOException {
+		ByteBuffer buffer = ByteBuffer.allocate(8192);
+		long position = from;
+		while (position < size) {
+			buffer.clear();
+			int n = channel.read(buffer, position);
+			if (n <= 0) {
+				break;
+			}
+			for (int i = 0; i < n; i++) {
+				if (buffer.get(i) == '\n') {
+					return position + i + 1;
+				}
+			}
+			position += n;
+		}
+		return size;
+	}
+
+	/**
+	 * Scans one chunk assuming it starts outside quotes and assuming it starts inside a
+	 * quoted field.
+	 *
+	 * @param start start of the chunk, just after a line feed
+	 * @param end end of the chunk, just after a line feed or the file size
+	 * @return first record boundary (-1 if none) and quote state at the end (1 = in quotes) for both cases
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private int[] scanChunk(long start, long end) throws IOException {
+		if (end - start > Integer.MAX_VALUE) {
+			throw new IOException("Line longer than 2GB at offset " + start);
+		}
+		MappedByteBuffer chunk = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+		int limit = chunk.limit();
+		CSVRecordScanner scanner = new CSVRecordScanner(dialect);
+		int[] result = new int[4];
+
+		scanner.reset(false);
+		scanner.countBoundaries(chunk, 0, limit);
+		result[0] = 0;
+		result[1] = scanner.isInQuotes() ? 1 : 0;
+
+		scanner.reset(true);
+		int boundary = scanner.findBoundary(chunk, 0, limit);
+		if (boundary >= 0) {
+			scanner.countBoundaries(chunk, boundary, limit);
+		}
+		result[2] = boundary;
+		result[3] = scanner.isInQuotes() ? 1 : 0;
+		return result;
+	}
+
+	/**
+	 * Parses the records of one range into owned rows.
+	 *
+	 * @param start start of the range
+	 * @param end end of the range
+	 * @return the task
+	 */
+	private Callable<List<List<String>>> parseRange(final long start, final long end) {
+		return new Callable<List<List<String>>>() {
+			public List<List<String>> call() throws IOException {
+				CSVTokenizer tokenizer = new CSVTokenizer(new MappedFileReader(channel, start, end, charset), dialect);
+				List<List<String>> rows = new ArrayList<List<String>>();
+				while (tokenizer.readRecord()) {
+					List<String> row = new ArrayList<String>(tokenizer.getFieldCount());
+					copyFields(tokenizer, row);
+					rows.add(row);
+				}
+				return rows;
+			}
+		};
+	}
+
+	/**
+	 * Resolves the selected column names against the first record of the file
+	 * before the ranges are handed to the workers.
+	 *
+	 * @throws IOException if the header row can not be read
+	 */
+	private void resolveProjection() throws IOException {
+		if (projection == null || projection.isResolved()) {
+			return;
+		}
+		CSVTokenizer tokenizer = new CSVTokenizer(new MappedFileReader(channel, 0, size, charset), dialect);
+		List<String> header = new ArrayList<String>();
+		if (tokenizer.readRecord()) {
+			for (int f = 0; f < tokenizer.getFieldCount(); f++) {
+				header.add(tokenizer.getField(f));
+			}
+		}
+		projection.resolve(header);
+	}
+
+	/**
+	 * Copies the fields of the current record of the tokenizer, or only the selected
+	 * ones when columns are selected, to the row.
+	 *
+	 * @param tokenizer the tokenizer positioned on a record
+	 * @param row the row
+	 */
+	private void copyFields(CSVTokenizer tokenizer, List<String> row) {
+		if (projection != null) {
+			projection.copyFields(tokenizer, row);
+			return;
+		}
+		row.clear();
+		for (int f = 0; f < tokenizer.getFieldCount(); f++) {
+			row.add(tokenizer.getField(f));
+		}
+	}
+
+	/**
+	 * Returns the rows of a run of record ranges. Splitting hands the first half of the
+	 * ranges, with the range being parsed if any, to a new spliterator.
+	 */
+	private class RangeSpliterator implements Spliterator<List<String>> {
+
+		private final long[] recordRanges;
+
+		/** Next range to parse and end (exclusive) of the ranges of this spliterator. */
+		private int next;
+		private final int end;
+
+		private CSVTokenizer tokenizer;
+
+		RangeSpliterator(long[] recordRanges, int next, int end, CSVTokenizer tokenizer) {
+			this.recordRanges = recordRanges;
+			this.next = next;
+			this.end = end;
+			this.tokenizer = tokenizer;
+		}
+
+		public boolean tryAdvance(Consumer<? super List<String>> action) {
+			try {
+				while (tokenizer == null || !tokenizer.readRecord()) {
+					if (next == end) {
+						tokenizer = null;
+						return false;
+					}
+					tokenizer = new CSVTokenizer(new MappedFileReader(channel, recordRanges[next], recordRanges[next + 1], charset), dialect);
+					next++;
+				}
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			List<String> row = new ArrayList<String>(tokenizer.getFieldCount());
+			copyFields(tokenizer, row);
+			action.accept(row);
+			return true;
+		}
+
+		public Spliterator<List<String>> trySplit() {
+			int remaining = end - next;
+			if (remaining == 0 || tokenizer == null && remaining == 1) {
+				return null;
+			}
+			int middle = next + remaining / 2;
+			Spliterator<List<String>> prefix = new RangeSpliterator(recordRanges, next, middle, tokenizer);
+			tokenizer = null;
+			next = middle;
+			return prefix;
+		}
+
+		public long estimateSize() {
+			return Long.MAX_VALUE;
+		}
+
+		public int characteristics() {
+			return ORDERED | NONNULL;
+		}
+	}
+
+	/**
+	 * Returns the rows in file order. Up to twice the pool parallelism ranges are
+	 * parsed ahead of the range being returned, as long as they hold no more than
+	 * ORDERED_PARSE_AHEAD bytes together; the parsed rows are held until returned.
+	 */
+	private class OrderedIterator implements Iterator<List<String>> {
+
+		private final long[] recordRanges;
+
+		private int nextRange;
+
+		/** First range in flight and the bytes of the ranges in flight. */
+		private int firstInFlight;
+		private long inFlightBytes;
+
+		private final Deque<ForkJoinTask<List<List<String>>>> inFlight = new ArrayDeque<ForkJoinTask<List<List<String>>>>();
+
+		private Iterator<List<String>> rows;
+
+		private List<String> currentRow;
+
+		OrderedIterator() {
+			try {
+				resolveProjection();
+				this.recordRanges = getOrderedRanges();
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			}
+			submitRanges();
+		}
+
+		public boolean hasNext() {
+			while (rows == null || !rows.hasNext()) {
+				ForkJoinTask<List<List<String>>> task = inFlight.poll();
+				if (task == null) {
+					currentRow = null;
+					return false;
+				}
+				rows = task.join().iterator();
+				inFlightBytes -= rangeSize(firstInFlight++);
+				submitRanges();
+			}
+			currentRow = rows.next();
+			return true;
+		}
+
+		public List<String> next() {
+			return currentRow;
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		private void submitRanges() {
+			while (inFlight.size() < pool.getParallelism() * 2 && nextRange < recordRanges.length - 1
+					&& (inFlight.isEmpty() || inFlightBytes + rangeSize(nextRange) <= ORDERED_PARSE_AHEAD)) {
+				inFlight.add(pool.submit(parseRange(recordRanges[nextRange], recordRanges[nextRange + 1])));
+				inFlightBytes += rangeSize(nextRange);
+				nextRange++;
+			}
+		}
+
+		private long rangeSize(int range) {
+			return recordRanges[range + 1] - recordRanges[range];
+		}
+	}
+}
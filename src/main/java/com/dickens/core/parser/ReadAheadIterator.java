@@ -0,0 +1,206 @@
+package com.dickens.core.parser;
+
+import java.io.Closeable;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * Iterator reading the rows ahead on a dedicated parser thread, returned by
+ * {@link GenericFileReader#getReadAheadIterator(int, int)}.
+ *
+ * The parser thread copies the rows into batches and publishes them in a bounded
+ * single producer single consumer ring buffer; the caller drains the ring. Neither
+ * side takes a lock, a full ring makes the parser wait for the caller (back pressure)
+ * and an empty ring makes the caller wait for the parser. Parsing of the next rows
+ * thus overlaps with the processing of the current ones.
+ *
+ * Every row is a new list the caller can keep. An exception of the parser is thrown
+ * by hasNext() once the rows read before it are drained. Call {@link #close()} when
+ * the rows are not read to the end, it stops the parser thread; close the iterator
+ * before the reader.
+ *
+ ***********************************************************
+ ################## Recommended Use: ########################
+ #  ReadAheadIterator iterator = reader.getReadAheadIterator(512, 8); #
+ #  try{                                                    #
+ #	while(iterator.hasNext()){                              #
+ #		List<String> row = iterator.next();                 #
+ #		// validate and write the row here                  #
+ #	}                                                       #
+ #  }finally{                                               #
+ #	iterator.close();                                       #
+ #  }                                                       #
+ # reader.close();                                          #
+ ############################################################
+ *
+ * @author Dickens Prabhu
+ */
+public final class ReadAheadIterator implements Iterator<List<String>>, Closeable {
+
+	/** Longest time a side waits before checking the ring again. */
+	private static final long MAX_WAIT_NANOS = TimeUnit.MICROSECONDS.toNanos(200);
+
+	private final AtomicReferenceArray<List<List<String>>> ring;
+
+	/** Number of batches taken by the caller and published by the parser. */
+	private final AtomicLong head = new AtomicLong();
+	private final AtomicLong tail = new AtomicLong();
+
+	private final Thread parser;
+	private volatile Thread consumer;
+
+	/** Set by the parser once the last batch is published. */
+	private volatile boolean done;
+	private volatile Throwable failure;
+	private volatile boolean closed;
+
+	private List<List<String>> batch;
+	private int position;
+
+	/**
+	 * @param rows the rows to read ahead, read by the parser thread only
+	 * @param batchSize number of rows of a batch
+	 * @param depth number of batches of the ring
+	 * @param name name of the parser thread
+	 */
+	ReadAheadIterator(final Iterator<List<String>> rows, final int batchSize, int depth, String name) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		if (depth <= 0) {
+			throw new IllegalArgumentException("Invalid depth: " + depth);
+		}
+		this.ring = new AtomicReferenceArray<List<List<String>>>(depth);
+		this.parser = new Thread(new Runnable() {
+			public void run() {
+				parse(rows, batchSize);
+			}
+		}, name);
+		this.parser.setDaemon(true);
+		this.parser.start();
+	}
+
+	public boolean hasNext() {
+		if (batch != null && position < batch.size()) {
+			return true;
+		}
+		batch = take();
+		position = 0;
+		return batch != null;
+	}
+
+	public List<String> next() {
+		if (!hasNext()) {
+			throw new NoSuchElementException();
+		}
+		return batch.get(position++);
+	}
+
+	public void remove() {
+		throw new UnsupportedOperationException();
+	}
+
+	/**
+	 * Stops the parser thread and waits for it to end. The rows not read yet are dropped.
+	 */
+	public void close() {
+		closed = true;
+		LockSupport.unpark(parser);
+		boolean interrupted = false;
+		while (parser.isAlive()) {
+			try {
+				parser.join();
+			} catch (InterruptedException e) {
+				interrupted = true;
+			}
+		}
+		if (interrupted) {
+			Thread.currentThread().interrupt();
+		}
+		batch = null;
+	}
+
+	/**
+	 * Runs on the parser thread.
+	 */
+	private void parse(Iterator<List<String>> rows, int batchSize) {
+		try {
+			List<List<String>> next = new ArrayList<List<String>>(batchSize);
+			while (!closed && rows.hasNext()) {
+				next.add(new ArrayList<String>(rows.next()));
+				if (next.size() == batchSize) {
+					if (!publish(next)) {
+						return;
+					}
+					next = new ArrayList<List<String>>(batchSize);
+				}
+			}
+			if (!next.isEmpty()) {
+				publish(next);
+			}
+		} catch (Throwable t) {
+			failure = t;
+		} finally {
+			done = true;
+			LockSupport.unpark(consumer);
+		}
+	}
+
+	/**
+	 * Waits for a free slot and publishes the batch.
+	 *
+	 * @return false if the iterator was closed while waiting
+	 */
+	private boolean publish(List<List<String>> next) {
+		long slot = tail.get();
+		while (slot - head.get() == ring.length()) {
+			if (closed) {
+				return false;
+			}
+			LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+		}
+		ring.lazySet((int) (slot % ring.length()), next);
+		tail.set(slot + 1);
+		LockSupport.unpark(consumer);
+		return !closed;
+	}
+
+	/**
+	 * Waits for the next batch.
+	 *
+	 * @return the batch, null once all the rows are read
+	 */
+	private List<List<String>> take() {
+		if (closed) {
+			return null;
+		}
+		long slot = head.get();
+		consumer = Thread.currentThread();
+		while (slot == tail.get()) {
+			if (done && slot == tail.get()) {
+				if (failure != null) {
+					Throwable t = failure;
+					failure = null;
+					throw t instanceof RuntimeException ? (RuntimeException) t : new RuntimeException(t);
+				}
+				return null;
+			}
+			if (closed) {
+				return null;
+			}
+			LockSupport.parkNanos(this, MAX_WAIT_NANOS);
+		}
+		int index = (int) (slot % ring.length());
+		List<List<String>> next = ring.get(index);
+		ring.set(index, null);
+		head.set(slot + 1);
+		LockSupport.unpark(parser);
+		return next;
+	}
+}
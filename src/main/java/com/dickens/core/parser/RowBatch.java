@@ -0,0 +1,411 @@
+package com.dickens.core.parser;
+
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Columnar block of rows returned by {@link GenericFileReader#readBatch(int)}.
+ *
+ * Each column keeps its numbers in a double array and its blank cells in a null
+ * bitmap (bit r of word r / 64 is set when the cell of row r is blank). The text of
+ * every text cell of the batch is appended to one shared char buffer, each column
+ * keeps the start and end offsets of its cells in that buffer. Numbers are not
+ * formatted to text unless {@link #getString(int, int)} is called.
+ *
+ * A reader returns the same batch on every call, its content is replaced by the
+ * next call to readBatch(); the arrays are only grown, never reallocated for a batch
+ * of the same shape. Arrays returned by the getters are only valid for the current
+ * batch and hold values for rows 0 to size() - 1.
+ *
+ ***********************************************************
+ ################## Recommended Use: ########################
+ #  RowBatch batch = reader.readBatch(4096);                #
+ #  while(batch.size() > 0){                                #
+ #	double[] prices = batch.getNumbers(2);                  #
+ #	for(int r = 0; r < batch.size(); r++){                  #
+ #		total += prices[r]; // 0 for blank cells            #
+ #	}                                                       #
+ #	batch = reader.readBatch(4096);                         #
+ #  }                                                       #
+ # reader.close();                                          #
+ ############################################################
+ *
+ * @author Dickens Prabhu
+ */
+public final class RowBatch {
+
+	private int size;
+	private int capacity;
+	private int columnCount;
+
+	/** Kind of each cell (CellRow constants), by column then row. */
+	private byte[][] types = new byte[0][];
+	private double[][] numbers = new double[0][];
+	private int[][] styles = new int[0][];
+	private long[][] nullBits = new long[0][];
+	private long[][] dateBits = new long[0][];
+
+	/** Offsets of the text of each cell in chars, -1 for the cells without text. */
+	private int[][] textStarts = new int[0][];
+	private int[][] textEnds = new int[0][];
+	private char[] chars = new char[1024];
+	private int charCount;
+
+	/** Formats the numbers without raw text, null if the rows had no formatter. */
+	private CellRow.NumberFormatter formatter;
+	private boolean date1904;
+
+	private CharBuffer wrappedChars;
+
+	RowBatch() {
+	}
+
+	/**
+	 * Empties the batch.
+	 *
+	 * @param maxRows number of rows the batch must be able to hold
+	 */
+	void clear(int maxRows) {
+		if (maxRows > capacity) {
+			capacity = maxRows;
+			for (int c = 0; c < types.length; c++) {
+				if (types[c] != null) {
+					allocateColumn(c);
+				}
+			}
+		} else {
+			// only the rows of the last batch have been written
+			int words = words(size);
+			for (int c = 0; c < columnCount; c++) {
+				Arrays.fill(types[c], 0, size, CellRow.BLANK);
+				Arrays.fill(numbers[c], 0, size, 0);
+				Arrays.fill(textStarts[c], 0, size, -1);
+				Arrays.fill(nullBits[c], 0, words, -1L);
+				Arrays.fill(dateBits[c], 0, words, 0L);
+			}
+		}
+		size = 0;
+		columnCount = 0;
+		charCount = 0;
+	}
+
+	/**
+	 * Adds a row at the end of the batch, the batch must not be full.
+	 *
+	 * @param row the row, read before the next call to hasNext() of its iterator
+	 */
+	void addRow(RowView row) {
+		int rowIndex = size++;
+		ensureColumns(row.size());
+		if (row instanceof CellRow) {
+			((CellRow) row).copyTo(this, rowIndex);
+			return;
+		}
+		for (int c = 0; c < row.size(); c++) {
+			CharSequence cell = row.getCell(c);
+			if (cell.length() > 0) {
+				setText(c, rowIndex, cell, CellRow.TEXT);
+			}
+		}
+	}
+
+	void setFormatter(CellRow.NumberFormatter formatter, boolean date1904) {
+		this.formatter = formatter;
+		this.date1904 = date1904;
+	}
+
+	void setNumber(int column, int row, double value, int style, boolean date) {
+		set(column, row, CellRow.NUMBER);
+		numbers[column][row] = value;
+		styles[column][row] = style;
+		if (date) {
+			dateBits[column][row >>> 6] |= 1L << row;
+		}
+	}
+
+	/**
+	 * Sets an unformatted number, its raw text is kept as the text of the cell.
+	 */
+	void setNumber(int column, int row, double value, char[] raw, int start, int end) {
+		set(column, row, CellRow.NUMBER);
+		numbers[column][row] = value;
+		appendText(column, row, raw, start, end);
+	}
+
+	void setBoolean(int column, int row, boolean value) {
+		set(column, row, CellRow.BOOLEAN);
+		numbers[column][row] = value ? 1 : 0;
+	}
+
+	void setText(int column, int row, CharSequence text, byte type) {
+		set(column, row, type);
+		int length = text.length();
+		ensureChars(length);
+		textStarts[column][row] = charCount;
+		if (text instanceof String) {
+			((String) text).getChars(0, length, chars, charCount);
+			charCount += length;
+		} else {
+			for (int i = 0; i < length; i++) {
+				chars[charCount++] = text.charAt(i);
+			}
+		}
+		textEnds[column][row] = charCount;
+	}
+
+	/**
+	 * @return number of rows of the batch, 0 once the reader has no more rows
+	 */
+	public int size() {
+		return size;
+	}
+
+	/**
+	 * @return number of columns of the longest row of the batch
+	 */
+	public int getColumnCount() {
+		return columnCount;
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return true if the cell is blank or the row has no such column
+	 */
+	public boolean isNull(int column, int row) {
+		return typeOf(column, row) == CellRow.BLANK;
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return true if the cell holds a number (dates included)
+	 */
+	public boolean isNumeric(int column, int row) {
+		return typeOf(column, row) == CellRow.NUMBER;
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return true if the cell holds a number with a date format
+	 */
+	public boolean isDate(int column, int row) {
+		return typeOf(column, row) == CellRow.NUMBER && (dateBits[column][row >>> 6] & 1L << row) != 0;
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return the numeric value, text cells are parsed
+	 * @throws NumberFormatException if a text cell is not a number
+	 */
+	public double getDouble(int column, int row) {
+		switch (typeOf(column, row)) {
+		case CellRow.NUMBER:
+		case CellRow.BOOLEAN:
+			return numbers[column][row];
+		case CellRow.TEXT:
+		case CellRow.ERROR:
+			return CellValues.parseDouble(wrappedChars(), textStarts[column][row], textEnds[column][row]);
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return the numeric value truncated to a long, text cells are parsed
+	 * @throws NumberFormatException if a text cell is not an integer
+	 */
+	public long getLong(int column, int row) {
+		switch (typeOf(column, row)) {
+		case CellRow.NUMBER:
+		case CellRow.BOOLEAN:
+			return (long) numbers[column][row];
+		case CellRow.TEXT:
+		case CellRow.ERROR:
+			return CellValues.parseLong(wrappedChars(), textStarts[column][row], textEnds[column][row]);
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return the boolean value, true for a non zero number or the text "true" (any case)
+	 */
+	public boolean getBoolean(int column, int row) {
+		switch (typeOf(column, row)) {
+		case CellRow.NUMBER:
+		case CellRow.BOOLEAN:
+			return numbers[column][row] != 0;
+		case CellRow.TEXT:
+		case CellRow.ERROR:
+			return CellValues.parseBoolean(wrappedChars(), textStarts[column][row], textEnds[column][row]);
+		default:
+			return false;
+		}
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return the date as a number of days since 1970-01-01, see {@link TypedRow#getEpochDay(int)}
+	 * @throws NumberFormatException if a text cell is not a date
+	 */
+	public long getEpochDay(int column, int row) {
+		switch (typeOf(column, row)) {
+		case CellRow.NUMBER:
+		case CellRow.BOOLEAN:
+			return CellValues.toEpochDay(numbers[column][row], date1904);
+		case CellRow.TEXT:
+		case CellRow.ERROR:
+			return CellValues.parseEpochDay(wrappedChars(), textStarts[column][row], textEnds[column][row]);
+		default:
+			return 0;
+		}
+	}
+
+	/**
+	 * @param column zero based column index
+	 * @param row zero based row index in the batch
+	 * @return the cell as returned by the String iterator of the reader
+	 */
+	public String getString(int column, int row) {
+		switch (typeOf(column, row)) {
+		case CellRow.NUMBER:
+			if (textStarts[column][row] != -1) {
+				return new String(chars, textStarts[column][row], textEnds[column][row] - textStarts[column][row]);
+			}
+			return formatter != null ? formatter.format(numbers[column][row], styles[column][row]) : Double.toString(numbers[column][row]);
+		case CellRow.BOOLEAN:
+			return numbers[column][row] != 0 ? "TRUE" : "FALSE";
+		case CellRow.TEXT:
+		case CellRow.ERROR:
+			return new String(chars, textStarts[column][row], textEnds[column][row] - textStarts[column][row]);
+		default:
+			return "";
+		}
+	}
+
+	/**
+	 * Numbers of a column: the value of numeric cells, 1 or 0 for booleans and 0 for
+	 * the other cells, text cells are not parsed.
+	 *
+	 * @param column zero based column index, below getColumnCount()
+	 * @return the values of rows 0 to size() - 1
+	 */
+	public double[] getNumbers(int column) {
+		return numbers[column];
+	}
+
+	/**
+	 * @param column zero based column index, below getColumnCount()
+	 * @return null bitmap of the column, bit r % 64 of word r / 64 is set when the cell of row r is blank
+	 */
+	public long[] getNullBits(int column) {
+		return nullBits[column];
+	}
+
+	/**
+	 * @return the buffer holding the text of the cells of the batch
+	 */
+	public char[] getChars() {
+		return chars;
+	}
+
+	/**
+	 * @param column zero based column index, below getColumnCount()
+	 * @return start of the text of each cell in {@link #getChars()}, -1 for blank and formatted numeric cells
+	 */
+	public int[] getTextStarts(int column) {
+		return textStarts[column];
+	}
+
+	/**
+	 * @param column zero based column index, below getColumnCount()
+	 * @return end (exclusive) of the text of each cell in {@link #getChars()}
+	 */
+	public int[] getTextEnds(int column) {
+		return textEnds[column];
+	}
+
+	private byte typeOf(int column, int row) {
+		return column >= 0 && column < columnCount && row >= 0 && row < size ? types[column][row] : CellRow.BLANK;
+	}
+
+	private void set(int column, int row, byte type) {
+		types[column][row] = type;
+		nullBits[column][row >>> 6] &= ~(1L << row);
+		textStarts[column][row] = -1;
+	}
+
+	private void appendText(int column, int row, char[] text, int start, int end) {
+		ensureChars(end - start);
+		System.arraycopy(text, start, chars, charCount, end - start);
+		textStarts[column][row] = charCount;
+		charCount += end - start;
+		textEnds[column][row] = charCount;
+	}
+
+	private void ensureChars(int length) {
+		if (charCount + length > chars.length) {
+			chars = Arrays.copyOf(chars, Math.max(chars.length * 2, charCount + length));
+		}
+	}
+
+	private CharSequence wrappedChars() {
+		if (wrappedChars == null || wrappedChars.array() != chars) {
+			wrappedChars = CharBuffer.wrap(chars);
+		}
+		return wrappedChars;
+	}
+
+	/**
+	 * Adds the columns of a longer row, the cells of the previous rows are blank.
+	 * Columns past columnCount are kept blank by clear().
+	 */
+	private void ensureColumns(int count) {
+		if (count <= columnCount) {
+			return;
+		}
+		if (count > types.length) {
+			int grown = Math.max(types.length * 2, count);
+			types = Arrays.copyOf(types, grown);
+			numbers = Arrays.copyOf(numbers, grown);
+			styles = Arrays.copyOf(styles, grown);
+			nullBits = Arrays.copyOf(nullBits, grown);
+			dateBits = Arrays.copyOf(dateBits, grown);
+			textStarts = Arrays.copyOf(textStarts, grown);
+			textEnds = Arrays.copyOf(textEnds, grown);
+		}
+		for (int c = columnCount; c < count; c++) {
+			if (types[c] == null) {
+				allocateColumn(c);
+			}
+		}
+		columnCount = count;
+	}
+
+	/**
+	 * Allocates the arrays of a column, all the cells blank.
+	 */
+	private void allocateColumn(int column) {
+		types[column] = new byte[capacity];
+		numbers[column] = new double[capacity];
+		styles[column] = new int[capacity];
+		nullBits[column] = new long[words(capacity)];
+		Arrays.fill(nullBits[column], -1L);
+		dateBits[column] = new long[words(capacity)];
+		textStarts[column] = new int[capacity];
+		Arrays.fill(textStarts[column], -1);
+		textEnds[column] = new int[capacity];
+	}
+
+	private static int words(int rows) {
+		return (rows + 63) >>> 6;
+	}
+}
@@ -0,0 +1,234 @@
+package com.dickens.core.parser;
+
+import java.util.concurrent.Executor;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+
+/**
+ * Publishes the rows of a reader as {@link RowBatch} objects, on demand.
+ *
+ * The publisher follows the Reactive Streams protocol: a batch is only parsed once
+ * the subscriber requested it with {@link Subscription#request(long)}, so a slow
+ * subscriber never has more than the requested batches parsed for it. Parsing runs
+ * on the given executor, never on the thread calling request(), which keeps event
+ * loop threads free. Signals to the subscriber are serialized.
+ *
+ * The publisher owns the reader: the reader is closed after the last batch, after
+ * an error and on cancel, by the thread parsing, as soon as the batch being parsed
+ * is done. A reader can only be read once, so a publisher accepts one subscriber.
+ *
+ * {@link Subscriber} and {@link Subscription} have the same methods as
+ * java.util.concurrent.Flow and org.reactivestreams, so an adapter to either API
+ * just forwards the calls.
+ *
+ * The same batch is passed to every onNext() call, its content is only valid
+ * during the call, see {@link GenericFileReader#readBatch(int)}.
+ *
+ * @author Dickens Prabhu
+ */
+public final class RowBatchPublisher {
+
+	/**
+	 * Receives the batches, see java.util.concurrent.Flow.Subscriber.
+	 */
+	public interface Subscriber {
+		void onSubscribe(Subscription subscription);
+		void onNext(RowBatch batch);
+		void onError(Throwable throwable);
+		void onComplete();
+	}
+
+	/**
+	 * Demand of a subscriber, see java.util.concurrent.Flow.Subscription.
+	 */
+	public interface Subscription {
+
+		/**
+		 * Asks for n more batches, n must be positive.
+		 */
+		void request(long n);
+
+		/**
+		 * Stops the publishing and closes the reader. No batch is passed after the one
+		 * being parsed, if any.
+		 */
+		void cancel();
+	}
+
+	private final GenericFileReader reader;
+	private final int batchSize;
+	private final Executor executor;
+	private final AtomicBoolean subscribed = new AtomicBoolean();
+
+	/**
+	 * @param reader the reader, closed by the publisher
+	 * @param batchSize maximum number of rows of a batch
+	 * @param executor runs the parsing and the signals to the subscriber
+	 */
+	public RowBatchPublisher(GenericFileReader reader, int batchSize, Executor executor) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		if (reader == null || executor == null) {
+			throw new NullPointerException();
+		}
+		this.reader = reader;
+		this.batchSize = batchSize;
+		this.executor = executor;
+	}
+
+	/**
+	 * Subscribes the subscriber, a second subscriber receives an IllegalStateException.
+	 *
+	 * @param subscriber the subscriber
+	 */
+	public void subscribe(Subscriber subscriber) {
+		if (subscriber == null) {
+			throw new NullPointerException();
+		}
+		if (!subscribed.compareAndSet(false, true)) {
+			subscriber.onSubscribe(new Subscription() {
+				public void request(long n) {
+				}
+				public void cancel() {
+				}
+			});
+			subscriber.onError(new IllegalStateException("The rows of the reader are already published"));
+			return;
+		}
+		BatchSubscription subscription = new BatchSubscription(subscriber);
+		subscriber.onSubscribe(subscription);
+	}
+
+	/**
+	 * The subscription, parses the requested batches on the executor. A single drain
+	 * runs at a time: request() and cancel() only schedule one when none is running.
+	 */
+	private final class BatchSubscription implements Subscription, Runnable {
+
+		private final Subscriber subscriber;
+
+		/** Batches requested and not passed yet. */
+		private final AtomicLong requested = new AtomicLong();
+
+		/** Number of signals (request, cancel) the running drain has not seen. */
+		private final AtomicInteger pending = new AtomicInteger();
+
+		private volatile boolean cancelled;
+		private volatile Throwable invalidRequest;
+
+		/** Set once the terminal signal is sent or the reader closed, used by the drain only. */
+		private boolean done;
+
+		BatchSubscription(Subscriber subscriber) {
+			this.subscriber = subscriber;
+		}
+
+		public void request(long n) {
+			if (n <= 0) {
+				invalidRequest = new IllegalArgumentException("Non positive request: " + n);
+			} else {
+				long current;
+				long next;
+				do {
+					current = requested.get();
+					next = current + n < 0 ? Long.MAX_VALUE : current + n;
+				} while (!requested.compareAndSet(current, next));
+			}
+			schedule();
+		}
+
+		public void cancel() {
+			cancelled = true;
+			schedule();
+		}
+
+		private void schedule() {
+			if (pending.getAndIncrement() == 0) {
+				executor.execute(this);
+			}
+		}
+
+		public void run() {
+			int missed = 1;
+			do {
+				if (!done) {
+					drain();
+				}
+				missed = pending.addAndGet(-missed);
+			} while (missed != 0);
+		}
+
+		private void drain() {
+			if (invalidRequest != null) {
+				finish(invalidRequest);
+				return;
+			}
+			long demand = requested.get();
+			long sent = 0;
+			while (sent != demand) {
+				if (cancelled) {
+					break;
+				}
+				RowBatch batch;
+				try {
+					batch = reader.readBatch(batchSize);
+				} catch (Throwable t) {
+					finish(t);
+					return;
+				}
+				if (batch.size() == 0) {
+					finish(null);
+					return;
+				}
+				try {
+					subscriber.onNext(batch);
+				} catch (Throwable t) {
+					// a subscriber must not throw, its subscription is cancelled
+					cancelled = true;
+					break;
+				}
+				sent++;
+			}
+			if (cancelled) {
+				done = true;
+				closeReader();
+				return;
+			}
+			if (demand != Long.MAX_VALUE) {
+				requested.addAndGet(-sent);
+			}
+		}
+
+		/**
+		 * Closes the reader and sends the terminal signal, unless cancelled.
+		 *
+		 * @param failure the error, null to complete
+		 */
+		private void finish(Throwable failure) {
+			done = true;
+			Throwable closeFailure = closeReader();
+			if (cancelled) {
+				return;
+			}
+			if (failure == null && closeFailure != null) {
+				failure = closeFailure;
+			}
+			if (failure == null) {
+				subscriber.onComplete();
+			} else {
+				subscriber.onError(failure);
+			}
+		}
+
+		private Throwable closeReader() {
+			try {
+				reader.close();
+				return null;
+			} catch (Throwable t) {
+				return t;
+			}
+		}
+	}
+}
@@ -0,0 +1,103 @@
+package com.dickens.core.parser;
+
+import java.io.File;
+import java.util.Arrays;
+
+/**
+ * Sparse index of the record offsets of a csv file: the byte offset of every
+ * interval-th record, found by scanning the file once without decoding it. A row is
+ * reached by seeking to the nearest indexed record before it and scanning the few
+ * records in between. Record starts are always outside quoted fields, so an offset
+ * is the whole parse state needed to resume there.
+ *
+ * The index remembers the size and modification time of the file it was built on,
+ * see {@link #matches(File)}.
+ *
+ * @author Dickens Prabhu
+ */
+final class RowIndex {
+
+	/** Number of records between two indexed offsets. */
+	private final int interval;
+
+	private final long fileSize;
+
+	private final long lastModified;
+
+	/** offsets[i] is the byte offset of record i * interval. */
+	private long[] offsets = new long[16];
+
+	private int size;
+
+	private long rowCount;
+
+	/**
+	 * Creates an index holding the offset of the first record only.
+	 *
+	 * @param interval number of records between two indexed offsets
+	 * @param file the indexed file
+	 */
+	RowIndex(int interval, File file) {
+		if (interval <= 0) {
+			throw new IllegalArgumentException("Invalid interval: " + interval);
+		}
+		this.interval = interval;
+		this.fileSize = file.length();
+		this.lastModified = file.lastModified();
+		this.size = 1; // record 0 starts at offset 0
+	}
+
+	/**
+	 * Called for every record start found while building the index.
+	 *
+	 * @param rowNumber zero based record number
+	 * @param offset byte offset of the record
+	 */
+	void add(long rowNumber, long offset) {
+		if (rowNumber % interval != 0 || rowNumber / interval != size) {
+			return;
+		}
+		if (size == offsets.length) {
+			offsets = Arrays.copyOf(offsets, size * 2);
+		}
+		offsets[size++] = offset;
+	}
+
+	/**
+	 * @param rowCount number of records of the file, once scanned to the end
+	 */
+	void setRowCount(long rowCount) {
+		this.rowCount = rowCount;
+	}
+
+	/**
+	 * @return number of records of the file
+	 */
+	long getRowCount() {
+		return rowCount;
+	}
+
+	/**
+	 * @param rowNumber zero based record number
+	 * @return number of the nearest indexed record at or before the row
+	 */
+	long getIndexedRow(long rowNumber) {
+		return Math.min(rowNumber / interval, size - 1) * (long) interval;
+	}
+
+	/**
+	 * @param rowNumber zero based record number
+	 * @return byte offset of the nearest indexed record at or before the row
+	 */
+	long getIndexedOffset(long rowNumber) {
+		return offsets[(int) Math.min(rowNumber / interval, size - 1)];
+	}
+
+	/**
+	 * @param file a file
+	 * @return true if the file has the size and modification time of the indexed file
+	 */
+	boolean matches(File file) {
+		return file.length() == fileSize && file.lastModified() == lastModified;
+	}
+}
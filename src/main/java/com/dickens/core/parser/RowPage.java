@@ -0,0 +1,43 @@
+package com.dickens.core.parser;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A page of rows read by {@link XLFileReader#readPage(String, String, int)}, with the
+ * cursor resuming after it.
+ *
+ * @author Dickens Prabhu
+ */
+public final class RowPage {
+
+	private final Map<Integer, List<String>> rows;
+
+	private final String cursor;
+
+	RowPage(Map<Integer, List<String>> rows, String cursor) {
+		this.rows = rows;
+		this.cursor = cursor;
+	}
+
+	/**
+	 * @return the rows by row number, as returned by XLFileReader.excelReader(filePath, offset, limit)
+	 */
+	public Map<Integer, List<String>> getRows() {
+		return rows;
+	}
+
+	/**
+	 * @return the token to pass to readPage() for the next page, null if this page is the last one
+	 */
+	public String getCursor() {
+		return cursor;
+	}
+
+	/**
+	 * @return true if rows follow this page
+	 */
+	public boolean hasMore() {
+		return cursor != null;
+	}
+}
@@ -0,0 +1,48 @@
+package com.dickens.core.parser;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+
+/**
+ * Spliterator over the rows of an iterator which is never split. Unlike the
+ * spliterators of java.util.Spliterators it does not buffer rows to split, so it
+ * can hand out rows recycled by the iterator.
+ *
+ * @author Dickens Prabhu
+ * @param <T> type of the rows
+ */
+final class RowSpliterator<T> implements Spliterator<T> {
+
+	private final Iterator<T> rows;
+
+	/**
+	 * @param rows the rows
+	 */
+	RowSpliterator(Iterator<T> rows) {
+		this.rows = rows;
+	}
+
+	public boolean tryAdvance(Consumer<? super T> action) {
+		if (!rows.hasNext()) {
+			return false;
+		}
+		action.accept(rows.next());
+		return true;
+	}
+
+	public Spliterator<T> trySplit() {
+		return null;
+	}
+
+	/**
+	 * The number of rows is not known before they are read.
+	 */
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+}
@@ -0,0 +1,49 @@
+package com.dickens.core.parser;
+
+import java.util.List;
+
+/**
+ * Read only view of the current row of a reader, without copying the cells.
+ *
+ * The cells are returned as CharSequences over the buffers of the parser where the
+ * reader has them (CSV fields, raw numbers of xlsx sheets) and as the Strings the
+ * parser already holds otherwise (shared strings, formatted numbers). A view
+ * returned in recycled mode, and every CharSequence taken from it, is only valid
+ * until the next call to hasNext() of the iterator; call {@link #materialize()} to
+ * keep the row. A view returned in owned mode is a copy which stays valid.
+ *
+ ***********************************************************
+ ################## Recommended Use: ########################
+ #  Iterator<RowView> iterator = reader.getRowViews(false); #
+ #  while(iterator.hasNext()){                              #
+ #	RowView row = iterator.next();                          #
+ #	if(StringUtils.equals(row.getCell(0), "total")){        #
+ #		List<String> kept = row.materialize();              #
+ #	}                                                       #
+ #  }                                                       #
+ # reader.close();                                          #
+ ############################################################
+ *
+ * @author Dickens Prabhu
+ */
+public interface RowView {
+
+	/**
+	 * @return number of columns of the row
+	 */
+	int size();
+
+	/**
+	 * @param column zero based column index
+	 * @return the cell as returned by the String iterator of the reader, empty for a
+	 *         blank cell or a column past the end of the row, never null
+	 */
+	CharSequence getCell(int column);
+
+	/**
+	 * Copies the row to a list owned by the caller.
+	 *
+	 * @return the cells as returned by the String iterator of the reader
+	 */
+	List<String> materialize();
+}
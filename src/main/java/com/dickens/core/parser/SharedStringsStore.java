@@ -0,0 +1,525 @@
+package com.dickens.core.parser;
+
+import java.io.BufferedOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicReferenceArray;
+import java.util.logging.Logger;
+
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
+import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.xssf.usermodel.XSSFRelation;
+
+/**
+ * Read only store for the shared strings table (sharedStrings.xml) of a xlsx file.
+ *
+ * The shared strings part is streamed once with STAX. Small tables are kept in heap,
+ * bigger tables are written to a temporary data file (UTF-8 entries) plus an offset
+ * index file, both of which are memory mapped once the part has been read.
+ * Entries are only decoded when they are looked up and the last decoded entries are
+ * kept in a bounded cache, so heap usage does not grow with the size of the table.
+ *
+ * In lazy mode nothing is read when the store is created: the part is read only as
+ * far as the highest index looked up so far, the entries read are kept in heap.
+ * Reads of the first rows of a sheet then only read the first entries of the table,
+ * which are the strings of the first rows.
+ *
+ * Lookups do not lock once the table is read: the entries of a table held in heap are
+ * published once as an array shared by all readers of the workbook, the mapped files
+ * of a disk backed table are not written after they are mapped and its cache slots
+ * are replaced atomically. Only the lookups of a lazy table not read to its end yet
+ * are serialized.
+ *
+ * Call {@link #close()} to delete the temporary files.
+ */
+class SharedStringsStore {
+
+	private static Logger logger = Logger.getLogger(SharedStringsStore.class.getName());
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	/** Shared strings parts (uncompressed) up to this size are kept in heap. */
+	public static final long DEFAULT_IN_MEMORY_LIMIT = 8L * 1024 * 1024;
+
+	/** Number of decoded entries kept in the cache of a disk backed table. */
+	public static final int DEFAULT_CACHE_SIZE = 8192;
+
+	/** Size of one mapped window of the temporary files. */
+	private static final long SEGMENT_SIZE = 1L << 30;
+
+	/** Number of unique entries read so far. */
+	private int count;
+
+	/** Entries of an in heap table read to its end, null until then and when the table is disk backed. */
+	private volatile String[] table;
+
+	/** Entries read so far of a lazy table, null once the table is read to its end. */
+	private List<String> entries;
+
+	/** Temporary files of a disk backed table. */
+	private File dataFile;
+	private File indexFile;
+
+	/** Mapped windows over the temporary files. */
+	private MappedByteBuffer[] dataSegments;
+	private MappedByteBuffer[] indexSegments;
+
+	/** Last decoded entries of a disk backed table, by index modulo the cache size; null without cache. */
+	private final AtomicReferenceArray<CachedEntry> cache;
+
+	/** Part not read yet of a lazy table, null once read to the end. */
+	private InputStream lazyStream;
+
+	/** Reader over the part of a lazy table, created by the first lookup. */
+	private XMLStreamReader lazyReader;
+
+	/**
+	 * Reads the shared strings part of the given package.
+	 * A workbook without shared strings results in an empty store.
+	 *
+	 * @param opcPackage the xlsx package
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws XMLStreamException the XML stream exception
+	 * @throws InvalidFormatException the invalid format exception
+	 */
+	SharedStringsStore(OPCPackage opcPackage) throws IOException, XMLStreamException, InvalidFormatException {
+		this(opcPackage, DEFAULT_IN_MEMORY_LIMIT, DEFAULT_CACHE_SIZE);
+	}
+
+	/**
+	 * Reads the shared strings part of the given package.
+	 *
+	 * @param opcPackage the xlsx package
+	 * @param inMemoryLimit parts up to this size are kept in heap, bigger parts are moved to disk
+	 * @param cacheSize number of decoded entries kept in heap for a disk backed table
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws XMLStreamException the XML stream exception
+	 * @throws InvalidFormatException the invalid format exception
+	 */
+	SharedStringsStore(OPCPackage opcPackage, long inMemoryLimit, int cacheSize) throws IOException, XMLStreamException, InvalidFormatException {
+		this.cache = createCache(cacheSize);
+		PackagePart part = getPart(opcPackage);
+		if (part == null) {
+			this.table = new String[0];
+			return;
+		}
+		read(part.getInputStream(), part.getSize(), inMemoryLimit);
+	}
+
+	/**
+	 * Creates a lazy store over a shared strings part opened by the caller, the
+	 * part is read by the lookups and closed by {@link #close()}.
+	 *
+	 * @param iStream the shared strings part, null for a workbook without shared strings
+	 */
+	SharedStringsStore(InputStream iStream) {
+		this.cache = createCache(0);
+		if (iStream == null) {
+			this.table = new String[0];
+			return;
+		}
+		this.entries = new ArrayList<String>();
+		this.lazyStream = iStream;
+	}
+
+	/**
+	 * Returns the shared strings part of the given package.
+	 *
+	 * @param opcPackage the xlsx package
+	 * @return the part, null for a workbook without shared strings
+	 * @throws InvalidFormatException the invalid format exception
+	 */
+	static PackagePart getPart(OPCPackage opcPackage) throws InvalidFormatException {
+		List<PackagePart> parts = opcPackage.getPartsByContentType(XSSFRelation.SHARED_STRINGS.getContentType());
+		return parts.isEmpty() ? null : parts.get(0);
+	}
+
+	/**
+	 * Reads a shared strings part opened by the caller, the stream is closed.
+	 *
+	 * @param iStream the shared strings part, null for a workbook without shared strings
+	 * @param size uncompressed size of the part, -1 if not known
+	 * @param inMemoryLimit parts up to this size are kept in heap, bigger parts are moved to disk
+	 * @param cacheSize number of decoded entries kept in heap for a disk backed table
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws XMLStreamException the XML stream exception
+	 */
+	SharedStringsStore(InputStream iStream, long size, long inMemoryLimit, int cacheSize) throws IOException, XMLStreamException {
+		this.cache = createCache(cacheSize);
+		if (iStream == null) {
+			this.table = new String[0];
+			return;
+		}
+		read(iStream, size, inMemoryLimit);
+	}
+
+	private static AtomicReferenceArray<CachedEntry> createCache(int cacheSize) {
+		return cacheSize > 0 ? new AtomicReferenceArray<CachedEntry>(cacheSize) : null;
+	}
+
+	private void read(InputStream iStream, long size, long inMemoryLimit) throws IOException, XMLStreamException {
+		try {
+			if (size >= 0 && size <= inMemoryLimit) {
+				readIntoHeap(StaxFactory.createXMLStreamReader(iStream));
+			} else {
+				readIntoFile(StaxFactory.createXMLStreamReader(iStream));
+			}
+		} finally {
+			iStream.close();
+		}
+	}
+
+	/**
+	 * Returns the number of unique entries of the table, a lazy table is read to the end.
+	 *
+	 * @return the count
+	 */
+	public int getCount() {
+		String[] table = this.table;
+		if (table != null) {
+			return table.length;
+		}
+		synchronized (this) {
+			readUpTo(Integer.MAX_VALUE);
+			return count;
+		}
+	}
+
+	/**
+	 * Returns the entry at the given index.
+	 *
+	 * @param idx index of the entry (value of a cell with type "s")
+	 * @return the entry
+	 */
+	public String getEntryAt(int idx) {
+		String[] table = this.table;
+		if (table == null) {
+			return lookUp(idx);
+		}
+		if (idx < 0 || idx >= table.length) {
+			throw outOfRange(idx, table.length);
+		}
+		return table[idx];
+	}
+
+	/**
+	 * Returns the entry at the given index of a disk backed table, without locking.
+	 *
+	 * @param idx index of the entry
+	 * @return the entry
+	 */
+	private String lookUp(int idx) {
+		MappedByteBuffer[] dataSegments = this.dataSegments;
+		MappedByteBuffer[] indexSegments = this.indexSegments;
+		if (dataSegments == null || indexSegments == null) {
+			return lookUpLazy(idx);
+		}
+		if (idx < 0 || idx >= count) {
+			throw outOfRange(idx, count);
+		}
+		if (cache == null) {
+			return decode(dataSegments, indexSegments, idx);
+		}
+		int slot = idx % cache.length();
+		CachedEntry cached = cache.get(slot);
+		if (cached != null && cached.index == idx) {
+			return cached.value;
+		}
+		String entry = decode(dataSegments, indexSegments, idx);
+		cache.set(slot, new CachedEntry(idx, entry));
+		return entry;
+	}
+
+	/**
+	 * Returns the entry at the given index of a lazy table, reading the part up to it.
+	 *
+	 * @param idx index of the entry
+	 * @return the entry
+	 */
+	private synchronized String lookUpLazy(int idx) {
+		if (idx >= count) {
+			readUpTo(idx);
+		}
+		if (idx < 0 || idx >= count) {
+			throw outOfRange(idx, count);
+		}
+		if (entries != null) {
+			return entries.get(idx);
+		}
+		if (table != null) { // lazy table read to its end by this lookup
+			return table[idx];
+		}
+		throw new IllegalStateException("Shared strings table is closed");
+	}
+
+	private static IndexOutOfBoundsException outOfRange(int idx, int count) {
+		return new IndexOutOfBoundsException("Shared string index " + idx + " out of range, count is " + count);
+	}
+
+	/**
+	 * Deletes the temporary files of a disk backed table. The mapped windows are
+	 * released, they are unmapped once garbage collected: Java 8 has no API to unmap
+	 * them. Closes the part of a lazy table.
+	 */
+	public synchronized void close() {
+		closeLazyStream();
+		dataSegments = null;
+		indexSegments = null;
+		if (cache != null) {
+			for (int i = 0; i < cache.length(); i++) {
+				cache.set(i, null);
+			}
+		}
+		deleteFile(dataFile);
+		deleteFile(indexFile);
+		dataFile = null;
+		indexFile = null;
+	}
+
+	/**
+	 * Reads the entries of a lazy table up to the given index, or to the end of the part.
+	 *
+	 * @param idx index of the last entry to read
+	 */
+	private void readUpTo(int idx) {
+		if (lazyStream == null) {
+			return;
+		}
+		try {
+			if (lazyReader == null) {
+				lazyReader = StaxFactory.createXMLStreamReader(lazyStream);
+			}
+			StringBuilder value = new StringBuilder();
+			while (count <= idx) {
+				if (!nextEntry(lazyReader, value)) {
+					closeLazyStream(); // all entries read, from now on looked up without locking
+					table = entries.toArray(new String[count]);
+					entries = null;
+					return;
+				}
+				entries.add(value.toString());
+				++count;
+			}
+		} catch (XMLStreamException e) {
+			closeLazyStream();
+			throw new RuntimeException(e);
+		}
+	}
+
+	/**
+	 * Closes the part of a lazy table, failures are only logged.
+	 */
+	private void closeLazyStream() {
+		try {
+			if (lazyReader != null) {
+				lazyReader.close();
+			}
+			if (lazyStream != null) {
+				lazyStream.close();
+			}
+		} catch (Exception e) {
+			logger.info("Failed to close shared strings part: " + e.toString());
+		}
+		lazyReader = null;
+		lazyStream = null;
+	}
+
+	/**
+	 * Reads all entries into heap.
+	 *
+	 * @param xmlStreamReader reader over sharedStrings.xml
+	 * @throws XMLStreamException the XML stream exception
+	 */
+	private void readIntoHeap(XMLStreamReader xmlStreamReader) throws XMLStreamException {
+		List<String> values = new ArrayList<String>();
+		StringBuilder value = new StringBuilder();
+		try {
+			while (nextEntry(xmlStreamReader, value)) {
+				values.add(value.toString());
+			}
+		} finally {
+			xmlStreamReader.close();
+		}
+		this.count = values.size();
+		this.table = values.toArray(new String[count]);
+	}
+
+	/**
+	 * Writes all entries to a temporary data file and their offsets to a temporary
+	 * index file. Both files are mapped once the part has been read, they are deleted
+	 * if the part cannot be read.
+	 *
+	 * @param xmlStreamReader reader over sharedStrings.xml
+	 * @throws XMLStreamException the XML stream exception
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void readIntoFile(XMLStreamReader xmlStreamReader) throws XMLStreamException, IOException {
+		boolean mapped = false;
+		try {
+			this.dataFile = File.createTempFile("sst", ".dat");
+			this.indexFile = File.createTempFile("sst", ".idx");
+			logger.info("Moving shared strings table to " + dataFile.getPath());
+
+			BufferedOutputStream dataOut = new BufferedOutputStream(new FileOutputStream(dataFile), 1 << 16);
+			DataOutputStream indexOut = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(indexFile), 1 << 16));
+			StringBuilder value = new StringBuilder();
+			long offset = 0;
+			try {
+				indexOut.writeLong(offset);
+				while (nextEntry(xmlStreamReader, value)) {
+					byte[] bytes = value.toString().getBytes(UTF_8);
+					dataOut.write(bytes);
+					offset += bytes.length;
+					indexOut.writeLong(offset);
+					++count;
+				}
+			} finally {
+				xmlStreamReader.close();
+				dataOut.close();
+				indexOut.close();
+			}
+			this.dataSegments = map(dataFile);
+			this.indexSegments = map(indexFile);
+			mapped = true;
+		} finally {
+			if (!mapped) { // the store is not returned, nobody would close it
+				close();
+			}
+		}
+	}
+
+	/**
+	 * Moves the reader to the end of the next "si" element and collects the text of
+	 * all its "t" elements.
+	 *
+	 * @param xmlStreamReader reader over sharedStrings.xml
+	 * @param value receives the text of the entry
+	 * @return true if an entry was read, false at the end of the part
+	 * @throws XMLStreamException the XML stream exception
+	 */
+	private boolean nextEntry(XMLStreamReader xmlStreamReader, StringBuilder value) throws XMLStreamException {
+		boolean inEntry = false;
+		boolean tIsOpen = false;
+		while (xmlStreamReader.hasNext()) {
+			int event = xmlStreamReader.next();
+			if (event == XMLStreamReader.START_ELEMENT) {
+				String name = xmlStreamReader.getLocalName();
+				if ("si".equals(name)) {
+					inEntry = true;
+					value.setLength(0);
+				} else if ("t".equals(name)) {
+					tIsOpen = inEntry;
+				}
+			} else if (event == XMLStreamReader.CHARACTERS || event == XMLStreamReader.CDATA || event == XMLStreamReader.SPACE) {
+				if (tIsOpen) {
+					value.append(xmlStreamReader.getTextCharacters(), xmlStreamReader.getTextStart(), xmlStreamReader.getTextLength());
+				}
+			} else if (event == XMLStreamReader.END_ELEMENT) {
+				String name = xmlStreamReader.getLocalName();
+				if ("t".equals(name)) {
+					tIsOpen = false;
+				} else if ("si".equals(name) && inEntry) {
+					return true;
+				}
+			}
+		}
+		return false;
+	}
+
+	/**
+	 * Decodes the entry at the given index from the mapped files. Only absolute gets
+	 * are used, the position of the windows is never changed, so concurrent lookups
+	 * do not interfere.
+	 *
+	 * @param dataSegments the mapped windows of the data file
+	 * @param indexSegments the mapped windows of the index file
+	 * @param idx index of the entry
+	 * @return the entry
+	 */
+	private static String decode(MappedByteBuffer[] dataSegments, MappedByteBuffer[] indexSegments, int idx) {
+		long start = getLong(indexSegments, (long) idx * 8);
+		long end = getLong(indexSegments, (long) (idx + 1) * 8);
+		int length = (int) (end - start);
+		byte[] bytes = new byte[length];
+		for (int i = 0; i < length; i++) {
+			long pos = start + i;
+			bytes[i] = dataSegments[(int) (pos / SEGMENT_SIZE)].get((int) (pos % SEGMENT_SIZE));
+		}
+		return new String(bytes, UTF_8);
+	}
+
+	/**
+	 * Reads a long at the given position of the mapped windows.
+	 * Offsets are written 8 bytes aligned, so a value never spans two windows.
+	 *
+	 * @param segments the mapped windows
+	 * @param pos position in the file
+	 * @return the value
+	 */
+	private static long getLong(MappedByteBuffer[] segments, long pos) {
+		return segments[(int) (pos / SEGMENT_SIZE)].getLong((int) (pos % SEGMENT_SIZE));
+	}
+
+	/**
+	 * Maps the given file read only in windows of SEGMENT_SIZE bytes.
+	 *
+	 * @param file the file
+	 * @return the mapped windows
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static MappedByteBuffer[] map(File file) throws IOException {
+		RandomAccessFile raf = new RandomAccessFile(file, "r");
+		try {
+			FileChannel channel = raf.getChannel();
+			long length = channel.size();
+			int segmentCount = (int) ((length + SEGMENT_SIZE - 1) / SEGMENT_SIZE);
+			MappedByteBuffer[] segments = new MappedByteBuffer[segmentCount];
+			for (int i = 0; i < segmentCount; i++) {
+				long position = i * SEGMENT_SIZE;
+				segments[i] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(SEGMENT_SIZE, length - position));
+			}
+			return segments;
+		} finally {
+			raf.close(); // the mapping stays valid after the channel is closed
+		}
+	}
+
+	/**
+	 * An entry of the cache of a disk backed table.
+	 */
+	private static final class CachedEntry {
+
+		final int index;
+
+		final String value;
+
+		CachedEntry(int index, String value) {
+			this.index = index;
+			this.value = value;
+		}
+	}
+
+	/**
+	 * Deletes a temporary file, failures are only logged.
+	 *
+	 * @param file the file
+	 */
+	private static void deleteFile(File file) {
+		if (file != null && file.exists() && !file.delete()) {
+			logger.info("Could not delete temporary file: " + file.getPath());
+		}
+	}
+}
@@ -0,0 +1,19 @@
+package com.dickens.core.parser;
+
+import java.util.List;
+
+/**
+ * Callback receiving the rows of the sheets read by {@link GenericFileReader#readSheets(SheetRowHandler)}.
+ */
+public interface SheetRowHandler {
+
+	/**
+	 * Handles one row.
+	 *
+	 * @param sheetName name of the sheet of the row
+	 * @param rowNumber zero based number of the row in its sheet, counting the rows returned
+	 * @param row the cells of the row, only valid during the call
+	 * @throws Exception to stop the reading
+	 */
+	void handleRow(String sheetName, long rowNumber, List<String> row) throws Exception;
+}
@@ -0,0 +1,79 @@
+package com.dickens.core.parser;
+
+import java.util.Iterator;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.IntFunction;
+
+/**
+ * Spliterator over the rows of several sheets. Splitting hands half of the sheets
+ * not opened yet to the new spliterator, every sheet is read from its own stream so
+ * the halves can be read by different threads.
+ *
+ * @author Dickens Prabhu
+ * @param <T> type of the rows
+ */
+final class SheetSpliterator<T> implements Spliterator<T> {
+
+	private final IntFunction<Iterator<T>> sheetOpener;
+
+	private final int[] sheetIndexes;
+
+	/** Next sheet to open and end (exclusive) of the sheets of this spliterator. */
+	private int next;
+	private final int end;
+
+	private Iterator<T> rows;
+
+	/**
+	 * @param sheetOpener opens the rows of a sheet, by zero based sheet index
+	 * @param sheetIndexes the sheets to read
+	 */
+	SheetSpliterator(IntFunction<Iterator<T>> sheetOpener, int[] sheetIndexes) {
+		this(sheetOpener, sheetIndexes, 0, sheetIndexes.length, null);
+	}
+
+	private SheetSpliterator(IntFunction<Iterator<T>> sheetOpener, int[] sheetIndexes, int next, int end, Iterator<T> rows) {
+		this.sheetOpener = sheetOpener;
+		this.sheetIndexes = sheetIndexes;
+		this.next = next;
+		this.end = end;
+		this.rows = rows;
+	}
+
+	public boolean tryAdvance(Consumer<? super T> action) {
+		while (rows == null || !rows.hasNext()) {
+			rows = null;
+			if (next == end) {
+				return false;
+			}
+			rows = sheetOpener.apply(sheetIndexes[next++]);
+		}
+		action.accept(rows.next());
+		return true;
+	}
+
+	/**
+	 * Hands the first half of the sheets, with the sheet being read if any, to a new
+	 * spliterator and keeps the other half.
+	 */
+	public Spliterator<T> trySplit() {
+		int remaining = end - next;
+		if (remaining == 0 || rows == null && remaining == 1) {
+			return null; // the rows of a sheet are read from a single stream
+		}
+		int middle = next + remaining / 2;
+		Spliterator<T> prefix = new SheetSpliterator<T>(sheetOpener, sheetIndexes, next, middle, rows);
+		rows = null;
+		next = middle;
+		return prefix;
+	}
+
+	public long estimateSize() {
+		return Long.MAX_VALUE;
+	}
+
+	public int characteristics() {
+		return ORDERED | NONNULL;
+	}
+}
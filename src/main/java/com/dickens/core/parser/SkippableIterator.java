@@ -0,0 +1,23 @@
+package com.dickens.core.parser;
+
+import java.util.Iterator;
+
+/**
+ * Iterator of a reader which can pass rows without decoding their cells, see
+ * {@link GenericFileReader#skipRows(Iterator, long)}.
+ *
+ * @author Dickens Prabhu
+ * @param <T> type of the rows
+ */
+interface SkippableIterator<T> extends Iterator<T> {
+
+	/**
+	 * Skips the rows the next n calls to hasNext() would return. Only the row
+	 * boundaries are looked for; with empty rows not read, the cells are only looked
+	 * at to tell whether a row is empty.
+	 *
+	 * @param n number of rows to skip
+	 * @return the number of rows skipped, less than n at the end of the rows
+	 */
+	long skipRows(long n);
+}
@@ -0,0 +1,49 @@
+package com.dickens.core.parser;
+
+import java.io.InputStream;
+
+import javax.xml.stream.XMLInputFactory;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+/**
+ * The STAX factory shared by the xlsx readers.
+ *
+ * XMLInputFactory.newInstance() looks the implementation up on the class path, which
+ * costs more than reading a small workbook, so one factory is configured once and
+ * reused. Coalescing is off (the readers gather the text events of a cell themselves),
+ * DTDs and external entities are not supported. Readers are created under a lock as
+ * the factories are not guaranteed to be thread safe, the readers themselves are
+ * independent.
+ *
+ * @author Dickens Prabhu
+ */
+final class StaxFactory {
+
+	private static final XMLInputFactory FACTORY = createFactory();
+
+	private StaxFactory() {
+	}
+
+	/**
+	 * Creates a reader over the given stream.
+	 *
+	 * @param iStream the xml stream
+	 * @return the reader
+	 * @throws XMLStreamException the XML stream exception
+	 */
+	static XMLStreamReader createXMLStreamReader(InputStream iStream) throws XMLStreamException {
+		synchronized (FACTORY) {
+			return FACTORY.createXMLStreamReader(iStream);
+		}
+	}
+
+	private static XMLInputFactory createFactory() {
+		XMLInputFactory factory = XMLInputFactory.newInstance();
+		factory.setProperty(XMLInputFactory.IS_COALESCING, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_NAMESPACE_AWARE, Boolean.TRUE);
+		factory.setProperty(XMLInputFactory.SUPPORT_DTD, Boolean.FALSE);
+		factory.setProperty(XMLInputFactory.IS_SUPPORTING_EXTERNAL_ENTITIES, Boolean.FALSE);
+		return factory;
+	}
+}
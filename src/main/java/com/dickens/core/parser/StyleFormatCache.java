@@ -0,0 +1,560 @@
+package com.dickens.core.parser;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.DateFormat;
+import java.text.DecimalFormatSymbols;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.xssf.model.StylesTable;
+import org.apache.poi.xssf.usermodel.XSSFCellStyle;
+
+/**
+ * Number formats of the cell styles of a workbook, resolved once per workbook.
+ *
+ * Each style index (the s attribute of a cell) is mapped to a precompiled kind of
+ * format: no format (the raw value is used), General, plain/fixed decimals with or
+ * without grouping and percent, date (always written as MM/dd/yyyy), or any other
+ * format. The common kinds are written by specialised routines working on the raw
+ * text of the value, with the same result as DataFormatter; values they cannot
+ * handle exactly and the other formats go through DataFormatter.
+ *
+ * @author Dickens Prabhu
+ */
+final class StyleFormatCache {
+
+	/** No format, the raw value is returned. */
+	private static final byte RAW = 0;
+	private static final byte GENERAL = 1;
+	private static final byte DECIMAL = 2;
+	private static final byte DATE = 3;
+	private static final byte OTHER = 4;
+
+	/** 0, 0.00, #,##0, #,##0.00, 0%, 0.00% ... */
+	private static final Pattern DECIMAL_FORMAT = Pattern.compile("(#,##)?0(?:\\.(0+))?(%)?");
+
+	/** DataFormatter formats numbers from their 15 significant digits text. */
+	private static final int MAX_EXACT_DIGITS = 15;
+
+	/** General shows up to 10 significant digits and 11 integer digits. */
+	private static final int MAX_GENERAL_DIGITS = 10;
+	private static final int MAX_GENERAL_INTEGER_DIGITS = 11;
+
+	private static final long MILLIS_PER_DAY = 24L * 60 * 60 * 1000;
+
+	/** Serial of 10000-01-01, later dates are left to DataFormatter. */
+	private static final double MAX_DATE_SERIAL = 2958466;
+
+	/** Kind of format by style index, the last entry is used for unknown style indexes. */
+	private final byte[] kinds;
+	private final short[] formatIndexes;
+	private final String[] formatStrings;
+	private final int[] decimals;
+	private final boolean[] grouping;
+	private final boolean[] percent;
+
+	/** Formatter of the values the specialised routines do not handle. */
+	private final DataFormatter formatter;
+
+	/** true if the workbook uses the 1904 date system. */
+	private final boolean date1904;
+
+	/** Writes the date serials that are not valid dates, created when first needed. */
+	private DateFormat invalidDateFormat;
+
+	private final char decimalSeparator;
+	private final char groupingSeparator;
+	private final char minusSign;
+	private final char percentSign;
+
+	/** Digits of the value being formatted, point is the number of integer digits. */
+	private char[] digits = new char[64];
+	private int length;
+	private int point;
+	private boolean negative;
+
+	private final StringBuilder out = new StringBuilder();
+
+	/**
+	 * Resolves the number format of every cell style of the workbook.
+	 *
+	 * @param stylesTable the styles of the workbook
+	 * @param date1904 true if the workbook uses the 1904 date system
+	 */
+	StyleFormatCache(StylesTable stylesTable, boolean date1904) {
+		this(stylesTable.getNumCellStyles(), date1904);
+		int count = stylesTable.getNumCellStyles();
+		for (int i = 0; i < count; i++) {
+			compile(i, stylesTable.getStyleAt(i));
+		}
+		// unknown style indexes use the first style, as XSSF does
+		compile(count, count > 0 ? stylesTable.getStyleAt(0) : null);
+	}
+
+	/**
+	 * @param count number of cell styles
+	 * @param date1904 true if the workbook uses the 1904 date system
+	 */
+	private StyleFormatCache(int count, boolean date1904) {
+		this.formatter = createFormatter();
+		this.date1904 = date1904;
+		Locale locale = LocaleUtil.getUserLocale();
+		DecimalFormatSymbols symbols = DecimalFormatSymbols.getInstance(locale);
+		this.decimalSeparator = symbols.getDecimalSeparator();
+		this.groupingSeparator = symbols.getGroupingSeparator();
+		this.minusSign = symbols.getMinusSign();
+		this.percentSign = symbols.getPercent();
+
+		kinds = new byte[count + 1];
+		formatIndexes = new short[count + 1];
+		formatStrings = new String[count + 1];
+		decimals = new int[count + 1];
+		grouping = new boolean[count + 1];
+		percent = new boolean[count + 1];
+	}
+
+	/**
+	 * Resolves the number format of every cell style from the styles part (styles.xml),
+	 * without building the StylesTable of POI: only the custom number formats (numFmts)
+	 * and the number format of the cell formats (cellXfs) are read.
+	 *
+	 * @param iStream the styles part, null for a workbook without styles; the stream is closed
+	 * @param date1904 true if the workbook uses the 1904 date system
+	 * @return the cache
+	 * @throws XMLStreamException the XML stream exception
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	static StyleFormatCache read(InputStream iStream, boolean date1904) throws XMLStreamException, IOException {
+		Map<Integer, String> customFormats = new HashMap<Integer, String>();
+		List<Integer> styleFormats = new ArrayList<Integer>();
+		if (iStream != null) {
+			XMLStreamReader xmlStreamReader = StaxFactory.createXMLStreamReader(iStream);
+			try {
+				boolean cellXfs = false;
+				while (xmlStreamReader.hasNext()) {
+					int event = xmlStreamReader.next();
+					if (event == XMLStreamConstants.START_ELEMENT) {
+						String name = xmlStreamReader.getLocalName();
+						if ("numFmt".equals(name)) {
+							String id = xmlStreamReader.getAttributeValue(null, "numFmtId");
+							if (id != null) {
+								customFormats.put(Integer.valueOf(id), xmlStreamReader.getAttributeValue(null, "formatCode"));
+							}
+						} else if ("cellXfs".equals(name)) {
+							cellXfs = true;
+						} else if (cellXfs && "xf".equals(name)) {
+							String id = xmlStreamReader.getAttributeValue(null, "numFmtId");
+							styleFormats.add(id != null ? Integer.valueOf(id) : 0);
+						}
+					} else if (event == XMLStreamConstants.END_ELEMENT && "cellXfs".equals(xmlStreamReader.getLocalName())) {
+						break; // the number formats come first
+					}
+				}
+			} finally {
+				xmlStreamReader.close();
+				iStream.close();
+			}
+		}
+		int count = styleFormats.size();
+		StyleFormatCache cache = new StyleFormatCache(count, date1904);
+		for (int i = 0; i < count; i++) {
+			cache.compile(i, styleFormats.get(i), customFormats);
+		}
+		// unknown style indexes use the first style, as XSSF does
+		if (count > 0) {
+			cache.compile(count, styleFormats.get(0), customFormats);
+		} else {
+			cache.compile(count, (short) 0, (String) null);
+		}
+		return cache;
+	}
+
+	/**
+	 * Shares the formats of the given cache, with its own buffers.
+	 *
+	 * @param shared the cache holding the formats
+	 */
+	private StyleFormatCache(StyleFormatCache shared) {
+		this.formatter = createFormatter();
+		this.date1904 = shared.date1904;
+		this.decimalSeparator = shared.decimalSeparator;
+		this.groupingSeparator = shared.groupingSeparator;
+		this.minusSign = shared.minusSign;
+		this.percentSign = shared.percentSign;
+		this.kinds = shared.kinds;
+		this.formatIndexes = shared.formatIndexes;
+		this.formatStrings = shared.formatStrings;
+		this.decimals = shared.decimals;
+		this.grouping = shared.grouping;
+		this.percent = shared.percent;
+	}
+
+	/**
+	 * A cache is not thread safe, the formats are only resolved once and shared by the
+	 * copies used by other threads.
+	 *
+	 * @return a cache with the same formats
+	 */
+	StyleFormatCache copy() {
+		return new StyleFormatCache(this);
+	}
+
+	/**
+	 * @param styleIndex the s attribute of the cell
+	 * @return false if numeric cells of the style are returned unformatted
+	 */
+	boolean isFormatted(int styleIndex) {
+		return kinds[entry(styleIndex)] != RAW;
+	}
+
+	/**
+	 * @param styleIndex the s attribute of the cell
+	 * @return true if the style has a date format
+	 */
+	boolean isDate(int styleIndex) {
+		return kinds[entry(styleIndex)] == DATE;
+	}
+
+	/**
+	 * Formats a numeric cell value.
+	 *
+	 * @param styleIndex the s attribute of the cell
+	 * @param raw the value as written in the sheet
+	 * @return the formatted value
+	 */
+	String format(int styleIndex, CharSequence raw) {
+		int entry = entry(styleIndex);
+		String text = null;
+		switch (kinds[entry]) {
+		case RAW:
+			return raw.toString();
+		case GENERAL:
+			text = formatGeneral(raw);
+			break;
+		case DECIMAL:
+			text = formatDecimal(raw, decimals[entry], grouping[entry], percent[entry]);
+			break;
+		case DATE:
+			text = formatDate(CellValues.parseDouble(raw, 0, raw.length()));
+			break;
+		default:
+			break;
+		}
+		if (text != null) {
+			return text;
+		}
+		return formatter.formatRawCellContents(CellValues.parseDouble(raw, 0, raw.length()), formatIndexes[entry], formatStrings[entry], date1904);
+	}
+
+	private static DataFormatter createFormatter() {
+		return new DataFormatter() {
+			public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
+				if(DateUtil.isADateFormat(formatIndex,formatString)) {
+					formatString="MM/dd/yyyy";
+				}
+				return super.formatRawCellContents(value, formatIndex, formatString,use1904Windowing);
+			}
+		};
+	}
+
+	private int entry(int styleIndex) {
+		return styleIndex >= 0 && styleIndex < kinds.length - 1 ? styleIndex : kinds.length - 1;
+	}
+
+	private void compile(int entry, XSSFCellStyle style) {
+		if (style == null) {
+			compile(entry, (short) 0, (String) null);
+			return;
+		}
+		short formatIndex = style.getDataFormat();
+		String formatString = style.getDataFormatString();
+		if (formatString == null) {
+			formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+		}
+		compile(entry, formatIndex, formatString);
+	}
+
+	private void compile(int entry, int formatId, Map<Integer, String> customFormats) {
+		String formatString = customFormats.get(formatId);
+		if (formatString == null) {
+			formatString = BuiltinFormats.getBuiltinFormat(formatId);
+		}
+		compile(entry, (short) formatId, formatString);
+	}
+
+	/**
+	 * @param formatString the number format, null if the style has no format
+	 */
+	private void compile(int entry, short formatIndex, String formatString) {
+		formatIndexes[entry] = formatIndex;
+		formatStrings[entry] = formatString;
+		if (formatString == null) {
+			kinds[entry] = RAW;
+		} else if (DateUtil.isADateFormat(formatIndex, formatString)) {
+			kinds[entry] = DATE;
+		} else if ("General".equalsIgnoreCase(formatString)) {
+			kinds[entry] = GENERAL;
+		} else {
+			Matcher matcher = DECIMAL_FORMAT.matcher(formatString);
+			if (matcher.matches()) {
+				kinds[entry] = DECIMAL;
+				grouping[entry] = matcher.group(1) != null;
+				decimals[entry] = matcher.group(2) != null ? matcher.group(2).length() : 0;
+				percent[entry] = matcher.group(3) != null;
+			} else {
+				kinds[entry] = OTHER;
+			}
+		}
+	}
+
+	/**
+	 * Formats like the General format: at most 10 significant digits, no trailing zeros.
+	 *
+	 * @return the text, null if the value needs rounding or the scientific notation
+	 */
+	private String formatGeneral(CharSequence raw) {
+		if (!readDigits(raw) || significantDigits() > MAX_GENERAL_DIGITS || point > MAX_GENERAL_INTEGER_DIGITS) {
+			return null;
+		}
+		if (length - point > MAX_GENERAL_DIGITS || point == 0 && leadingZeros() >= MAX_GENERAL_DIGITS - 1 && !isZero()) {
+			return null; // 1E-10 or smaller, or rounded by the General format
+		}
+		out.setLength(0);
+		if (negative && !isZero()) {
+			out.append(minusSign);
+		}
+		appendInteger(false);
+		if (length > point) {
+			out.append(decimalSeparator).append(digits, point, length - point);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Formats with a fixed number of decimals, rounding half up like DataFormatter.
+	 *
+	 * @return the text, null if the value can not be formatted exactly from its raw text
+	 */
+	private String formatDecimal(CharSequence raw, int fractionDigits, boolean useGrouping, boolean usePercent) {
+		if (!readDigits(raw) || significantDigits() > MAX_EXACT_DIGITS || point > MAX_EXACT_DIGITS) {
+			return null;
+		}
+		if (point == 0 && length > 3 && digits[0] == '0' && digits[1] == '0' && digits[2] == '0' && !isZero()) {
+			return null; // below 0.001 DataFormatter formats the binary value
+		}
+		boolean zero = isZero();
+		if (usePercent) {
+			ensureCapacity(point + 2);
+			while (length < point + 2) {
+				digits[length++] = '0';
+			}
+			point += 2;
+		}
+		int end = point + fractionDigits;
+		if (length > end) {
+			boolean roundUp = digits[end] >= '5';
+			length = end;
+			if (roundUp) {
+				increment();
+			}
+		}
+		ensureCapacity(end);
+		while (length < end) {
+			digits[length++] = '0';
+		}
+		out.setLength(0);
+		if (negative && !zero) {
+			out.append(minusSign);
+		}
+		appendInteger(useGrouping);
+		if (fractionDigits > 0) {
+			out.append(decimalSeparator).append(digits, point, fractionDigits);
+		}
+		if (usePercent) {
+			out.append(percentSign);
+		}
+		return out.toString();
+	}
+
+	/**
+	 * Formats an Excel date serial as MM/dd/yyyy, the day is computed the same way
+	 * as DateUtil.getJavaDate (the time of day is rounded to the millisecond).
+	 *
+	 * @return the text, null if the value is a date after 9999-12-31
+	 */
+	private String formatDate(double value) {
+		if (!DateUtil.isValidExcelDate(value)) {
+			return formatInvalidDate(value);
+		}
+		if (value >= MAX_DATE_SERIAL) {
+			return null;
+		}
+		long wholeDays = (long) Math.floor(value);
+		long millis = (long) ((value - wholeDays) * MILLIS_PER_DAY + 0.5);
+		long epochDay = CellValues.toEpochDay(wholeDays, date1904) + millis / MILLIS_PER_DAY;
+		// civil date of the epoch day
+		long z = epochDay + 719468;
+		long era = (z >= 0 ? z : z - 146096) / 146097;
+		long dayOfEra = z - era * 146097;
+		long yearOfEra = (dayOfEra - dayOfEra / 1460 + dayOfEra / 36524 - dayOfEra / 146096) / 365;
+		long dayOfYear = dayOfEra - (365 * yearOfEra + yearOfEra / 4 - yearOfEra / 100);
+		long shiftedMonth = (5 * dayOfYear + 2) / 153;
+		long day = dayOfYear - (153 * shiftedMonth + 2) / 5 + 1;
+		long month = shiftedMonth < 10 ? shiftedMonth + 3 : shiftedMonth - 9;
+		long year = yearOfEra + era * 400 + (month <= 2 ? 1 : 0);
+		out.setLength(0);
+		appendPadded(month, 2);
+		out.append('/');
+		appendPadded(day, 2);
+		out.append('/');
+		appendPadded(year, 4);
+		return out.toString();
+	}
+
+	/**
+	 * Formats a negative serial the way the DataFormatter of an iterator did once it
+	 * held the MM/dd/yyyy format: the value is taken as milliseconds since 1970-01-01,
+	 * in the time zone of POI. Whatever cells were formatted before, -1.5 is always
+	 * written 12/31/1969 in UTC.
+	 */
+	private String formatInvalidDate(double value) {
+		if (invalidDateFormat == null) {
+			invalidDateFormat = new SimpleDateFormat("MM/dd/yyyy", LocaleUtil.getUserLocale());
+			invalidDateFormat.setTimeZone(LocaleUtil.getUserTimeZone());
+		}
+		return invalidDateFormat.format(new Date((long) value));
+	}
+
+	/**
+	 * Splits a plain decimal (optional minus, digits, optional fraction) into its
+	 * digits without the leading zeros of the integer part.
+	 *
+	 * @return false if the raw value is not a plain decimal
+	 */
+	private boolean readDigits(CharSequence raw) {
+		int i = 0;
+		int end = raw.length();
+		negative = end > 0 && raw.charAt(0) == '-';
+		if (negative) {
+			i++;
+		}
+		ensureCapacity(end);
+		length = 0;
+		point = -1;
+		boolean anyDigit = false;
+		for (; i < end; i++) {
+			char c = raw.charAt(i);
+			if (c >= '0' && c <= '9') {
+				anyDigit = true;
+				if (c != '0' || length > 0 || point != -1) {
+					digits[length++] = c;
+				}
+			} else if (c == '.' && point == -1) {
+				point = length;
+			} else {
+				return false;
+			}
+		}
+		if (point == -1) {
+			point = length;
+		}
+		// trailing zeros of the fraction are not significant
+		while (length > point && digits[length - 1] == '0') {
+			length--;
+		}
+		return anyDigit;
+	}
+
+	private int leadingZeros() {
+		int first = 0;
+		while (first < length && digits[first] == '0') {
+			first++;
+		}
+		return first;
+	}
+
+	private int significantDigits() {
+		int first = leadingZeros();
+		int last = length;
+		while (last > first && digits[last - 1] == '0') {
+			last--;
+		}
+		return last - first;
+	}
+
+	private boolean isZero() {
+		for (int i = 0; i < length; i++) {
+			if (digits[i] != '0') {
+				return false;
+			}
+		}
+		return true;
+	}
+
+	/**
+	 * Adds one unit of the last digit, a carry out of the first digit adds an integer digit.
+	 */
+	private void increment() {
+		for (int i = length - 1; i >= 0; i--) {
+			if (digits[i] != '9') {
+				digits[i]++;
+				return;
+			}
+			digits[i] = '0';
+		}
+		ensureCapacity(length + 1);
+		System.arraycopy(digits, 0, digits, 1, length);
+		digits[0] = '1';
+		length++;
+		point++;
+	}
+
+	private void appendInteger(boolean useGrouping) {
+		int first = 0;
+		while (first < point && digits[first] == '0') {
+			first++;
+		}
+		if (first == point) {
+			out.append('0');
+			return;
+		}
+		for (int i = first; i < point; i++) {
+			if (useGrouping && i > first && (point - i) % 3 == 0) {
+				out.append(groupingSeparator);
+			}
+			out.append(digits[i]);
+		}
+	}
+
+	private void appendPadded(long value, int width) {
+		String text = Long.toString(value);
+		for (int i = text.length(); i < width; i++) {
+			out.append('0');
+		}
+		out.append(text);
+	}
+
+	private void ensureCapacity(int capacity) {
+		if (capacity > digits.length) {
+			char[] grown = new char[Math.max(digits.length * 2, capacity)];
+			System.arraycopy(digits, 0, grown, 0, length);
+			digits = grown;
+		}
+	}
+}
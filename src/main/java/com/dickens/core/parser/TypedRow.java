@@ -0,0 +1,83 @@
+package com.dickens.core.parser;
+
+/**
+ * Typed view of the current row of a reader.
+ *
+ * Numeric cells, booleans and dates are returned from the raw cell values, they are
+ * never formatted to a String and parsed back. Text cells are converted when a
+ * typed value is asked for. Columns past the end of the row are blank, a blank
+ * cell is 0 or false.
+ *
+ * The same instance is returned for every row, its content is replaced by the
+ * next call to hasNext() of the iterator. A typed row is also a {@link RowView}
+ * of the row in recycled mode.
+ *
+ ***********************************************************
+ ################## Recommended Use: ########################
+ #  Iterator<TypedRow> iterator = reader.getTypedIterator();#
+ #  while(iterator.hasNext()){                              #
+ #	TypedRow row = iterator.next();                         #
+ #	double price = row.getDouble(2);                        #
+ #  }                                                       #
+ # reader.close();                                          #
+ ############################################################
+ *
+ * @author Dickens Prabhu
+ */
+public interface TypedRow extends RowView {
+
+	/**
+	 * @param column zero based column index
+	 * @return true if the cell is empty
+	 */
+	boolean isBlank(int column);
+
+	/**
+	 * @param column zero based column index
+	 * @return true if the cell holds a number (dates included)
+	 */
+	boolean isNumeric(int column);
+
+	/**
+	 * @param column zero based column index
+	 * @return true if the cell holds a number with a date format
+	 */
+	boolean isDate(int column);
+
+	/**
+	 * @param column zero based column index
+	 * @return the numeric value, text cells are parsed
+	 * @throws NumberFormatException if a text cell is not a number
+	 */
+	double getDouble(int column);
+
+	/**
+	 * @param column zero based column index
+	 * @return the numeric value truncated to a long, text cells are parsed
+	 * @throws NumberFormatException if a text cell is not an integer
+	 */
+	long getLong(int column);
+
+	/**
+	 * @param column zero based column index
+	 * @return the boolean value, true for a non zero number or the text "true" (any case)
+	 */
+	boolean getBoolean(int column);
+
+	/**
+	 * Returns the date of the cell as a number of days since 1970-01-01, the time
+	 * of day is dropped. Numbers are read as Excel date serials, text cells are
+	 * parsed as yyyy-MM-dd.
+	 *
+	 * @param column zero based column index
+	 * @return the epoch day
+	 * @throws NumberFormatException if a text cell is not a date
+	 */
+	long getEpochDay(int column);
+
+	/**
+	 * @param column zero based column index
+	 * @return the cell as returned by the String iterator of the reader
+	 */
+	String getString(int column);
+}
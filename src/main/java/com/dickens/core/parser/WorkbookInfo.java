@@ -0,0 +1,137 @@
+package com.dickens.core.parser;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * Sheets of a file with their number of rows and columns, read by
+ * {@link XLFileReader#inspect(String)} without decoding any cell.
+ *
+ * The counts are those of the used range of a sheet, from its first to its last row
+ * and column holding a cell, header row included. Empty rows inside the range are
+ * counted, so they can be more than the rows returned by a reader skipping empty rows.
+ *
+ * @author Dickens Prabhu
+ */
+public final class WorkbookInfo {
+
+	private final List<SheetInfo> sheets;
+
+	private final int activeSheetIndex;
+
+	WorkbookInfo(List<SheetInfo> sheets, int activeSheetIndex) {
+		this.sheets = Collections.unmodifiableList(sheets);
+		this.activeSheetIndex = activeSheetIndex;
+	}
+
+	/**
+	 * @return the sheets in workbook order, a single sheet without name for a csv file
+	 */
+	public List<SheetInfo> getSheets() {
+		return sheets;
+	}
+
+	/**
+	 * @return the names of the sheets in workbook order
+	 */
+	public List<String> getSheetNames() {
+		List<String> names = new ArrayList<String>(sheets.size());
+		for (SheetInfo sheet : sheets) {
+			names.add(sheet.getName());
+		}
+		return names;
+	}
+
+	/**
+	 * @return index of the sheet read by default
+	 */
+	public int getActiveSheetIndex() {
+		return activeSheetIndex;
+	}
+
+	/**
+	 * @return the sheet read by default, null if the workbook has no sheet
+	 */
+	public SheetInfo getActiveSheet() {
+		return sheets.isEmpty() ? null : sheets.get(activeSheetIndex);
+	}
+
+	/**
+	 * @return number of rows of the sheet read by default
+	 */
+	public long getRowCount() {
+		return sheets.isEmpty() ? 0 : getActiveSheet().getRowCount();
+	}
+
+	/**
+	 * @return number of columns of the sheet read by default
+	 */
+	public int getColumnCount() {
+		return sheets.isEmpty() ? 0 : getActiveSheet().getColumnCount();
+	}
+
+	@Override
+	public String toString() {
+		return "WorkbookInfo(sheets=" + sheets + ", activeSheetIndex=" + activeSheetIndex + ")";
+	}
+
+	/**
+	 * Name and size of one sheet.
+	 */
+	public static final class SheetInfo {
+
+		private final String name;
+
+		private final long rowCount;
+
+		private final int columnCount;
+
+		SheetInfo(String name, long rowCount, int columnCount) {
+			this.name = name;
+			this.rowCount = rowCount;
+			this.columnCount = columnCount;
+		}
+
+		/**
+		 * Creates the info of a sheet from its used range.
+		 *
+		 * @param name the sheet name
+		 * @param firstRow zero based first row, -1 if the sheet is empty
+		 * @param lastRow zero based last row
+		 * @param firstColumn zero based first column, -1 if the sheet is empty
+		 * @param lastColumn zero based last column
+		 * @return the sheet info
+		 */
+		static SheetInfo ofRange(String name, long firstRow, long lastRow, int firstColumn, int lastColumn) {
+			return new SheetInfo(name, firstRow < 0 || lastRow < firstRow ? 0 : lastRow - firstRow + 1,
+					firstColumn < 0 || lastColumn < firstColumn ? 0 : lastColumn - firstColumn + 1);
+		}
+
+		/**
+		 * @return the sheet name, null for a csv file
+		 */
+		public String getName() {
+			return name;
+		}
+
+		/**
+		 * @return number of rows, header row included
+		 */
+		public long getRowCount() {
+			return rowCount;
+		}
+
+		/**
+		 * @return number of columns
+		 */
+		public int getColumnCount() {
+			return columnCount;
+		}
+
+		@Override
+		public String toString() {
+			return "SheetInfo(name=" + name + ", rowCount=" + rowCount + ", columnCount=" + columnCount + ")";
+		}
+	}
+}
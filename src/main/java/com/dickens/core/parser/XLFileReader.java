@@ -1,8 +1,11 @@
 
 package com.dickens.core.parser;
 
+import java.io.File;
+import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
@@ -22,6 +25,25 @@ import org.xml.sax.SAXException;
  */
 public class XLFileReader {
 
+	/** Number of records between two offsets of a row index. */
+	private static final int ROW_INDEX_INTERVAL = 1024;
+
+	/** Reads ending within this many rows load the shared strings of a xlsx file lazily. */
+	private static final int PREVIEW_ROWS = 1000;
+
+	/** Maximum number of row indexes kept, the least recently used is dropped. */
+	private static final int MAX_ROW_INDEXES = 32;
+
+	/** Row indexes of the csv files read by page, by file path. */
+	private static final Map<String, RowIndex> ROW_INDEXES = Collections.synchronizedMap(
+			new LinkedHashMap<String, RowIndex>(16, 0.75f, true) {
+				private static final long serialVersionUID = 1L;
+				@Override
+				protected boolean removeEldestEntry(Map.Entry<String, RowIndex> eldest) {
+					return size() > MAX_ROW_INDEXES;
+				}
+			});
+
 	/**
 	 * Reads the header of a excel file.
 	 *
@@ -120,7 +142,7 @@ public class XLFileReader {
 	public static Map<Integer, List<String>> excelReader(String filePath, int offset, int limit) {
 		GenericFileReader excelReader=null;
 		try {
-			excelReader = getExcelReader(filePath);
+			excelReader = getExcelReader(filePath, offset, limit);
 			return getRowValuesMap(offset, limit, excelReader);
 		} catch (Exception e) {
 			throw new RuntimeException("Exception in reading file", e);
@@ -136,6 +158,126 @@ public class XLFileReader {
 
 	}
 
+	/**
+	 * Reads a page of records, resuming where the previous page ended instead of
+	 * reading the file again from its first row. A csv page resumes at the byte offset
+	 * saved in the cursor; an excel page skips the rows before it.
+	 *
+	 * @param filePath            absolute path of file
+	 * @param cursor            token of the previous page, see {@link RowPage#getCursor()}; null for the first page
+	 * @param limit            number of records to fetch
+	 * @return the page
+	 */
+	public static RowPage readPage(String filePath, String cursor, int limit) {
+		File file = new File(filePath);
+		return readPage(filePath, cursor == null ? new PageCursor(0, 0, file) : PageCursor.parse(cursor), limit);
+	}
+
+	/**
+	 * Reads a page of records with a given offset and limit, like
+	 * excelReader(filePath, offset, limit), and the cursor of the next page.
+	 * The first call for a csv file scans it once to build a sparse index of its record
+	 * offsets, see {@link RowIndex}; later calls reach any offset through the index
+	 * without reading the rows before it.
+	 *
+	 * @param filePath            absolute path of file
+	 * @param offset            start row number
+	 * @param limit            number of records to fetch
+	 * @return the page
+	 */
+	public static RowPage readPage(String filePath, int offset, int limit) {
+		return readPage(filePath, new PageCursor(offset, -1, new File(filePath)), limit);
+	}
+
+	private static RowPage readPage(String filePath, PageCursor start, int limit) {
+		if (limit <= 0) {
+			throw new IllegalArgumentException("Invalid limit: " + limit);
+		}
+		File file = new File(filePath);
+		GenericFileReader excelReader=null;
+		try {
+			excelReader = getExcelReader(filePath, start.rowNumber, limit);
+			long pageOffset = -1;
+			if (excelReader instanceof CSVReader && ((CSVReader) excelReader).canScanRecords()) {
+				CSVReader csvReader = (CSVReader) excelReader;
+				if (start.hasOffset(file)) {
+					pageOffset = start.offset;
+				} else {
+					pageOffset = csvReader.getRowOffset(start.rowNumber, start.rowNumber == 0 ? null : getRowIndex(filePath, csvReader));
+				}
+				csvReader.seekToOffset(pageOffset);
+			}
+			// recycled views, only the rows of the page are copied
+			Iterator<RowView> iterator = excelReader.getRowViews(false);
+			if (pageOffset == -1) {
+				GenericFileReader.skipRows(iterator, start.rowNumber);
+			}
+			Map<Integer, List<String>> rowValuesMap = new LinkedHashMap<Integer, List<String>>();
+			int count = 0;
+			while (count < limit && iterator.hasNext()) {
+				rowValuesMap.put((int) (start.rowNumber + count), iterator.next().materialize());
+				count++;
+			}
+			PageCursor next = null;
+			if (pageOffset != -1) {
+				long nextOffset = ((CSVReader) excelReader).getRecordOffset(pageOffset, count);
+				if (nextOffset < file.length()) {
+					next = new PageCursor(start.rowNumber + count, nextOffset, file);
+				}
+			} else if (iterator.hasNext()) {
+				next = new PageCursor(start.rowNumber + count, -1, file);
+			}
+			return new RowPage(rowValuesMap, next == null ? null : next.toString());
+		} catch (Exception e) {
+			throw new RuntimeException("Exception in reading file", e);
+		} finally {
+			closeQuietly(excelReader);
+		}
+	}
+
+	/**
+	 * Reads the sheets of a file with their number of rows and columns, without
+	 * decoding any cell: the used range of each xlsx/xls sheet is read from its
+	 * dimension, the records of a csv file are counted over the mapped file.
+	 *
+	 * @param filePath            absolute path of file
+	 * @return the workbook info
+	 */
+	public static WorkbookInfo inspect(String filePath) {
+		File file = new File(filePath);
+		try {
+			if (!file.isFile()) {
+				throw new FileNotFoundException("Not found or not a file: " + filePath);
+			}
+			if (filePath.endsWith(".xlsx")) {
+				return XLSXReader.inspect(file);
+			} else if (filePath.endsWith(".csv")) {
+				return CSVReader.inspect(file);
+			}
+			return XLSEventReader.inspect(file);
+		} catch (Exception e) {
+			throw new RuntimeException("Exception in reading file", e);
+		}
+	}
+
+	/**
+	 * Gets the row index of a csv file, built on the first call and rebuilt when the file changes.
+	 *
+	 * @param filePath the file path
+	 * @param csvReader reader of the file
+	 * @return the row index
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static RowIndex getRowIndex(String filePath, CSVReader csvReader) throws IOException {
+		File file = new File(filePath);
+		RowIndex rowIndex = ROW_INDEXES.get(filePath);
+		if (rowIndex == null || !rowIndex.matches(file)) {
+			rowIndex = csvReader.buildRowIndex(ROW_INDEX_INTERVAL, file);
+			ROW_INDEXES.put(filePath, rowIndex);
+		}
+		return rowIndex;
+	}
+
 	/**
 	 * Process file.
 	 *
@@ -160,6 +302,78 @@ public class XLFileReader {
 
 	}
 
+	/**
+	 * Reads records with a given offset and limit and passes them to the handler as
+	 * they are parsed; only the row being read is held in memory.
+	 *
+	 * @param filePath            absolute path of file
+	 * @param offset            start row number
+	 * @param limit            number of records to fetch
+	 * @param handler receives each row with its row number, the sheet name is null for csv files
+	 */
+	public static void excelReader(String filePath, int offset, int limit, SheetRowHandler handler) {
+		GenericFileReader excelReader=null;
+		try {
+			excelReader = getExcelReader(filePath, offset, limit);
+			readRows(offset, limit, excelReader, handler);
+		} catch (Exception e) {
+			throw new RuntimeException("Exception in reading file", e);
+		} finally {
+			closeQuietly(excelReader);
+		}
+	}
+
+	/**
+	 * Reads records with a given offset and limit and passes them to the handler as
+	 * they are parsed; only the row being read is held in memory.
+	 *
+	 * @param file the file
+	 * @param offset            start row number
+	 * @param limit            number of records to fetch
+	 * @param handler receives each row with its row number, the sheet name is null for csv files
+	 */
+	public static void excelReader(MultipartFile file, int offset, int limit, SheetRowHandler handler) {
+		GenericFileReader excelReader=null;
+		try {
+			excelReader = getExcelReader(file);
+			readRows(offset, limit, excelReader, handler);
+		} catch (Exception e) {
+			throw new RuntimeException("Exception in reading file", e);
+		} finally {
+			closeQuietly(excelReader);
+		}
+	}
+
+	/**
+	 * Process file, passing the records to the handler in batches as they are mapped.
+	 * Only one batch of records is held in memory.
+	 *
+	 * @param filePath the file path
+	 * @param dataMapping the data mapping
+	 * @param offset the offset
+	 * @param limit the limit
+	 * @param batchSize maximum number of records of a batch
+	 * @param handler receives the batches
+	 */
+	public static void processFile(String filePath, List<ColumnsMap> dataMapping, int offset, int limit,
+			int batchSize, FileRecordHandler handler) {
+		if (batchSize <= 0) {
+			throw new IllegalArgumentException("Invalid batch size: " + batchSize);
+		}
+		RecordBatcher batcher = new RecordBatcher(ColumnMappingPlan.compile(dataMapping), batchSize, handler);
+		GenericFileReader excelReader=null;
+		try {
+			excelReader = getExcelReader(filePath, offset, limit);
+			readRows(offset, limit, excelReader, batcher);
+			batcher.flush();
+		} catch (Exception e) {
+			//log.error("Error in reading file.", e);
+			throw new RuntimeException(e);
+		} finally {
+			closeQuietly(excelReader);
+		}
+	}
+
 
 	
 	/**
@@ -169,18 +383,41 @@ public class XLFileReader {
 	 * @param limit the limit
 	 * @param excelReader the excel reader
 	 * @return the row values map
+	 * @throws Exception the exception
 	 */
-	private static Map<Integer, List<String>> getRowValuesMap(int offset, int limit, GenericFileReader excelReader) {
-		Map<Integer, List<String>> rowValuesMap = new LinkedHashMap<Integer, List<String>>();
+	private static Map<Integer, List<String>> getRowValuesMap(int offset, int limit, GenericFileReader excelReader) throws Exception {
+		final Map<Integer, List<String>> rowValuesMap = new LinkedHashMap<Integer, List<String>>();
+		readRows(offset, limit, excelReader, new SheetRowHandler() {
+			public void handleRow(String sheetName, long rowNumber, List<String> row) {
+				rowValuesMap.put((int) rowNumber, row);
+			}
+		});
+		return rowValuesMap;
+	}
 
+	/**
+	 * Passes the rows of the offset/limit window to the handler.
+	 *
+	 * @param offset the offset
+	 * @param limit the limit
+	 * @param excelReader the excel reader
+	 * @param handler the row handler, receives a copy of each row
+	 * @throws Exception thrown by the handler or while reading
+	 */
+	private static void readRows(int offset, int limit, GenericFileReader excelReader, SheetRowHandler handler) throws Exception {
 		int rowNumber = 0;
 		int count = 0;
 		if (excelReader != null) {
-			Iterator<List<String>> iterator = excelReader.getIterator();
+			boolean hasSheets = !(excelReader instanceof CSVReader);
+			// recycled views, only the rows kept are copied
+			Iterator<RowView> iterator = excelReader.getRowViews(false);
+			if (offset > 0) { // rows before the window are not decoded
+				rowNumber = (int) GenericFileReader.skipRows(iterator, offset);
+			}
 			while (iterator.hasNext()) {
-				List<String> values = iterator.next();
+				RowView row = iterator.next();
 				if (offset == -1 || (rowNumber >= offset && (limit == -1 || count < limit))) {
-					rowValuesMap.put(rowNumber, new ArrayList<String>(values));
+					handler.handleRow(hasSheets ? excelReader.getSheetName() : null, rowNumber, row.materialize());
 					count++;
 				}
 				rowNumber++;
@@ -190,13 +427,49 @@ public class XLFileReader {
 				}
 			}
 		}
-		return rowValuesMap;
+	}
+
+	/**
+	 * Closes the reader, ignoring the errors.
+	 *
+	 * @param excelReader the excel reader, may be null
+	 */
+	private static void closeQuietly(GenericFileReader excelReader) {
+		if(excelReader!=null) {
+			try {
+				excelReader.close();
+			} catch (Exception e) {
+				//log.error("Error in reading file.", e);
+			}
+		}
 	}
 
 	/**
 	 * Gets the excel reader.
+	 * xls files are read by XLSEventReader, which reads formula cells from their cached
+	 * result, see XLSEventReader.
+	 *
+	 * @param filePath the file path
+	 * @return the excel reader
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws OpenXML4JException the open XML 4 J exception
+	 * @throws ParserConfigurationException the parser configuration exception
+	 * @throws SAXException the SAX exception
+	 * @throws XMLStreamException the XML stream exception
+	 */
+	static GenericFileReader getExcelReader(String filePath)
+			throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException {
+		return getExcelReader(filePath, -1, -1);
+	}
+
+	/**
+	 * Gets the excel reader for reading a window of rows. A xlsx file read up to a row
+	 * within the first PREVIEW_ROWS rows gets lazy shared strings, only the strings of
+	 * those rows are read from the table.
 	 *
 	 * @param filePath the file path
+	 * @param offset start row number, -1 for the first row
+	 * @param limit number of records to fetch, -1 for all of them
 	 * @return the excel reader
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 * @throws OpenXML4JException the open XML 4 J exception
@@ -204,21 +477,24 @@ public class XLFileReader {
 	 * @throws SAXException the SAX exception
 	 * @throws XMLStreamException the XML stream exception
 	 */
-	private static GenericFileReader getExcelReader(String filePath)
+	private static GenericFileReader getExcelReader(String filePath, long offset, int limit)
 			throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException {
 		GenericFileReader excelReader;
 		if (filePath.endsWith(".xlsx")) {
-			excelReader = new XLSXReader(filePath,false);
+			boolean preview = limit != -1 && Math.max(offset, 0) + limit <= PREVIEW_ROWS;
+			excelReader = new XLSXReader(filePath,false,true,preview);
 		} else if (filePath.endsWith(".csv")) {
 			excelReader = new CSVReader(filePath,false);
 		} else {
-			excelReader = new XLSReader(filePath,false);
+			excelReader = new XLSEventReader(filePath,false);
 		}
 		return excelReader;
 	}
 
 	/**
 	 * Gets the excel reader.
+	 * xls files are read by XLSEventReader, which reads formula cells from their cached
+	 * result, see XLSEventReader.
 	 *
 	 * @param file the file
 	 * @return the excel reader
@@ -228,7 +504,7 @@ public class XLFileReader {
 	 * @throws SAXException the SAX exception
 	 * @throws XMLStreamException the XML stream exception
 	 */
-	private static GenericFileReader getExcelReader(MultipartFile file)
+	static GenericFileReader getExcelReader(MultipartFile file)
 			throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException {
 		GenericFileReader excelReader;
 		if (file.getOriginalFilename().endsWith(".xlsx")) {
@@ -236,7 +512,7 @@ public class XLFileReader {
 		}else if (file.getOriginalFilename().endsWith(".csv")) {
 			excelReader = new CSVReader(file.getInputStream(),false);
 		} else {
-			excelReader = new XLSReader(file.getInputStream(),false);
+			excelReader = new XLSEventReader(file.getInputStream(),false);
 		}
 		return excelReader;
 	}
@@ -250,29 +526,47 @@ public class XLFileReader {
 	 */
 	private static List<FileRecord> getFileRecords(Map<Integer, List<String>> rowValuesMap,
 			List<ColumnsMap> columnMap) {
-		List<FileRecord> fileRecords = new ArrayList<FileRecord>();
+		// the mappings are resolved once into slots indexed by column
+		ColumnMappingPlan plan = ColumnMappingPlan.compile(columnMap);
+		List<FileRecord> fileRecords = new ArrayList<FileRecord>(rowValuesMap.size());
 		for (Map.Entry<Integer, List<String>> entryMap : rowValuesMap.entrySet()) {
-			FileRecord fileRecord = new FileRecord();
-			int columnIndex = 1;
-			List<String> values = entryMap.getValue();
-
-			for (String value : values) {
-				for (ColumnsMap columns : columnMap) {
-					if (columnIndex == columns.getColumnIndex()) { // means it
-																	// is
-																	// matching
-																	// with the
-																	// column
-						fileRecord.setValue(columns.getMappedFieldName(), value);
-					}
-				}
-				columnIndex++;
-			}
-			fileRecord.setRowNumber(entryMap.getKey());
-			fileRecords.add(fileRecord);
+			fileRecords.add(plan.map(entryMap.getValue(), entryMap.getKey()));
 		}
 
 		return fileRecords;
 	}
 
+	/**
+	 * Maps the rows to records and hands them over in batches.
+	 */
+	private static final class RecordBatcher implements SheetRowHandler {
+
+		private final ColumnMappingPlan plan;
+		private final int batchSize;
+		private final FileRecordHandler handler;
+		private List<FileRecord> fileRecords;
+
+		RecordBatcher(ColumnMappingPlan plan, int batchSize, FileRecordHandler handler) {
+			this.plan = plan;
+			this.batchSize = batchSize;
+			this.handler = handler;
+			this.fileRecords = new ArrayList<FileRecord>(batchSize);
+		}
+
+		public void handleRow(String sheetName, long rowNumber, List<String> row) throws Exception {
+			fileRecords.add(plan.map(row, (int) rowNumber));
+			if (fileRecords.size() == batchSize) {
+				flush();
+			}
+		}
+
+		void flush() throws Exception {
+			if (!fileRecords.isEmpty()) {
+				List<FileRecord> batch = fileRecords;
+				fileRecords = new ArrayList<FileRecord>(batchSize);
+				handler.handleRecords(batch);
+			}
+		}
+	}
+
 }
@@ -0,0 +1,1134 @@
+package com.dickens.core.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.FileNotFoundException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.text.SimpleDateFormat;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Deque;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+
+import org.apache.commons.lang.StringUtils;
+import org.apache.poi.hssf.record.BOFRecord;
+import org.apache.poi.hssf.record.BlankRecord;
+import org.apache.poi.hssf.record.BoolErrRecord;
+import org.apache.poi.hssf.record.BoundSheetRecord;
+import org.apache.poi.hssf.record.CellValueRecordInterface;
+import org.apache.poi.hssf.record.DateWindow1904Record;
+import org.apache.poi.hssf.record.DimensionsRecord;
+import org.apache.poi.hssf.record.EOFRecord;
+import org.apache.poi.hssf.record.ExtendedFormatRecord;
+import org.apache.poi.hssf.record.FilePassRecord;
+import org.apache.poi.hssf.record.FormatRecord;
+import org.apache.poi.hssf.record.FormulaRecord;
+import org.apache.poi.hssf.record.LabelRecord;
+import org.apache.poi.hssf.record.LabelSSTRecord;
+import org.apache.poi.hssf.record.MulBlankRecord;
+import org.apache.poi.hssf.record.NumberRecord;
+import org.apache.poi.hssf.record.Record;
+import org.apache.poi.hssf.record.RecordFactoryInputStream;
+import org.apache.poi.hssf.record.RecordInputStream;
+import org.apache.poi.hssf.record.RowRecord;
+import org.apache.poi.hssf.record.SSTRecord;
+import org.apache.poi.hssf.record.StringRecord;
+import org.apache.poi.hssf.record.WindowOneRecord;
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.poifs.filesystem.NPOIFSFileSystem;
+import org.apache.poi.ss.formula.eval.ErrorEval;
+import org.apache.poi.ss.usermodel.BuiltinFormats;
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.DateUtil;
+import org.apache.poi.util.LocaleUtil;
+
+/**
+ * It is a streaming xls file reader implemented using Iterator design pattern.
+ * It internally uses the POI record (event) API, so the workbook object model is
+ * never built: rows of the active sheet are assembled from the cell records as
+ * they are read, and the SST and format records are resolved on the fly.
+ * Memory usage is independent of the number of rows in the sheet.
+ *
+ * The rows returned are the same as the rows returned by XLSReader, except for
+ * formula cells, which are read from their cached result: a date formatted result
+ * is returned as a date where XLSReader returns the formula text, a boolean or error
+ * result is returned as TRUE/FALSE or the error code (#DIV/0!, #N/A...) where
+ * XLSReader returns the text of the previous cell of the row, or null (a row holding
+ * only such cells is read as empty by XLSReader). Numeric and string results are the
+ * same.
+ *
+ ***********************************************************
+ ################## Recommended Use: ########################
+ #  XLSEventReader reader = new XLSEventReader(filePath);   #
+ #  Iterator<List<String>> iterator = reader.getIterator(); #
+ #  while(iterator.hasNext()){                              #
+ #	List<String> row = iterator.next();                     #
+ #	if(row!=null){                                          #
+ #		 for(String data:row){                              #
+ #			// process data	here                            #
+ #	     }                                                  #
+ #   }                                                      #
+ # reader.close();                                          #
+ ############################################################
+ *
+ */
+public class XLSEventReader extends GenericFileReader{
+
+	/** The logger. */
+	private static Logger logger = Logger.getLogger(XLSEventReader.class.getName());
+
+	/** The xls file, the temporary copy of the stream when read from an input stream. */
+	private File xlsFile;
+
+	/** Temporary copy of the input stream, deleted by close(). */
+	private File spoolFile;
+
+	/** The POI file system holding the workbook stream. */
+	private NPOIFSFileSystem fileSystem;
+
+	/** The workbook stream. */
+	private InputStream workbookStream;
+
+	/** Records of the workbook stream after the workbook globals, null once used by an iterator. */
+	private RecordFactoryInputStream records;
+
+	/** Names of the sheets, in workbook order. */
+	private final List<String> sheetNames = new ArrayList<String>();
+
+	/** Offset of the BOF record of each sheet in the workbook stream. */
+	private final List<Integer> sheetOffsets = new ArrayList<Integer>();
+
+	/** Index of the active sheet, read when no sheet is selected. */
+	private int activeSheetIndex;
+
+	/** true if the workbook stream is encrypted, the records can not be read from an offset. */
+	private boolean encrypted;
+
+	/** Streams and file systems opened by the iterators and not read to the end yet. */
+	private final List<Closeable> openResources = new ArrayList<Closeable>();
+
+	/** The shared strings table. */
+	private SSTRecord sstRecord;
+
+	/** Custom number formats by format index. */
+	private final Map<Integer, String> customFormats = new HashMap<Integer, String>();
+
+	/** Format index of each extended format (XF) record. */
+	private final List<Integer> xfFormatIndexes = new ArrayList<Integer>();
+
+	/** true if the workbook uses the 1904 date system. */
+	private boolean date1904;
+
+	/** The read empty row. */
+	//true = empty rows will be read
+	private final boolean readEmptyRow;
+
+	/**
+	 * Performs Setup, Empty rows will also be read.
+	 *
+	 * @param filePath the file path
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public XLSEventReader(String filePath) throws IOException{
+		this(filePath,true);
+	}
+
+	/**
+	 * Take input stream as input and perform setup (Empty rows will also be read).
+	 * If input stream is null it will throw FileNotFoundException.
+	 *
+	 * @param iStream the i stream
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public XLSEventReader(InputStream iStream) throws IOException{
+		this(iStream,true);
+	}
+
+	/**
+	 * Performs Setup.
+	 * If file does not exist then FileNotFoundException will be thrown.
+	 * The file is opened read only and its blocks are read on demand.
+	 *
+	 * @param filePath (path of the .xls input file)
+	 * @param readEmptyRow (if false then empty rows will not be read)
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public XLSEventReader(String filePath,boolean readEmptyRow) throws IOException{
+		File xlsFile = new File(filePath);
+		if (!xlsFile.exists()) {
+			logger.info("Not found or not a file: " + xlsFile.getPath());
+			throw new FileNotFoundException("Not found or not a file: " + xlsFile.getPath());
+		}
+		this.readEmptyRow=readEmptyRow;
+		this.xlsFile = xlsFile;
+		process(new NPOIFSFileSystem(xlsFile, true));
+	}
+
+	/**
+	 * Take input stream as input and perform setup.
+	 * The stream is copied to a temporary file which is then read like a file given by
+	 * path, its blocks are read on demand instead of loading the whole file system in
+	 * heap. The temporary file is deleted by close().
+	 * If input stream is null it will throw FileNotFoundException.
+	 *
+	 * @param iStream (input stream for the .xls file)
+	 * @param readEmptyRow the read empty row
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	public XLSEventReader(InputStream iStream,boolean readEmptyRow) throws IOException{
+		if (iStream==null) {
+			logger.info("Input Stream is Null");
+			throw new FileNotFoundException("Input Stream is Null");
+		}
+		this.readEmptyRow=readEmptyRow;
+		this.spoolFile = spool(iStream, "xls");
+		this.xlsFile = spoolFile;
+		boolean processed = false;
+		try {
+			process(new NPOIFSFileSystem(spoolFile, true));
+			processed = true;
+		} finally {
+			if (!processed) {
+				if (fileSystem != null) {
+					fileSystem.close();
+				}
+				deleteSpoolFile();
+			}
+		}
+	}
+
+	/**
+	 * Return iterator for reading .xls file
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<List<String>> getIterator() {
+		return new SheetRows<List<String>>() {
+			Iterator<List<String>> openSheet(int sheetIndex) {
+				return new XLSEventIterator(false, sheetIndex);
+			}
+		};
+	}
+
+	/**
+	 * Return views of the rows for reading .xls file, see {@link RowView}.
+	 *
+	 * @param owned false for recycled views, true for copies
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<RowView> getRowViews(boolean owned) {
+		return rowViews(getTypedIterator(), owned);
+	}
+
+	/**
+	 * Return iterator over typed rows for reading .xls file.
+	 * Numeric cells keep the double of the NUMBER record and are never formatted
+	 * unless their String value is asked for.
+	 *
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<TypedRow> getTypedIterator() {
+		return new SheetRows<TypedRow>() {
+			Iterator<TypedRow> openSheet(int sheetIndex) {
+				return getTypedSheetIterator(sheetIndex);
+			}
+		};
+	}
+
+	/**
+	 * Returns the names of the sheets of the workbook.
+	 *
+	 * @return the sheet names
+	 */
+	@Override
+	public List<String> getSheetNames() {
+		return Collections.unmodifiableList(sheetNames);
+	}
+
+	@Override
+	Iterator<List<String>> getSheetIterator(int sheetIndex) {
+		return new XLSEventIterator(false, sheetIndex);
+	}
+
+	@Override
+	Iterator<TypedRow> getTypedSheetIterator(int sheetIndex) {
+		final XLSEventIterator rows = new XLSEventIterator(true, sheetIndex);
+		return new SkippableIterator<TypedRow>() {
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+			public TypedRow next() {
+				return rows.typedRow;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			public long skipRows(long n) {
+				return rows.skipRows(n);
+			}
+		};
+	}
+
+	@Override
+	int getDefaultSheetIndex() {
+		return activeSheetIndex;
+	}
+
+	/**
+	 * Perform resource cleanup like closing opened streams,etc.
+	 *
+	 * @throws Exception the exception
+	 */
+	@Override
+	public void close() throws Exception {
+		try {
+			synchronized(openResources){
+				for(Closeable resource:openResources){
+					resource.close();
+				}
+				openResources.clear();
+			}
+			if(workbookStream!=null){
+				workbookStream.close();
+			}
+			if(fileSystem!=null){
+				fileSystem.close();
+			}
+		} finally {
+			deleteSpoolFile();
+		}
+	}
+
+	/**
+	 * Deletes the temporary copy of the input stream.
+	 */
+	private void deleteSpoolFile() {
+		if (spoolFile != null && spoolFile.exists() && !spoolFile.delete()) {
+			logger.info("Could not delete temporary file: " + spoolFile.getPath());
+		}
+		spoolFile = null;
+	}
+
+	/**
+	 * Creates the date format used by HSSFCell.toString() for date cells.
+	 *
+	 * @return the date format
+	 */
+	static SimpleDateFormat createDateFormat() {
+		SimpleDateFormat sdf = new SimpleDateFormat("dd-MMM-yyyy", LocaleUtil.getUserLocale());
+		sdf.setTimeZone(LocaleUtil.getUserTimeZone());
+		return sdf;
+	}
+
+	/**
+	 * Initiates the processing of the XLS file.
+	 * Reads the workbook globals (SST, formats, sheets, active sheet), the record
+	 * stream is left at the beginning of the first sheet.
+	 *
+	 * @param fileSystem the POI file system
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private void process(NPOIFSFileSystem fileSystem) throws IOException{
+		this.fileSystem = fileSystem;
+		this.workbookStream = fileSystem.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(fileSystem.getRoot()));
+		this.records = new RecordFactoryInputStream(workbookStream, false);
+
+		activeSheetIndex = 0;
+		Record record;
+		// workbook globals, ends with the first EOF record
+		while ((record = records.nextRecord()) != null && !(record instanceof EOFRecord)) {
+			if (record instanceof SSTRecord) {
+				sstRecord = (SSTRecord) record;
+			} else if (record instanceof FormatRecord) {
+				FormatRecord formatRecord = (FormatRecord) record;
+				customFormats.put(formatRecord.getIndexCode(), formatRecord.getFormatString());
+			} else if (record instanceof ExtendedFormatRecord) {
+				xfFormatIndexes.add(Integer.valueOf(((ExtendedFormatRecord) record).getFormatIndex()));
+			} else if (record instanceof DateWindow1904Record) {
+				date1904 = ((DateWindow1904Record) record).getWindowing() == 1;
+			} else if (record instanceof WindowOneRecord) {
+				activeSheetIndex = ((WindowOneRecord) record).getActiveSheetIndex();
+			} else if (record instanceof BoundSheetRecord) {
+				BoundSheetRecord boundSheet = (BoundSheetRecord) record;
+				sheetNames.add(boundSheet.getSheetname());
+				sheetOffsets.add(Integer.valueOf(boundSheet.getPositionOfBof()));
+			} else if (record instanceof FilePassRecord) {
+				encrypted = true;
+			}
+		}
+		if (activeSheetIndex >= sheetNames.size()) {
+			activeSheetIndex = 0;
+		}
+	}
+
+	/**
+	 * Opens the records of one sheet, positioned just after its BOF record.
+	 * The records left after the workbook globals are used by the first iterator, the
+	 * other iterators read their own workbook stream; for file based readers the file
+	 * is opened again so the sheets can be read by different threads.
+	 *
+	 * @param sheetIndex zero based sheet index
+	 * @param resources the opened streams are added to this list
+	 * @return the records, null if the sheet does not exist
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private RecordFactoryInputStream openSheet(int sheetIndex, List<Closeable> resources) throws IOException {
+		if (sheetIndex >= sheetNames.size()) {
+			return null;
+		}
+		synchronized (openResources) {
+			if (records != null) {
+				RecordFactoryInputStream sheetRecords = records;
+				records = null;
+				skipToSheet(sheetRecords, sheetIndex);
+				return sheetRecords;
+			}
+		}
+		NPOIFSFileSystem sheetFileSystem = fileSystem;
+		if (xlsFile != null) {
+			sheetFileSystem = new NPOIFSFileSystem(xlsFile, true);
+			addResource(sheetFileSystem, resources);
+		}
+		InputStream sheetStream = sheetFileSystem.createDocumentInputStream(HSSFWorkbook.getWorkbookDirEntryName(sheetFileSystem.getRoot()));
+		addResource(sheetStream, resources);
+		if (encrypted) {
+			// decryption depends on the position in the stream, read from the beginning
+			RecordFactoryInputStream sheetRecords = new RecordFactoryInputStream(sheetStream, false);
+			skipToSheet(sheetRecords, sheetIndex + 1); // the workbook globals start with the first BOF
+			return sheetRecords;
+		}
+		return openSheetAt(sheetStream, sheetOffsets.get(sheetIndex).intValue(), sheetIndex);
+	}
+
+	/**
+	 * Opens the records of a sheet at the offset of its BOF record, positioned just
+	 * after the BOF record.
+	 *
+	 * @param sheetStream the workbook stream, at its beginning
+	 * @param offset offset of the BOF record of the sheet
+	 * @param sheetIndex zero based sheet index
+	 * @return the records
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	private static RecordFactoryInputStream openSheetAt(InputStream sheetStream, long offset, int sheetIndex) throws IOException {
+		while (offset > 0) {
+			long skipped = sheetStream.skip(offset);
+			if (skipped <= 0) {
+				throw new IOException("Offset of sheet " + sheetIndex + " past the end of the workbook stream");
+			}
+			offset -= skipped;
+		}
+		RecordFactoryInputStream sheetRecords = new RecordFactoryInputStream(sheetStream, false);
+		skipToSheet(sheetRecords, 0);
+		return sheetRecords;
+	}
+
+	/**
+	 * Reads the sheets of a xls file and the used range of each sheet. The workbook
+	 * globals are read as raw records: only the BOUNDSHEET and WINDOW1 records are
+	 * parsed, the SST and the formats are skipped. The range of a sheet is its
+	 * DIMENSIONS record, found before the rows; without it the ROW records are read.
+	 * Encrypted files are read through the reader, their SST is loaded.
+	 *
+	 * @param xlsFile the xls file
+	 * @return the workbook info
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	static WorkbookInfo inspect(File xlsFile) throws IOException {
+		List<String> sheetNames = new ArrayList<String>();
+		List<Integer> sheetOffsets = new ArrayList<Integer>();
+		int activeSheetIndex = 0;
+		boolean encrypted = false;
+		List<WorkbookInfo.SheetInfo> sheets = new ArrayList<WorkbookInfo.SheetInfo>();
+		NPOIFSFileSystem fileSystem = new NPOIFSFileSystem(xlsFile, true);
+		try {
+			String workbookName = HSSFWorkbook.getWorkbookDirEntryName(fileSystem.getRoot());
+			InputStream workbookStream = fileSystem.createDocumentInputStream(workbookName);
+			try {
+				RecordInputStream records = new RecordInputStream(workbookStream);
+				byte[] buffer = new byte[RecordInputStream.MAX_RECORD_DATA_SIZE];
+				// workbook globals, ends with the first EOF record
+				while (records.hasNextRecord()) {
+					records.nextRecord();
+					short sid = records.getSid();
+					if (sid == EOFRecord.sid) {
+						break;
+					} else if (sid == FilePassRecord.sid) {
+						encrypted = true;
+						break;
+					} else if (sid == WindowOneRecord.sid) {
+						activeSheetIndex = new WindowOneRecord(records).getActiveSheetIndex();
+					} else if (sid == BoundSheetRecord.sid) {
+						BoundSheetRecord boundSheet = new BoundSheetRecord(records);
+						sheetNames.add(boundSheet.getSheetname());
+						sheetOffsets.add(Integer.valueOf(boundSheet.getPositionOfBof()));
+					} else {
+						while (records.remaining() > 0) { // skipped without parsing
+							records.readFully(buffer, 0, Math.min(buffer.length, records.remaining()));
+						}
+					}
+				}
+			} finally {
+				workbookStream.close();
+			}
+			if (!encrypted) {
+				for (int i = 0; i < sheetNames.size(); i++) {
+					InputStream sheetStream = fileSystem.createDocumentInputStream(workbookName);
+					try {
+						sheets.add(inspectSheet(sheetNames.get(i), openSheetAt(sheetStream, sheetOffsets.get(i).intValue(), i)));
+					} finally {
+						sheetStream.close();
+					}
+				}
+			}
+		} finally {
+			fileSystem.close();
+		}
+		if (encrypted) {
+			XLSEventReader reader = new XLSEventReader(xlsFile.getPath(), true);
+			try {
+				for (int i = 0; i < reader.sheetNames.size(); i++) {
+					List<Closeable> resources = new ArrayList<Closeable>();
+					try {
+						sheets.add(inspectSheet(reader.sheetNames.get(i), reader.openSheet(i, resources)));
+					} finally {
+						reader.closeSheet(resources);
+					}
+				}
+				return new WorkbookInfo(sheets, reader.activeSheetIndex);
+			} finally {
+				try {
+					reader.close();
+				} catch (Exception e) {
+					logger.info("Failed to close reader: " + e.toString());
+				}
+			}
+		}
+		return new WorkbookInfo(sheets, activeSheetIndex < sheets.size() ? activeSheetIndex : 0);
+	}
+
+	/**
+	 * Reads the used range of one sheet, see {@link #inspect(File)}.
+	 *
+	 * @param sheetName the sheet name
+	 * @param records the records of the sheet, after its BOF record
+	 * @return the sheet info
+	 */
+	private static WorkbookInfo.SheetInfo inspectSheet(String sheetName, RecordFactoryInputStream records) {
+		long firstRow = -1;
+		long lastRow = -1;
+		int firstColumn = -1;
+		int lastColumn = -1;
+		int depth = 0;
+		Record record;
+		while ((record = records.nextRecord()) != null) {
+			if (record instanceof BOFRecord) {
+				++depth;
+			} else if (record instanceof EOFRecord) {
+				if (depth == 0) {
+					break;
+				}
+				--depth;
+			} else if (depth > 0) {
+				continue;
+			} else if (record instanceof DimensionsRecord) {
+				// last row and column are exclusive
+				DimensionsRecord dimensions = (DimensionsRecord) record;
+				return WorkbookInfo.SheetInfo.ofRange(sheetName, dimensions.getFirstRow(), dimensions.getLastRow() - 1,
+						dimensions.getFirstCol(), dimensions.getLastCol() - 1);
+			} else if (record instanceof RowRecord) {
+				RowRecord row = (RowRecord) record;
+				firstRow = firstRow == -1 ? row.getRowNumber() : Math.min(firstRow, row.getRowNumber());
+				lastRow = Math.max(lastRow, row.getRowNumber());
+				if (row.getLastCol() > row.getFirstCol()) {
+					firstColumn = firstColumn == -1 ? row.getFirstCol() : Math.min(firstColumn, row.getFirstCol());
+					lastColumn = Math.max(lastColumn, row.getLastCol() - 1);
+				}
+			}
+		}
+		return WorkbookInfo.SheetInfo.ofRange(sheetName, firstRow, lastRow, firstColumn, lastColumn);
+	}
+
+	/**
+	 * Adds a stream opened for a sheet to the resources of the sheet and of the reader.
+	 *
+	 * @param resource the stream
+	 * @param resources the resources of the sheet
+	 */
+	private void addResource(Closeable resource, List<Closeable> resources) {
+		resources.add(resource);
+		synchronized (openResources) {
+			openResources.add(resource);
+		}
+	}
+
+	/**
+	 * Closes the streams opened for a sheet.
+	 *
+	 * @param resources the resources of the sheet
+	 */
+	private void closeSheet(List<Closeable> resources) {
+		for (int i = resources.size() - 1; i >= 0; i--) {
+			Closeable resource = resources.get(i);
+			synchronized (openResources) {
+				openResources.remove(resource);
+			}
+			try {
+				resource.close();
+			} catch (IOException e) {
+				logger.info("Failed to close sheet stream: " + e.toString());
+			}
+		}
+		resources.clear();
+	}
+
+	/**
+	 * Moves the record stream just after the BOF record of the sheet with the given index,
+	 * counting from the current position. Records of the preceding sheets are read and discarded.
+	 *
+	 * @param records the records
+	 * @param sheetIndex zero based sheet index
+	 */
+	private static void skipToSheet(RecordFactoryInputStream records, int sheetIndex) {
+		int currentSheet = -1;
+		int depth = 0;
+		Record record;
+		while ((record = records.nextRecord()) != null) {
+			if (record instanceof BOFRecord) {
+				if (depth == 0 && ++currentSheet == sheetIndex) {
+					return;
+				}
+				++depth;
+			} else if (record instanceof EOFRecord) {
+				--depth;
+			}
+		}
+	}
+
+	/**
+	 * Checks if a numeric cell is a valid date with a date format.
+	 *
+	 * @param value the numeric value
+	 * @param xfIndex index of the extended format of the cell
+	 * @return true if the cell is a date
+	 */
+	private boolean isDateFormatted(double value, int xfIndex) {
+		if (xfIndex >= 0 && xfIndex < xfFormatIndexes.size() && DateUtil.isValidExcelDate(value)) {
+			int formatIndex = xfFormatIndexes.get(xfIndex).intValue();
+			String formatString = customFormats.get(Integer.valueOf(formatIndex));
+			if (formatString == null) {
+				formatString = BuiltinFormats.getBuiltinFormat(formatIndex);
+			}
+			return DateUtil.isADateFormat(formatIndex, formatString);
+		}
+		return false;
+	}
+
+	/**
+	 * Provide implementation of the Iterator interface for iterating
+	 * over the rows of one sheet of input xls file.
+	 *
+	 */
+	private class XLSEventIterator implements SkippableIterator<List<String>>, Closeable{
+
+		/** Records of the sheet, null if the sheet does not exist. */
+		private final RecordFactoryInputStream records;
+
+		/** Streams opened for the sheet, closed at the end of the sheet. */
+		private final List<Closeable> resources = new ArrayList<Closeable>();
+
+		/** The columns to read, resolved against the header row of this sheet. */
+		private final ColumnProjection projection;
+
+		/** Date format used for date formatted numeric cells, same as HSSFCell.toString(). */
+		private final SimpleDateFormat dateFormat = createDateFormat();
+
+		/** points to the current column being referenced. */
+		private int thisColumn = -1;
+
+		/** The last column printed to the output stream */
+		private int lastColumnNumber = -1;
+
+		/** holds true for the first row(header row), else holds false; */
+		private boolean isHeader=true;
+
+		/** hold the number of headerColumns, used to generate empty string for last empty columns */
+		private int numberOfHeaders = 0;
+
+		/** private Row currentRow; */
+		private final List<String> currentRow = new ArrayList<String>();
+
+		/** Row numbers announced by ROW records which have not been returned yet. */
+		private final Deque<Integer> pendingRows = new ArrayDeque<Integer>();
+
+		/** First cell record of the next row, read while looking for the end of the current row. */
+		private CellValueRecordInterface lookAhead;
+
+		/** Blank cells of a MULBLANK record which have not been returned yet. */
+		private final Deque<CellValueRecordInterface> queuedCells = new ArrayDeque<CellValueRecordInterface>();
+
+		/** Depth of nested substreams (e.g. embedded charts) inside the sheet. */
+		private int depth;
+
+		/** Set when the EOF record of the sheet has been read. */
+		private boolean sheetEnds;
+
+		/** Typed cells of the current row, null when the iterator returns Strings. */
+		private final CellRow typedRow;
+
+		/**
+		 * Set while no cell of the row has a value so far. A row is only empty when all
+		 * its cells are, whatever the projection: a decoded row only looks at the cells
+		 * it does not read.
+		 */
+		private boolean rowBlank;
+
+		/**
+		 * Performs initialization.
+		 *
+		 * @param typed true to read the cells into a typed row instead of Strings
+		 * @param sheetIndex zero based index of the sheet to read
+		 */
+		XLSEventIterator(boolean typed, int sheetIndex) {
+			try {
+				this.records = openSheet(sheetIndex, resources);
+			} catch (IOException e) {
+				closeSheet(resources);
+				throw new RuntimeException(e);
+			}
+			this.sheetEnds = records == null;
+			this.projection = XLSEventReader.this.projection == null ? null : XLSEventReader.this.projection.copy();
+			this.typedRow = !typed ? null : new CellRow(new CellRow.NumberFormatter() {
+				public String format(double value, int style) {
+					return formatNumber(value, style);
+				}
+			}, date1904);
+		}
+
+		/**
+		 * if readEmptyRow is set to false then this method will look for the next non empty row and will return true after updating the current row.
+		 * otherwise it check for the next available row , update current row & return.
+		 *
+		 * @return true, if successful
+		 */
+		public boolean hasNext() {
+			if(readEmptyRow){
+				return nextRow();
+			}
+			while(nextRow()){
+				if(!rowBlank || (typedRow != null ? !typedRow.isEmpty() : !isEmptyCurrentRow(this.currentRow))){
+					return true;
+				}
+			}
+			return false;
+		}
+
+		/**
+		 * This method returns list of cell data of current row.
+		 * This method should not be called before calling hasNext() method.
+		 * Empty string("") is returned as value of empty cell.
+		 *
+		 * @return the list
+		 */
+		public List<String> next() {
+			return this.currentRow;
+		}
+
+		/**
+		 * NOT SUPPORTED IN THE CURRENT IMPLEMENTATION.
+		 */
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+
+		/**
+		 * Closes the sheet before its end, e.g. when the read is cancelled.
+		 */
+		public void close() {
+			sheetEnds = true;
+			pendingRows.clear();
+			closeSheet(resources);
+		}
+
+		/**
+		 * Skips rows by looking for the row boundaries only: the cell records are not
+		 * decoded, with empty rows not read they are only looked at until the row is
+		 * known not to be empty.
+		 *
+		 * @param n number of rows to skip
+		 * @return the number of rows skipped
+		 */
+		public long skipRows(long n) {
+			long skipped = 0;
+			while (skipped < n) {
+				if (isHeader) { // the header row gives the number of columns
+					if (!hasNext()) {
+						break;
+					}
+					skipped++;
+					continue;
+				}
+				rowBlank = true;
+				if (!skipRow()) {
+					break;
+				}
+				if (readEmptyRow || !rowBlank) {
+					skipped++;
+				}
+			}
+			return skipped;
+		}
+
+		/**
+		 * Reads cell records until the next row is complete.
+		 * Rows announced by a ROW record but without any cell are returned as empty rows.
+		 *
+		 * @return true if a row was read, false at the end of the sheet
+		 */
+		private boolean nextRow() {
+			if (typedRow != null) {
+				typedRow.clear(projection != null && projection.isResolved() ? projection.size() : 0);
+			} else if (projection != null && projection.isResolved()) {
+				projection.clear(this.currentRow);
+			} else {
+				this.currentRow.clear();
+			}
+			lastColumnNumber = -1;
+			rowBlank = true;
+			int rowNumber = -1;
+			CellValueRecordInterface cell;
+			while ((cell = nextCell()) != null) {
+				if (rowNumber == -1) {
+					Integer pending = pendingRows.peek();
+					if (pending != null && pending.intValue() < cell.getRow()) {
+						// row without cells
+						pendingRows.poll();
+						lookAhead = cell;
+						return endRow();
+					}
+					if (pending != null && pending.intValue() == cell.getRow()) {
+						pendingRows.poll();
+					}
+					rowNumber = cell.getRow();
+				} else if (cell.getRow() != rowNumber) {
+					lookAhead = cell;
+					return endRow();
+				}
+				addCell(cell);
+			}
+			if (rowNumber != -1) {
+				return endRow();
+			}
+			if (pendingRows.poll() != null) {
+				return endRow();
+			}
+			closeSheet(resources);
+			return false;
+		}
+
+		/**
+		 * Reads cell records until the next row is complete without decoding them.
+		 * Clears rowBlank when a cell has a value.
+		 *
+		 * @return true if a row was found, false at the end of the sheet
+		 */
+		private boolean skipRow() {
+			int rowNumber = -1;
+			CellValueRecordInterface cell;
+			while ((cell = nextCell()) != null) {
+				if (rowNumber == -1) {
+					Integer pending = pendingRows.peek();
+					if (pending != null && pending.intValue() < cell.getRow()) {
+						// row without cells
+						pendingRows.poll();
+						lookAhead = cell;
+						return true;
+					}
+					if (pending != null && pending.intValue() == cell.getRow()) {
+						pendingRows.poll();
+					}
+					rowNumber = cell.getRow();
+				} else if (cell.getRow() != rowNumber) {
+					lookAhead = cell;
+					return true;
+				}
+				if (rowBlank && !readEmptyRow && !isBlankCell(cell)) {
+					rowBlank = false;
+				}
+			}
+			if (rowNumber != -1 || pendingRows.poll() != null) {
+				return true;
+			}
+			closeSheet(resources);
+			return false;
+		}
+
+		/**
+		 * Tells whether a cell would be read as empty or whitespace, looking up the
+		 * text of string cells only.
+		 *
+		 * @param cell the cell record
+		 * @return true if the cell has no value
+		 */
+		@SuppressWarnings("deprecation")
+		private boolean isBlankCell(CellValueRecordInterface cell) {
+			if (cell instanceof LabelSSTRecord) {
+				return StringUtils.isWhitespace(sstRecord.getString(((LabelSSTRecord) cell).getSSTIndex()).getString());
+			}
+			if (cell instanceof FormulaRecord) {
+				return ((FormulaRecord) cell).getCachedResultType() == Cell.CELL_TYPE_STRING
+						&& StringUtils.isWhitespace(nextFormulaString());
+			}
+			if (cell instanceof LabelRecord) {
+				return StringUtils.isWhitespace(((LabelRecord) cell).getValue());
+			}
+			return cell instanceof BlankRecord;
+		}
+
+		/**
+		 * Returns the text of a numeric cell, formatted the same way as HSSFCell.toString().
+		 *
+		 * @param value the numeric value
+		 * @param xfIndex index of the extended format of the cell
+		 * @return the text
+		 */
+		private String formatNumber(double value, int xfIndex) {
+			if (isDateFormatted(value, xfIndex)) {
+				return dateFormat.format(DateUtil.getJavaDate(value, date1904));
+			}
+			return String.valueOf(value);
+		}
+
+		/**
+		 * Returns the next cell record of the sheet.
+		 * ROW records are remembered, other records are skipped.
+		 *
+		 * @return the cell record, null at the end of the sheet
+		 */
+		private CellValueRecordInterface nextCell() {
+			if (lookAhead != null) {
+				CellValueRecordInterface cell = lookAhead;
+				lookAhead = null;
+				return cell;
+			}
+			if (!queuedCells.isEmpty()) {
+				return queuedCells.poll();
+			}
+			Record record;
+			while (!sheetEnds && (record = records.nextRecord()) != null) {
+				if (record instanceof BOFRecord) {
+					++depth;
+				} else if (record instanceof EOFRecord) {
+					if (depth == 0) {
+						sheetEnds = true;
+					} else {
+						--depth;
+					}
+				} else if (depth > 0) {
+					continue;
+				} else if (record instanceof RowRecord) {
+					pendingRows.add(Integer.valueOf(((RowRecord) record).getRowNumber()));
+				} else if (record instanceof MulBlankRecord) {
+					MulBlankRecord mulBlank = (MulBlankRecord) record;
+					for (int i = 0; i < mulBlank.getNumColumns(); i++) {
+						BlankRecord blank = new BlankRecord();
+						blank.setRow(mulBlank.getRow());
+						blank.setColumn((short) (mulBlank.getFirstColumn() + i));
+						blank.setXFIndex(mulBlank.getXFAt(i));
+						queuedCells.add(blank);
+					}
+					return queuedCells.poll();
+				} else if (record instanceof CellValueRecordInterface) {
+					return (CellValueRecordInterface) record;
+				}
+			}
+			return null;
+		}
+
+		/**
+		 * Adds the text of the given cell to the current row.
+		 *
+		 * @param cell the cell record
+		 */
+		@SuppressWarnings("deprecation")
+		private void addCell(CellValueRecordInterface cell) {
+			String thisStr = "";
+			thisColumn = cell.getColumn();
+			boolean projected = projection != null && projection.isResolved();
+			if (projected && !projection.isSelected(thisColumn)) {
+				// column not read, skip before the SST lookup or formatting; until the row is
+				// known not to be empty, the value is still looked at
+				if (rowBlank && !readEmptyRow && !isBlankCell(cell)) {
+					rowBlank = false;
+				}
+				return;
+			}
+			if (typedRow != null) {
+				if(isHeader){
+					++numberOfHeaders;
+				}
+				setTypedCell(cell, projected ? projection.getPosition(thisColumn) : thisColumn);
+				return;
+			}
+			if (cell instanceof LabelSSTRecord) {
+				thisStr = sstRecord.getString(((LabelSSTRecord) cell).getSSTIndex()).getString();
+			} else if (cell instanceof NumberRecord) {
+				thisStr = formatNumber(((NumberRecord) cell).getValue(), cell.getXFIndex());
+			} else if (cell instanceof BoolErrRecord) {
+				BoolErrRecord boolErr = (BoolErrRecord) cell;
+				if (boolErr.isBoolean()) {
+					thisStr = boolErr.getBooleanValue() ? "TRUE" : "FALSE";
+				} else {
+					thisStr = ErrorEval.getText(boolErr.getErrorValue());
+				}
+			} else if (cell instanceof FormulaRecord) {
+				FormulaRecord formula = (FormulaRecord) cell;
+				switch (formula.getCachedResultType()) {
+				case Cell.CELL_TYPE_NUMERIC:
+					thisStr = formatNumber(formula.getValue(), cell.getXFIndex());
+					break;
+				case Cell.CELL_TYPE_STRING:
+					thisStr = nextFormulaString();
+					break;
+				case Cell.CELL_TYPE_BOOLEAN:
+					thisStr = formula.getCachedBooleanValue() ? "TRUE" : "FALSE";
+					break;
+				case Cell.CELL_TYPE_ERROR:
+					thisStr = ErrorEval.getText(formula.getCachedErrorValue());
+					break;
+				}
+			} else if (cell instanceof LabelRecord) {
+				thisStr = ((LabelRecord) cell).getValue();
+			}
+
+			if (projected) {
+				this.currentRow.set(projection.getPosition(thisColumn), thisStr);
+				return;
+			}
+
+			// counting the number of header columns. Header columns cannot be empty hence empty checking logic is not required.
+			if(isHeader){
+				++numberOfHeaders;
+			}
+
+			for (int i = lastColumnNumber; i < thisColumn-1; i++){
+				this.currentRow.add("");
+			}
+			this.currentRow.add(thisStr);
+
+			// Update column
+			if (thisColumn > -1){
+				lastColumnNumber = thisColumn;
+			}
+		}
+
+		/**
+		 * Stores the raw value of the given cell in the typed row.
+		 *
+		 * @param cell the cell record
+		 * @param column index of the cell in the typed row
+		 */
+		@SuppressWarnings("deprecation")
+		private void setTypedCell(CellValueRecordInterface cell, int column) {
+			if (cell instanceof LabelSSTRecord) {
+				typedRow.setText(column, sstRecord.getString(((LabelSSTRecord) cell).getSSTIndex()).getString());
+			} else if (cell instanceof NumberRecord) {
+				double value = ((NumberRecord) cell).getValue();
+				typedRow.setNumber(column, value, cell.getXFIndex(), isDateFormatted(value, cell.getXFIndex()));
+			} else if (cell instanceof BoolErrRecord) {
+				BoolErrRecord boolErr = (BoolErrRecord) cell;
+				if (boolErr.isBoolean()) {
+					typedRow.setBoolean(column, boolErr.getBooleanValue());
+				} else {
+					typedRow.setError(column, ErrorEval.getText(boolErr.getErrorValue()));
+				}
+			} else if (cell instanceof FormulaRecord) {
+				FormulaRecord formula = (FormulaRecord) cell;
+				switch (formula.getCachedResultType()) {
+				case Cell.CELL_TYPE_NUMERIC:
+					typedRow.setNumber(column, formula.getValue(), cell.getXFIndex(), isDateFormatted(formula.getValue(), cell.getXFIndex()));
+					break;
+				case Cell.CELL_TYPE_STRING:
+					typedRow.setText(column, nextFormulaString());
+					break;
+				case Cell.CELL_TYPE_BOOLEAN:
+					typedRow.setBoolean(column, formula.getCachedBooleanValue());
+					break;
+				case Cell.CELL_TYPE_ERROR:
+					typedRow.setError(column, ErrorEval.getText(formula.getCachedErrorValue()));
+					break;
+				}
+			} else if (cell instanceof LabelRecord) {
+				typedRow.setText(column, ((LabelRecord) cell).getValue());
+			}
+		}
+
+		/**
+		 * Reads the STRING record holding the cached result of a string formula.
+		 * It follows the FORMULA record (possibly after a shared formula record).
+		 *
+		 * @return the cached formula result
+		 */
+		private String nextFormulaString() {
+			Record record;
+			while ((record = records.nextRecord()) != null) {
+				if (record instanceof StringRecord) {
+					return ((StringRecord) record).getString();
+				}
+				if (record instanceof CellValueRecordInterface || record instanceof EOFRecord) {
+					logger.info("STRING record missing for string formula");
+					if (record instanceof EOFRecord) {
+						sheetEnds = true;
+					} else {
+						lookAhead = (CellValueRecordInterface) record;
+					}
+					break;
+				}
+			}
+			return "";
+		}
+
+		/**
+		 * Completes the current row by adding empty strings for the missing trailing columns.
+		 *
+		 * @return always true
+		 */
+		private boolean endRow() {
+			if (typedRow != null) {
+				if (!isHeader && numberOfHeaders > 0 && projection == null) {
+					typedRow.pad(numberOfHeaders);
+				}
+				if (projection != null && !projection.isResolved()) { // header row, resolve the column names
+					projection.resolve(typedRow.toStringList());
+					typedRow.project(projection);
+				}
+				isHeader=false;
+				return true;
+			}
+			// Print out any missing commas if needed for rows other than header row.
+			if (!isHeader && numberOfHeaders > 0 && projection == null) {
+				for (int i = lastColumnNumber; i < numberOfHeaders-1; i++) {
+					this.currentRow.add("");
+				}
+			}
+			if (projection != null && !projection.isResolved()) { // header row, resolve the column names
+				projection.resolve(this.currentRow);
+				projection.project(this.currentRow);
+			}
+			if(isHeader){
+				isHeader=false;
+			}
+			return true;
+		}
+	}
+
+}
@@ -5,16 +5,20 @@ import java.io.FileInputStream;
 import java.io.FileNotFoundException;
 import java.io.IOException;
 import java.io.InputStream;
+import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Iterator;
 import java.util.List;
 import java.util.logging.Logger;
 
+import org.apache.commons.lang.StringUtils;
 import org.apache.poi.hssf.usermodel.HSSFDateUtil;
 import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.formula.eval.ErrorEval;
 import org.apache.poi.ss.usermodel.BuiltinFormats;
 import org.apache.poi.ss.usermodel.Cell;
 import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DateUtil;
 import org.apache.poi.ss.usermodel.Row;
 import org.apache.poi.ss.usermodel.Sheet;
 import org.apache.poi.ss.usermodel.Workbook;
@@ -52,9 +56,6 @@ public class XLSReader extends GenericFileReader{
 	/** The wb. */
 	private Workbook wb;
 	
-	/** The sheet. */
-	private Sheet sheet;
-	
 	/** The read empty row. */
 	//true = empty rows will be read
 	private final boolean readEmptyRow;
@@ -130,7 +131,84 @@ public class XLSReader extends GenericFileReader{
 	 */
 	@Override
 	public Iterator<List<String>> getIterator() {
-		return new XLSIterator();
+		return new SheetRows<List<String>>() {
+			Iterator<List<String>> openSheet(int sheetIndex) {
+				return new XLSIterator(false, sheetIndex);
+			}
+		};
+	}
+
+	/**
+	 * Return views of the rows for reading .xls file, see {@link RowView}.
+	 *
+	 * @author Dickens Prabhu
+	 * @param owned false for recycled views, true for copies
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<RowView> getRowViews(boolean owned) {
+		return rowViews(getTypedIterator(), owned);
+	}
+
+	/**
+	 * Return iterator over typed rows for reading .xls file.
+	 * Numeric cells keep their double value and are never formatted unless their
+	 * String value is asked for.
+	 *
+	 * @author Dickens Prabhu
+	 * @return the iterator
+	 */
+	@Override
+	public Iterator<TypedRow> getTypedIterator() {
+		return new SheetRows<TypedRow>() {
+			Iterator<TypedRow> openSheet(int sheetIndex) {
+				return getTypedSheetIterator(sheetIndex);
+			}
+		};
+	}
+
+	/**
+	 * Returns the names of the sheets of the workbook.
+	 *
+	 * @author Dickens Prabhu
+	 * @return the sheet names
+	 */
+	@Override
+	public List<String> getSheetNames() {
+		List<String> sheetNames = new ArrayList<String>();
+		for (int i = 0; i < wb.getNumberOfSheets(); i++) {
+			sheetNames.add(wb.getSheetName(i));
+		}
+		return sheetNames;
+	}
+
+	@Override
+	Iterator<List<String>> getSheetIterator(int sheetIndex) {
+		return new XLSIterator(false, sheetIndex);
+	}
+
+	@Override
+	Iterator<TypedRow> getTypedSheetIterator(int sheetIndex) {
+		final XLSIterator rows = new XLSIterator(true, sheetIndex);
+		return new SkippableIterator<TypedRow>() {
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+			public TypedRow next() {
+				return rows.typedRow;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			public long skipRows(long n) {
+				return rows.skipRows(n);
+			}
+		};
+	}
+
+	@Override
+	int getDefaultSheetIndex() {
+		return wb.getActiveSheetIndex();
 	}
 
 	/**
@@ -147,26 +225,24 @@ public class XLSReader extends GenericFileReader{
 	}
 
 	/**
-	 * Initiates the processing of the XLSX file.
-	 * The current implementation process the first sheet only.
+	 * Initiates the processing of the XLS file.
+	 * The whole workbook is loaded, the iterators read its sheets.
 	 *
 	 * @param iStream the i stream
 	 * @throws IOException Signals that an I/O exception has occurred.
 	 */
 	private void process(InputStream iStream) throws IOException{
 		wb = new HSSFWorkbook(iStream);
-		sheet = wb.getSheetAt(wb.getActiveSheetIndex()); // get active sheet
-		
 	}
 	
 	/**
 	 * Provide implementation of the Iterator interface for iterating 
-	 * over the rows of input xlsx file.
+	 * over the rows of one sheet of input xls file.
 	 * 
 	 * @author Dickens Prabhu
 	 *
 	 */
-	private class XLSIterator implements Iterator<List<String>>{
+	private class XLSIterator implements SkippableIterator<List<String>>{
 
 		/** points to the current column being referenced. */
 		private int thisColumn = -1;
@@ -186,12 +262,42 @@ public class XLSReader extends GenericFileReader{
 		/** row iterator from poi */
 		private Iterator<Row> rowIterator;
 		
+		/** the row read last by nextRow() */
+		private Row row;
+		
+		/** typed cells of the current row, null when the iterator returns Strings */
+		private final CellRow typedRow;
+		
+		/** the columns to read, resolved against the header row of this sheet */
+		private final ColumnProjection projection;
+		
 		/**
 		 * Performs initialization.
+		 *
+		 * @param typed true to read the cells into a typed row instead of Strings
+		 * @param sheetIndex zero based index of the sheet to read
 		 */
-		public XLSIterator() {
+		public XLSIterator(boolean typed, int sheetIndex) {
 			this.currentRow = new ArrayList<String>();
+			Sheet sheet = wb.getSheetAt(sheetIndex);
 			rowIterator = sheet.iterator();
+			this.projection = XLSReader.this.projection == null ? null : XLSReader.this.projection.copy();
+			if (typed) {
+				final boolean date1904 = ((HSSFWorkbook) wb).getInternalWorkbook().isUsing1904DateWindowing();
+				final SimpleDateFormat dateFormat = XLSEventReader.createDateFormat();
+				this.typedRow = new CellRow(new CellRow.NumberFormatter() {
+					public String format(double value, int style) {
+						// same as cell.toString()
+						CellStyle cellStyle = wb.getCellStyleAt(style);
+						if (DateUtil.isValidExcelDate(value) && DateUtil.isADateFormat(cellStyle.getDataFormat(), cellStyle.getDataFormatString())) {
+							return dateFormat.format(DateUtil.getJavaDate(value, date1904));
+						}
+						return String.valueOf(value);
+					}
+				}, date1904);
+			} else {
+				this.typedRow = null;
+			}
 		}
 		
 		
@@ -223,7 +329,12 @@ public class XLSReader extends GenericFileReader{
 			}else{
 				while(rowIterator.hasNext()){
 					nextRow();
-					if(!isEmptyCurrentRow(this.currentRow)){
+					// a row is only empty when all its cells are, whatever the projection
+					boolean projected = projection!=null && projection.isResolved();
+					if(typedRow!=null ? !typedRow.isEmpty() : !isEmptyCurrentRow(this.currentRow)){
+						return true;
+					}
+					if(projected && hasValue(row)){
 						return true;
 					}
 				}
@@ -231,6 +342,62 @@ public class XLSReader extends GenericFileReader{
 			return false;
 		}
 		
+		/**
+		 * Skips rows without formatting their cells; with empty rows not read, the
+		 * cells are only looked at until the row is known not to be empty.
+		 *
+		 * @author Dickens Prabhu
+		 * @param n number of rows to skip
+		 * @return the number of rows skipped
+		 */
+		public long skipRows(long n) {
+			long skipped = 0;
+			while (skipped < n) {
+				if (isHeader) { // the header row gives the number of columns
+					if (!hasNextRow()) {
+						break;
+					}
+					skipped++;
+				} else if (!rowIterator.hasNext()) {
+					break;
+				} else {
+					Row row = rowIterator.next();
+					if (readEmptyRow || hasValue(row)) {
+						skipped++;
+					}
+				}
+			}
+			return skipped;
+		}
+
+		/**
+		 * Tells whether a cell of the row has a value, read or not, the same way the
+		 * decoded row would be found not empty.
+		 *
+		 * @author Dickens Prabhu
+		 * @param row the row
+		 * @return true if the row is not empty
+		 */
+		@SuppressWarnings("deprecation")
+		private boolean hasValue(Row row) {
+			Iterator<Cell> cellIterator = row.cellIterator();
+			while(cellIterator.hasNext()){
+				Cell cell = cellIterator.next();
+				int cellType = cell.getCellType();
+				if(cellType==Cell.CELL_TYPE_FORMULA){
+					cellType = cell.getCachedFormulaResultType();
+				}
+				if(cellType==Cell.CELL_TYPE_STRING){
+					if(!StringUtils.isWhitespace(cell.getRichStringCellValue().getString())){
+						return true;
+					}
+				}else if(cellType!=Cell.CELL_TYPE_BLANK){
+					return true;
+				}
+			}
+			return false;
+		}
+
 		/**
 		 * This method returns list of cell data of current row.
 		 * This method should not be called before calling hasNext() method.
@@ -257,11 +424,21 @@ public class XLSReader extends GenericFileReader{
 			int cellType;
 			clearCurrentRow();
 			lastColumnNumber=-1;
-			Row row = rowIterator.next();
+			row = rowIterator.next();
 			Iterator<Cell> cellIterator = row.cellIterator();
 			while(cellIterator.hasNext()){
 				Cell cell = cellIterator.next();
 				thisColumn= cell.getColumnIndex();
+				if(projection!=null && projection.isResolved() && !projection.isSelected(thisColumn)){
+					continue; // column not read, skip before formatting
+				}
+				if(typedRow!=null){
+					if(isHeader){
+						++numberOfHeaders;
+					}
+					setTypedCell(cell, projection!=null && projection.isResolved() ? projection.getPosition(thisColumn) : thisColumn);
+					continue;
+				}
 				cellType = cell.getCellType();
 				CellStyle style = cell.getCellStyle();
 				int formatIndex=-1;
@@ -316,6 +493,11 @@ public class XLSReader extends GenericFileReader{
 					thisStr = cell.getStringCellValue();
 				}
 				
+				if(projection!=null && projection.isResolved()){
+					this.currentRow.set(projection.getPosition(thisColumn), thisStr);
+					continue;
+				}
+				
 				// counting the number of header columns. Header columns cannot be empty hence empty checking logic is not required.
 				if(isHeader){
 					++numberOfHeaders;
@@ -334,11 +516,24 @@ public class XLSReader extends GenericFileReader{
 	             }
 			}
             // Print out any missing commas if needed for rows other than header row.
-            if (!isHeader && numberOfHeaders > 0) {
+            if (!isHeader && numberOfHeaders > 0 && projection == null) {
                
                 for (int i = lastColumnNumber; i < numberOfHeaders-1; i++) {
                	 updateCurrentRow("");
                 }
+                if(typedRow!=null){
+                	typedRow.pad(numberOfHeaders);
+                }
+            }
+            
+            if(projection!=null && !projection.isResolved()){ // header row, resolve the column names
+            	if(typedRow!=null){
+            		projection.resolve(typedRow.toStringList());
+            		typedRow.project(projection);
+            	}else{
+            		projection.resolve(this.currentRow);
+            		projection.project(this.currentRow);
+            	}
             }
 			
 			if(isHeader){
@@ -364,8 +559,38 @@ public class XLSReader extends GenericFileReader{
 		 * @author Dickens Prabhu
 		 */
 		private void clearCurrentRow(){
-			if(this.currentRow!=null){
-				this.currentRow.clear();
+			if(this.typedRow!=null){
+				this.typedRow.clear(projection!=null && projection.isResolved() ? projection.size() : 0);
+			}else if(this.currentRow!=null){
+				if(projection!=null && projection.isResolved()){
+					projection.clear(this.currentRow);
+				}else{
+					this.currentRow.clear();
+				}
+			}
+		}
+		
+		/**
+		 * Stores the raw value of the given cell in the typed row.
+		 *
+		 * @author Dickens Prabhu
+		 * @param cell the cell
+		 * @param column index of the cell in the typed row
+		 */
+		@SuppressWarnings("deprecation")
+		private void setTypedCell(Cell cell, int column){
+			int cellType = cell.getCellType();
+			if(cellType==Cell.CELL_TYPE_FORMULA){
+				cellType = cell.getCachedFormulaResultType();
+			}
+			if(cellType==Cell.CELL_TYPE_NUMERIC){
+				typedRow.setNumber(column, cell.getNumericCellValue(), cell.getCellStyle().getIndex(), HSSFDateUtil.isCellDateFormatted(cell));
+			}else if(cellType==Cell.CELL_TYPE_STRING){
+				typedRow.setText(column, cell.getRichStringCellValue().toString());
+			}else if(cellType==Cell.CELL_TYPE_BOOLEAN){
+				typedRow.setBoolean(column, cell.getBooleanCellValue());
+			}else if(cellType==Cell.CELL_TYPE_ERROR){
+				typedRow.setError(column, ErrorEval.getText(cell.getErrorCellValue()));
 			}
 		}
 		
@@ -1,28 +1,36 @@
 package com.dickens.core.parser;
+import java.io.Closeable;
 import java.io.File;
 import java.io.FileNotFoundException;
+import java.io.FileOutputStream;
 import java.io.IOException;
 import java.io.InputStream;
+import java.io.OutputStream;
 import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.List;
+import java.util.Map;
 import java.util.logging.Logger;
 
 import javax.xml.parsers.ParserConfigurationException;
-import javax.xml.stream.XMLInputFactory;
 import javax.xml.stream.XMLStreamException;
 import javax.xml.stream.XMLStreamReader;
 
+import org.apache.commons.lang.StringUtils;
+import org.apache.poi.openxml4j.exceptions.InvalidFormatException;
 import org.apache.poi.openxml4j.exceptions.OpenXML4JException;
 import org.apache.poi.openxml4j.opc.OPCPackage;
+import org.apache.poi.openxml4j.opc.PackagePart;
+import org.apache.poi.openxml4j.opc.PackageRelationship;
+import org.apache.poi.openxml4j.opc.PackageRelationshipCollection;
+import org.apache.poi.openxml4j.opc.PackageRelationshipTypes;
 import org.apache.poi.openxml4j.opc.PackageAccess;
-import org.apache.poi.ss.usermodel.BuiltinFormats;
-import org.apache.poi.ss.usermodel.DataFormatter;
-import org.apache.poi.ss.usermodel.DateUtil;
-import org.apache.poi.xssf.eventusermodel.ReadOnlySharedStringsTable;
+import org.apache.poi.openxml4j.opc.PackagingURIHelper;
+import org.apache.poi.openxml4j.opc.TargetMode;
 import org.apache.poi.xssf.eventusermodel.XSSFReader;
 import org.apache.poi.xssf.model.StylesTable;
-import org.apache.poi.xssf.usermodel.XSSFCellStyle;
 import org.apache.poi.xssf.usermodel.XSSFRichTextString;
 import org.xml.sax.SAXException;
 
@@ -64,24 +72,63 @@ public class XLSXReader extends GenericFileReader{
 		NUMBER,
 	}
 
-	private final XMLInputFactory factory;
-	private XMLStreamReader streamReader;
 	private OPCPackage opcPackage;
 	
+	/**
+	 * Zip file of the lightweight mode, used instead of the OPC package
+	 */
+	private XLSXZipPackage zipPackage;
+	
+	/**
+	 * Temporary copy of the input stream, null when reading a file
+	 */
+	private File spoolFile;
+	
+	/**
+	 * Names and part names of the sheets, in workbook order
+	 */
+	private final List<String> sheetNames = new ArrayList<String>();
+	private final List<String> sheetPartNames = new ArrayList<String>();
+	
+	/**
+	 * Index of the active sheet, read when no sheet is selected
+	 */
+	private int activeSheetIndex;
 	
 	/**
-	 * Table with styles
+	 * True if the workbook uses the 1904 date system
 	 */
-	private StylesTable stylesTable;
+	private boolean date1904;
+	
+	/**
+	 * Sheet streams opened by the iterators and not read to the end yet
+	 */
+	private final List<XMLStreamReader> openStreams = new ArrayList<XMLStreamReader>();
+	
+	
+	/**
+	 * Number format of each style, resolved once per workbook
+	 */
+	private StyleFormatCache styleFormats;
 
 	/**
-	 * Table with unique strings
+	 * Table with unique strings, moved to disk when it is large
 	 */
-	private ReadOnlySharedStringsTable sharedStringsTable;
+	private SharedStringsStore sharedStringsTable;
 
 	//true = empty rows will be read
 	private final boolean readEmptyRow;
 	
+	/**
+	 * Shared strings parts up to this size are kept in heap, bigger ones are moved to disk
+	 */
+	private final long sharedStringsInMemoryLimit;
+	
+	/**
+	 * True to read the shared strings only as far as the rows read need them
+	 */
+	private final boolean lazySharedStrings;
+	
 	/**
 	 * Take xlsx file path and perform setup.
 	 * If file doesnot exist it will throw FileNotFoundException
@@ -130,13 +177,74 @@ public class XLSXReader extends GenericFileReader{
 	 */
 	
 	public XLSXReader(String filePath,boolean readEmptyRow) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException {
+		this(filePath, readEmptyRow, false);
+	}
+	
+	/**
+	 * Take xlsx file path and perform setup.
+	 * In lightweight mode the file is opened with java.util.zip instead of the OPC
+	 * package of POI: only the zip central directory is read on open, and the
+	 * workbook, styles, shared strings and sheet parts are found through their
+	 * relationships without validating the package or building the StylesTable.
+	 * This cuts the time to the first row, mostly for small files.
+	 * If file doesnot exist it will throw FileNotFoundException
+	 * 
+	 * @author Dickens Prabhu
+	 * @param filePath
+	 * @param readEmptyRow
+	 * @param lightweight true to read the file without the OPC package
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws XMLStreamException
+	 */
+	public XLSXReader(String filePath,boolean readEmptyRow,boolean lightweight) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException {
+		this(filePath, readEmptyRow, lightweight, false);
+	}
+	
+	/**
+	 * Take xlsx file path and perform setup.
+	 * With lazySharedStrings nothing is read from sharedStrings.xml on open, the
+	 * part is read as far as the highest shared string index of the rows read so
+	 * far. Reading the header or the first rows of a workbook with a huge table then
+	 * reads only its first entries. The entries read are kept in heap, so this mode
+	 * is meant for reads of the first rows.
+	 * If file doesnot exist it will throw FileNotFoundException
+	 * 
+	 * @author Dickens Prabhu
+	 * @param filePath
+	 * @param readEmptyRow
+	 * @param lightweight true to read the file without the OPC package
+	 * @param lazySharedStrings true to read the shared strings on demand
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws XMLStreamException
+	 */
+	public XLSXReader(String filePath,boolean readEmptyRow,boolean lightweight,boolean lazySharedStrings) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException {
 		File xlsxFile = new File(filePath);
 		if (!xlsxFile.exists()) {
 			logger.info("Not found or not a file: " + xlsxFile.getPath());
 			throw new FileNotFoundException("Not found or not a file: " + xlsxFile.getPath());
 		}
-		this.factory = XMLInputFactory.newInstance();
 		this.readEmptyRow=readEmptyRow;
+		this.sharedStringsInMemoryLimit = SharedStringsStore.DEFAULT_IN_MEMORY_LIMIT;
+		this.lazySharedStrings = lazySharedStrings;
+		if (lightweight) {
+			zipPackage = new XLSXZipPackage(xlsxFile);
+			boolean processed = false;
+			try {
+				process(zipPackage);
+				processed = true;
+			} finally {
+				if (!processed) {
+					zipPackage.close();
+				}
+			}
+			return;
+		}
 		// The package open is instantaneous, as it should be.
 		opcPackage = OPCPackage.open(xlsxFile.getPath(), PackageAccess.READ);
 		process(opcPackage);
@@ -155,15 +263,49 @@ public class XLSXReader extends GenericFileReader{
 	 * @throws XMLStreamException
 	 */
 	public XLSXReader(InputStream iStream,boolean readEmptyRow) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException{
+		this(iStream, readEmptyRow, SharedStringsStore.DEFAULT_IN_MEMORY_LIMIT);
+	}
+	
+	/**
+	 * Take input stream as input and perform setup.
+	 * The stream is copied to a temporary file which is then read like a xlsx file,
+	 * the zip entries are inflated on demand instead of loading the whole package in
+	 * heap. Heap usage is bounded by the shared strings kept in heap plus the buffers
+	 * of the parsers. The temporary file is deleted by close().
+	 * If input stream is null it will throw FileNotFoundException
+	 * 
+	 * @author Dickens Prabhu
+	 * @param iStream
+	 * @param readEmptyRow
+	 * @param sharedStringsInMemoryLimit shared strings parts (uncompressed) up to this size are kept in heap, bigger ones are moved to disk
+	 * @throws IOException
+	 * @throws OpenXML4JException
+	 * @throws ParserConfigurationException
+	 * @throws SAXException
+	 * @throws XMLStreamException
+	 */
+	public XLSXReader(InputStream iStream,boolean readEmptyRow,long sharedStringsInMemoryLimit) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException{
 		if (iStream==null) {
 			logger.info("Input Stream is Null");
 			throw new FileNotFoundException("Input Stream is Null");
 		}
-		this.factory = XMLInputFactory.newInstance();
 		this.readEmptyRow=readEmptyRow;
-		// The package open is instantaneous, as it should be.
-		opcPackage = OPCPackage.open(iStream);
-		process(opcPackage);
+		this.sharedStringsInMemoryLimit = sharedStringsInMemoryLimit;
+		this.lazySharedStrings = false;
+		this.spoolFile = spool(iStream, "xlsx");
+		boolean processed = false;
+		try {
+			opcPackage = OPCPackage.open(spoolFile.getPath(), PackageAccess.READ);
+			process(opcPackage);
+			processed = true;
+		} finally {
+			if (!processed) {
+				if (opcPackage != null) {
+					opcPackage.revert();
+				}
+				deleteSpoolFile();
+			}
+		}
 	}
 	
 	
@@ -174,7 +316,79 @@ public class XLSXReader extends GenericFileReader{
 	 */
 	@Override
 	public Iterator<List<String>> getIterator(){
-		return new XLSXIterator();
+		return new SheetRows<List<String>>() {
+			Iterator<List<String>> openSheet(int sheetIndex) {
+				return new XLSXIterator(false, sheetIndex);
+			}
+		};
+	}
+	
+	/**
+	 * Returns views of the rows for reading xlsx files, see {@link RowView}.
+	 * Raw numbers are read from the buffer of the sheet parser, shared strings are
+	 * returned as they are held by the table.
+	 * @author Dickens Prabhu
+	 * @param owned
+	 * @return
+	 */
+	@Override
+	public Iterator<RowView> getRowViews(boolean owned){
+		return rowViews(getTypedIterator(), owned);
+	}
+	
+	/**
+	 * Returns the iterator over typed rows for reading xlsx files.
+	 * Numeric cells are parsed from the sheet xml and never formatted unless their
+	 * String value is asked for.
+	 * @author Dickens Prabhu
+	 * @return
+	 */
+	@Override
+	public Iterator<TypedRow> getTypedIterator(){
+		return new SheetRows<TypedRow>() {
+			Iterator<TypedRow> openSheet(int sheetIndex) {
+				return getTypedSheetIterator(sheetIndex);
+			}
+		};
+	}
+	
+	/**
+	 * Returns the names of the sheets of the workbook.
+	 * @author Dickens Prabhu
+	 * @return
+	 */
+	@Override
+	public List<String> getSheetNames(){
+		return Collections.unmodifiableList(sheetNames);
+	}
+	
+	@Override
+	Iterator<List<String>> getSheetIterator(int sheetIndex){
+		return new XLSXIterator(false, sheetIndex);
+	}
+	
+	@Override
+	Iterator<TypedRow> getTypedSheetIterator(int sheetIndex){
+		final XLSXIterator rows = new XLSXIterator(true, sheetIndex);
+		return new SkippableIterator<TypedRow>() {
+			public boolean hasNext() {
+				return rows.hasNext();
+			}
+			public TypedRow next() {
+				return rows.typedRow;
+			}
+			public void remove() {
+				throw new UnsupportedOperationException();
+			}
+			public long skipRows(long n) {
+				return rows.skipRows(n);
+			}
+		};
+	}
+	
+	@Override
+	int getDefaultSheetIndex(){
+		return activeSheetIndex;
 	}
 	
 	/**
@@ -184,17 +398,43 @@ public class XLSXReader extends GenericFileReader{
 	 */
 	@Override
 	public void close() throws Exception{
-		if(opcPackage!=null){
-			opcPackage.close();
+		try {
+			if(opcPackage!=null){
+				opcPackage.close();
+			}
+			if(zipPackage!=null){
+				zipPackage.close();
+			}
+			synchronized(openStreams){
+				for(XMLStreamReader streamReader:openStreams){
+					streamReader.close();
+				}
+				openStreams.clear();
+			}
+		} finally {
+			if(sharedStringsTable!=null){
+				sharedStringsTable.close();
+			}
+			deleteSpoolFile();
 		}
-		if(streamReader!=null){
-			streamReader.close();
+	}
+	
+	/**
+	 * Deletes the temporary copy of the input stream.
+	 * 
+	 * @author Dickens Prabhu
+	 */
+	private void deleteSpoolFile() {
+		if (spoolFile != null && spoolFile.exists() && !spoolFile.delete()) {
+			logger.info("Could not delete temporary file: " + spoolFile.getPath());
 		}
+		spoolFile = null;
 	}
 	
 	/**
 	 * Initiates the processing of the XLSX file.
-	 * The current implementation process the Active Sheet.
+	 * Loads the shared strings, the styles and the list of sheets, the sheets are
+	 * opened by the iterators.
 	 * 
 	 * @author Dickens Prabhu
 	 * @throws IOException
@@ -205,97 +445,376 @@ public class XLSXReader extends GenericFileReader{
 	 */
 	private void process(OPCPackage opcPackage) throws IOException, OpenXML4JException, ParserConfigurationException, SAXException, XMLStreamException {
 
-		this.sharedStringsTable = new ReadOnlySharedStringsTable(opcPackage);
+		if (lazySharedStrings) {
+			PackagePart sharedStringsPart = SharedStringsStore.getPart(opcPackage);
+			this.sharedStringsTable = new SharedStringsStore(sharedStringsPart == null ? null : sharedStringsPart.getInputStream());
+		} else {
+			this.sharedStringsTable = new SharedStringsStore(opcPackage, this.sharedStringsInMemoryLimit, SharedStringsStore.DEFAULT_CACHE_SIZE);
+		}
+		PackageRelationshipCollection coreDocument = opcPackage.getRelationshipsByType(PackageRelationshipTypes.CORE_DOCUMENT);
+		if (coreDocument.size() == 0) {
+			coreDocument = opcPackage.getRelationshipsByType(PackageRelationshipTypes.STRICT_CORE_DOCUMENT);
+		}
+		PackagePart workbookPart = opcPackage.getPart(coreDocument.getRelationship(0));
+		Map<String, String> sheetTargets = new HashMap<String, String>();
+		for (PackageRelationship relationship : workbookPart.getRelationships()) {
+			if (relationship.getTargetMode() == TargetMode.INTERNAL) {
+				PackagePart part = workbookPart.getRelatedPart(relationship);
+				if (part != null) {
+					sheetTargets.put(relationship.getId(), part.getPartName().getName());
+				}
+			}
+		}
+		WorkbookProperties workbook = readWorkbook(workbookPart.getInputStream(), sheetTargets, sheetNames, sheetPartNames);
+		this.activeSheetIndex = workbook.activeSheetIndex;
+		this.date1904 = workbook.date1904;
+		
 		XSSFReader xssfReader = new XSSFReader(opcPackage);
-		this.stylesTable = xssfReader.getStylesTable();
-		
-		XSSFReader.SheetIterator dataItr = (XSSFReader.SheetIterator) xssfReader.getSheetsData();
-		XSSFReader.SheetIterator sheetItr = (XSSFReader.SheetIterator) xssfReader.getSheetsData(); // extra iterator for identifying active sheet
-		boolean isProcessed=false;
-		while (dataItr.hasNext() && sheetItr.hasNext()) {
-			InputStream dataStream = dataItr.next();
-			InputStream sheetStream = sheetItr.next(); // Not able to re use input stream thus getting extra input stream for identifying active sheet.
-			
-			if(isActiveSheet(sheetStream)){   
-				processSheet(dataStream);
-				isProcessed=true;
-				break; // Process only the active sheet
+		StylesTable stylesTable = xssfReader.getStylesTable();
+		this.styleFormats = new StyleFormatCache(stylesTable, date1904);
+	}
+	
+	/**
+	 * Initiates the processing of the XLSX file in lightweight mode.
+	 * The parts are found through the package and workbook relationships.
+	 * 
+	 * @author Dickens Prabhu
+	 * @throws IOException
+	 * @throws InvalidFormatException
+	 * @throws XMLStreamException 
+	 */
+	private void process(XLSXZipPackage zipPackage) throws IOException, InvalidFormatException, XMLStreamException {
+		String workbookPartName = XLSXZipPackage.findTarget(zipPackage.getRelationships(XLSXZipPackage.PACKAGE), XLSXZipPackage.OFFICE_DOCUMENT);
+		if (workbookPartName == null) {
+			throw new InvalidFormatException("No workbook part found, not a xlsx file");
+		}
+		Map<String, XLSXZipPackage.Relationship> relationships = zipPackage.getRelationships(workbookPartName);
+		
+		String sharedStringsPartName = XLSXZipPackage.findTarget(relationships, XLSXZipPackage.SHARED_STRINGS);
+		if (lazySharedStrings) {
+			this.sharedStringsTable = new SharedStringsStore(sharedStringsPartName == null ? null : zipPackage.getInputStream(sharedStringsPartName));
+		} else {
+			this.sharedStringsTable = sharedStringsPartName == null
+					? new SharedStringsStore(null, -1, this.sharedStringsInMemoryLimit, SharedStringsStore.DEFAULT_CACHE_SIZE)
+					: new SharedStringsStore(zipPackage.getInputStream(sharedStringsPartName), zipPackage.getSize(sharedStringsPartName),
+							this.sharedStringsInMemoryLimit, SharedStringsStore.DEFAULT_CACHE_SIZE);
+		}
+		WorkbookProperties workbook = readWorkbook(openWorkbook(zipPackage, workbookPartName), getSheetTargets(relationships), sheetNames, sheetPartNames);
+		this.activeSheetIndex = workbook.activeSheetIndex;
+		this.date1904 = workbook.date1904;
+		
+		String stylesPartName = XLSXZipPackage.findTarget(relationships, XLSXZipPackage.STYLES);
+		this.styleFormats = StyleFormatCache.read(stylesPartName == null ? null : zipPackage.getInputStream(stylesPartName), date1904);
+	}
+	
+	/**
+	 * Reads the sheets of a xlsx file and the used range of each sheet, without
+	 * loading the shared strings or the styles. The range is the ref attribute of the
+	 * dimension element at the start of the sheet xml; without it the row elements
+	 * are counted, the cells are never read.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param xlsxFile the xlsx file
+	 * @return the workbook info
+	 * @throws IOException
+	 * @throws InvalidFormatException
+	 * @throws XMLStreamException
+	 */
+	static WorkbookInfo inspect(File xlsxFile) throws IOException, InvalidFormatException, XMLStreamException {
+		XLSXZipPackage zipPackage = new XLSXZipPackage(xlsxFile);
+		try {
+			String workbookPartName = XLSXZipPackage.findTarget(zipPackage.getRelationships(XLSXZipPackage.PACKAGE), XLSXZipPackage.OFFICE_DOCUMENT);
+			if (workbookPartName == null) {
+				throw new InvalidFormatException("No workbook part found, not a xlsx file");
+			}
+			List<String> sheetNames = new ArrayList<String>();
+			List<String> sheetPartNames = new ArrayList<String>();
+			WorkbookProperties workbook = readWorkbook(openWorkbook(zipPackage, workbookPartName),
+					getSheetTargets(zipPackage.getRelationships(workbookPartName)), sheetNames, sheetPartNames);
+			List<WorkbookInfo.SheetInfo> sheets = new ArrayList<WorkbookInfo.SheetInfo>();
+			for (int i = 0; i < sheetNames.size(); i++) {
+				InputStream sheetStream = zipPackage.getInputStream(sheetPartNames.get(i));
+				sheets.add(sheetStream == null ? new WorkbookInfo.SheetInfo(sheetNames.get(i), 0, 0)
+						: inspectSheet(sheetNames.get(i), sheetStream));
 			}
+			return new WorkbookInfo(sheets, workbook.activeSheetIndex);
+		} finally {
+			zipPackage.close();
 		}
-		if (!isProcessed) { // it means there is no active tab, select the first sheet.
-			while (dataItr.hasNext() && sheetItr.hasNext()) {
-				InputStream dataStream = dataItr.next();
-				processSheet(dataStream);
-				break; // Process only the active sheet
-
+	}
+	
+	/**
+	 * Reads the used range of one sheet, see {@link #inspect(File)}.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param sheetName the sheet name
+	 * @param sheetStream the sheet part, closed once read
+	 * @return the sheet info
+	 * @throws XMLStreamException
+	 * @throws IOException
+	 */
+	private static WorkbookInfo.SheetInfo inspectSheet(String sheetName, InputStream sheetStream) throws XMLStreamException, IOException {
+		XMLStreamReader xmlStreamReader = StaxFactory.createXMLStreamReader(sheetStream);
+		try {
+			long firstRow = -1;
+			long lastRow = -1;
+			int firstColumn = -1;
+			int lastColumn = -1;
+			boolean inSheetData = false;
+			while (xmlStreamReader.hasNext()) {
+				if (xmlStreamReader.next() != XMLStreamReader.START_ELEMENT) {
+					continue;
+				}
+				String name = xmlStreamReader.getLocalName();
+				if (!inSheetData) {
+					if ("dimension".equals(name)) {
+						// a single cell is also written for an empty sheet, the rows are counted then
+						String ref = xmlStreamReader.getAttributeValue(null, "ref");
+						int colon = ref == null ? -1 : ref.indexOf(':');
+						if (colon > 0) {
+							String first = ref.substring(0, colon);
+							String last = ref.substring(colon + 1);
+							return WorkbookInfo.SheetInfo.ofRange(sheetName, referenceToRow(first), referenceToRow(last),
+									referenceToColumn(first), referenceToColumn(last));
+						}
+					} else if ("sheetData".equals(name)) {
+						inSheetData = true;
+					}
+				} else if ("row".equals(name)) {
+					String r = xmlStreamReader.getAttributeValue(null, "r");
+					long row = r != null ? Long.parseLong(r) - 1 : lastRow + 1;
+					if (firstRow == -1) {
+						firstRow = row;
+					}
+					lastRow = Math.max(lastRow, row);
+				} else if ("c".equals(name)) {
+					String r = xmlStreamReader.getAttributeValue(null, "r");
+					if (r != null) {
+						int column = referenceToColumn(r);
+						firstColumn = firstColumn == -1 ? column : Math.min(firstColumn, column);
+						lastColumn = Math.max(lastColumn, column);
+					}
+				}
 			}
+			return WorkbookInfo.SheetInfo.ofRange(sheetName, firstRow, lastRow, firstColumn, lastColumn);
+		} finally {
+			xmlStreamReader.close();
+			sheetStream.close();
 		}
-
 	}
 	
 	/**
-	 * This method checks for the value of "tabSelected" attribute of "SheetView" XML
-	 * element to find out whether the sheet is active or not.
-	 * "SheetView" XML element contains attribute "tabSelected" whose value is "1" for 
-	 * active sheet.
+	 * Opens the workbook part of a zip package.
 	 * 
 	 * @author Dickens Prabhu
-	 * @param sheetInputStream
-	 * @return
+	 * @param zipPackage the package
+	 * @param workbookPartName name of the workbook part
+	 * @return the stream
+	 * @throws IOException
+	 * @throws InvalidFormatException if the part does not exist
+	 */
+	private static InputStream openWorkbook(XLSXZipPackage zipPackage, String workbookPartName) throws IOException, InvalidFormatException {
+		InputStream workbookStream = zipPackage.getInputStream(workbookPartName);
+		if (workbookStream == null) {
+			throw new InvalidFormatException("Workbook part not found: " + workbookPartName);
+		}
+		return workbookStream;
+	}
+	
+	/**
+	 * Returns the part names of the workbook relationships read from the zip.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param relationships the relationships of the workbook part
+	 * @return part names by relationship id
+	 */
+	private static Map<String, String> getSheetTargets(Map<String, XLSXZipPackage.Relationship> relationships) {
+		Map<String, String> sheetTargets = new HashMap<String, String>();
+		for (Map.Entry<String, XLSXZipPackage.Relationship> relationship : relationships.entrySet()) {
+			sheetTargets.put(relationship.getKey(), relationship.getValue().partName);
+		}
+		return sheetTargets;
+	}
+	
+	/**
+	 * Properties of the workbook part read with its list of sheets.
+	 */
+	private static final class WorkbookProperties {
+		
+		/** Index of the active sheet */
+		private int activeSheetIndex;
+		
+		/** True if the workbook uses the 1904 date system */
+		private boolean date1904;
+	}
+	
+	/**
+	 * Reads the list of sheets, the active sheet and the date system from workbook.xml.
+	 * The sheets are found through the relationships of the workbook part, the
+	 * active sheet is the activeTab attribute of the first workbookView element, so
+	 * no sheet is opened before the iterator reads it. The date system is the
+	 * date1904 attribute of the workbookPr element.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param workbookStream the workbook part, closed once read
+	 * @param sheetTargets part names of the workbook relationships, by relationship id
+	 * @param sheetNames the names of the sheets are added to this list
+	 * @param sheetPartNames the part names of the sheets are added to this list
+	 * @return index of the active sheet and date system
 	 * @throws XMLStreamException
+	 * @throws IOException
 	 */
-	private boolean isActiveSheet(InputStream sheetInputStream) throws XMLStreamException{
-		XMLStreamReader xmlStreamReader = this.factory.createXMLStreamReader(sheetInputStream);
-		while(xmlStreamReader.hasNext()){
-			xmlStreamReader.next();
-			if(xmlStreamReader.getEventType() == XMLStreamReader.START_ELEMENT){
-				String name=xmlStreamReader.getLocalName();
-				if("sheetView".equals(name)){
-					String tabSelected = xmlStreamReader.getAttributeValue(null, "tabSelected");
-					if(tabSelected!=null && "1".equals(tabSelected)){
-						return true;
+	private static WorkbookProperties readWorkbook(InputStream workbookStream, Map<String, String> sheetTargets, List<String> sheetNames, List<String> sheetPartNames) throws XMLStreamException, IOException {
+		WorkbookProperties workbook = new WorkbookProperties();
+		boolean workbookViewFound = false;
+		XMLStreamReader xmlStreamReader = StaxFactory.createXMLStreamReader(workbookStream);
+		try {
+			while(xmlStreamReader.hasNext()){
+				xmlStreamReader.next();
+				if(xmlStreamReader.getEventType() == XMLStreamReader.START_ELEMENT){
+					String name=xmlStreamReader.getLocalName();
+					if("sheet".equals(name)){
+						String partName = sheetTargets.get(getRelationshipId(xmlStreamReader));
+						if(partName == null){
+							logger.info("Sheet without relationship skipped: " + xmlStreamReader.getAttributeValue(null, "name"));
+							continue;
+						}
+						sheetNames.add(xmlStreamReader.getAttributeValue(null, "name"));
+						sheetPartNames.add(partName);
+					}else if("workbookView".equals(name) && !workbookViewFound){
+						workbookViewFound = true;
+						String activeTab = xmlStreamReader.getAttributeValue(null, "activeTab");
+						if(activeTab != null){
+							workbook.activeSheetIndex = Integer.parseInt(activeTab);
+						}
+					}else if("workbookPr".equals(name)){
+						String date1904 = xmlStreamReader.getAttributeValue(null, "date1904");
+						workbook.date1904 = "1".equals(date1904) || "true".equals(date1904);
 					}
-					break;// break once sheetView is found
 				}
 			}
+		} finally {
+			xmlStreamReader.close();
+			workbookStream.close();
+		}
+		if (workbook.activeSheetIndex >= sheetNames.size()) { // no such sheet, select the first sheet.
+			workbook.activeSheetIndex = 0;
+		}
+		return workbook;
+	}
+	
+	/**
+	 * Returns the r:id attribute of a sheet element, the relationships namespace
+	 * differs between transitional and strict files.
+	 * 
+	 * @author Dickens Prabhu
+	 * @param xmlStreamReader positioned on the sheet element
+	 * @return the relationship id
+	 */
+	private static String getRelationshipId(XMLStreamReader xmlStreamReader) {
+		for (int i = 0; i < xmlStreamReader.getAttributeCount(); i++) {
+			String namespace = xmlStreamReader.getAttributeNamespace(i);
+			if ("id".equals(xmlStreamReader.getAttributeLocalName(i)) && namespace != null && namespace.length() > 0) {
+				return xmlStreamReader.getAttributeValue(i);
+			}
+		}
+		return null;
+	}
+	
+	/**
+	 * Opens a stream reader on the xml of one sheet.
+	 * Sheets can be opened by different threads, each reading its own stream.
+	 * @author Dickens Prabhu
+	 * @param sheetIndex
+	 * @return the stream reader, null if the sheet does not exist
+	 * @throws IOException
+	 * @throws XMLStreamException 
+	 */
+	private XMLStreamReader openSheet(int sheetIndex) throws IOException, XMLStreamException {
+		if (sheetIndex >= sheetPartNames.size()) {
+			return null;
+		}
+		synchronized(openStreams){
+			InputStream sheetStream = openPart(sheetPartNames.get(sheetIndex));
+			if (sheetStream == null) {
+				return null;
+			}
+			XMLStreamReader streamReader = StaxFactory.createXMLStreamReader(sheetStream);
+			openStreams.add(streamReader);
+			return streamReader;
 		}
-		return false;
 	}
 	
+	/**
+	 * Opens a part of the package.
+	 * @author Dickens Prabhu
+	 * @param partName absolute part name
+	 * @return the stream, null if the part does not exist
+	 * @throws IOException
+	 */
+	private InputStream openPart(String partName) throws IOException {
+		if (zipPackage != null) {
+			return zipPackage.getInputStream(partName);
+		}
+		try {
+			PackagePart part = opcPackage.getPart(PackagingURIHelper.createPartName(partName));
+			return part == null ? null : part.getInputStream();
+		} catch (InvalidFormatException e) {
+			throw new IOException(e);
+		}
+	}
 	
 	/**
-	 * Parses and shows the content of one sheet
-	 * using the specified styles and shared-strings tables.
+	 * Closes a stream opened by openSheet().
 	 * @author Dickens Prabhu
-	 * @param styles
-	 * @param strings
-	 * @param sheetInputStream
+	 * @param streamReader
 	 * @throws XMLStreamException 
 	 */
-	private void processSheet(InputStream sheetInputStream)	throws IOException, ParserConfigurationException, SAXException, XMLStreamException {
-		this.streamReader = this.factory.createXMLStreamReader(sheetInputStream);
+	private void closeSheet(XMLStreamReader streamReader) throws XMLStreamException {
+		synchronized(openStreams){
+			openStreams.remove(streamReader);
+		}
+		streamReader.close();
 	}
 
 	/**
 	 * Provide implementation of the Iterator interface for iterating 
-	 * over the rows of input xlsx file.
+	 * over the rows of one sheet of input xlsx file.
 	 * 
 	 * @author Dickens Prabhu
 	 *
 	 */
-	private class XLSXIterator implements Iterator<List<String>>{
+	private class XLSXIterator implements SkippableIterator<List<String>>, Closeable{
+		
+		// Reads the xml of the sheet, null once the sheet is read
+		private XMLStreamReader streamReader;
+		
+		// The columns to read, resolved against the header row of this sheet
+		private final ColumnProjection projection;
+		
+		// Number formats of the workbook, with buffers of this iterator
+		private final StyleFormatCache styleFormats;
 		
 		// Set when V start element is seen
 		private boolean vIsOpen;
 
+		// Set when the column of the current cell is not read
+		private boolean skipCell;
+
+		// Set when a cell of the current row which is not read has a value, a row is
+		// only empty when all its cells are, whatever the projection
+		private boolean otherCellHasValue;
+
+		// t attribute of the cell not read whose value is looked at, see isBlankValue()
+		private String otherCellType;
+
 		// Set when cell start element is seen;
 		// used when cell close element is seen.
 		private xssfDataType nextDataType;
 
 		// Used to format numeric cell values.
-		private short formatIndex;
-		private String formatString;
-		private final DataFormatter formatter;
+		private int styleIndex;
+		private boolean formatted;
 
 		// points to the current column being referenced.
 		private int thisColumn = -1;
@@ -308,27 +827,38 @@ public class XLSXReader extends GenericFileReader{
 		// hold the number of headerColumns, used to generate empty string for last empty columns
 		private int numberOfHeaders = 0; 
 		
-		// Gathers characters as they are seen.
-		private StringBuffer value;
+		// Gathers characters as they are seen, reused for every cell.
+		private final StringBuilder value;
 		
 		//private Row currentRow;
 		private List<String> currentRow;
+		
+		// typed cells of the current row, null when the iterator returns Strings
+		private final CellRow typedRow;
 
 		/**
 		 * Performs initialization
+		 * @param typed true to read the cells into a typed row instead of Strings
+		 * @param sheetIndex zero based index of the sheet to read
 		 */
-		public XLSXIterator(){
+		public XLSXIterator(boolean typed, int sheetIndex){
+			try {
+				this.streamReader = openSheet(sheetIndex);
+			} catch (IOException e) {
+				throw new RuntimeException(e);
+			} catch (XMLStreamException e) {
+				throw new RuntimeException(e);
+			}
+			this.projection = XLSXReader.this.projection == null ? null : XLSXReader.this.projection.copy();
+			this.styleFormats = XLSXReader.this.styleFormats.copy();
 			this.currentRow = new ArrayList<String>();
-			this.value = new StringBuffer();
+			this.typedRow = !typed ? null : new CellRow(new CellRow.NumberFormatter() {
+				public String format(double value, int style) {
+					return formatNumber(value, style);
+				}
+			}, date1904);
+			this.value = new StringBuilder(64);
 			this.nextDataType = xssfDataType.NUMBER;
-			this.formatter = new DataFormatter() {
-				 public String formatRawCellContents(double value, int formatIndex, String formatString, boolean use1904Windowing) {
-					 if(DateUtil.isADateFormat(formatIndex,formatString)) {
-						 formatString="MM/dd/yyyy";
-					 }
-					return  super.formatRawCellContents(value, formatIndex, formatString,use1904Windowing);
-				 }
-			};
 		}
 		
 		/**
@@ -336,8 +866,16 @@ public class XLSXReader extends GenericFileReader{
 		 * @author Dickens Prabhu
 		 */
 		private void clearCurrentRow(){
-			if(this.currentRow!=null){
-				this.currentRow.clear();
+			this.thisColumn = -1;
+			this.otherCellHasValue = false;
+			if(this.typedRow!=null){
+				this.typedRow.clear(projection!=null && projection.isResolved() ? projection.size() : 0);
+			}else if(this.currentRow!=null){
+				if(projection!=null && projection.isResolved()){
+					projection.clear(this.currentRow);
+				}else{
+					this.currentRow.clear();
+				}
 			}
 		}
 		
@@ -371,7 +909,7 @@ public class XLSXReader extends GenericFileReader{
 				}else{
 					while(hasNextRow()){
 						nextRow();
-						if(!isEmptyCurrentRow(this.currentRow)){
+						if(otherCellHasValue || (typedRow!=null ? !typedRow.isEmpty() : !isEmptyCurrentRow(this.currentRow))){
 							return true;
 						}
 					}	
@@ -390,6 +928,9 @@ public class XLSXReader extends GenericFileReader{
 		 * @throws XMLStreamException
 		 */
 		private boolean hasNextRow() throws XMLStreamException{
+			if(streamReader==null){
+				return false;
+			}
 			boolean hasNextRow=false;
 			while(!hasNextRow && streamReader.hasNext()){
 				streamReader.next();
@@ -401,9 +942,110 @@ public class XLSXReader extends GenericFileReader{
 					}
 				}
 			}
+			if(!hasNextRow){ // end of the sheet
+				closeSheet(streamReader);
+				streamReader=null;
+			}
 			return hasNextRow;
 		}
 
+		/**
+		 * Skips rows by scanning their events up to the end of the row element. Cells
+		 * are not decoded. With empty rows read no value is looked at; with empty rows
+		 * not read, the value of a cell is only looked at until the row is known not to
+		 * be empty.
+		 * @author Dickens Prabhu
+		 * @param n number of rows to skip
+		 * @return the number of rows skipped
+		 */
+		public long skipRows(long n) {
+			long skipped = 0;
+			try {
+				while (skipped < n) {
+					if (isHeader) { // the header row gives the number of columns
+						if (!hasNext()) {
+							break;
+						}
+						skipped++;
+					} else if (!hasNextRow()) {
+						break;
+					} else if (skipRow(!readEmptyRow)) {
+						skipped++;
+					}
+				}
+			} catch (XMLStreamException e) {
+				throw new RuntimeException(e);
+			}
+			return skipped;
+		}
+		
+		/**
+		 * Moves the stream reader from the start of a row element to its end.
+		 * @author Dickens Prabhu
+		 * @param checkValues false to skip the row without looking at its cells
+		 * @return true if a cell of the row has a value, read or not, or if the cells are not checked
+		 * @throws XMLStreamException
+		 */
+		private boolean skipRow(boolean checkValues) throws XMLStreamException {
+			boolean hasValue = !checkValues; // only the end of the row is looked for
+			String cellType = null;
+			vIsOpen = false; // may be left open by the last decoded row
+			while (streamReader.hasNext()) {
+				int event = streamReader.next();
+				if (hasValue && event != XMLStreamReader.END_ELEMENT) {
+					continue;
+				}
+				if (event == XMLStreamReader.START_ELEMENT) {
+					String name = streamReader.getLocalName();
+					if ("c".equals(name)) {
+						cellType = streamReader.getAttributeValue(null, "t");
+					} else if ("v".equals(name)) {
+						vIsOpen = true;
+						value.setLength(0);
+					}
+				} else if (event == XMLStreamReader.CHARACTERS && vIsOpen) {
+					value.append(streamReader.getTextCharacters(), streamReader.getTextStart(), streamReader.getTextLength());
+				} else if (event == XMLStreamReader.END_ELEMENT) {
+					String name = streamReader.getLocalName();
+					if ("v".equals(name) && vIsOpen) {
+						vIsOpen = false;
+						hasValue = !isBlankValue(cellType);
+					} else if ("row".equals(name)) {
+						break;
+					}
+				}
+			}
+			vIsOpen = false;
+			return hasValue;
+		}
+		
+		/**
+		 * Tells whether the value of a cell gives an empty cell, the same way the
+		 * decoded cell would be found empty.
+		 * @author Dickens Prabhu
+		 * @param cellType the t attribute of the cell
+		 * @return true if the cell is empty
+		 */
+		private boolean isBlankValue(String cellType) {
+			if ("b".equals(cellType) || "str".equals(cellType)) {
+				return false; // boolean, or formula text in quotes
+			}
+			if ("s".equals(cellType)) {
+				try {
+					return StringUtils.isWhitespace(decodeText(sharedStringsTable.getEntryAt((int) CellValues.parseLong(value, 0, value.length()))));
+				} catch (NumberFormatException ex) {
+					return true;
+				}
+			}
+			if ("e".equals(cellType)) {
+				return StringUtils.isWhitespace(value.toString());
+			}
+			if ("inlineStr".equals(cellType)) {
+				return StringUtils.isWhitespace(decodeText(value.toString()));
+			}
+			return value.length() == 0; // number
+		}
+
 		/**
 		 * This method returns list of cell data of current row.
 		 * This method should not be called before calling hasNext() method.
@@ -427,71 +1069,86 @@ public class XLSXReader extends GenericFileReader{
 					while(!currentRowEnds){
 						// xml element start
 						if(streamReader.getEventType() == XMLStreamReader.START_ELEMENT){
+							// element names come from the symbol table of the parser, equals() returns on the identity check
 							String name=streamReader.getLocalName();
-							if ("inlineStr".equals(name) || "v".equals(name)) {
-								vIsOpen = true;
-								// Clear contents cache
-								value.setLength(0);
-							}
 							// c => cell
-							else if ("c".equals(name)) {
-								// Get the cell reference
-								String r = streamReader.getAttributeValue(null,"r");
-								int firstDigit = -1;
-								for (int c = 0; c < r.length(); ++c) {
-									if (Character.isDigit(r.charAt(c))) {
-										firstDigit = c;
-										break;
-									}
+							if ("c".equals(name)) {
+								// Find the attributes in one pass. The parser creates the String of an
+								// attribute value when it is asked for, so t and s are only read for a
+								// cell that is read, s only for a number. These Strings are what is left
+								// of the allocation per cell, XLSXReaderAllocationTest bounds it.
+								int rIndex = -1;
+								int tIndex = -1;
+								int sIndex = -1;
+								for (int i = 0, count = streamReader.getAttributeCount(); i < count; i++) {
+									String attribute = streamReader.getAttributeLocalName(i);
+									if ("r".equals(attribute))
+										rIndex = i;
+									else if ("t".equals(attribute))
+										tIndex = i;
+									else if ("s".equals(attribute))
+										sIndex = i;
 								}
-								thisColumn = nameToColumn(r.substring(0, firstDigit));
-		
-								// Set up defaults.
-								this.nextDataType = xssfDataType.NUMBER;
-								this.formatIndex = -1;
-								this.formatString = null;
-								String cellType = streamReader.getAttributeValue(null,"t");
-								String cellStyleStr = streamReader.getAttributeValue(null,"s");
-								if ("b".equals(cellType))
-									nextDataType = xssfDataType.BOOL;
-								else if ("e".equals(cellType))
-									nextDataType = xssfDataType.ERROR;
-								else if ("inlineStr".equals(cellType))
-									nextDataType = xssfDataType.INLINESTR;
-								else if ("s".equals(cellType))
-									nextDataType = xssfDataType.SSTINDEX;
-								else if ("str".equals(cellType))
-									nextDataType = xssfDataType.FORMULA;
-								else if (cellStyleStr != null) {
-									// It's a number, but almost certainly one
-									//  with a special style or format 
-									XSSFCellStyle style = null;
-									if (cellStyleStr != null) {
-										int styleIndex = Integer.parseInt(cellStyleStr);
-										style = stylesTable.getStyleAt(styleIndex);
-									}
-									if (style == null && stylesTable.getNumCellStyles() > 0) {
-										style = stylesTable.getStyleAt(0);
-									}
-									if (style != null) {
-										this.formatIndex = style.getDataFormat();
-										this.formatString = style.getDataFormatString();
-										if (this.formatString == null)
-											this.formatString = BuiltinFormats.getBuiltinFormat(this.formatIndex);
+								// r is optional, a cell without it follows the previous cell
+								thisColumn = rIndex >= 0 ? referenceToColumn(streamReader.getAttributeValue(rIndex)) : thisColumn + 1;
+								skipCell = projection!=null && projection.isResolved() && !projection.isSelected(thisColumn);
+								if (skipCell) {
+									vIsOpen = false; // column not read, skip before the SST lookup or formatting
+									// until the row is known not to be empty, its value is still looked at
+									otherCellType = readEmptyRow || otherCellHasValue ? null : tIndex >= 0 ? streamReader.getAttributeValue(tIndex) : "n";
+								} else {
+									String cellType = tIndex >= 0 ? streamReader.getAttributeValue(tIndex) : null;
+									// Set up defaults.
+									this.nextDataType = xssfDataType.NUMBER;
+									this.styleIndex = -1;
+									this.formatted = false;
+									if ("b".equals(cellType))
+										nextDataType = xssfDataType.BOOL;
+									else if ("e".equals(cellType))
+										nextDataType = xssfDataType.ERROR;
+									else if ("inlineStr".equals(cellType))
+										nextDataType = xssfDataType.INLINESTR;
+									else if ("s".equals(cellType))
+										nextDataType = xssfDataType.SSTINDEX;
+									else if ("str".equals(cellType))
+										nextDataType = xssfDataType.FORMULA;
+									else if (sIndex >= 0) {
+										// It's a number, but almost certainly one
+										//  with a special style or format 
+										String cellStyleStr = streamReader.getAttributeValue(sIndex);
+										this.styleIndex = (int) CellValues.parseLong(cellStyleStr, 0, cellStyleStr.length());
+										this.formatted = styleFormats.isFormatted(this.styleIndex);
 									}
 								}
 							}
+							else if (("v".equals(name) || "inlineStr".equals(name)) && (!skipCell || otherCellType != null)) {
+								vIsOpen = true;
+								// Clear contents cache
+								value.setLength(0);
+							}
 		
 					    }else if(streamReader.getEventType() == XMLStreamReader.CHARACTERS){
 					    	if (vIsOpen){
-								value.append(streamReader.getText());
+					    		// copied from the buffer of the parser, getText() would create a String
+								value.append(streamReader.getTextCharacters(), streamReader.getTextStart(), streamReader.getTextLength());
 							}
 					    }else if(streamReader.getEventType() == XMLStreamReader.END_ELEMENT){
 					    	
 							String thisStr = null;
 							String name=streamReader.getLocalName();
 							// v => contents of a cell
-							if ("v".equals(name)) {
+							if ("v".equals(name) && skipCell) {
+								if (otherCellType != null) {
+									otherCellHasValue = !isBlankValue(otherCellType);
+									otherCellType = null;
+									vIsOpen = false;
+								}
+							}else if ("v".equals(name) && !skipCell && typedRow != null) {
+								if(isHeader){
+									++numberOfHeaders;
+								}
+								setTypedCell();
+							}else if ("v".equals(name) && !skipCell) {
 								// Process the value contents as required.
 								// Do now, as characters() may be called more than once
 								switch (nextDataType) {
@@ -512,29 +1169,25 @@ public class XLSXReader extends GenericFileReader{
 									break;
 		
 								case INLINESTR:
-									XSSFRichTextString rtsi = new XSSFRichTextString(value.toString());
-									thisStr = rtsi.toString();
+									thisStr = decodeText(value.toString());
 									break;
 		
 								case SSTINDEX:
-									String sstIndex = value.toString();
 									try {
-										int idx = Integer.parseInt(sstIndex);
-										XSSFRichTextString rtss = new XSSFRichTextString(sharedStringsTable.getEntryAt(idx));
-										thisStr = rtss.toString();
+										int idx = (int) CellValues.parseLong(value, 0, value.length());
+										thisStr = decodeText(sharedStringsTable.getEntryAt(idx));
 									}
 									catch (NumberFormatException ex) {
-										logger.info("Failed to parse SST index '" + sstIndex + "': " + ex.toString());
+										logger.info("Failed to parse SST index '" + value + "': " + ex.toString());
 									}
 									break;
 		
 								case NUMBER:
 									//thisStr= value.toString(); // unformatted numeric value
-								  String n = value.toString();
-									if (this.formatString != null && n.length() > 0)
-										thisStr = formatter.formatRawCellContents(Double.parseDouble(n), this.formatIndex, this.formatString);
+									if (this.formatted && value.length() > 0)
+										thisStr = styleFormats.format(this.styleIndex, value);
 									else
-										thisStr = n;
+										thisStr = value.toString();
 									break;
 		
 								default:
@@ -542,30 +1195,50 @@ public class XLSXReader extends GenericFileReader{
 									break;
 								}
 								
-								// counting the number of header columns. Header columns cannot be empty hence empty checking logic is not required.
-								if(isHeader){
-									++numberOfHeaders;
+								if(projection!=null && projection.isResolved()){
+									this.currentRow.set(projection.getPosition(thisColumn), thisStr);
+								}else{
+									
+									// counting the number of header columns. Header columns cannot be empty hence empty checking logic is not required.
+									if(isHeader){
+										++numberOfHeaders;
+									}
+									
+									
+						           
+						             for (int i = lastColumnNumber; i < thisColumn-1; ++i){
+						                 updateCurrentRow("");
+						             }
+					                 updateCurrentRow(thisStr);
+			
+						             // Update column
+						             if (thisColumn > -1){
+						                 lastColumnNumber = thisColumn;
+						             }
 								}
-								
-								
-					           
-					             for (int i = lastColumnNumber; i < thisColumn-1; ++i){
-					                 updateCurrentRow("");
-					             }
-				                 updateCurrentRow(thisStr);
-		
-					             // Update column
-					             if (thisColumn > -1){
-					                 lastColumnNumber = thisColumn;
-					             }
+							}else if ("row".equals(name) && typedRow != null) {
+								if (!isHeader && numberOfHeaders > 0 && projection == null) {
+									typedRow.pad(numberOfHeaders);
+								}
+								if(projection!=null && !projection.isResolved()){ // header row, resolve the column names
+									projection.resolve(typedRow.toStringList());
+									typedRow.project(projection);
+								}
+								isHeader=false;
+								return this.currentRow;
 							}else if ("row".equals(name)) {
 					             // Print out any missing commas if needed for rows other than header row.
-					             if (!isHeader && numberOfHeaders > 0) {
+					             if (!isHeader && numberOfHeaders > 0 && projection == null) {
 					                
 					                 for (int i = lastColumnNumber; i < numberOfHeaders-1; i++) {
 					                	 updateCurrentRow("");
 					                 }
 					             }
+					             
+					             if(projection!=null && !projection.isResolved()){ // header row, resolve the column names
+					            	 projection.resolve(this.currentRow);
+					            	 projection.project(this.currentRow);
+					             }
 								
 					            //ending header row
 								if(isHeader){
@@ -592,6 +1265,55 @@ public class XLSXReader extends GenericFileReader{
 			return null;
 		}
 		
+		/**
+		 * Stores the value of the current cell in the typed row, numbers are parsed
+		 * from the characters of the v element without formatting.
+		 * @author Dickens Prabhu
+		 */
+		private void setTypedCell() {
+			int column = projection!=null && projection.isResolved() ? projection.getPosition(thisColumn) : thisColumn;
+			switch (nextDataType) {
+			case BOOL:
+				typedRow.setBoolean(column, value.charAt(0) != '0');
+				break;
+			case ERROR:
+				typedRow.setError(column, value.toString());
+				break;
+			case FORMULA:
+				typedRow.setText(column, '"' + value.toString() + '"');
+				break;
+			case INLINESTR:
+				typedRow.setText(column, decodeText(value.toString()));
+				break;
+			case SSTINDEX:
+				try {
+					typedRow.setText(column, decodeText(sharedStringsTable.getEntryAt((int) CellValues.parseLong(value, 0, value.length()))));
+				}
+				catch (NumberFormatException ex) {
+					logger.info("Failed to parse SST index '" + value + "': " + ex.toString());
+				}
+				break;
+			case NUMBER:
+				if (value.length() > 0 && !this.formatted) {
+					typedRow.setNumber(column, CellValues.parseDouble(value, 0, value.length()), value);
+				} else if (value.length() > 0) {
+					typedRow.setNumber(column, CellValues.parseDouble(value, 0, value.length()), this.styleIndex, styleFormats.isDate(this.styleIndex));
+				}
+				break;
+			}
+		}
+		
+		/**
+		 * Formats a numeric cell of the typed row the same way the String iterator does.
+		 * @author Dickens Prabhu
+		 * @param value the numeric value
+		 * @param style index of the cell style
+		 * @return the text of the cell
+		 */
+		private String formatNumber(double value, int style) {
+			return styleFormats.format(style, Double.toString(value));
+		}
+		
 		/**
 		 * NOT SUPPORTED IN THE CURRENT IMPLEMENTATION.
 		 * @author Dickens Prabhu
@@ -601,19 +1323,74 @@ public class XLSXReader extends GenericFileReader{
 		}
 		
 		/**
-		 * Converts an Excel column name like "C" to a zero-based index.
-		 *
-		 * @param name
-		 * @return Index corresponding to the specified name
+		 * Closes the sheet before its end, e.g. when the read is cancelled.
+		 * @author Dickens Prabhu
+		 * @throws IOException
 		 */
-		private int nameToColumn(String name) {
-			int column = -1;
-			for (int i = 0; i < name.length(); ++i) {
-				int c = name.charAt(i);
-				column = (column + 1) * 26 + c - 'A';
+		public void close() throws IOException {
+			if(streamReader!=null){
+				try {
+					closeSheet(streamReader);
+				} catch (XMLStreamException e) {
+					throw new IOException(e);
+				} finally {
+					streamReader=null;
+				}
+			}
+		}
+	}
+	
+	/**
+	 * Decodes the _xHHHH_ escapes of a shared or inline string, like
+	 * XSSFRichTextString.toString() does. Text without escapes is returned as is,
+	 * without going through XSSFRichTextString.
+	 *
+	 * @param text the text as written in the part
+	 * @return the text of the cell
+	 */
+	static String decodeText(String text) {
+		if (text == null || text.indexOf("_x") < 0) {
+			return text;
+		}
+		return new XSSFRichTextString(text).toString();
+	}
+	
+	/**
+	 * Converts an Excel cell reference like "C12" to the zero-based index of its column.
+	 * The column letters are decoded in place, the reference is not split.
+	 *
+	 * @param reference
+	 * @return Index corresponding to the column of the reference
+	 */
+	private static int referenceToColumn(String reference) {
+		int column = -1;
+		for (int i = 0; i < reference.length(); ++i) {
+			int c = reference.charAt(i);
+			if (c < 'A' || c > 'Z') {
+				break;
+			}
+			column = (column + 1) * 26 + c - 'A';
+		}
+		return column;
+	}
+	
+	/**
+	 * Converts an Excel cell reference like "C12" to the zero-based index of its row.
+	 *
+	 * @param reference
+	 * @return Index corresponding to the row of the reference, -1 if it has no row
+	 */
+	private static long referenceToRow(String reference) {
+		long row = 0;
+		boolean digits = false;
+		for (int i = 0; i < reference.length(); ++i) {
+			int c = reference.charAt(i);
+			if (c >= '0' && c <= '9') {
+				row = row * 10 + c - '0';
+				digits = true;
 			}
-			return column;
 		}
+		return digits ? row - 1 : -1;
 	}
 	
 }
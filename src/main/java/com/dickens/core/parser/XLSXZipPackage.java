@@ -0,0 +1,171 @@
+package com.dickens.core.parser;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipFile;
+
+import javax.xml.stream.XMLStreamConstants;
+import javax.xml.stream.XMLStreamException;
+import javax.xml.stream.XMLStreamReader;
+
+import org.apache.poi.openxml4j.util.ZipSecureFile;
+
+/**
+ * Read only access to the parts of a xlsx file through java.util.zip, without the
+ * OPC package of POI.
+ *
+ * Only the central directory of the zip is read when the file is opened, a part
+ * is inflated when its stream is read. Content types are not checked; the parts
+ * are found through their relationships, the way the OPC package finds them.
+ * Part names are absolute, e.g. /xl/worksheets/sheet1.xml.
+ *
+ * The zip is opened as a ZipSecureFile, like the OPC package opens it: a part
+ * inflating beyond the minimum inflate ratio or the maximum entry size set on
+ * ZipSecureFile (a zip bomb) fails with an IOException when its stream is read.
+ *
+ * @author Dickens Prabhu
+ */
+final class XLSXZipPackage implements Closeable {
+
+	/** Suffixes of the relationship types, the same for transitional and strict files. */
+	static final String OFFICE_DOCUMENT = "/officeDocument";
+	static final String STYLES = "/styles";
+	static final String SHARED_STRINGS = "/sharedStrings";
+
+	/** Name of the package itself, the owner of the package relationships. */
+	static final String PACKAGE = "/";
+
+	private final ZipFile zipFile;
+
+	/**
+	 * Opens the xlsx file.
+	 *
+	 * @param file the xlsx file
+	 * @throws IOException if the file is not a zip file
+	 */
+	XLSXZipPackage(File file) throws IOException {
+		this.zipFile = new ZipSecureFile(file);
+	}
+
+	/**
+	 * Opens a part, streams of different parts can be read by different threads.
+	 *
+	 * @param partName absolute part name
+	 * @return the stream, null if the part does not exist
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 */
+	InputStream getInputStream(String partName) throws IOException {
+		ZipEntry entry = zipFile.getEntry(partName.substring(1));
+		return entry == null ? null : zipFile.getInputStream(entry);
+	}
+
+	/**
+	 * @param partName absolute part name
+	 * @return the uncompressed size of the part, -1 if not known
+	 */
+	long getSize(String partName) {
+		ZipEntry entry = zipFile.getEntry(partName.substring(1));
+		return entry == null ? -1 : entry.getSize();
+	}
+
+	/**
+	 * Reads the internal relationships of a part.
+	 *
+	 * @param partName absolute part name, {@link #PACKAGE} for the package relationships
+	 * @return the relationships by id, in document order
+	 * @throws IOException Signals that an I/O exception has occurred.
+	 * @throws XMLStreamException the XML stream exception
+	 */
+	Map<String, Relationship> getRelationships(String partName) throws IOException, XMLStreamException {
+		int slash = partName.lastIndexOf('/');
+		String directory = partName.substring(0, slash + 1);
+		Map<String, Relationship> relationships = new LinkedHashMap<String, Relationship>();
+		InputStream iStream = getInputStream(directory + "_rels/" + partName.substring(slash + 1) + ".rels");
+		if (iStream == null) {
+			return relationships;
+		}
+		XMLStreamReader xmlStreamReader = StaxFactory.createXMLStreamReader(iStream);
+		try {
+			while (xmlStreamReader.hasNext()) {
+				if (xmlStreamReader.next() == XMLStreamConstants.START_ELEMENT && "Relationship".equals(xmlStreamReader.getLocalName())) {
+					String target = xmlStreamReader.getAttributeValue(null, "Target");
+					if (target == null || "External".equals(xmlStreamReader.getAttributeValue(null, "TargetMode"))) {
+						continue;
+					}
+					relationships.put(xmlStreamReader.getAttributeValue(null, "Id"),
+							new Relationship(xmlStreamReader.getAttributeValue(null, "Type"), resolve(directory, target)));
+				}
+			}
+		} finally {
+			xmlStreamReader.close();
+			iStream.close();
+		}
+		return relationships;
+	}
+
+	/**
+	 * @param relationships relationships of a part
+	 * @param typeSuffix end of the relationship type, e.g. {@link #STYLES}
+	 * @return the part name of the first relationship of the type, null if there is none
+	 */
+	static String findTarget(Map<String, Relationship> relationships, String typeSuffix) {
+		for (Relationship relationship : relationships.values()) {
+			if (relationship.type != null && relationship.type.endsWith(typeSuffix)) {
+				return relationship.partName;
+			}
+		}
+		return null;
+	}
+
+	/**
+	 * Resolves a relationship target against the directory of the source part.
+	 *
+	 * @return the absolute part name
+	 */
+	private static String resolve(String directory, String target) {
+		String path = target.startsWith("/") ? target : directory + target;
+		List<String> segments = new ArrayList<String>();
+		for (String segment : path.split("/")) {
+			if ("..".equals(segment)) {
+				if (!segments.isEmpty()) {
+					segments.remove(segments.size() - 1);
+				}
+			} else if (segment.length() > 0 && !".".equals(segment)) {
+				segments.add(segment);
+			}
+		}
+		StringBuilder partName = new StringBuilder();
+		for (String segment : segments) {
+			partName.append('/').append(segment);
+		}
+		return partName.toString();
+	}
+
+	@Override
+	public void close() throws IOException {
+		zipFile.close();
+	}
+
+	/**
+	 * An internal relationship.
+	 */
+	static final class Relationship {
+
+		final String type;
+
+		/** Absolute name of the target part. */
+		final String partName;
+
+		Relationship(String type, String partName) {
+			this.type = type;
+			this.partName = partName;
+		}
+	}
+}
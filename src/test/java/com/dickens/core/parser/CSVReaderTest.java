@@ -0,0 +1,146 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.StringReader;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Rows of a csv file skipped with GenericFileReader.skipRows, by the byte scan of a
+ * reader created from a file path and by the tokenizer of a reader over a Reader,
+ * compared with the rows of a full read, and rows kept by the caller.
+ *
+ * @author Dickens Prabhu
+ */
+public class CSVReaderTest {
+
+	/** Quoted separators, line breaks and quotes, a blank line, CRLF and LF line ends. */
+	static final String CSV = "id,name,comment\r\n"
+			+ "1,\"Smith, John\",plain\r\n"
+			+ "2,\"multi\nline\",\"say \"\"hi\"\"\"\n"
+			+ "\n"
+			+ "3,\"a\r\nb\r\n\",\"\"\n"
+			+ "4,last,\"no line break\"";
+
+	private File file;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("reader", ".csv");
+		OutputStream oStream = new FileOutputStream(file);
+		try {
+			oStream.write(CSV.getBytes(Charset.defaultCharset()));
+		} finally {
+			oStream.close();
+		}
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	@Test
+	public void skippedRowsAreTheRowsOfAFullRead() throws Exception {
+		List<List<String>> all = readAll(new CSVReader(file.getPath()), false);
+		assertEquals(6, all.size());
+		assertEquals("multi\nline", all.get(2).get(1));
+		assertEquals("say \"hi\"", all.get(2).get(2));
+		for (boolean typed : new boolean[] { false, true }) {
+			for (int n = 0; n <= all.size() + 2; n++) {
+				assertSkip(all, new CSVReader(file.getPath()), n, typed);
+				assertSkip(all, new CSVReader(new StringReader(CSV)), n, typed);
+			}
+		}
+	}
+
+	@Test
+	public void skipsTwiceAndAfterRowsRead() throws Exception {
+		List<List<String>> all = readAll(new CSVReader(file.getPath()), false);
+		CSVReader reader = new CSVReader(file.getPath());
+		try {
+			Iterator<List<String>> rows = reader.getIterator();
+			assertEquals(true, rows.hasNext());
+			assertEquals(all.get(0), rows.next());
+			assertEquals(2, GenericFileReader.skipRows(rows, 2));
+			assertEquals(true, rows.hasNext());
+			assertEquals(all.get(3), rows.next());
+			assertEquals(1, GenericFileReader.skipRows(rows, 1));
+			assertEquals(true, rows.hasNext());
+			assertEquals(all.get(5), rows.next());
+			assertEquals(0, GenericFileReader.skipRows(rows, 1));
+			assertEquals(false, rows.hasNext());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void skipAfterTheHeaderOfAProjection() throws Exception {
+		CSVReader reader = new CSVReader(file.getPath());
+		try {
+			reader.selectColumns(new String[] { "comment", "id" });
+			Iterator<List<String>> rows = reader.getIterator();
+			assertEquals(4, GenericFileReader.skipRows(rows, 4));
+			assertEquals(true, rows.hasNext());
+			assertEquals("[, 3]", rows.next().toString());
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void rowsCanBeKeptAfterTheNextRow() throws Exception {
+		List<List<String>> all = readAll(new CSVReader(file.getPath()), false);
+		CSVReader reader = new CSVReader(file.getPath());
+		try {
+			List<List<String>> kept = new ArrayList<List<String>>();
+			Iterator<List<String>> rows = reader.getIterator();
+			while (rows.hasNext()) {
+				kept.add(rows.next());
+			}
+			assertEquals(all, kept);
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static void assertSkip(List<List<String>> all, CSVReader reader, int n, boolean typed) throws Exception {
+		try {
+			Iterator<?> rows = typed ? reader.getTypedIterator() : reader.getIterator();
+			long skipped = GenericFileReader.skipRows(rows, n);
+			assertEquals(Math.min(n, all.size()), skipped);
+			assertEquals(all.subList((int) skipped, all.size()), drain(rows, typed));
+		} finally {
+			reader.close();
+		}
+	}
+
+	static List<List<String>> readAll(GenericFileReader reader, boolean typed) throws Exception {
+		try {
+			return drain(typed ? reader.getTypedIterator() : reader.getIterator(), typed);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@SuppressWarnings("unchecked")
+	private static List<List<String>> drain(Iterator<?> rows, boolean typed) {
+		List<List<String>> all = new ArrayList<List<String>>();
+		while (rows.hasNext()) {
+			Object row = rows.next();
+			all.add(typed ? ((TypedRow) row).materialize() : new ArrayList<String>((List<String>) row));
+		}
+		return all;
+	}
+}
@@ -0,0 +1,170 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * Records split by CSVTokenizer compared with the fields of the opencsv CSVParser the
+ * readers used before: parseLine for single line records and parseLineMulti, line by
+ * line, for quoted fields holding line breaks. Random records of quotes, escapes,
+ * separators and white space are read with several dialects and with a buffer small
+ * enough to be refilled in the middle of the records. Every record is parsed by a new
+ * CSVParser, which otherwise carries the state of the end of a record to the next.
+ *
+ * @author Dickens Prabhu
+ */
+public class CSVTokenizerTest {
+
+	private static final int RECORDS = 20000;
+
+	private static final CSVParser[] DIALECTS = {
+		new CSVParser(),
+		new CSVParser(';', '\''),
+		new CSVParser(',', '"', '\\', true),
+		new CSVParser(',', '"', '\\', false, false),
+		new CSVParser('\t', '"', CSVParser.NULL_CHARACTER),
+	};
+
+	@Test
+	public void quotesAndEscapes() throws Exception {
+		CSVParser dialect = new CSVParser();
+		assertEquals(Arrays.asList("a", "b,c", "d"), read("a,\"b,c\",d", dialect).get(0));
+		assertEquals(Arrays.asList("say \"hi\""), read("\"say \"\"hi\"\"\"", dialect).get(0));
+		assertEquals(Arrays.asList("esc \" quote", "x"), read("\"esc \\\" quote\",x", dialect).get(0));
+		assertEquals(Arrays.asList("a", "", ""), read("a,,", dialect).get(0));
+		assertEquals(Arrays.asList(""), read("\r\n", dialect).get(0));
+		assertEquals(Arrays.asList(Arrays.asList("1", "two\nlines"), Arrays.asList("2", "x")),
+				read("1,\"two\r\nlines\"\r\n2,x\n", dialect));
+	}
+
+	@Test
+	public void singleLineRecordsSplitLikeParseLine() throws Exception {
+		Random random = new Random(7);
+		for (CSVParser dialect : DIALECTS) {
+			char quote = dialect.getQuotechar() == CSVParser.NULL_CHARACTER ? 'c' : dialect.getQuotechar();
+			char[] alphabet = { 'a', 'b', ' ', dialect.getSeparator(), quote, '\\' };
+			StringBuilder text = new StringBuilder();
+			List<String[]> expected = new ArrayList<String[]>();
+			while (expected.size() < RECORDS) {
+				StringBuilder line = new StringBuilder();
+				int length = 1 + random.nextInt(12);
+				for (int i = 0; i < length; i++) {
+					line.append(alphabet[random.nextInt(alphabet.length)]);
+				}
+				try {
+					expected.add(copy(dialect).parseLine(line.toString()));
+				} catch (IOException e) {
+					continue; // the quote is not closed, the record would go on on the next line
+				}
+				text.append(line).append(random.nextBoolean() ? "\n" : "\r\n");
+			}
+			assertRecords(expected, text.toString(), dialect);
+		}
+	}
+
+	@Test
+	public void quotedLineBreaksSplitLikeParseLineMulti() throws Exception {
+		Random random = new Random(11);
+		for (CSVParser dialect : DIALECTS) {
+			if (dialect.getQuotechar() == CSVParser.NULL_CHARACTER) {
+				continue;
+			}
+			String quote = String.valueOf(dialect.getQuotechar());
+			String separator = String.valueOf(dialect.getSeparator());
+			StringBuilder text = new StringBuilder();
+			for (int r = 0; r < RECORDS / 4; r++) {
+				text.append(r).append(separator).append(quote);
+				int lines = random.nextInt(4);
+				for (int l = 0; l <= lines; l++) {
+					if (l > 0) {
+						text.append(random.nextBoolean() ? "\n" : "\r\n");
+					}
+					text.append(random.nextBoolean() ? "" : "line " + l).append(random.nextBoolean() ? separator : "")
+							.append(random.nextBoolean() ? quote + quote : "");
+				}
+				text.append(quote).append(separator).append("end\n");
+			}
+			List<String[]> expected = new ArrayList<String[]>();
+			BufferedReader lines = new BufferedReader(new StringReader(text.toString()));
+			CSVParser parser = null;
+			String line;
+			String[] pending = null;
+			while ((line = lines.readLine()) != null) {
+				if (pending == null) {
+					parser = copy(dialect);
+				}
+				String[] fields = parser.parseLineMulti(line);
+				if (pending != null) { // the first field continues the last pending one
+					String[] joined = Arrays.copyOf(pending, pending.length + fields.length);
+					System.arraycopy(fields, 0, joined, pending.length, fields.length);
+					fields = joined;
+				}
+				if (parser.isPending()) {
+					pending = fields;
+				} else {
+					expected.add(fields);
+					pending = null;
+				}
+			}
+			assertEquals(null, pending);
+			assertRecords(expected, text.toString(), dialect);
+		}
+	}
+
+	private static void assertRecords(List<String[]> expected, String text, CSVParser dialect) throws Exception {
+		for (int bufferSize : new int[] { CSVTokenizer.DEFAULT_BUFFER_SIZE, 7 }) {
+			CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(text), dialect, bufferSize);
+			try {
+				for (int r = 0; r < expected.size(); r++) {
+					assertTrue(tokenizer.readRecord());
+					assertEquals("record " + r + " of " + describe(dialect), Arrays.asList(expected.get(r)), fields(tokenizer));
+				}
+				assertFalse(tokenizer.readRecord());
+			} finally {
+				tokenizer.close();
+			}
+		}
+	}
+
+	private static List<List<String>> read(String text, CSVParser dialect) throws Exception {
+		List<List<String>> records = new ArrayList<List<String>>();
+		CSVTokenizer tokenizer = new CSVTokenizer(new StringReader(text), dialect);
+		try {
+			while (tokenizer.readRecord()) {
+				records.add(fields(tokenizer));
+			}
+		} finally {
+			tokenizer.close();
+		}
+		return records;
+	}
+
+	private static List<String> fields(CSVTokenizer tokenizer) {
+		List<String> fields = new ArrayList<String>();
+		for (int i = 0; i < tokenizer.getFieldCount(); i++) {
+			fields.add(tokenizer.getField(i));
+		}
+		return fields;
+	}
+
+	private static CSVParser copy(CSVParser dialect) {
+		return new CSVParser(dialect.getSeparator(), dialect.getQuotechar(), dialect.getEscape(), dialect.isStrictQuotes(),
+				dialect.isIgnoreLeadingWhiteSpace());
+	}
+
+	private static String describe(CSVParser dialect) {
+		return "dialect " + dialect.getSeparator() + dialect.getQuotechar() + dialect.getEscape() + " strict "
+				+ dialect.isStrictQuotes() + " leading white space " + dialect.isIgnoreLeadingWhiteSpace();
+	}
+}
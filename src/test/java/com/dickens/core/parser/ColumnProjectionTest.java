@@ -0,0 +1,227 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Rows read with a projection, by index and by header name, compared with the selected
+ * columns of the rows of a full read. Empty rows are not read: a row whose selected
+ * columns are empty but which has a value in another column is still returned, so the
+ * projection never changes the number of rows.
+ *
+ * @author Dickens Prabhu
+ */
+public class ColumnProjectionTest {
+
+	/** Rows of the files, null for a row without cells, "" for a blank cell. */
+	static final String[][] ROWS = {
+		{ "id", "name", "city", "amount" },
+		{ "1", "ann", "paris", "10" },
+		{ "2", "", "", "20" },  // selected columns empty
+		null,
+		{ "", "", "", "" },
+		{ "", "bob", "", "" },
+		{ "5", "", "", "" },    // selected columns empty
+		{ "6", "eve", "rome", "60" },
+	};
+
+	static final int[] COLUMNS = { 2, 1 };
+
+	static final String[] NAMES = { "city", "name" };
+
+	private static File xlsx;
+
+	private static File xls;
+
+	private static File csv;
+
+	@BeforeClass
+	public static void createFiles() throws Exception {
+		xlsx = write(new XSSFWorkbook(), ".xlsx");
+		xls = write(new HSSFWorkbook(), ".xls");
+		csv = File.createTempFile("projection", ".csv");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(csv), Charset.defaultCharset());
+		try {
+			for (String[] row : ROWS) {
+				writer.write(row == null ? ",,," : join(row));
+				writer.write("\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static String join(String[] row) {
+		StringBuilder line = new StringBuilder();
+		for (int c = 0; c < row.length; c++) {
+			line.append(c > 0 ? "," : "").append(row[c]);
+		}
+		return line.toString();
+	}
+
+	private static File write(Workbook workbook, String suffix) throws Exception {
+		File file = File.createTempFile("projection", suffix);
+		try {
+			Sheet sheet = workbook.createSheet("data");
+			for (int r = 0; r < ROWS.length; r++) {
+				if (ROWS[r] == null) {
+					continue;
+				}
+				Row row = sheet.createRow(r);
+				for (int c = 0; c < ROWS[r].length; c++) {
+					String value = ROWS[r][c];
+					if (value.isEmpty()) {
+						row.createCell(c); // blank cell
+					} else if (Character.isDigit(value.charAt(0))) {
+						row.createCell(c).setCellValue(Integer.parseInt(value));
+					} else {
+						row.createCell(c).setCellValue(value);
+					}
+				}
+			}
+			OutputStream oStream = new FileOutputStream(file);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.close();
+		}
+		return file;
+	}
+
+	@AfterClass
+	public static void deleteFiles() {
+		xlsx.delete();
+		xls.delete();
+		csv.delete();
+	}
+
+	@Test
+	public void xlsxKeepsTheRowsOfAFullRead() throws Exception {
+		assertProjection(new Readers() {
+			public GenericFileReader open() throws Exception {
+				return new XLSXReader(xlsx.getPath(), false);
+			}
+		});
+		assertProjection(new Readers() {
+			public GenericFileReader open() throws Exception {
+				return new XLSXReader(xlsx.getPath(), false, true);
+			}
+		});
+	}
+
+	@Test
+	public void xlsKeepsTheRowsOfAFullRead() throws Exception {
+		assertProjection(new Readers() {
+			public GenericFileReader open() throws Exception {
+				return new XLSReader(xls.getPath(), false);
+			}
+		});
+		assertProjection(new Readers() {
+			public GenericFileReader open() throws Exception {
+				return new XLSEventReader(xls.getPath(), false);
+			}
+		});
+	}
+
+	@Test
+	public void csvKeepsTheRowsOfAFullRead() throws Exception {
+		assertProjection(new Readers() {
+			public GenericFileReader open() throws Exception {
+				return new CSVReader(csv.getPath(), false);
+			}
+		});
+	}
+
+	@Test
+	public void fileTypesReturnTheSameRows() throws Exception {
+		List<List<String>> rows = read(GenericFileReader.getReader(xlsx.getPath(), false, COLUMNS), 0);
+		assertEquals(Arrays.asList(
+				Arrays.asList("city", "name"),
+				Arrays.asList("paris", "ann"),
+				Arrays.asList("", ""),
+				Arrays.asList("", "bob"),
+				Arrays.asList("", ""),
+				Arrays.asList("rome", "eve")), rows);
+		assertEquals(rows, read(GenericFileReader.getReader(xls.getPath(), false, COLUMNS), 0));
+		assertEquals(rows, read(new XLSEventReader(xls.getPath(), false), COLUMNS, 0));
+		assertEquals(rows, read(GenericFileReader.getReader(xlsx.getPath(), false, NAMES), 0));
+		assertEquals(rows, read(GenericFileReader.getReader(xls.getPath(), false, NAMES), 0));
+	}
+
+	interface Readers {
+		GenericFileReader open() throws Exception;
+	}
+
+	/**
+	 * Compares the projected rows of every iterator with the full read, from the first
+	 * row and after skipping rows.
+	 */
+	private static void assertProjection(Readers readers) throws Exception {
+		for (int mode = 0; mode < 3; mode++) {
+			List<List<String>> full = read(readers.open(), mode);
+			List<List<String>> expected = new ArrayList<List<String>>();
+			for (List<String> row : full) {
+				expected.add(Arrays.asList(row.get(COLUMNS[0]), row.get(COLUMNS[1])));
+			}
+			for (int skip = 0; skip <= full.size(); skip++) {
+				GenericFileReader reader = readers.open();
+				reader.selectColumns(COLUMNS);
+				assertEquals(expected.subList(skip, expected.size()), read(reader, mode, skip));
+				reader = readers.open();
+				reader.selectColumns(NAMES);
+				assertEquals(expected.subList(skip, expected.size()), read(reader, mode, skip));
+			}
+		}
+	}
+
+	private static List<List<String>> read(GenericFileReader reader, int[] columns, int mode) throws Exception {
+		reader.selectColumns(columns);
+		return read(reader, mode);
+	}
+
+	private static List<List<String>> read(GenericFileReader reader, int mode) throws Exception {
+		return read(reader, mode, 0);
+	}
+
+	/**
+	 * Reads the rows through the String iterator (mode 0), the typed iterator (1) or the
+	 * row views (2), after skipping rows.
+	 */
+	@SuppressWarnings("unchecked")
+	private static List<List<String>> read(GenericFileReader reader, int mode, int skip) throws Exception {
+		try {
+			Iterator<?> rows = mode == 0 ? reader.getIterator() : mode == 1 ? reader.getTypedIterator() : reader.getRowViews(false);
+			assertEquals(skip, GenericFileReader.skipRows(rows, skip));
+			List<List<String>> all = new ArrayList<List<String>>();
+			while (rows.hasNext()) {
+				Object row = rows.next();
+				all.add(row instanceof RowView ? ((RowView) row).materialize() : new ArrayList<String>((List<String>) row));
+			}
+			return all;
+		} finally {
+			reader.close();
+		}
+	}
+}
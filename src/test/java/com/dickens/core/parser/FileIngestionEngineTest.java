@@ -0,0 +1,212 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Files read by FileIngestionEngine: the number of files read together within the
+ * memory budget, a file larger than the budget read alone, and how failures of the
+ * sink are reported.
+ *
+ * @author Dickens Prabhu
+ */
+public class FileIngestionEngineTest {
+
+	private static final int ROWS = 20;
+
+	private final List<File> files = new ArrayList<File>();
+
+	@After
+	public void deleteFiles() {
+		for (File file : files) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Writes a csv file of ROWS rows and about the given size.
+	 */
+	private String csv(int size) throws Exception {
+		File file = File.createTempFile("ingestion", ".csv");
+		files.add(file);
+		StringBuilder line = new StringBuilder("1,");
+		while (line.length() < size / ROWS - 1) {
+			line.append('x');
+		}
+		line.append('\n');
+		OutputStream oStream = new FileOutputStream(file);
+		try {
+			for (int r = 0; r < ROWS; r++) {
+				oStream.write(line.toString().getBytes(Charset.defaultCharset()));
+			}
+		} finally {
+			oStream.close();
+		}
+		return file.getPath();
+	}
+
+	@Test
+	public void filesReadTogetherFitTheBudget() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < 6; i++) {
+			paths.add(csv(4100)); // weight 4 KB
+		}
+		ConcurrencySink sink = new ConcurrencySink(null);
+		assertEquals(0, new FileIngestionEngine(4, 10 * 1024).ingestFiles(paths, sink));
+		assertEquals(6, sink.completed.size());
+		assertTrue(sink.maxActive <= 2);
+
+		sink = new ConcurrencySink(null);
+		assertEquals(0, new FileIngestionEngine(4, 100 * 1024).ingestFiles(paths, sink));
+		assertEquals(6, sink.completed.size());
+		assertTrue(sink.maxActive >= 2); // only the cpu permits bound it
+		assertTrue(sink.maxActive <= 4);
+	}
+
+	@Test
+	public void fileLargerThanTheBudgetIsReadAlone() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		paths.add(csv(1024));
+		paths.add(csv(1024));
+		String large = csv(16 * 1024);
+		paths.add(large);
+		paths.add(csv(1024));
+		paths.add(csv(1024));
+		ConcurrencySink sink = new ConcurrencySink(large);
+		assertEquals(0, new FileIngestionEngine(4, 4 * 1024).ingestFiles(paths, sink));
+		assertEquals(5, sink.completed.size());
+		assertEquals(Integer.valueOf(ROWS), sink.completed.get(large));
+		assertFalse(sink.largeNotAlone);
+	}
+
+	@Test
+	public void exceptionOfTheSinkFailsItsFileOnly() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) {
+			paths.add(csv(1024));
+		}
+		final RuntimeException failure = new IllegalStateException("test");
+		FailingSink sink = new FailingSink(paths.get(0), failure);
+		assertEquals(1, new FileIngestionEngine(1, 1 << 20).ingestFiles(paths, sink));
+		assertSame(failure, sink.failures.get(paths.get(0)));
+		assertEquals(2, sink.completed.size());
+	}
+
+	@Test
+	public void errorStopsTheReading() throws Exception {
+		List<String> paths = new ArrayList<String>();
+		for (int i = 0; i < 3; i++) {
+			paths.add(csv(1024));
+		}
+		final Error failure = new OutOfMemoryError("test");
+		FailingSink sink = new FailingSink(paths.get(0), failure);
+		try {
+			new FileIngestionEngine(1, 1 << 20).ingestFiles(paths, sink);
+			fail("error not thrown");
+		} catch (OutOfMemoryError e) {
+			assertSame(failure, e);
+		}
+		assertSame(failure, sink.failures.get(paths.get(0)));
+		assertEquals(1, sink.failures.size());
+		assertEquals(0, sink.completed.size());
+		assertEquals(Integer.valueOf(1), sink.rows);
+	}
+
+	/**
+	 * Records the files read at the same time, reading slowly so they overlap.
+	 */
+	private static class ConcurrencySink implements FileRowSink {
+
+		private final String large;
+
+		private final Set<String> active = new HashSet<String>();
+
+		final Map<String, Integer> completed = new HashMap<String, Integer>();
+
+		int maxActive;
+
+		boolean largeNotAlone;
+
+		ConcurrencySink(String large) {
+			this.large = large;
+		}
+
+		public void handleRow(String fileName, long rowNumber, List<String> row) throws Exception {
+			synchronized (this) {
+				active.add(fileName);
+				maxActive = Math.max(maxActive, active.size());
+				if (active.size() > 1 && large != null && active.contains(large)) {
+					largeNotAlone = true;
+				}
+			}
+			Thread.sleep(2);
+		}
+
+		public synchronized void fileCompleted(String fileName, long rowCount) {
+			active.remove(fileName);
+			completed.put(fileName, Integer.valueOf((int) rowCount));
+		}
+
+		public synchronized void fileFailed(String fileName, Throwable error) {
+			active.remove(fileName);
+		}
+	}
+
+	/**
+	 * Fails on the first row of a file.
+	 */
+	private static class FailingSink implements FileRowSink {
+
+		private final String failing;
+
+		private final Throwable failure;
+
+		final Map<String, Throwable> failures = new HashMap<String, Throwable>();
+
+		final Set<String> completed = new HashSet<String>();
+
+		Integer rows = Integer.valueOf(0);
+
+		FailingSink(String failing, Throwable failure) {
+			this.failing = failing;
+			this.failure = failure;
+		}
+
+		public void handleRow(String fileName, long rowNumber, List<String> row) throws Exception {
+			synchronized (this) {
+				rows = Integer.valueOf(rows.intValue() + 1);
+			}
+			if (fileName.equals(failing)) {
+				if (failure instanceof Error) {
+					throw (Error) failure;
+				}
+				throw (Exception) failure;
+			}
+		}
+
+		public synchronized void fileCompleted(String fileName, long rowCount) {
+			completed.add(fileName);
+		}
+
+		public synchronized void fileFailed(String fileName, Throwable error) {
+			failures.put(fileName, error);
+		}
+	}
+}
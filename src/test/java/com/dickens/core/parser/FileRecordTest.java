@@ -0,0 +1,142 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Random;
+
+import org.junit.Test;
+
+/**
+ * The values map of FileRecord, backed by slots of a field index shared by the records
+ * of a mapping, compared with the LinkedHashMap the records held before: random puts,
+ * null values, removes, entry updates and removes through the iterator, on a record
+ * sharing its index with another one.
+ *
+ * @author Dickens Prabhu
+ */
+public class FileRecordTest {
+
+	private static final String[] KEYS = { "a", "b", "c", "d", "e", "f", "g", "h", "i", "j" };
+
+	private static FieldIndex mapping() {
+		return new FieldIndex(new String[] { "a", "b", "c" });
+	}
+
+	@Test
+	public void valuesBehaveLikeAMap() {
+		Random random = new Random(5);
+		FieldIndex shared = mapping();
+		FileRecord record = new FileRecord(shared, new String[] { "1", null, "3" });
+		FileRecord other = new FileRecord(shared, new String[] { "x", "y", "z" });
+		Map<String, String> expected = new HashMap<String, String>();
+		expected.put("a", "1");
+		expected.put("c", "3");
+		Map<String, String> values = record.getFileRecordValues();
+		for (int n = 0; n < 20000; n++) {
+			String key = KEYS[random.nextInt(KEYS.length)];
+			String value = random.nextInt(5) == 0 ? null : "v" + n;
+			switch (random.nextInt(6)) {
+			case 0:
+			case 1:
+				assertEquals(expected.put(key, value), values.put(key, value));
+				break;
+			case 2:
+				assertEquals(expected.remove(key), values.remove(key));
+				break;
+			case 3:
+				updateEntry(expected, values, key, value);
+				break;
+			case 4:
+				removeEntry(expected, values, key);
+				break;
+			default:
+				if (random.nextInt(50) == 0) {
+					expected.clear();
+					values.clear();
+				}
+				break;
+			}
+			assertEquals(expected.get(key), record.getValue(key));
+			assertEquals(expected.containsKey(key), values.containsKey(key));
+			assertEquals(expected.size(), values.size());
+			assertEquals(expected, values);
+			assertEquals(values, expected);
+			assertEquals(expected.hashCode(), values.hashCode());
+			assertEquals(expected.keySet(), new HashSet<String>(values.keySet()));
+		}
+		Map<String, String> untouched = new HashMap<String, String>();
+		untouched.put("a", "x");
+		untouched.put("b", "y");
+		untouched.put("c", "z");
+		assertEquals(untouched, other.getFileRecordValues());
+		assertEquals(-1, shared.getSlot("d"));
+		assertEquals(3, shared.size());
+	}
+
+	private static void updateEntry(Map<String, String> expected, Map<String, String> values, String key, String value) {
+		for (Map.Entry<String, String> entry : values.entrySet()) {
+			if (entry.getKey().equals(key)) {
+				assertEquals(expected.put(key, value), entry.setValue(value));
+				assertEquals(value, entry.getValue());
+			}
+		}
+	}
+
+	private static void removeEntry(Map<String, String> expected, Map<String, String> values, String key) {
+		for (Iterator<Map.Entry<String, String>> entries = values.entrySet().iterator(); entries.hasNext();) {
+			if (entries.next().getKey().equals(key)) {
+				entries.remove();
+				expected.remove(key);
+			}
+		}
+	}
+
+	@Test
+	public void nullValueIsAField() {
+		FileRecord record = new FileRecord(mapping(), new String[3]);
+		assertFalse(record.getFileRecordValues().containsKey("a"));
+		record.setValue("a", null);
+		assertTrue(record.getFileRecordValues().containsKey("a"));
+		assertNull(record.getValue("a"));
+		assertEquals(1, record.getFileRecordValues().size());
+		assertEquals("{a=null}", record.getFileRecordValues().toString());
+	}
+
+	@Test
+	public void recordsEqualTheRecordsBuiltByName() {
+		FileRecord mapped = new FileRecord(mapping(), new String[] { "1", null, "3" });
+		mapped.setRowNumber(4);
+		mapped.setValue("extra", "e");
+		FileRecord byName = new FileRecord();
+		byName.setRowNumber(4);
+		byName.setValue("extra", "e");
+		byName.setValue("c", "3");
+		byName.setValue("a", "1");
+		assertEquals(byName, mapped);
+		assertEquals(mapped, byName);
+		assertEquals(byName.hashCode(), mapped.hashCode());
+		assertEquals("FileRecord(fileRecordValues={a=1, c=3, extra=e}, rowNumber=4)", mapped.toString());
+		byName.setRowNumber(5);
+		assertFalse(byName.equals(mapped));
+	}
+
+	@Test
+	public void setFileRecordValuesReplacesTheValues() {
+		FileRecord record = new FileRecord(mapping(), new String[] { "1", "2", "3" });
+		Map<String, String> values = new LinkedHashMap<String, String>();
+		values.put("b", "two");
+		values.put("z", "26");
+		record.setFileRecordValues(values);
+		assertEquals(values, record.getFileRecordValues());
+		record.setFileRecordValues(record.getFileRecordValues());
+		assertEquals(values, record.getFileRecordValues());
+	}
+}
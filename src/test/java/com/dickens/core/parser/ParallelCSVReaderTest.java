@@ -0,0 +1,171 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedWriter;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+import java.util.stream.Collectors;
+
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Rows of a csv file split into ranges by ParallelCSVReader, compared with the rows of
+ * CSVReader. The file is several chunks long and most of its lines are inside quoted
+ * fields: a chunk almost always starts in the middle of a quoted field, at a line that
+ * looks like a record of its own.
+ *
+ * @author Dickens Prabhu
+ */
+public class ParallelCSVReaderTest {
+
+	private static final Charset UTF_8 = Charset.forName("UTF-8");
+
+	private static File file;
+
+	/** Rows of CSVReader. */
+	private static List<List<String>> expected;
+
+	private ForkJoinPool pool;
+
+	@BeforeClass
+	public static void createFile() throws Exception {
+		file = File.createTempFile("parallel", ".csv");
+		Random random = new Random(3);
+		Writer writer = new BufferedWriter(new OutputStreamWriter(new FileOutputStream(file), UTF_8));
+		try {
+			writer.write("id,comment,amount\n");
+			int id = 0;
+			while (file.length() < 6 * ParallelCSVReader.MIN_CHUNK_SIZE) {
+				for (int r = 0; r < 1000; r++, id++) {
+					writer.write(id + ",\"");
+					int lines = random.nextInt(30);
+					for (int l = 0; l < lines; l++) {
+						switch (random.nextInt(4)) {
+						case 0:
+							writer.write(id + 1 + ",\"\"looks like\"\" a record,\"\"" + l + "\"\"\n");
+							break;
+						case 1:
+							writer.write("\r\n");
+							break;
+						case 2:
+							writer.write("\"\",\"\"\n");
+							break;
+						default:
+							writer.write("line " + l + ", of record " + id + "\r\n");
+							break;
+						}
+					}
+					writer.write("end\"," + random.nextInt(1000) + (random.nextBoolean() ? "\n" : "\r\n"));
+				}
+				writer.flush();
+			}
+		} finally {
+			writer.close();
+		}
+
+		expected = new ArrayList<List<String>>();
+		CSVReader reader = new CSVReader(file.getPath());
+		try {
+			Iterator<List<String>> rows = reader.getIterator();
+			while (rows.hasNext()) {
+				expected.add(rows.next());
+			}
+		} finally {
+			reader.close();
+		}
+		assertTrue(expected.size() > 10000);
+		assertEquals(3, expected.get(expected.size() - 1).size());
+	}
+
+	@AfterClass
+	public static void deleteFile() {
+		file.delete();
+	}
+
+	@Before
+	public void createPool() {
+		pool = new ForkJoinPool(4);
+	}
+
+	@After
+	public void shutdownPool() {
+		pool.shutdown();
+	}
+
+	private ParallelCSVReader newReader() throws Exception {
+		return new ParallelCSVReader(file.getPath(), new CSVParser(), UTF_8, pool);
+	}
+
+	@Test
+	public void orderedRowsAreTheRowsOfCSVReader() throws Exception {
+		final List<List<String>> rows = new ArrayList<List<String>>();
+		ParallelCSVReader reader = newReader();
+		try {
+			reader.readOrdered(new CSVRowHandler() {
+				public void handleRow(long rowNumber, List<String> row) {
+					assertEquals(rows.size(), rowNumber);
+					rows.add(row);
+				}
+			});
+		} finally {
+			reader.close();
+		}
+		assertEquals(expected, rows);
+	}
+
+	@Test
+	public void unorderedRowsAreTheRowsOfCSVReader() throws Exception {
+		final List<List<String>> rows = Collections.synchronizedList(new ArrayList<List<String>>());
+		ParallelCSVReader reader = newReader();
+		try {
+			reader.readUnordered(new CSVRowHandler() {
+				public void handleRow(long rowNumber, List<String> row) {
+					assertEquals(-1, rowNumber);
+					rows.add(new ArrayList<String>(row)); // the list is reused by the worker
+				}
+			});
+		} finally {
+			reader.close();
+		}
+		List<List<String>> sorted = new ArrayList<List<String>>(rows);
+		Collections.sort(sorted, new Comparator<List<String>>() {
+			public int compare(List<String> a, List<String> b) {
+				return Long.compare(id(a), id(b));
+			}
+		});
+		assertEquals(expected, sorted);
+	}
+
+	@Test
+	public void parallelStreamReturnsTheRowsInOrder() throws Exception {
+		ParallelCSVReader reader = newReader();
+		try {
+			assertEquals(expected, reader.stream().parallel().collect(Collectors.<List<String>>toList()));
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * @return the id of a row, -1 for the header
+	 */
+	private static long id(List<String> row) {
+		return row.get(0).equals("id") ? -1 : Long.parseLong(row.get(0));
+	}
+}
@@ -0,0 +1,212 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.Charset;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Parallel reads of the sheets of a workbook and of the ranges of a csv file which
+ * fail or are interrupted: the workers must stop before the call returns.
+ *
+ * @author Dickens Prabhu
+ */
+public class ParallelReadTest {
+
+	private static final int SHEETS = 3;
+
+	private static final int ROWS = 3000;
+
+	private static File xlsx;
+
+	private static File xls;
+
+	private static File csv;
+
+	private ForkJoinPool pool;
+
+	@BeforeClass
+	public static void createFiles() throws Exception {
+		xlsx = write(new SXSSFWorkbook(), ".xlsx");
+		xls = write(new HSSFWorkbook(), ".xls");
+		csv = File.createTempFile("parallel", ".csv");
+		Writer writer = new OutputStreamWriter(new FileOutputStream(csv), Charset.forName("UTF-8"));
+		try {
+			for (int r = 0; r < 40000; r++) {
+				writer.write(r + ",\"quoted, with a\nline break\",filler filler filler filler filler filler filler\n");
+			}
+		} finally {
+			writer.close();
+		}
+	}
+
+	private static File write(Workbook workbook, String suffix) throws Exception {
+		File file = File.createTempFile("parallel", suffix);
+		try {
+			for (int s = 0; s < SHEETS; s++) {
+				Sheet sheet = workbook.createSheet("sheet" + s);
+				for (int r = 0; r < ROWS; r++) {
+					sheet.createRow(r).createCell(0).setCellValue("row" + r);
+				}
+			}
+			OutputStream oStream = new FileOutputStream(file);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.close();
+			if (workbook instanceof SXSSFWorkbook) {
+				((SXSSFWorkbook) workbook).dispose();
+			}
+		}
+		return file;
+	}
+
+	@AfterClass
+	public static void deleteFiles() {
+		xlsx.delete();
+		xls.delete();
+		csv.delete();
+	}
+
+	@Before
+	public void createPool() {
+		pool = new ForkJoinPool(SHEETS);
+	}
+
+	@After
+	public void shutdownPool() {
+		pool.shutdownNow();
+	}
+
+	@Test
+	public void failedSheetStopsTheOtherSheets() throws Exception {
+		assertFailureStopsTheWorkers(new XLSXReader(xlsx.getPath(), true, true));
+		assertFailureStopsTheWorkers(new XLSXReader(xlsx.getPath(), true, false));
+		assertFailureStopsTheWorkers(new XLSEventReader(xls.getPath(), true));
+	}
+
+	@Test
+	public void interruptedReadStopsTheSheets() throws Exception {
+		assertInterruptionStopsTheWorkers(new XLSXReader(xlsx.getPath(), true, true));
+		assertInterruptionStopsTheWorkers(new XLSEventReader(xls.getPath(), true));
+	}
+
+	@Test
+	public void failedRangeStopsTheOtherRanges() throws Exception {
+		ParallelCSVReader reader = new ParallelCSVReader(csv.getPath(), new CSVParser(), Charset.forName("UTF-8"), pool);
+		final AtomicInteger rows = new AtomicInteger();
+		final RuntimeException failure = new IllegalStateException("test");
+		try {
+			reader.readUnordered(new CSVRowHandler() {
+				public void handleRow(long rowNumber, List<String> row) throws Exception {
+					assertEquals("quoted, with a\nline break", row.get(1));
+					if (rows.incrementAndGet() == 50) {
+						throw failure;
+					}
+					Thread.sleep(1);
+				}
+			});
+			fail("failure not thrown");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		} finally {
+			reader.close();
+		}
+		assertStopped(rows);
+	}
+
+	private void assertFailureStopsTheWorkers(GenericFileReader reader) throws Exception {
+		final AtomicInteger rows = new AtomicInteger();
+		final RuntimeException failure = new IllegalStateException("test");
+		try {
+			reader.selectAllSheets();
+			reader.readSheets(new SheetRowHandler() {
+				public void handleRow(String sheetName, long rowNumber, List<String> row) {
+					rows.incrementAndGet();
+					if (sheetName.equals("sheet0") && rowNumber == 10) {
+						throw failure;
+					}
+					pause();
+				}
+			}, pool);
+			fail("failure not thrown");
+		} catch (IllegalStateException e) {
+			assertSame(failure, e);
+		} finally {
+			reader.close();
+		}
+		assertStopped(rows);
+	}
+
+	private void assertInterruptionStopsTheWorkers(final GenericFileReader reader) throws Exception {
+		final AtomicInteger rows = new AtomicInteger();
+		final AtomicReference<Exception> thrown = new AtomicReference<Exception>();
+		Thread caller = new Thread() {
+			public void run() {
+				try {
+					reader.selectAllSheets();
+					reader.readSheets(new SheetRowHandler() {
+						public void handleRow(String sheetName, long rowNumber, List<String> row) {
+							rows.incrementAndGet();
+							pause();
+						}
+					}, pool);
+				} catch (Exception e) {
+					thrown.set(e);
+				}
+			}
+		};
+		caller.start();
+		while (rows.get() < 20) {
+			Thread.sleep(5);
+		}
+		caller.interrupt();
+		caller.join(10000);
+		reader.close();
+		assertTrue(String.valueOf(thrown.get()), thrown.get() instanceof InterruptedException);
+		assertStopped(rows);
+	}
+
+	/**
+	 * Checks that no row is handled any more and that the read stopped well before the
+	 * end of the rows.
+	 */
+	private static void assertStopped(AtomicInteger rows) throws InterruptedException {
+		int handled = rows.get();
+		Thread.sleep(200);
+		assertEquals(handled, rows.get());
+		assertTrue(String.valueOf(handled), handled < ROWS);
+	}
+
+	private static void pause() {
+		try {
+			Thread.sleep(1);
+		} catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+		}
+	}
+}
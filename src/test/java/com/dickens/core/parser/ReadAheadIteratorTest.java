@@ -0,0 +1,174 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+
+import org.junit.Test;
+
+/**
+ * Rows read ahead by ReadAheadIterator: the rows of the reader as new lists, the
+ * number of rows read ahead of the caller, failures of the parser thread and close(),
+ * which must stop the parser thread whether it is parsing or waiting for room.
+ *
+ * @author Dickens Prabhu
+ */
+public class ReadAheadIteratorTest {
+
+	private static final int ROWS = 1000;
+
+	@Test
+	public void rowsAreTheRowsOfTheReader() throws Exception {
+		StringBuilder csv = new StringBuilder();
+		for (int r = 0; r < ROWS; r++) {
+			csv.append(r).append(",\"x\ny\",").append(r % 7).append('\n');
+		}
+		List<List<String>> expected = CSVReaderTest.readAll(new CSVReader(new StringReader(csv.toString())), false);
+		CSVReader reader = new CSVReader(new StringReader(csv.toString()));
+		try {
+			ReadAheadIterator iterator = reader.getReadAheadIterator(16, 4);
+			List<List<String>> rows = new ArrayList<List<String>>();
+			try {
+				while (iterator.hasNext()) {
+					rows.add(iterator.next()); // kept without a copy
+				}
+				assertFalse(iterator.hasNext());
+			} finally {
+				iterator.close();
+			}
+			assertEquals(expected, rows);
+		} finally {
+			reader.close();
+		}
+	}
+
+	@Test
+	public void parserStaysWithinTheRing() throws Exception {
+		CountingRows rows = new CountingRows(ROWS, -1);
+		ReadAheadIterator iterator = new ReadAheadIterator(rows, 10, 3, "test");
+		try {
+			assertTrue(iterator.hasNext());
+			assertEquals(Arrays.asList("0"), iterator.next());
+			Thread.sleep(100);
+			// the batch taken, a full ring and the batch waiting for room
+			assertTrue(String.valueOf(rows.read.get()), rows.read.get() <= 10 + 3 * 10 + 10);
+			int count = 1;
+			while (iterator.hasNext()) {
+				assertEquals(Arrays.asList(String.valueOf(count)), iterator.next());
+				count++;
+			}
+			assertEquals(ROWS, count);
+		} finally {
+			iterator.close();
+		}
+	}
+
+	@Test
+	public void closeStopsAWaitingParser() throws Exception {
+		CountingRows rows = new CountingRows(ROWS, -1);
+		ReadAheadIterator iterator = new ReadAheadIterator(rows, 10, 2, "test");
+		assertTrue(iterator.hasNext());
+		while (rows.read.get() < 30) { // the ring is full, the parser waits for room
+			Thread.sleep(1);
+		}
+		iterator.close();
+		assertFalse(rows.thread.get().isAlive());
+		assertFalse(iterator.hasNext());
+		int read = rows.read.get();
+		Thread.sleep(50);
+		assertEquals(read, rows.read.get());
+		iterator.close(); // closing twice does nothing
+	}
+
+	@Test
+	public void closeStopsAParsingParser() throws Exception {
+		final CountingRows rows = new CountingRows(Integer.MAX_VALUE, -1) {
+			@Override
+			public List<String> next() {
+				try {
+					Thread.sleep(1);
+				} catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+				return super.next();
+			}
+		};
+		ReadAheadIterator iterator = new ReadAheadIterator(rows, 1000, 2, "test");
+		while (rows.read.get() < 20) { // the first batch is not full yet
+			Thread.sleep(1);
+		}
+		iterator.close();
+		assertFalse(rows.thread.get().isAlive());
+		assertTrue(rows.read.get() < 1000);
+	}
+
+	@Test
+	public void failureIsThrownAfterTheRowsBeforeIt() throws Exception {
+		CountingRows rows = new CountingRows(ROWS, 25);
+		ReadAheadIterator iterator = new ReadAheadIterator(rows, 10, 2, "test");
+		try {
+			int count = 0;
+			try {
+				while (iterator.hasNext()) {
+					iterator.next();
+					count++;
+				}
+				fail("failure not thrown");
+			} catch (IllegalStateException e) {
+				assertSame(rows.failure, e);
+			}
+			assertEquals(20, count); // the rows of the incomplete batch are dropped
+			assertFalse(iterator.hasNext());
+		} finally {
+			iterator.close();
+		}
+	}
+
+	/**
+	 * Rows of one number, counting the rows read, optionally failing at a row.
+	 */
+	private static class CountingRows implements Iterator<List<String>> {
+
+		final AtomicInteger read = new AtomicInteger();
+
+		final AtomicReference<Thread> thread = new AtomicReference<Thread>();
+
+		final RuntimeException failure = new IllegalStateException("test");
+
+		private final int count;
+
+		private final int failAt;
+
+		CountingRows(int count, int failAt) {
+			this.count = count;
+			this.failAt = failAt;
+		}
+
+		public boolean hasNext() {
+			thread.set(Thread.currentThread());
+			return read.get() < count;
+		}
+
+		public List<String> next() {
+			int row = read.getAndIncrement();
+			if (row == failAt) {
+				throw failure;
+			}
+			return Arrays.asList(String.valueOf(row));
+		}
+
+		public void remove() {
+			throw new UnsupportedOperationException();
+		}
+	}
+}
@@ -0,0 +1,264 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Deque;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executor;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Batches of RowBatchPublisher passed on demand only: an executor run by the test
+ * shows that no batch is parsed before it is requested, that cancel stops the batches
+ * and closes the reader, and how errors and invalid requests are signalled.
+ *
+ * @author Dickens Prabhu
+ */
+public class RowBatchPublisherTest {
+
+	private static final int ROWS = 25;
+
+	private static String csv() {
+		StringBuilder csv = new StringBuilder("id,name\n");
+		for (int r = 1; r <= ROWS; r++) {
+			csv.append(r).append(",name").append(r).append('\n');
+		}
+		return csv.toString();
+	}
+
+	@Test
+	public void batchesArePassedOnDemand() {
+		CountingReader reader = new CountingReader(csv());
+		ManualExecutor executor = new ManualExecutor();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new RowBatchPublisher(reader, 4, executor).subscribe(subscriber);
+		assertEquals(0, executor.runAll());
+		assertEquals(0, subscriber.rows.size());
+
+		subscriber.subscription.request(2);
+		assertEquals(0, subscriber.rows.size()); // parsed on the executor only
+		executor.runAll();
+		assertEquals(8, subscriber.rows.size());
+		assertEquals(2, subscriber.batches);
+		assertEquals("id", subscriber.rows.get(0));
+		assertEquals("7", subscriber.rows.get(7));
+
+		subscriber.subscription.request(1);
+		subscriber.subscription.request(1);
+		executor.runAll();
+		assertEquals(16, subscriber.rows.size());
+		assertEquals(0, reader.closed);
+
+		subscriber.subscription.request(Long.MAX_VALUE);
+		subscriber.subscription.request(Long.MAX_VALUE); // capped, no overflow
+		executor.runAll();
+		assertEquals(ROWS + 1, subscriber.rows.size());
+		assertEquals(1, subscriber.completed);
+		assertNull(subscriber.error);
+		assertEquals(1, reader.closed);
+
+		subscriber.subscription.request(1);
+		executor.runAll();
+		assertEquals(1, subscriber.completed);
+		assertEquals(ROWS + 1, subscriber.rows.size());
+	}
+
+	@Test
+	public void cancelStopsTheBatchesAndClosesTheReader() {
+		CountingReader reader = new CountingReader(csv());
+		ManualExecutor executor = new ManualExecutor();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		new RowBatchPublisher(reader, 4, executor).subscribe(subscriber);
+		subscriber.subscription.request(1);
+		executor.runAll();
+		subscriber.subscription.request(3);
+		subscriber.subscription.cancel();
+		executor.runAll();
+		assertEquals(4, subscriber.rows.size());
+		assertEquals(1, reader.closed);
+		assertEquals(0, subscriber.completed);
+		assertNull(subscriber.error);
+
+		subscriber.subscription.request(5);
+		subscriber.subscription.cancel();
+		executor.runAll();
+		assertEquals(4, subscriber.rows.size());
+		assertEquals(1, reader.closed);
+	}
+
+	@Test
+	public void cancelFromOnNextStopsAfterTheBatch() {
+		CountingReader reader = new CountingReader(csv());
+		ManualExecutor executor = new ManualExecutor();
+		RecordingSubscriber subscriber = new RecordingSubscriber() {
+			@Override
+			public void onNext(RowBatch batch) {
+				super.onNext(batch);
+				if (batches == 2) {
+					subscription.cancel();
+				}
+			}
+		};
+		new RowBatchPublisher(reader, 4, executor).subscribe(subscriber);
+		subscriber.subscription.request(Long.MAX_VALUE);
+		executor.runAll();
+		assertEquals(2, subscriber.batches);
+		assertEquals(1, reader.closed);
+		assertEquals(0, subscriber.completed);
+	}
+
+	@Test
+	public void errorsAreSignalled() {
+		ManualExecutor executor = new ManualExecutor();
+		RecordingSubscriber subscriber = new RecordingSubscriber();
+		CountingReader reader = new CountingReader(csv());
+		RowBatchPublisher publisher = new RowBatchPublisher(reader, 4, executor);
+		publisher.subscribe(subscriber);
+		subscriber.subscription.request(0);
+		executor.runAll();
+		assertTrue(subscriber.error instanceof IllegalArgumentException);
+		assertEquals(0, subscriber.rows.size());
+		assertEquals(1, reader.closed);
+
+		RecordingSubscriber second = new RecordingSubscriber();
+		publisher.subscribe(second);
+		assertTrue(second.error instanceof IllegalStateException);
+
+		final RuntimeException failure = new IllegalStateException("test");
+		CountingReader failing = new CountingReader(csv()) {
+			@Override
+			public RowBatch readBatch(int maxRows) {
+				throw failure;
+			}
+		};
+		RecordingSubscriber third = new RecordingSubscriber();
+		new RowBatchPublisher(failing, 4, executor).subscribe(third);
+		third.subscription.request(1);
+		executor.runAll();
+		assertEquals(failure, third.error);
+		assertEquals(1, failing.closed);
+	}
+
+	@Test
+	public void slowSubscriberOnAPool() throws Exception {
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			final CountDownLatch done = new CountDownLatch(1);
+			CountingReader reader = new CountingReader(csv());
+			RecordingSubscriber subscriber = new RecordingSubscriber() {
+				@Override
+				public void onNext(RowBatch batch) {
+					super.onNext(batch);
+					subscription.request(1); // one batch at a time, from the executor thread
+				}
+
+				@Override
+				public void onComplete() {
+					super.onComplete();
+					done.countDown();
+				}
+			};
+			new RowBatchPublisher(reader, 3, pool).subscribe(subscriber);
+			subscriber.subscription.request(1);
+			assertTrue(done.await(10, TimeUnit.SECONDS));
+			assertEquals(ROWS + 1, subscriber.rows.size());
+			assertEquals("25", subscriber.rows.get(ROWS));
+			assertEquals(1, reader.closed);
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	/**
+	 * Runs the tasks when the test asks for it.
+	 */
+	private static class ManualExecutor implements Executor {
+
+		private final Deque<Runnable> tasks = new ArrayDeque<Runnable>();
+
+		public synchronized void execute(Runnable task) {
+			tasks.add(task);
+		}
+
+		/**
+		 * @return the number of tasks run
+		 */
+		int runAll() {
+			int count = 0;
+			Runnable task;
+			while ((task = next()) != null) {
+				task.run();
+				count++;
+			}
+			return count;
+		}
+
+		private synchronized Runnable next() {
+			return tasks.poll();
+		}
+	}
+
+	/**
+	 * Counts the calls to close().
+	 */
+	private static class CountingReader extends CSVReader {
+
+		volatile int closed;
+
+		CountingReader(String csv) {
+			super(new StringReader(csv));
+		}
+
+		@Override
+		public void close() throws IOException {
+			closed++;
+			super.close();
+		}
+	}
+
+	/**
+	 * Records the first column of the rows and the signals.
+	 */
+	private static class RecordingSubscriber implements RowBatchPublisher.Subscriber {
+
+		volatile RowBatchPublisher.Subscription subscription;
+
+		final List<String> rows = new ArrayList<String>();
+
+		int batches;
+
+		int completed;
+
+		Throwable error;
+
+		public void onSubscribe(RowBatchPublisher.Subscription subscription) {
+			this.subscription = subscription;
+		}
+
+		public void onNext(RowBatch batch) {
+			batches++;
+			for (int row = 0; row < batch.size(); row++) {
+				rows.add(batch.getString(0, row));
+			}
+		}
+
+		public void onError(Throwable throwable) {
+			error = throwable;
+		}
+
+		public void onComplete() {
+			completed++;
+		}
+	}
+}
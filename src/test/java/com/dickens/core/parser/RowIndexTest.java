@@ -0,0 +1,184 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Windows of rows of a csv file reached through its RowIndex and resumed through a
+ * PageCursor, compared with the rows of a full read. The file is longer than the
+ * interval of the index used by XLFileReader and holds quoted line breaks, a blank line
+ * and CRLF line ends.
+ *
+ * @author Dickens Prabhu
+ */
+public class RowIndexTest {
+
+	private static final int ROWS = 2600;
+
+	private File file;
+
+	/** Rows of a full read, by row number. */
+	private Map<Integer, List<String>> expected;
+
+	@Before
+	public void createFile() throws Exception {
+		file = File.createTempFile("rowindex", ".csv");
+		write(ROWS);
+		expected = XLFileReader.excelReader(file.getPath());
+		assertEquals(ROWS + 1, expected.size());
+		assertEquals("two\nlines 7", expected.get(7).get(1));
+	}
+
+	@After
+	public void deleteFile() {
+		file.delete();
+	}
+
+	private void write(int rows) throws Exception {
+		StringBuilder csv = new StringBuilder("id,comment\r\n");
+		for (int r = 1; r <= rows; r++) {
+			if (r == 500) {
+				csv.append("\n");
+			} else if (r % 7 == 0) {
+				csv.append(r).append(",\"two\nlines ").append(r).append("\"\r\n");
+			} else {
+				csv.append(r).append(",\"plain, ").append(r).append("\"\n");
+			}
+		}
+		OutputStream oStream = new FileOutputStream(file);
+		try {
+			oStream.write(csv.toString().getBytes(Charset.defaultCharset()));
+		} finally {
+			oStream.close();
+		}
+	}
+
+	@Test
+	public void indexKeepsEveryIntervalthOffset() throws Exception {
+		RowIndex index = new RowIndex(10, file);
+		for (long row = 1; row < 35; row++) {
+			index.add(row, row * 100);
+		}
+		assertEquals(0, index.getIndexedRow(9));
+		assertEquals(0, index.getIndexedOffset(9));
+		assertEquals(10, index.getIndexedRow(10));
+		assertEquals(1000, index.getIndexedOffset(19));
+		assertEquals(30, index.getIndexedRow(34));
+		assertEquals(30, index.getIndexedRow(1000)); // after the last indexed record
+		assertEquals(3000, index.getIndexedOffset(1000));
+		assertTrue(index.matches(file));
+		try {
+			new RowIndex(0, file);
+			fail("interval 0 accepted");
+		} catch (IllegalArgumentException e) {
+			// expected
+		}
+	}
+
+	@Test
+	public void indexedOffsetsAreTheOffsetsOfAScanFromTheStart() throws Exception {
+		CSVReader reader = new CSVReader(file.getPath(), false);
+		try {
+			RowIndex index = reader.buildRowIndex(64, file);
+			assertEquals(ROWS + 1, index.getRowCount());
+			for (int row = 0; row <= ROWS + 2; row++) {
+				assertEquals("row " + row, reader.getRowOffset(row, null), reader.getRowOffset(row, index));
+			}
+		} finally {
+			reader.close();
+		}
+		for (int row : new int[] { 0, 63, 64, 65, 499, 500, 501, ROWS - 1, ROWS, ROWS + 1 }) {
+			reader = new CSVReader(file.getPath(), false);
+			try {
+				reader.seekToRow(row, reader.buildRowIndex(64, file));
+				Iterator<List<String>> rows = reader.getIterator();
+				if (row <= ROWS) {
+					assertTrue(rows.hasNext());
+					assertEquals("row " + row, expected.get(row), rows.next());
+				} else {
+					assertFalse(rows.hasNext());
+				}
+			} finally {
+				reader.close();
+			}
+		}
+	}
+
+	@Test
+	public void windowsAreTheRowsOfAFullRead() {
+		for (int offset : new int[] { 0, 1, 499, 1023, 1024, 1025, 2047, 2048, ROWS - 3, ROWS, ROWS + 1, ROWS + 5 }) {
+			for (int limit : new int[] { 1, 3, 1100 }) {
+				RowPage page = XLFileReader.readPage(file.getPath(), offset, limit);
+				assertEquals("window " + offset + "+" + limit, window(offset, limit), page.getRows());
+				assertEquals(offset + limit <= ROWS, page.hasMore());
+				assertEquals(window(offset, limit), XLFileReader.excelReader(file.getPath(), offset, limit));
+			}
+		}
+	}
+
+	@Test
+	public void cursorsResumeAfterTheirPage() throws Exception {
+		Map<Integer, List<String>> rows = new LinkedHashMap<Integer, List<String>>();
+		List<String> cursors = new ArrayList<String>();
+		RowPage page = XLFileReader.readPage(file.getPath(), null, 333);
+		rows.putAll(page.getRows());
+		while (page.hasMore()) {
+			cursors.add(page.getCursor());
+			page = XLFileReader.readPage(file.getPath(), page.getCursor(), 333);
+			rows.putAll(page.getRows());
+		}
+		assertEquals(expected, rows);
+		assertNull(page.getCursor());
+
+		// the file changed: the cursors resume by row number, the index is built again
+		write(ROWS + 10);
+		assertTrue(file.setLastModified(file.lastModified() + 2000));
+		expected = XLFileReader.excelReader(file.getPath());
+		String cursor = cursors.get(2);
+		assertEquals(window(999, 333), XLFileReader.readPage(file.getPath(), cursor, 333).getRows());
+		assertFalse(PageCursor.parse(cursor).hasOffset(file));
+	}
+
+	@Test
+	public void cursorTokens() {
+		PageCursor cursor = new PageCursor(1234567, 89012345, file);
+		PageCursor parsed = PageCursor.parse(cursor.toString());
+		assertEquals(1234567, parsed.rowNumber);
+		assertEquals(89012345, parsed.offset);
+		assertTrue(parsed.hasOffset(file));
+		assertFalse(PageCursor.parse(new PageCursor(5, -1, file).toString()).hasOffset(file));
+		for (String token : new String[] { "", "1_2_3", "1_2_3_4_5", "x!_0_0_0", "-1_0_0_0" }) {
+			try {
+				PageCursor.parse(token);
+				fail("token " + token + " parsed");
+			} catch (IllegalArgumentException e) {
+				// expected
+			}
+		}
+	}
+
+	private Map<Integer, List<String>> window(int offset, int limit) {
+		Map<Integer, List<String>> window = new LinkedHashMap<Integer, List<String>>();
+		for (int row = offset; row < offset + limit && expected.containsKey(row); row++) {
+			window.put(row, expected.get(row));
+		}
+		return window;
+	}
+}
@@ -0,0 +1,162 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.nio.charset.Charset;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+import org.junit.Test;
+
+/**
+ * Entries of a shared strings table held in heap, on disk and read lazily, looked up
+ * from several threads, and the temporary files of a disk backed table.
+ *
+ * @author Dickens Prabhu
+ */
+public class SharedStringsStoreTest {
+
+	private static final int COUNT = 5000;
+
+	private static String entry(int i) {
+		return i % 7 == 0 ? "" : "entry " + i + (i % 3 == 0 ? " \u00e9\u4e2d" : "");
+	}
+
+	private static InputStream part(int count, boolean complete) {
+		StringBuilder xml = new StringBuilder("<sst xmlns=\"http://schemas.openxmlformats.org/spreadsheetml/2006/main\">");
+		for (int i = 0; i < count; i++) {
+			if (i % 5 == 0) { // rich text, split in runs
+				String value = entry(i);
+				int half = value.length() / 2;
+				xml.append("<si><r><t>").append(value.substring(0, half)).append("</t></r><r><t>")
+						.append(value.substring(half)).append("</t></r></si>");
+			} else {
+				xml.append("<si><t>").append(entry(i)).append("</t></si>");
+			}
+		}
+		if (complete) {
+			xml.append("</sst>");
+		} else {
+			xml.append("<si><t>broken</si>");
+		}
+		return new ByteArrayInputStream(xml.toString().getBytes(Charset.forName("UTF-8")));
+	}
+
+	@Test
+	public void tablesReturnTheEntries() throws Exception {
+		SharedStringsStore[] stores = {
+			new SharedStringsStore(part(COUNT, true), -1, SharedStringsStore.DEFAULT_IN_MEMORY_LIMIT, 64), // size not known
+			new SharedStringsStore(part(COUNT, true), 1000, SharedStringsStore.DEFAULT_IN_MEMORY_LIMIT, 64),
+			new SharedStringsStore(part(COUNT, true), 1000, 0, 64),
+			new SharedStringsStore(part(COUNT, true), 1000, 0, 0),
+			new SharedStringsStore(part(COUNT, true)),
+		};
+		for (SharedStringsStore store : stores) {
+			try {
+				for (int i = 0; i < COUNT; i++) {
+					assertEquals(entry(i), store.getEntryAt(i));
+				}
+				assertEquals(entry(10), store.getEntryAt(10));
+				assertEquals(COUNT, store.getCount());
+				assertOutOfRange(store, COUNT);
+				assertOutOfRange(store, -1);
+			} finally {
+				store.close();
+			}
+		}
+	}
+
+	@Test
+	public void concurrentLookupsReturnTheEntries() throws Exception {
+		final SharedStringsStore[] stores = {
+			new SharedStringsStore(part(COUNT, true), 1000, 0, 64),
+			new SharedStringsStore(part(COUNT, true)),
+		};
+		ExecutorService pool = Executors.newFixedThreadPool(4);
+		try {
+			for (final SharedStringsStore store : stores) {
+				List<Future<Integer>> results = new ArrayList<Future<Integer>>();
+				for (int t = 0; t < 4; t++) {
+					final int seed = t;
+					results.add(pool.submit(new Callable<Integer>() {
+						public Integer call() {
+							int wrong = 0;
+							for (int n = 0; n < 4 * COUNT; n++) {
+								int i = (n * 7919 + seed * 104729) % COUNT;
+								if (!entry(i).equals(store.getEntryAt(i))) {
+									++wrong;
+								}
+							}
+							return Integer.valueOf(wrong);
+						}
+					}));
+				}
+				for (Future<Integer> result : results) {
+					assertEquals(Integer.valueOf(0), result.get());
+				}
+				store.close();
+			}
+		} finally {
+			pool.shutdown();
+		}
+	}
+
+	@Test
+	public void closeDeletesTheTemporaryFiles() throws Exception {
+		Set<String> before = temporaryFiles();
+		SharedStringsStore store = new SharedStringsStore(part(COUNT, true), 1000, 0, 64);
+		Set<String> created = temporaryFiles();
+		created.removeAll(before);
+		assertEquals(2, created.size());
+		store.close();
+		assertTrue(temporaryFiles().containsAll(before));
+		for (String name : created) {
+			assertTrue(name, !temporaryFiles().contains(name));
+		}
+	}
+
+	@Test
+	public void failedReadDeletesTheTemporaryFiles() throws Exception {
+		Set<String> before = temporaryFiles();
+		try {
+			new SharedStringsStore(part(COUNT, false), 1000, 0, 64);
+			fail("broken part read");
+		} catch (javax.xml.stream.XMLStreamException e) {
+			// expected
+		}
+		Set<String> after = temporaryFiles();
+		after.removeAll(before);
+		assertEquals(new HashSet<String>(), after);
+	}
+
+	private static void assertOutOfRange(SharedStringsStore store, int idx) {
+		try {
+			store.getEntryAt(idx);
+			fail("index " + idx + " in range");
+		} catch (IndexOutOfBoundsException e) {
+			// expected
+		}
+	}
+
+	private static Set<String> temporaryFiles() {
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith("sst") && (name.endsWith(".dat") || name.endsWith(".idx"));
+			}
+		});
+		return new HashSet<String>(Arrays.asList(names));
+	}
+}
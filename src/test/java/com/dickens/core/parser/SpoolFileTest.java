@@ -0,0 +1,136 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.ByteArrayInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.FilenameFilter;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Test;
+
+/**
+ * Temporary copies of the input streams read by XLSXReader and XLSEventReader, which
+ * must be deleted when the reader is closed or fails to open.
+ *
+ * @author Dickens Prabhu
+ */
+public class SpoolFileTest {
+
+	private File file;
+
+	@After
+	public void deleteFile() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	private void write(Workbook workbook, String suffix) throws Exception {
+		file = File.createTempFile("spool", suffix);
+		try {
+			Sheet sheet = workbook.createSheet("data");
+			for (int r = 0; r < 3; r++) {
+				sheet.createRow(r).createCell(0).setCellValue("row" + r);
+			}
+			OutputStream oStream = new FileOutputStream(file);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.close();
+		}
+	}
+
+	@Test
+	public void xlsxCopyIsDeletedByClose() throws Exception {
+		write(new XSSFWorkbook(), ".xlsx");
+		Set<String> before = spoolFiles("xlsx");
+		InputStream iStream = new FileInputStream(file);
+		XLSXReader reader;
+		try {
+			reader = new XLSXReader(iStream, false);
+		} finally {
+			iStream.close();
+		}
+		assertEquals(before.size() + 1, spoolFiles("xlsx").size());
+		assertEquals(3, count(reader.getIterator()));
+		reader.close();
+		assertEquals(before, spoolFiles("xlsx"));
+	}
+
+	@Test
+	public void xlsCopyIsDeletedByClose() throws Exception {
+		write(new HSSFWorkbook(), ".xls");
+		Set<String> before = spoolFiles("xls");
+		InputStream iStream = new FileInputStream(file);
+		XLSEventReader reader;
+		try {
+			reader = new XLSEventReader(iStream, false);
+		} finally {
+			iStream.close();
+		}
+		assertEquals(before.size() + 1, spoolFiles("xls").size());
+		assertEquals(3, count(reader.getIterator()));
+		reader.close();
+		assertEquals(before, spoolFiles("xls"));
+	}
+
+	@Test
+	public void copyIsDeletedWhenTheStreamCannotBeOpened() throws Exception {
+		Set<String> xlsx = spoolFiles("xlsx");
+		Set<String> xls = spoolFiles("xls");
+		try {
+			new XLSXReader(new ByteArrayInputStream("not a workbook".getBytes("UTF-8")), false);
+			fail("xlsx opened");
+		} catch (Exception e) {
+			// expected
+		}
+		try {
+			new XLSEventReader(new ByteArrayInputStream("not a workbook".getBytes("UTF-8")), false);
+			fail("xls opened");
+		} catch (Exception e) {
+			// expected
+		}
+		assertEquals(xlsx, spoolFiles("xlsx"));
+		assertEquals(xls, spoolFiles("xls"));
+	}
+
+	private static int count(Iterator<List<String>> rows) {
+		int count = 0;
+		while (rows.hasNext()) {
+			assertTrue(rows.next().get(0).startsWith("row"));
+			++count;
+		}
+		return count;
+	}
+
+	/**
+	 * Returns the names of the temporary copies made by GenericFileReader.spool.
+	 */
+	private static Set<String> spoolFiles(final String extension) {
+		String[] names = new File(System.getProperty("java.io.tmpdir")).list(new FilenameFilter() {
+			public boolean accept(File dir, String name) {
+				return name.startsWith(extension) && name.endsWith("." + extension);
+			}
+		});
+		return new HashSet<String>(Arrays.asList(names));
+	}
+}
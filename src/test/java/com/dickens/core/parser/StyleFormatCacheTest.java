@@ -0,0 +1,103 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.DataFormatter;
+import org.apache.poi.util.LocaleUtil;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Numeric cells formatted by StyleFormatCache, compared with DataFormatter and with the
+ * text the xlsx iterators returned for dates.
+ *
+ * @author Dickens Prabhu
+ */
+public class StyleFormatCacheTest {
+
+	private XSSFWorkbook workbook;
+
+	private int date;
+
+	private int builtinDate;
+
+	private int decimal;
+
+	private int general;
+
+	@Before
+	public void createStyles() {
+		LocaleUtil.setUserTimeZone(LocaleUtil.TIMEZONE_UTC);
+		workbook = new XSSFWorkbook();
+		date = style("yyyy-mm-dd");
+		CellStyle builtin = workbook.createCellStyle();
+		builtin.setDataFormat((short) 14);
+		builtinDate = builtin.getIndex();
+		decimal = style("#,##0.00");
+		general = style("General");
+	}
+
+	@After
+	public void closeWorkbook() throws Exception {
+		workbook.close();
+		LocaleUtil.resetUserTimeZone();
+	}
+
+	private int style(String format) {
+		CellStyle style = workbook.createCellStyle();
+		style.setDataFormat(workbook.createDataFormat().getFormat(format));
+		return style.getIndex();
+	}
+
+	private StyleFormatCache cache() {
+		return new StyleFormatCache(workbook.getStylesSource(), false);
+	}
+
+	@Test
+	public void datesAreWrittenMonthDayYear() {
+		StyleFormatCache cache = cache();
+		assertEquals("12/27/2014", cache.format(date, "42000"));
+		assertEquals("12/28/2014", cache.format(builtinDate, "42001.25"));
+		assertEquals("01/01/1900", cache.format(date, "1"));
+		assertEquals("09/19/10113", cache.format(date, "3000000"));
+	}
+
+	@Test
+	public void negativeSerialBeforeAValidDate() {
+		StyleFormatCache cache = cache();
+		assertEquals("12/31/1969", cache.format(date, "-1.5"));
+		assertEquals("01/01/1970", cache.format(builtinDate, "-0.0287"));
+		assertEquals("12/27/2014", cache.format(date, "42000"));
+	}
+
+	@Test
+	public void negativeSerialAfterAValidDate() {
+		StyleFormatCache cache = cache();
+		assertEquals("12/27/2014", cache.format(date, "42000"));
+		assertEquals("09/19/10113", cache.format(date, "3000000"));
+		assertEquals("12/31/1969", cache.format(date, "-1.5"));
+		assertEquals("01/01/1970", cache.format(builtinDate, "-0.0287"));
+	}
+
+	@Test
+	public void negativeSerialInTheUserTimeZone() {
+		LocaleUtil.setUserTimeZone(java.util.TimeZone.getTimeZone("Asia/Tokyo"));
+		assertEquals("01/01/1970", cache().format(date, "-1.5"));
+	}
+
+	@Test
+	public void numbersAreWrittenLikeDataFormatter() {
+		StyleFormatCache cache = cache();
+		DataFormatter formatter = new DataFormatter();
+		String[] values = { "0", "1", "-1", "1234.5", "1234.565", "-0.001", "0.0001", "12345678901", "1E-12", "3.14159265358979" };
+		String decimalFormat = workbook.getStylesSource().getStyleAt(decimal).getDataFormatString();
+		for (String value : values) {
+			double number = Double.parseDouble(value);
+			assertEquals(value, formatter.formatRawCellContents(number, -1, decimalFormat), cache.format(decimal, value));
+			assertEquals(value, formatter.formatRawCellContents(number, -1, "General"), cache.format(general, value));
+		}
+	}
+}
@@ -0,0 +1,164 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Rows of a xlsx file read through the public methods of XLFileReader, compared with
+ * the String iterator of XLSXReader over the OPC package, which is how the file was
+ * read before the row views. Text cells hold _xHHHH_ escapes, some date cells hold
+ * negative serials, whose text must not depend on the rows skipped before them.
+ *
+ * @author Dickens Prabhu
+ */
+public class XLFileReaderTest {
+
+	private static final int ROWS = 30;
+
+	private static File file;
+
+	/** Rows of the String iterator, by row number. */
+	private static Map<Integer, List<String>> expected;
+
+	@BeforeClass
+	public static void createWorkbook() throws Exception {
+		file = File.createTempFile("xlfilereader", ".xlsx");
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		try {
+			CellStyle date = workbook.createCellStyle();
+			date.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+			Sheet sheet = workbook.createSheet("data");
+			Row header = sheet.createRow(0);
+			header.createCell(0).setCellValue("id");
+			header.createCell(1).setCellValue("name_x000D_\nfirst");
+			header.createCell(2).setCellValue("amount");
+			header.createCell(3).setCellValue("date");
+			for (int r = 1; r <= ROWS; r++) {
+				if (r == 7) {
+					continue; // skipped by readers that do not read empty rows
+				}
+				Row row = sheet.createRow(r);
+				row.createCell(0).setCellValue(r);
+				row.createCell(1).setCellValue("line" + r + "_x000D_\n_x0009_" + r);
+				row.createCell(2).setCellValue(r / 4.0);
+				row.createCell(3).setCellValue(r % 9 == 0 ? -r / 4.0 : 42000 + r); // not valid dates
+				row.getCell(3).setCellStyle(date);
+			}
+			OutputStream oStream = new FileOutputStream(file);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.close();
+		}
+
+		expected = new LinkedHashMap<Integer, List<String>>();
+		XLSXReader reader = new XLSXReader(file.getPath(), false);
+		try {
+			Iterator<List<String>> rows = reader.getIterator();
+			while (rows.hasNext()) {
+				expected.put(expected.size(), new ArrayList<String>(rows.next()));
+			}
+		} finally {
+			reader.close();
+		}
+		assertEquals(ROWS, expected.size());
+		assertEquals("name\r\nfirst", expected.get(0).get(1));
+		assertEquals("line3\r\n\t3", expected.get(3).get(1));
+		assertTrue(expected.get(8).get(3).matches("\\d\\d/\\d\\d/19(69|70)"));
+	}
+
+	@AfterClass
+	public static void deleteWorkbook() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void excelReaderReturnsTheRowsOfTheStringIterator() throws Exception {
+		assertEquals(expected, XLFileReader.excelReader(file.getPath()));
+		assertEquals(window(5, 10), XLFileReader.excelReader(file.getPath(), 5, 10));
+		assertEquals(window(0, 3), XLFileReader.excelReader(file.getPath(), 0, 3));
+	}
+
+	@Test
+	public void sheetRowHandlerGetsTheRowsOfTheStringIterator() {
+		final Map<Integer, List<String>> rows = new LinkedHashMap<Integer, List<String>>();
+		XLFileReader.excelReader(file.getPath(), 4, 6, new SheetRowHandler() {
+			public void handleRow(String sheetName, long rowNumber, List<String> row) {
+				assertEquals("data", sheetName);
+				rows.put((int) rowNumber, row);
+			}
+		});
+		assertEquals(window(4, 6), rows);
+	}
+
+	@Test
+	public void readPageReturnsTheRowsOfTheStringIterator() {
+		Map<Integer, List<String>> rows = new LinkedHashMap<Integer, List<String>>();
+		RowPage page = XLFileReader.readPage(file.getPath(), null, 8);
+		rows.putAll(page.getRows());
+		while (page.hasMore()) {
+			page = XLFileReader.readPage(file.getPath(), page.getCursor(), 8);
+			rows.putAll(page.getRows());
+		}
+		assertEquals(expected, rows);
+		assertEquals(window(12, 5), XLFileReader.readPage(file.getPath(), 12, 5).getRows());
+	}
+
+	@Test
+	public void headersAreDecoded() {
+		Map<Integer, String> headers = XLFileReader.getExcelHeaders(file.getPath());
+		assertEquals(Arrays.asList("id", "name\r\nfirst", "amount", "date"), new ArrayList<String>(headers.values()));
+	}
+
+	@Test
+	public void processFileMapsTheRowsOfTheStringIterator() {
+		List<ColumnsMap> mapping = new ArrayList<ColumnsMap>();
+		String[] fields = { "id", "name", "amount", "date" };
+		for (int c = 0; c < fields.length; c++) {
+			ColumnsMap columns = new ColumnsMap();
+			columns.setColumnIndex(c + 1);
+			columns.setMappedFieldName(fields[c]);
+			mapping.add(columns);
+		}
+		List<FileRecord> records = XLFileReader.processFile(file.getPath(), mapping, 1, 10);
+		assertEquals(10, records.size());
+		for (FileRecord record : records) {
+			List<String> row = expected.get(record.getRowNumber());
+			assertTrue(record.getRowNumber() >= 1 && record.getRowNumber() <= 10);
+			for (int c = 0; c < fields.length; c++) {
+				assertEquals(row.get(c), record.getValue(fields[c]));
+			}
+		}
+	}
+
+	private static Map<Integer, List<String>> window(int offset, int limit) {
+		Map<Integer, List<String>> rows = new LinkedHashMap<Integer, List<String>>();
+		for (int r = offset; r < offset + limit && r < expected.size(); r++) {
+			rows.put(r, expected.get(r));
+		}
+		return rows;
+	}
+}
@@ -0,0 +1,130 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.poi.hssf.usermodel.HSSFWorkbook;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Formula cells of a xls file read by XLSEventReader, which XLFileReader uses for xls
+ * files, compared with XLSReader. Numeric and string results are the same, the other
+ * results are read from the cached value where XLSReader returns the formula text or
+ * the text of another cell of the row.
+ *
+ * @author Dickens Prabhu
+ */
+public class XLSEventReaderFormulaTest {
+
+	private static File file;
+
+	@BeforeClass
+	public static void createWorkbook() throws Exception {
+		file = File.createTempFile("formula", ".xls");
+		HSSFWorkbook workbook = new HSSFWorkbook();
+		try {
+			CellStyle date = workbook.createCellStyle();
+			date.setDataFormat(workbook.createDataFormat().getFormat("yyyy-mm-dd"));
+			Sheet sheet = workbook.createSheet("formula");
+			Row header = sheet.createRow(0);
+			for (int c = 0; c < 6; c++) {
+				header.createCell(c).setCellValue("column" + c);
+			}
+			Row row = sheet.createRow(1);
+			row.createCell(0).setCellValue("x");
+			row.createCell(1).setCellFormula("1+2");
+			row.createCell(2).setCellFormula("A2&\"y\"");
+			row.createCell(3).setCellFormula("1.5*2");
+			row.createCell(4).setCellFormula("DATE(2020,1,2)");
+			row.getCell(4).setCellStyle(date);
+			row = sheet.createRow(2);
+			row.createCell(0).setCellFormula("1=1");
+			row.createCell(1).setCellFormula("1/0");
+			row.createCell(2).setCellFormula("NA()");
+			workbook.getCreationHelper().createFormulaEvaluator().evaluateAll();
+			OutputStream oStream = new FileOutputStream(file);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.close();
+		}
+	}
+
+	@AfterClass
+	public static void deleteWorkbook() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	@Test
+	public void numericAndStringResultsAreTheRowsOfXLSReader() throws Exception {
+		List<List<String>> rows = read(new XLSEventReader(file.getPath(), false));
+		List<List<String>> expected = read(new XLSReader(file.getPath(), false));
+		assertEquals(expected.get(0), rows.get(0));
+		assertEquals(expected.get(1).subList(0, 4), rows.get(1).subList(0, 4));
+		assertEquals(Arrays.asList("x", "3.0", "xy", "3.0"), rows.get(1).subList(0, 4));
+	}
+
+	@Test
+	public void otherResultsAreTheCachedValues() throws Exception {
+		List<List<String>> rows = read(new XLSEventReader(file.getPath(), false));
+		assertTrue(rows.get(1).get(4), rows.get(1).get(4).matches("0[12]-Jan-2020"));
+		assertEquals(Arrays.asList("TRUE", "#DIV/0!", "#N/A"), rows.get(2).subList(0, 3));
+
+		// XLSReader returns the formula text of a date, and the previous text of the row
+		// for the other results: null at the start of the row, which is then read as empty
+		List<List<String>> expected = read(new XLSReader(file.getPath(), false));
+		assertEquals("DATE(2020,1,2)", expected.get(1).get(4));
+		assertEquals(2, expected.size());
+		assertEquals(3, rows.size());
+	}
+
+	@Test
+	public void typedRowsHoldTheCachedValues() throws Exception {
+		XLSEventReader reader = new XLSEventReader(file.getPath(), false);
+		try {
+			Iterator<TypedRow> rows = reader.getTypedIterator();
+			assertTrue(rows.hasNext());
+			rows.next();
+			assertTrue(rows.hasNext());
+			TypedRow row = rows.next();
+			assertEquals(3.0, row.getDouble(1), 0);
+			assertEquals("xy", row.getString(2));
+			assertTrue(rows.hasNext());
+			row = rows.next();
+			assertEquals(Arrays.asList("TRUE", "#DIV/0!", "#N/A"), row.materialize().subList(0, 3));
+		} finally {
+			reader.close();
+		}
+	}
+
+	private static List<List<String>> read(GenericFileReader reader) throws Exception {
+		try {
+			List<List<String>> rows = new ArrayList<List<String>>();
+			Iterator<List<String>> iterator = reader.getIterator();
+			while (iterator.hasNext()) {
+				rows.add(new ArrayList<String>(iterator.next()));
+			}
+			return rows;
+		} finally {
+			reader.close();
+		}
+	}
+}
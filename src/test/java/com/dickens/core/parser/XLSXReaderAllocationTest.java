@@ -0,0 +1,205 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.lang.management.ManagementFactory;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Cell;
+import org.apache.poi.ss.usermodel.CellStyle;
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.streaming.SXSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.Assume;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Allocation of the xlsx cell loop, measured with the allocation counter of the thread
+ * over the typed iterator, the String iterator and the recycled row views of a
+ * generated sheet.
+ *
+ * What is left per cell in the typed loop are the value Strings of the r, t and s
+ * attributes, which the JDK StAX parser creates when they are asked for: about 110 to
+ * 118 bytes a cell on this sheet, where every cell has a type and a third of them a
+ * style. Decoding number and shared string cells does not allocate. The String
+ * iterator also creates the text of the number cells, and the views the text of the
+ * numbers with a format (three cells of ten): about 150 to 157 bytes a cell.
+ *
+ * @author Dickens Prabhu
+ */
+public class XLSXReaderAllocationTest {
+
+	private static final int ROWS = 20000;
+
+	private static final int COLUMNS = 10;
+
+	/** Bytes allocated per cell read by the typed loop, attribute Strings of the parser included. */
+	private static final long MAX_TYPED_BYTES_PER_CELL = 120;
+
+	/** Bytes allocated per cell read by the loops which format numbers to Strings. */
+	private static final long MAX_FORMATTED_BYTES_PER_CELL = 160;
+
+	private static File file;
+
+	@BeforeClass
+	public static void createSheet() throws Exception {
+		file = File.createTempFile("allocation", ".xlsx");
+		SXSSFWorkbook workbook = new SXSSFWorkbook(null, 100, false, true);
+		try {
+			CellStyle decimal = workbook.createCellStyle();
+			decimal.setDataFormat(workbook.createDataFormat().getFormat("0.00"));
+			Sheet sheet = workbook.createSheet("data");
+			Row header = sheet.createRow(0);
+			for (int c = 0; c < COLUMNS; c++) {
+				header.createCell(c).setCellValue("column" + c);
+			}
+			for (int r = 1; r <= ROWS; r++) {
+				Row row = sheet.createRow(r);
+				for (int c = 0; c < COLUMNS; c++) {
+					Cell cell = row.createCell(c);
+					if (c % 3 == 0) {
+						cell.setCellValue("value" + (r % 50));
+					} else if (c % 3 == 1) {
+						cell.setCellValue(r * c);
+					} else {
+						cell.setCellValue(r / 8.0);
+						cell.setCellStyle(decimal);
+					}
+				}
+			}
+			OutputStream oStream = new FileOutputStream(file);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.dispose();
+			workbook.close();
+		}
+	}
+
+	@AfterClass
+	public static void deleteSheet() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	private static com.sun.management.ThreadMXBean allocationBean;
+
+	@BeforeClass
+	public static void enableAllocationCounter() {
+		java.lang.management.ThreadMXBean threadBean = ManagementFactory.getThreadMXBean();
+		Assume.assumeTrue(threadBean instanceof com.sun.management.ThreadMXBean);
+		allocationBean = (com.sun.management.ThreadMXBean) threadBean;
+		Assume.assumeTrue(allocationBean.isThreadAllocatedMemorySupported());
+		allocationBean.setThreadAllocatedMemoryEnabled(true);
+	}
+
+	@Test
+	public void typedCellLoopStaysWithinBound() throws Exception {
+		assertBound(new CellLoop() {
+			Iterator<?> open(GenericFileReader reader) {
+				return reader.getTypedIterator();
+			}
+
+			double read(Object next) {
+				TypedRow row = (TypedRow) next;
+				double sum = 0;
+				for (int i = 0; i < row.size(); i++) {
+					sum += row.isNumeric(i) ? row.getDouble(i) : row.getCell(i).length();
+				}
+				return sum;
+			}
+		}, MAX_TYPED_BYTES_PER_CELL);
+	}
+
+	@Test
+	public void stringCellLoopStaysWithinBound() throws Exception {
+		assertBound(new CellLoop() {
+			Iterator<?> open(GenericFileReader reader) {
+				return reader.getIterator();
+			}
+
+			@SuppressWarnings("unchecked")
+			double read(Object next) {
+				List<String> row = (List<String>) next;
+				double sum = 0;
+				for (int i = 0; i < row.size(); i++) {
+					sum += row.get(i).length();
+				}
+				return sum;
+			}
+		}, MAX_FORMATTED_BYTES_PER_CELL);
+	}
+
+	@Test
+	public void rowViewLoopStaysWithinBound() throws Exception {
+		assertBound(new CellLoop() {
+			Iterator<?> open(GenericFileReader reader) {
+				return reader.getRowViews(false);
+			}
+
+			double read(Object next) {
+				RowView row = (RowView) next;
+				double sum = 0;
+				for (int i = 0; i < row.size(); i++) {
+					sum += row.getCell(i).length();
+				}
+				return sum;
+			}
+		}, MAX_FORMATTED_BYTES_PER_CELL);
+	}
+
+	private static void assertBound(CellLoop loop, long maxBytesPerCell) throws Exception {
+		loop.bytesPerCell(); // warm up
+		double bytesPerCell = loop.bytesPerCell();
+		assertTrue("allocated " + bytesPerCell + " bytes per cell", bytesPerCell <= maxBytesPerCell);
+	}
+
+	/**
+	 * Reads all cells of the sheet through one kind of iterator.
+	 */
+	private abstract static class CellLoop {
+
+		abstract Iterator<?> open(GenericFileReader reader);
+
+		/**
+		 * @return a sum over the cells of the row, so that they are read
+		 */
+		abstract double read(Object row);
+
+		/**
+		 * @return the bytes allocated by the current thread per cell read
+		 */
+		double bytesPerCell() throws Exception {
+			long threadId = Thread.currentThread().getId();
+			GenericFileReader reader = GenericFileReader.getReader(file.getPath(), true);
+			try {
+				Iterator<?> iterator = open(reader);
+				iterator.hasNext(); // header row, the buffers are allocated
+				long rows = 0;
+				double sum = 0;
+				long before = allocationBean.getThreadAllocatedBytes(threadId);
+				do {
+					sum += read(iterator.next());
+					rows++;
+				} while (iterator.hasNext());
+				long after = allocationBean.getThreadAllocatedBytes(threadId);
+				assertEquals(ROWS + 1, rows);
+				assertTrue(sum > 0);
+				return (after - before) / (double) (rows * COLUMNS);
+			} finally {
+				reader.close();
+			}
+		}
+	}
+}
@@ -0,0 +1,143 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+
+import org.apache.poi.ss.usermodel.Row;
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.ss.usermodel.Workbook;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Shared string cells holding _xHHHH_ escapes read through the String, typed, view and
+ * batch access of XLSXReader, by the zip and by the OPC package.
+ *
+ * @author Dickens Prabhu
+ */
+public class XLSXReaderTextTest {
+
+	/** Cell values as written in the part, POI writes them without escaping them. */
+	static final String[] ESCAPED = { "a_x000D_\nb", "tab_x0009_end", "plain", "_x005F_x000D_" };
+
+	/** Cell values as XSSFRichTextString decodes them. */
+	static final String[] DECODED = { "a\r\nb", "tab\tend", "plain", "_x000D_" };
+
+	private static File file;
+
+	@BeforeClass
+	public static void createWorkbook() throws Exception {
+		file = write(new XSSFWorkbook());
+	}
+
+	@AfterClass
+	public static void deleteWorkbook() {
+		if (file != null) {
+			file.delete();
+		}
+	}
+
+	/**
+	 * Writes a header row and one row of escaped text.
+	 */
+	static File write(Workbook workbook) throws Exception {
+		File file = File.createTempFile("text", ".xlsx");
+		try {
+			Sheet sheet = workbook.createSheet("text");
+			Row header = sheet.createRow(0);
+			Row row = sheet.createRow(1);
+			for (int c = 0; c < ESCAPED.length; c++) {
+				header.createCell(c).setCellValue("column" + c);
+				row.createCell(c).setCellValue(ESCAPED[c]);
+			}
+			OutputStream oStream = new FileOutputStream(file);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.close();
+		}
+		return file;
+	}
+
+	@Test
+	public void zipPackageDecodesEveryAccess() throws Exception {
+		assertDecoded(file, true);
+	}
+
+	@Test
+	public void opcPackageDecodesEveryAccess() throws Exception {
+		assertDecoded(file, false);
+	}
+
+	private static void assertDecoded(File file, boolean lightweight) throws Exception {
+		List<String> expected = new ArrayList<String>();
+		for (String value : DECODED) {
+			expected.add(value);
+		}
+
+		XLSXReader reader = new XLSXReader(file.getPath(), true, lightweight);
+		try {
+			Iterator<List<String>> rows = reader.getIterator();
+			skipHeader(rows);
+			assertEquals(expected, rows.next());
+		} finally {
+			reader.close();
+		}
+
+		reader = new XLSXReader(file.getPath(), true, lightweight);
+		try {
+			Iterator<TypedRow> rows = reader.getTypedIterator();
+			skipHeader(rows);
+			TypedRow row = rows.next();
+			List<String> strings = new ArrayList<String>();
+			for (int c = 0; c < row.size(); c++) {
+				strings.add(row.getString(c));
+			}
+			assertEquals(expected, strings);
+			assertEquals(expected, row.materialize());
+		} finally {
+			reader.close();
+		}
+
+		reader = new XLSXReader(file.getPath(), true, lightweight);
+		try {
+			Iterator<RowView> rows = reader.getRowViews(true);
+			skipHeader(rows);
+			assertEquals(expected, rows.next().materialize());
+		} finally {
+			reader.close();
+		}
+
+		reader = new XLSXReader(file.getPath(), true, lightweight);
+		try {
+			RowBatch batch = reader.readBatch(10);
+			assertEquals(2, batch.size());
+			for (int c = 0; c < DECODED.length; c++) {
+				assertEquals(DECODED[c], batch.getString(c, 1));
+			}
+		} finally {
+			reader.close();
+		}
+	}
+
+	/**
+	 * Steps over the header row, leaving the iterator on the row of text.
+	 */
+	private static void skipHeader(Iterator<?> rows) {
+		assertTrue(rows.hasNext());
+		rows.next();
+		assertTrue(rows.hasNext());
+	}
+}
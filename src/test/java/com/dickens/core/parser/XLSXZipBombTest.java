@@ -0,0 +1,159 @@
+package com.dickens.core.parser;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+import java.util.zip.ZipEntry;
+import java.util.zip.ZipInputStream;
+import java.util.zip.ZipOutputStream;
+
+import org.apache.poi.ss.usermodel.Sheet;
+import org.apache.poi.xssf.usermodel.XSSFWorkbook;
+import org.junit.AfterClass;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * A xlsx file whose sheet inflates far beyond its compressed size, read by the zip
+ * package and by the OPC package: both must stop at the inflate ratio of
+ * ZipSecureFile. The iterators end the sheet on a failure of its stream, so no row
+ * is returned; the padding comes before the rows. The same file without the
+ * padding is read normally.
+ *
+ * @author Dickens Prabhu
+ */
+public class XLSXZipBombTest {
+
+	/** Whitespace added to the sheet, deflated about a thousand times smaller. */
+	private static final int PADDING = 8 << 20;
+
+	private static File plain;
+
+	private static File bomb;
+
+	@BeforeClass
+	public static void createWorkbooks() throws Exception {
+		plain = File.createTempFile("plain", ".xlsx");
+		XSSFWorkbook workbook = new XSSFWorkbook();
+		try {
+			Sheet sheet = workbook.createSheet("data");
+			for (int r = 0; r < 3; r++) {
+				sheet.createRow(r).createCell(0).setCellValue("row" + r);
+			}
+			OutputStream oStream = new FileOutputStream(plain);
+			try {
+				workbook.write(oStream);
+			} finally {
+				oStream.close();
+			}
+		} finally {
+			workbook.close();
+		}
+		bomb = File.createTempFile("bomb", ".xlsx");
+		pad(plain, bomb);
+	}
+
+	/**
+	 * Copies the package, adding whitespace at the start of the sheet data.
+	 */
+	private static void pad(File source, File target) throws IOException {
+		ZipInputStream in = new ZipInputStream(new FileInputStream(source));
+		ZipOutputStream out = new ZipOutputStream(new FileOutputStream(target));
+		try {
+			ZipEntry entry;
+			byte[] buffer = new byte[1 << 16];
+			while ((entry = in.getNextEntry()) != null) {
+				out.putNextEntry(new ZipEntry(entry.getName()));
+				if (entry.getName().equals("xl/worksheets/sheet1.xml")) {
+					StringBuilder xml = new StringBuilder();
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						xml.append(new String(buffer, 0, read, "UTF-8"));
+					}
+					int data = xml.indexOf("<sheetData>") + "<sheetData>".length();
+					out.write(xml.substring(0, data).getBytes("UTF-8"));
+					byte[] spaces = new byte[1 << 16];
+					Arrays.fill(spaces, (byte) ' ');
+					for (int written = 0; written < PADDING; written += spaces.length) {
+						out.write(spaces);
+					}
+					out.write(xml.substring(data).getBytes("UTF-8"));
+				} else {
+					int read;
+					while ((read = in.read(buffer)) != -1) {
+						out.write(buffer, 0, read);
+					}
+				}
+				out.closeEntry();
+			}
+		} finally {
+			in.close();
+			out.close();
+		}
+	}
+
+	@AfterClass
+	public static void deleteWorkbooks() {
+		plain.delete();
+		bomb.delete();
+	}
+
+	@Test
+	public void zipPackagePartFailsAtTheInflateRatio() throws Exception {
+		XLSXZipPackage zipPackage = new XLSXZipPackage(bomb);
+		try {
+			InputStream iStream = zipPackage.getInputStream("/xl/worksheets/sheet1.xml");
+			try {
+				byte[] buffer = new byte[1 << 16];
+				long inflated = 0;
+				int read;
+				while ((read = iStream.read(buffer)) != -1) {
+					inflated += read;
+				}
+				fail("part inflated to " + inflated + " bytes");
+			} catch (IOException e) {
+				assertTrue(e.getMessage(), e.getMessage().contains("Zip bomb"));
+			} finally {
+				iStream.close();
+			}
+		} finally {
+			zipPackage.close();
+		}
+	}
+
+	@Test
+	public void zipPackageStopsAtTheInflateRatio() throws Exception {
+		assertEquals(3, count(new XLSXReader(plain.getPath(), false, true)));
+		assertEquals(0, count(new XLSXReader(bomb.getPath(), false, true)));
+	}
+
+	@Test
+	public void opcPackageStopsAtTheInflateRatio() throws Exception {
+		assertEquals(3, count(new XLSXReader(plain.getPath(), false, false)));
+		assertEquals(0, count(new XLSXReader(bomb.getPath(), false, false)));
+	}
+
+	private static int count(XLSXReader reader) throws Exception {
+		try {
+			int count = 0;
+			Iterator<List<String>> rows = reader.getIterator();
+			while (rows.hasNext()) {
+				rows.next();
+				++count;
+			}
+			return count;
+		} finally {
+			reader.close();
+		}
+	}
+}